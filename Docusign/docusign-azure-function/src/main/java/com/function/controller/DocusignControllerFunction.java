@@ -8,6 +8,7 @@ import java.util.logging.Logger;
 
 import com.function.model.DocusignOAuthTokenRequest;
 import com.function.service.DocusignConnectService;
+import com.function.service.DocusignOAuthTokenPrewarmService;
 import com.function.service.DocusignOAuthTokenService;
 import com.function.service.PropertiesService;
 import com.function.service.DocusignPayloadService;
@@ -18,12 +19,14 @@ import com.function.service.DocusignServiceEnvelopes;
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
 import com.function.service.ServiceBusQueuePublisherService;
+import com.function.utils.AdmissionController;
 
 public class DocusignControllerFunction {
 
     private final DocusignOAuthTokenService tokenService = new DocusignOAuthTokenService();private final PropertiesService propertiesService = new PropertiesService();
     private final DocusignPayloadService payloadService = new DocusignPayloadService();
     private final DocusignConnectService connectService = new DocusignConnectService(); // Docusign Conenct Service Class
+    private final DocusignOAuthTokenPrewarmService tokenPrewarmService = new DocusignOAuthTokenPrewarmService();
 
 
     @FunctionName("generateDocusignOAuthToken")
@@ -214,9 +217,23 @@ public class DocusignControllerFunction {
                 context.getLogger().info("[Controller] - Injected accountid into headers " + accountId);
             }
     
-            // Step 3: Call service
+            // Step 3: Admission control - shed load with Retry-After rather than time out and trigger redelivery
+            AdmissionController.Ticket ticket;
+            try {
+                ticket = AdmissionController.getInstance().admit(requestBody.length());
+            } catch (AdmissionController.OverloadedException overloaded) {
+                context.getLogger().warning("[Controller] - Event not admitted: " + overloaded.getMessage());
+                return request.createResponseBuilder(HttpStatus.valueOf(overloaded.getStatusCode()))
+                        .header("Content-Type", "application/json")
+                        .header("X-Correlation-ID", correlationId)
+                        .header("Retry-After", String.valueOf(overloaded.getRetryAfterSeconds()))
+                        .body(String.format("{\"error\": \"%s\", \"correlationId\": \"%s\"}", overloaded.getMessage(), correlationId))
+                        .build();
+            }
+
+            // Step 3.1: Call service; the ticket is released when processing ends, not when we stop waiting for it
             context.getLogger().info("[Controller] - Calling service layer...");
-            String response = connectService.handleConnectRequest(requestBody, headersMap, context);
+            String response = connectService.handleConnectRequest(requestBody, headersMap, context, ticket);
     
             // Step 4: Check if service returned a structured JSON with statusCode + response
             try {
@@ -226,11 +243,14 @@ public class DocusignControllerFunction {
                     int statusCode = responseJson.get("statusCode").getAsInt();
                     JsonElement errorBody = responseJson.get("response");
     
-                    return request.createResponseBuilder(HttpStatus.valueOf(statusCode))
+                    HttpResponseMessage.Builder builder = request.createResponseBuilder(HttpStatus.valueOf(statusCode))
                             .header("Content-Type", "application/json")
-                            .header("X-Correlation-ID", correlationId)
-                            .body(errorBody.toString())
-                            .build();
+                            .header("X-Correlation-ID", correlationId);
+                    // Step 4.1: Responses asking DocuSign to come back later say when
+                    if (responseJson.has("retryAfterSeconds")) {
+                        builder.header("Retry-After", responseJson.get("retryAfterSeconds").getAsString());
+                    }
+                    return builder.body(errorBody.toString()).build();
                 }
             } catch (Exception parseErr) {
                 context.getLogger().warning("[Controller] - No structured error JSON, defaulting to 200");
@@ -356,6 +376,31 @@ public class DocusignControllerFunction {
             }
         }
 
+//===================================================================================================================================
+        @FunctionName("PrewarmDocusignOAuthTokens")
+        public void prewarmTokens(
+                @TimerTrigger(name = "prewarmTokenTimer", schedule = "0 */5 * * * *") // Runs every 5 min
+                String timerInfo,
+                final ExecutionContext context) {
+
+            // Step A: Log function trigger time
+            context.getLogger().info(() -> "[Controller] Step A: Token pre-warm triggered at: " + java.time.LocalDateTime.now());
+
+            try {
+                // Step B: Refresh tokens for every configured DocuSign user
+                long start = System.currentTimeMillis();
+                Map<String, Object> summary = tokenPrewarmService.prewarmTokens(context);
+
+                // Step C: Log summary
+                context.getLogger().info(() -> "[Controller] Step C: Token pre-warm completed in "
+                        + (System.currentTimeMillis() - start) + " ms. Summary: " + summary);
+
+            } catch (Exception ex) {
+                // Step D: Handle and log error
+                context.getLogger().severe(() -> "[Controller] Step D: Exception during token pre-warm: " + ex.getMessage());
+            }
+        }
+
 
 //===================================================================================================================================
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.function.model;
+
+import com.google.gson.JsonArray;
+
+/**
+ * The fields of a DocuSign Connect notification that the processing pipeline needs, extracted once from the XML.
+ */
+public class ConnectEvent {
+    private String envelopeId;
+    private String subject;
+    private String status;
+    private String timeGenerated;
+    private String accountId;
+    private String fileLabel;
+    private String signedDate;
+    private JsonArray tabStatuses;
+    private boolean validSubject;
+    private String targetRepository;
+    private String docId;
+    private String beneficiaryUpi;
+    private String participantUpi;
+
+    // Getters and Setters
+    public String getEnvelopeId() { return envelopeId; }
+    public void setEnvelopeId(String envelopeId) { this.envelopeId = envelopeId; }
+
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getTimeGenerated() { return timeGenerated; }
+    public void setTimeGenerated(String timeGenerated) { this.timeGenerated = timeGenerated; }
+
+    public String getAccountId() { return accountId; }
+    public void setAccountId(String accountId) { this.accountId = accountId; }
+
+    public String getFileLabel() { return fileLabel; }
+    public void setFileLabel(String fileLabel) { this.fileLabel = fileLabel; }
+
+    public String getSignedDate() { return signedDate; }
+    public void setSignedDate(String signedDate) { this.signedDate = signedDate; }
+
+    public JsonArray getTabStatuses() { return tabStatuses; }
+    public void setTabStatuses(JsonArray tabStatuses) { this.tabStatuses = tabStatuses; }
+
+    public boolean isValidSubject() { return validSubject; }
+    public void setValidSubject(boolean validSubject) { this.validSubject = validSubject; }
+
+    public String getTargetRepository() { return targetRepository; }
+    public void setTargetRepository(String targetRepository) { this.targetRepository = targetRepository; }
+
+    public String getDocId() { return docId; }
+    public void setDocId(String docId) { this.docId = docId; }
+
+    public String getBeneficiaryUpi() { return beneficiaryUpi; }
+    public void setBeneficiaryUpi(String beneficiaryUpi) { this.beneficiaryUpi = beneficiaryUpi; }
+
+    public String getParticipantUpi() { return participantUpi; }
+    public void setParticipantUpi(String participantUpi) { this.participantUpi = participantUpi; }
+}
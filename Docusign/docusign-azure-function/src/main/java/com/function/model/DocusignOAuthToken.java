@@ -0,0 +1,92 @@
+package com.function.model;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Result of a DocuSign JWT grant: either a valid access token with its expiry, or the error that prevented it.
+ * Instances are immutable so they can be shared between threads through the token cache.
+ */
+public class DocusignOAuthToken {
+    private final String accessToken;
+    private final String tokenType;
+    private final long expiresIn;
+    private final long expiresAt;
+    private final boolean valid;
+    private final String error;
+    private final int statusCode;
+    private final String rawResponse;
+
+    private DocusignOAuthToken(String accessToken, String tokenType, long expiresIn, long expiresAt,
+                               boolean valid, String error, int statusCode, String rawResponse) {
+        this.accessToken = accessToken;
+        this.tokenType = tokenType;
+        this.expiresIn = expiresIn;
+        this.expiresAt = expiresAt;
+        this.valid = valid;
+        this.error = error;
+        this.statusCode = statusCode;
+        this.rawResponse = rawResponse;
+    }
+
+    public static DocusignOAuthToken success(String accessToken, String tokenType, long expiresIn,
+                                             int statusCode, String rawResponse) {
+        return new DocusignOAuthToken(accessToken, tokenType, expiresIn,
+                System.currentTimeMillis() + expiresIn * 1000L, true, null, statusCode, rawResponse);
+    }
+
+    /**
+     * Rebuilds a previously issued token, e.g. one read back from a shared token store.
+     */
+    public static DocusignOAuthToken restore(String accessToken, String tokenType, long expiresIn, long expiresAt,
+                                             String rawResponse) {
+        return new DocusignOAuthToken(accessToken, tokenType, expiresIn, expiresAt, true, null, 200, rawResponse);
+    }
+
+    public static DocusignOAuthToken failure(String error, int statusCode, String rawResponse) {
+        return new DocusignOAuthToken(null, null, 0, 0, false, error, statusCode, rawResponse);
+    }
+
+    // Getters
+    public String getAccessToken() { return accessToken; }
+
+    public String getTokenType() { return tokenType; }
+
+    public long getExpiresIn() { return expiresIn; }
+
+    public long getExpiresAt() { return expiresAt; }
+
+    public boolean isValid() { return valid; }
+
+    public String getError() { return error; }
+
+    public int getStatusCode() { return statusCode; }
+
+    public String getRawResponse() { return rawResponse; }
+
+    /**
+     * True when the token is valid and will not expire within the given number of milliseconds.
+     */
+    public boolean isUsableFor(long millis) {
+        return valid && System.currentTimeMillis() + millis < expiresAt;
+    }
+
+    /**
+     * Renders the token in the Logic App-style envelope returned by the generateDocusignOAuthToken function:
+     * {@code { "DocuSignOauthToken": {...}, "isTokenValid": true }} or {@code { "error": "...", "isTokenValid": false }}.
+     */
+    public String toLogicAppJson() {
+        JsonObject json = new JsonObject();
+        if (rawResponse != null && statusCode > 0) {
+            try {
+                json.add("DocuSignOauthToken", JsonParser.parseString(rawResponse));
+            } catch (Exception e) {
+                json.addProperty("DocuSignOauthToken", rawResponse);
+            }
+        } else {
+            json.addProperty("error", error);
+        }
+        json.addProperty("isTokenValid", valid);
+        return json.toString();
+    }
+}
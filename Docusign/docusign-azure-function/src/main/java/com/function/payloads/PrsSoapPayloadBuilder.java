@@ -2,6 +2,16 @@ package com.function.payloads;
 
 public class PrsSoapPayloadBuilder {
 
+    private static final TextTemplate PROFILE = TextTemplate.compile(
+            "~~Participant_UPI={}" +
+            "~~Doc_ID={}" +
+            "~~Beneficiary_UPI={}" +
+            "~~capture_source=eSignature" +
+            "~~SubSystem=DocuSign" +
+            "~~document_date={}" +
+            "~~doc_title=LifeCertificate" +
+            "~~Unid={}");
+
     public static String buildMuleSoftPrsPayload(
             String participantUpi,
             String docId,
@@ -11,46 +21,24 @@ public class PrsSoapPayloadBuilder {
             String docusignRepo,
             String base64File
     ) {
-        String profile = "~~Participant_UPI=" + participantUpi +
-                "~~Doc_ID=" + docId +
-                "~~Beneficiary_UPI=" + beneficiaryUpi +
-                "~~capture_source=eSignature" +
-                "~~SubSystem=DocuSign" +
-                "~~document_date=" + signedDate +
-                "~~doc_title=LifeCertificate" +
-                "~~Unid=" + envIdValue;
+        return buildMuleSoftPrsEnvelope(participantUpi, docId, beneficiaryUpi, signedDate, envIdValue, docusignRepo)
+                .withFileData(base64File);
+    }
 
+    /**
+     * Builds the PENSION envelope without the document, for streaming the file data into {@code <fileData>}.
+     */
+    public static RendSoapEnvelope buildMuleSoftPrsEnvelope(
+            String participantUpi,
+            String docId,
+            String beneficiaryUpi,
+            String signedDate,
+            String envIdValue,
+            String docusignRepo
+    ) {
+        String profile = PROFILE.render(participantUpi, docId, beneficiaryUpi, signedDate, envIdValue);
         String fileName = participantUpi.toString() + ".pdf";
 
-        StringBuilder soapBuilder = new StringBuilder();
-        soapBuilder.append("<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" ");
-        soapBuilder.append("xmlns:api=\"http://api.rend.worldbank.org/\" api:name=\"\">");
-        soapBuilder.append("<soap:Header/>");
-        soapBuilder.append("<soap:Body>");
-        soapBuilder.append("<api:render>");
-        soapBuilder.append("<profile>").append(escapeXml(profile)).append("</profile>");
-        soapBuilder.append("<unid>").append(escapeXml(envIdValue)).append("</unid>");
-        soapBuilder.append("<source>PENSION</source>");
-        soapBuilder.append("<repo>").append(escapeXml(docusignRepo)).append("</repo>");
-        soapBuilder.append("<attachment>");
-        soapBuilder.append("<fileData>").append(escapeXml(base64File)).append("</fileData>");
-        soapBuilder.append("<fileName>").append(escapeXml(fileName)).append("</fileName>");
-        soapBuilder.append("<firstFile>false</firstFile>");
-        soapBuilder.append("</attachment>");
-        soapBuilder.append("</api:render>");
-        soapBuilder.append("</soap:Body>");
-        soapBuilder.append("</soap:Envelope>");
-
-        return soapBuilder.toString();
-    }
-
-    private static String escapeXml(String value) {
-        if (value == null) return "";
-        return value
-                .replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&apos;");
+        return RendPayloadTemplate.PENSION.render(profile, envIdValue, docusignRepo, fileName);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package com.function.payloads;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precompiled REND {@code api:render} envelope for one source system (PENSION, HRSRM, ...).
+ *
+ * The envelope text around the profile, unid, repo and file name is fixed per source, so it is compiled once;
+ * rendering only escapes and appends the four values. The result is split around {@code <fileData>} so the
+ * document can be inserted as a string or streamed.
+ */
+public final class RendPayloadTemplate {
+
+    // Declared before the constants below so it exists when they are compiled
+    private static final Map<String, RendPayloadTemplate> templates = new ConcurrentHashMap<>();
+
+    public static final RendPayloadTemplate PENSION = forSource("PENSION");
+    public static final RendPayloadTemplate HRSRM = forSource("HRSRM");
+
+    private final TextTemplate prefix;
+    private final TextTemplate suffix;
+
+    private RendPayloadTemplate(String source) {
+        String escapedSource = XmlEscaper.escape(source);
+        this.prefix = TextTemplate.compileXml(
+                "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" "
+                + "xmlns:api=\"http://api.rend.worldbank.org/\" api:name=\"\">"
+                + "<soap:Header/>"
+                + "<soap:Body>"
+                + "<api:render>"
+                + "<profile>{}</profile>"
+                + "<unid>{}</unid>"
+                + "<source>" + escapedSource + "</source>"
+                + "<repo>{}</repo>"
+                + "<attachment>"
+                + "<fileData>");
+        this.suffix = TextTemplate.compileXml(
+                "</fileData>"
+                + "<fileName>{}</fileName>"
+                + "<firstFile>false</firstFile>"
+                + "</attachment>"
+                + "</api:render>"
+                + "</soap:Body>"
+                + "</soap:Envelope>");
+    }
+
+    /**
+     * Returns the compiled template for a REND source, compiling it on first use.
+     *
+     * @param source Value of the {@code <source>} element, e.g. PENSION
+     */
+    public static RendPayloadTemplate forSource(String source) {
+        return templates.computeIfAbsent(source, RendPayloadTemplate::new);
+    }
+
+    /**
+     * Renders the envelope for one document, leaving the file data out.
+     *
+     * @param profile  REND profile string ({@code ~~Key=Value...})
+     * @param unid     Document unid
+     * @param repo     Target repository
+     * @param fileName File name of the attachment
+     * @return Envelope split around {@code <fileData>}
+     */
+    public RendSoapEnvelope render(String profile, String unid, String repo, String fileName) {
+        return new RendSoapEnvelope(prefix.render(profile, unid, repo), suffix.render(fileName));
+    }
+}
@@ -0,0 +1,64 @@
+package com.function.payloads;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A REND {@code api:render} SOAP envelope split around the {@code <fileData>} content, so the document
+ * can be streamed between the two halves instead of being concatenated into one string.
+ */
+public class RendSoapEnvelope {
+
+    private final String prefix;
+    private final String suffix;
+    // Encoded once, since a streamed send reads them again on every attempt
+    private final byte[] prefixBytes;
+    private final byte[] suffixBytes;
+
+    /**
+     * @param prefix Everything up to and including {@code <fileData>}
+     * @param suffix Everything from {@code </fileData>} to the end of the envelope
+     */
+    public RendSoapEnvelope(String prefix, String suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+        this.suffixBytes = suffix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @return UTF-8 encoding of the prefix; shared, so callers must not modify it
+     */
+    public byte[] getPrefixBytes() {
+        return prefixBytes;
+    }
+
+    /**
+     * @return UTF-8 encoding of the suffix; shared, so callers must not modify it
+     */
+    public byte[] getSuffixBytes() {
+        return suffixBytes;
+    }
+
+    /**
+     * Renders the complete envelope. Base64 text contains no XML special characters, so it is inserted as is.
+     *
+     * @param base64File Base64-encoded document
+     * @return Full SOAP payload
+     */
+    public String withFileData(String base64File) {
+        String fileData = base64File == null ? "" : base64File;
+        return new StringBuilder(prefix.length() + fileData.length() + suffix.length())
+                .append(prefix)
+                .append(fileData)
+                .append(suffix)
+                .toString();
+    }
+}
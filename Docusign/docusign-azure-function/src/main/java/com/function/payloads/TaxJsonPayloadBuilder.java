@@ -0,0 +1,50 @@
+package com.function.payloads;
+
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Builds the 4506-c Tax upload payload {@code {"envelopeId":"...","documentBase64":"..."}}, either whole or
+ * split around the document so the Base64 can be streamed into {@code documentBase64}.
+ */
+public class TaxJsonPayloadBuilder {
+
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * @param envelopeId    DocuSign envelope ID
+     * @param base64TaxDoc  Base64-encoded document
+     * @return Full JSON payload
+     */
+    public static String buildTaxPayload(String envelopeId, String base64TaxDoc) {
+        String prefix = prefix(envelopeId);
+        String document = base64TaxDoc == null ? "" : base64TaxDoc;
+        return new StringBuilder(prefix.length() + document.length() + 2)
+                .append(prefix)
+                .append(document)
+                .append("\"}")
+                .toString();
+    }
+
+    /**
+     * @return Everything up to and including the opening quote of {@code documentBase64}
+     */
+    public static byte[] buildTaxPayloadPrefix(String envelopeId) {
+        return prefix(envelopeId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The closing quote of {@code documentBase64} and the closing brace
+     */
+    public static byte[] buildTaxPayloadSuffix() {
+        return SUFFIX.clone();
+    }
+
+    // Base64 needs no JSON escaping; the envelope ID is escaped exactly as Gson's JsonObject would
+    private static String prefix(String envelopeId) {
+        String id = envelopeId == null ? JsonNull.INSTANCE.toString() : new JsonPrimitive(envelopeId).toString();
+        return "{\"envelopeId\":" + id + ",\"documentBase64\":\"";
+    }
+}
@@ -0,0 +1,100 @@
+package com.function.payloads;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A text pattern with {@code {}} placeholders, split into its literal segments once so rendering is a single
+ * presized append per segment and value.
+ */
+public final class TextTemplate {
+
+    private static final String PLACEHOLDER = "{}";
+
+    private final String[] literals;
+    private final int literalLength;
+    private final boolean escapeValues;
+
+    private TextTemplate(String[] literals, boolean escapeValues) {
+        this.literals = literals;
+        this.escapeValues = escapeValues;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Compiles a pattern whose values are inserted verbatim (null renders as "null", as with string concatenation).
+     */
+    public static TextTemplate compile(String pattern) {
+        return new TextTemplate(split(pattern), false);
+    }
+
+    /**
+     * Compiles a pattern whose values are XML-escaped on insertion (null renders as empty).
+     */
+    public static TextTemplate compileXml(String pattern) {
+        return new TextTemplate(split(pattern), true);
+    }
+
+    /**
+     * @return Number of {@code {}} placeholders
+     */
+    public int getSlotCount() {
+        return literals.length - 1;
+    }
+
+    /**
+     * @param values One value per placeholder, in order
+     * @return The rendered text
+     */
+    public String render(String... values) {
+        StringBuilder sb = new StringBuilder(estimateLength(values));
+        renderTo(sb, values);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the rendered text to {@code sb}.
+     *
+     * @param sb     Destination
+     * @param values One value per placeholder, in order
+     */
+    public void renderTo(StringBuilder sb, String... values) {
+        if (values.length != literals.length - 1) {
+            throw new IllegalArgumentException("Expected " + (literals.length - 1) + " values but got " + values.length);
+        }
+        sb.append(literals[0]);
+        for (int i = 0; i < values.length; i++) {
+            if (escapeValues) {
+                XmlEscaper.escape(sb, values[i]);
+            } else {
+                sb.append(values[i]);
+            }
+            sb.append(literals[i + 1]);
+        }
+    }
+
+    int estimateLength(String... values) {
+        int length = literalLength;
+        for (String value : values) {
+            // Leave some headroom for escaped characters
+            length += value == null ? 4 : value.length() + 8;
+        }
+        return length;
+    }
+
+    private static String[] split(String pattern) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        int next;
+        while ((next = pattern.indexOf(PLACEHOLDER, start)) >= 0) {
+            parts.add(pattern.substring(start, next));
+            start = next + PLACEHOLDER.length();
+        }
+        parts.add(pattern.substring(start));
+        return parts.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,72 @@
+package com.function.payloads;
+
+/**
+ * Single-pass XML text escaper. Values without any of {@code & < > " '} (the common case, and always the case
+ * for Base64) are appended as is without allocating.
+ */
+public final class XmlEscaper {
+
+    private XmlEscaper() {
+    }
+
+    /**
+     * @param value Text to escape; null is treated as empty
+     * @return The escaped text, or {@code value} itself when nothing needs escaping
+     */
+    public static String escape(String value) {
+        if (value == null) return "";
+        int first = firstEscapable(value);
+        if (first < 0) return value;
+
+        StringBuilder sb = new StringBuilder(value.length() + 16);
+        appendFrom(sb, value, first);
+        return sb.toString();
+    }
+
+    /**
+     * Appends {@code value} to {@code sb}, escaping XML special characters.
+     *
+     * @param sb    Destination
+     * @param value Text to escape; null is treated as empty
+     */
+    public static void escape(StringBuilder sb, String value) {
+        if (value == null) return;
+        int first = firstEscapable(value);
+        if (first < 0) {
+            sb.append(value);
+            return;
+        }
+        appendFrom(sb, value, first);
+    }
+
+    private static int firstEscapable(String value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            if (replacement(value.charAt(i)) != null) return i;
+        }
+        return -1;
+    }
+
+    private static void appendFrom(StringBuilder sb, String value, int first) {
+        sb.append(value, 0, first);
+        int start = first;
+        for (int i = first, n = value.length(); i < n; i++) {
+            String replacement = replacement(value.charAt(i));
+            if (replacement != null) {
+                sb.append(value, start, i).append(replacement);
+                start = i + 1;
+            }
+        }
+        sb.append(value, start, value.length());
+    }
+
+    private static String replacement(char c) {
+        switch (c) {
+            case '&': return "&amp;";
+            case '<': return "&lt;";
+            case '>': return "&gt;";
+            case '"': return "&quot;";
+            case '\'': return "&apos;";
+            default: return null;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.function.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -10,29 +13,149 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.function.model.ConnectEvent;
+import com.function.model.DocusignOAuthToken;
 import com.function.payloads.HrSoapPayloadBuilder;
 import com.function.payloads.PrsSoapPayloadBuilder;
+import com.function.payloads.RendSoapEnvelope;
+import com.function.payloads.TaxJsonPayloadBuilder;
+import com.function.utils.AdmissionController;
+import com.function.utils.Base64DocumentBody;
+import com.function.utils.Deadline;
+import com.function.utils.DocumentCache;
+import com.function.utils.DocumentSelection;
+import com.function.utils.ConnectEventCoalescer;
+import com.function.utils.ConnectEventDeduplicator;
+import com.function.utils.ConnectXmlScanner;
 import com.function.utils.DocuSignDocumentFetcher;
 import com.function.utils.DocuSignSoapSender;
 import com.function.utils.DocusignOAuthTokenGeneration;
 import com.function.utils.JsonHelper;
-import com.function.utils.ServiceBusHelper;
+import com.function.utils.PipelineExecutors;
+import com.function.utils.RendBatchSender;
+import com.function.utils.StageTimings;
 import com.function.utils.DocusignGetProperties;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.microsoft.azure.functions.ExecutionContext;
+
+/**
+ * Processes DocuSign Connect notifications as a stage pipeline:
+ * <ol>
+ *   <li>coalesce: a cheap scan of the raw XML answers events that are not completed, and holds completed ones
+ *       briefly so that only the newest event per envelope goes on (see {@link ConnectEventCoalescer}).</li>
+ *   <li>parse: XML to JSON and field extraction, on the CPU pool. Token acquisition starts in parallel from a
+ *       cheap scan of the raw XML for the target repository.</li>
+ *   <li>download / upload: DocuSign, REND and MyHRSS calls, on the I/O pool.</li>
+ *   <li>payload: SOAP/JSON building and Base64 assembly, on the CPU pool, overlapping the download.</li>
+ * </ol>
+ * Each stage is timed (see {@link StageTimings}) and the timings are logged per request. Redelivered events are
+ * answered by {@link ConnectEventDeduplicator} right after parsing, before any download or upload. Each event
+ * carries a {@link Deadline} from the function's time budget that bounds every outbound call.
+ */
 public class DocusignConnectService {
 
     private static final Logger logger = Logger.getLogger(DocusignConnectService.class.getName());
 
+    private static final String DEADLINE_EXCEEDED_RESPONSE =
+            "{\"statusCode\": 504, \"response\": {\"error\":\"Event processing exceeded the function time budget\"}}";
+
+    private static final String NOT_COMPLETED_RESPONSE = "Envelope status not completed.";
+
+    private static final String SUPERSEDED_RESPONSE = "Envelope event superseded by a newer event.";
+
+    private static final String NOT_HR_LOA_RESPONSE =
+            "{\"ESBResponse\": {\"ResponseCode\": 200, \"ResponseText\": \"Document will NOT be retrieved nor failed because this is not an HR LOA\", \"DetailsMessage\": \"\"}}";
+
+    private final Executor ioExecutor;
+    private final Executor cpuExecutor;
+    private final ConnectEventDeduplicator deduplicator;
+    private final ConnectEventCoalescer coalescer;
+    private final RendBatchSender rendBatchSender;
+
+    public DocusignConnectService() {
+        this(PipelineExecutors.io(), PipelineExecutors.cpu(), ConnectEventDeduplicator.getInstance(), ConnectEventCoalescer.getInstance(),
+                RendBatchSender.getInstance());
+    }
+
+    DocusignConnectService(Executor ioExecutor, Executor cpuExecutor, ConnectEventDeduplicator deduplicator,
+                           ConnectEventCoalescer coalescer, RendBatchSender rendBatchSender) {
+        this.ioExecutor = ioExecutor;
+        this.cpuExecutor = cpuExecutor;
+        this.deduplicator = deduplicator;
+        this.coalescer = coalescer;
+        this.rendBatchSender = rendBatchSender;
+    }
+
+    /**
+     * Blocking variant of {@link #handleConnectRequestAsync(String, Map, ExecutionContext)}. Gives up waiting when
+     * the event's deadline passes and answers 504, so DocuSign redelivers the event instead of the function timing out.
+     */
     public String handleConnectRequest(String xmlInput, Map<String, String> headers, ExecutionContext context)
     throws Exception {
+        return handleConnectRequest(xmlInput, headers, context, null);
+    }
+
+    /**
+     * Variant of {@link #handleConnectRequest(String, Map, ExecutionContext)} that holds the event's admission
+     * ticket until its processing has finished, which can be after this method has answered 504.
+     *
+     * @param ticket Admission ticket to close once the event is done, or null
+     */
+    public String handleConnectRequest(String xmlInput, Map<String, String> headers, ExecutionContext context,
+                                       AdmissionController.Ticket ticket) throws Exception {
+        Deadline deadline = Deadline.forFunction();
+        CompletableFuture<String> processing;
+        try {
+            processing = handleConnectRequestAsync(xmlInput, headers, context, deadline);
+        } catch (RuntimeException e) {
+            if (ticket != null) ticket.close();
+            throw e;
+        }
+        if (ticket != null) {
+            processing.whenComplete((response, error) -> ticket.close());
+        }
+        try {
+            return processing.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        } catch (TimeoutException e) {
+            logger.log(Level.SEVERE, "[Service] [Deadline] Event not finished within the function time budget");
+            return DEADLINE_EXCEEDED_RESPONSE;
+        }
+    }
+
+    /**
+     * Processes one Connect notification without blocking the caller.
+     *
+     * @param xmlInput Raw Connect XML
+     * @param headers  Normalised request headers (accountId is read from here)
+     * @param context  Azure Function's ExecutionContext for logging
+     * @return Future completing with the response JSON, or exceptionally if the notification is malformed
+     */
+    public CompletableFuture<String> handleConnectRequestAsync(String xmlInput, Map<String, String> headers, ExecutionContext context) {
+        return handleConnectRequestAsync(xmlInput, headers, context, Deadline.forFunction());
+    }
+
+    // Every stage, and every outbound call made in it, is bounded by the event's deadline
+    private CompletableFuture<String> handleConnectRequestAsync(String xmlInput, Map<String, String> headers, ExecutionContext context,
+                                                                Deadline deadline) {
         String correlationId = UUID.randomUUID().toString();
+        StageTimings timings = new StageTimings(deadline);
         logger.log(Level.INFO, "[Service] [Step 1] Received request | Correlation ID: {0}", correlationId);
         logger.log(Level.INFO, "[Service] [Step 1] Incoming XML length: {0}", (xmlInput != null ? xmlInput.length() : 0));
 
@@ -42,6 +165,54 @@ public class DocusignConnectService {
             logger.log(Level.INFO, "   Header: {0} = {1}", new Object[]{key, value});
         });
 
+        // Step 1.2: Answer non-terminal events and superseded events from a cheap scan, without parsing them
+        ConnectXmlScanner.EnvelopeSummary summary = ConnectXmlScanner.findEnvelopeSummary(xmlInput);
+        if (summary != null && !"completed".equalsIgnoreCase(summary.getStatus())) {
+            logger.log(Level.INFO, "[Service] [Step 1.2] Envelope status is {0}, not completed. Skipping processing.", summary.getStatus());
+            return CompletableFuture.completedFuture(NOT_COMPLETED_RESPONSE);
+        }
+        CompletableFuture<Boolean> newest = summary != null
+                ? coalescer.awaitNewest(summary.getEnvelopeId(), summary.getTimeGenerated())
+                : CompletableFuture.completedFuture(true);
+        String hintedRepository = Optional.ofNullable(ConnectXmlScanner.findCustomFieldValue(xmlInput, "targetrepository"))
+                .map(String::toLowerCase)
+                .orElse(null);
+        logger.log(Level.INFO, "[Service] [Step 1.3] Target repository hint: {0}", hintedRepository);
+
+        return newest
+                .thenCompose(isNewest -> {
+                    if (!isNewest) {
+                        logger.log(Level.INFO, "[Service] [Step 1.2] Newer event for envelope {0} received. Skipping processing.",
+                                summary.getEnvelopeId());
+                        return CompletableFuture.completedFuture(SUPERSEDED_RESPONSE);
+                    }
+
+                    // Step 1.3: Start token acquisition from the raw XML so it overlaps parsing, unless the scan
+                    // could not confirm a completed event or it is probably a redelivery answered without a token
+                    CompletableFuture<DocusignOAuthToken> hintedToken = summary != null && !deduplicator.mightBeDuplicate(
+                            ConnectEventDeduplicator.keyOf(summary.getEnvelopeId(), summary.getStatus(), summary.getTimeGenerated()))
+                            ? fetchToken(hintedRepository, timings, context)
+                            : null;
+                    return CompletableFuture
+                            .supplyAsync(() -> timings.time("parse", () -> parseEvent(xmlInput, headers, context)), cpuExecutor)
+                            .thenCompose(event -> {
+                                // Step 8.1: Answer redelivered events from the idempotency store instead of uploading again
+                                String eventKey = ConnectEventDeduplicator.keyOf(event.getEnvelopeId(), event.getStatus(), event.getTimeGenerated());
+                                return deduplicator.process(eventKey, () -> {
+                                    CompletableFuture<DocusignOAuthToken> token = hintedToken != null
+                                            && event.getTargetRepository().equals(hintedRepository)
+                                            ? hintedToken
+                                            : fetchToken(event.getTargetRepository(), timings, context);
+                                    return route(event, token, correlationId, timings);
+                                });
+                            });
+                })
+                .whenComplete((response, error) ->
+                        logger.log(Level.INFO, "[Service] [Timing] Correlation ID: {0} | {1}", new Object[]{correlationId, timings.summary()}));
+    }
+
+    // Steps 2-8: XML to JSON and extraction of everything the repository flows need
+    private ConnectEvent parseEvent(String xmlInput, Map<String, String> headers, ExecutionContext context) throws Exception {
         // Step 2: Convert XML to JSON
         JsonElement rootJson = JsonHelper.convertXmlToJsonElement(xmlInput);
 
@@ -78,70 +249,29 @@ public class DocusignConnectService {
             .filter(JsonElement::isJsonObject)
             .map(JsonElement::getAsJsonObject)
             .orElse(null);
- 
 
         if (envelopeStatus == null) {
             logger.log(Level.SEVERE, "[Service] [Step 4] EnvelopeStatus block is missing in payload.");
             throw new Exception("EnvelopeStatus not found in JSON.");
         }
 
-        String envelopeId = getString(envelopeStatus, "EnvelopeID");
-        String subject = getString(envelopeStatus, "Subject");
-        String status = getString(envelopeStatus, "Status");
-        String timeGenerated = getString(envelopeStatus, "TimeGenerated");
+        ConnectEvent event = new ConnectEvent();
+        event.setEnvelopeId(getString(envelopeStatus, "EnvelopeID"));
+        event.setSubject(getString(envelopeStatus, "Subject"));
+        event.setStatus(getString(envelopeStatus, "Status"));
+        event.setTimeGenerated(getString(envelopeStatus, "TimeGenerated"));
         String email = getString(envelopeStatus, "Email");
         String userName = getString(envelopeStatus, "UserName");
 
-        logger.log(Level.INFO, "[Service] [Step 4] Extracted EnvelopeID: {0}", envelopeId);
-        logger.log(Level.INFO, "[Service] [Step 4] Subject: {0}", subject);
-        logger.log(Level.INFO, "[Service] [Step 4] Status: {0}", status);
-        logger.log(Level.INFO, "[Service] [Step 4] TimeGenerated: {0}", timeGenerated);
+        logger.log(Level.INFO, "[Service] [Step 4] Extracted EnvelopeID: {0}", event.getEnvelopeId());
+        logger.log(Level.INFO, "[Service] [Step 4] Subject: {0}", event.getSubject());
+        logger.log(Level.INFO, "[Service] [Step 4] Status: {0}", event.getStatus());
+        logger.log(Level.INFO, "[Service] [Step 4] TimeGenerated: {0}", event.getTimeGenerated());
         logger.log(Level.INFO, "[Service] [Step 4] UserName: {0}", userName);
         logger.log(Level.INFO, "[Service] [Step 4] Email: {0}", email);
 
-
-        String fileLabel = null;
         // Step 4.1: Extract DocumentPDFs
-        try {
-            JsonObject documentPdfs = Optional.ofNullable(rootJson)
-                    .filter(JsonElement::isJsonObject)
-                    .map(JsonElement::getAsJsonObject)
-                    .map(obj -> obj.get("EnvelopeInformation"))
-                    .filter(JsonElement::isJsonObject)
-                    .map(JsonElement::getAsJsonObject)
-                    .map(obj -> obj.get("DocumentPDFs"))
-                    .filter(JsonElement::isJsonObject)
-                    .map(JsonElement::getAsJsonObject)
-                    .orElse(null);
-        
-            if (documentPdfs != null && documentPdfs.has("DocumentPDF")) {
-                JsonElement docPdfElement = documentPdfs.get("DocumentPDF");
-                String extractedName = null;
-        
-                if (docPdfElement.isJsonObject()) {
-                    JsonObject docPdf = docPdfElement.getAsJsonObject();
-                    extractedName = docPdf.has("Name") && !docPdf.get("Name").isJsonNull()
-                            ? docPdf.get("Name").getAsString()
-                            : null;
-                } else if (docPdfElement.isJsonArray() && docPdfElement.getAsJsonArray().size() > 0) {
-                    JsonObject firstDoc = docPdfElement.getAsJsonArray().get(0).getAsJsonObject();
-                    extractedName = firstDoc.has("Name") && !firstDoc.get("Name").isJsonNull()
-                            ? firstDoc.get("Name").getAsString()
-                            : null;
-                }
-        
-                fileLabel = (extractedName == null) ? ".pdf" : extractedName + ".pdf";
-                logger.log(Level.INFO, "[Service] [EXTRA] Extracted DocumentPDF Name: {0}", fileLabel);
-                // you can assign it somewhere or just log it — up to you
-            }
-        
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "[Service] [EXTRA] Failed to extract DocumentPDF Name safely: {0}", e.getMessage());
-        }
-
-
-
-
+        event.setFileLabel(extractFileLabel(rootJson));
 
         // Step 5: Extract and filter RecipientStatus → Signer
         JsonObject recipientStatusesObj = envelopeStatus.has("RecipientStatuses") ? envelopeStatus.getAsJsonObject("RecipientStatuses") : null;
@@ -149,15 +279,15 @@ public class DocusignConnectService {
             logger.log(Level.SEVERE, "[Service] [Step 5] RecipientStatuses block is missing in EnvelopeStatus.");
             throw new Exception("RecipientStatuses not found in EnvelopeStatus.");
         }
-        
+
         JsonElement recipientStatusElement = recipientStatusesObj.get("RecipientStatus");
         if (recipientStatusElement == null) {
             logger.log(Level.SEVERE, "[Service] [Step 5] RecipientStatus block is missing in RecipientStatuses.");
             throw new Exception("RecipientStatus not found in RecipientStatuses.");
         }
-        
+
         List<JsonObject> recipientList = JsonHelper.getSafeJsonArray(recipientStatusElement);
-        
+
         JsonObject signer = recipientList.stream()
                 .filter(r -> r.has("Type") && "Signer".equalsIgnoreCase(r.get("Type").getAsString()))
                 .findFirst()
@@ -165,345 +295,467 @@ public class DocusignConnectService {
 
         String docSigner = signer != null && signer.has("UserName") ? signer.get("UserName").getAsString() : "";
         String docSignerEmail = signer != null && signer.has("Email") ? signer.get("Email").getAsString() : "";
-        String signedDate = signer != null && signer.has("Signed") && !signer.get("Signed").isJsonNull()
+        event.setSignedDate(signer != null && signer.has("Signed") && !signer.get("Signed").isJsonNull()
                 ? formatDate(signer.get("Signed").getAsString())
-                : "";
+                : "");
 
-        JsonArray tabStatusArray = signer != null && signer.has("TabStatuses") && signer.getAsJsonObject("TabStatuses").has("TabStatus")
+        event.setTabStatuses(signer != null && signer.has("TabStatuses") && signer.getAsJsonObject("TabStatuses").has("TabStatus")
                 ? signer.getAsJsonObject("TabStatuses").getAsJsonArray("TabStatus")
-                : new JsonArray();
+                : new JsonArray());
 
         logger.log(Level.INFO, "[Service] [Step 5] Signer Name: {0}", docSigner);
         logger.log(Level.INFO, "[Service] [Step 5] Signer Email: {0}", docSignerEmail);
-        logger.log(Level.INFO, "[Service] [Step 5] Signed Date: {0}", signedDate);
-        logger.log(Level.INFO, "[Service] [Step 5] TabStatus Count: {0}", tabStatusArray.size());
+        logger.log(Level.INFO, "[Service] [Step 5] Signed Date: {0}", event.getSignedDate());
+        logger.log(Level.INFO, "[Service] [Step 5] TabStatus Count: {0}", event.getTabStatuses().size());
 
         // Step 6: Extract DocusignVariable fields
-        String accountId = headers.getOrDefault("accountId", "");
-        //String accountId = request.getQueryParameters().getOrDefault("accountid", "");
-        //String fileLabel = "default.pdf"; // TODO: parse from DocumentPDFs if available
+        event.setAccountId(headers.getOrDefault("accountId", ""));
 
-        logger.log(Level.INFO, "[Service] [Step 6] Account ID: {0}", accountId);
-        logger.log(Level.INFO, "[Service] [Step 6] File Label: {0}", fileLabel);
+        logger.log(Level.INFO, "[Service] [Step 6] Account ID: {0}", event.getAccountId());
+        logger.log(Level.INFO, "[Service] [Step 6] File Label: {0}", event.getFileLabel());
 
-        // Step 7: Call Azure Function (to be replaced with getProperties.java)
-        // logger.log(Level.INFO, "[Service] [Step 7] Calling Azure Function 'getProperties' with subject: {0}, UNID: {1}", new Object[]{subject, envelopeId});
-        // TODO: Replace with internal getProperties.java logic
-        Map<String, Object> messageAttributes = DocusignGetProperties.getProperties(subject, envelopeId, context);
-        boolean isValidSubject = (boolean) messageAttributes.get("isValidSubject");  
-        logger.log(Level.INFO, "[Service] [Step 7] isValidSubject: {0}", isValidSubject);
+        // Step 7: Validate the subject (DOCID and UPI)
+        Map<String, Object> messageAttributes = DocusignGetProperties.getProperties(event.getSubject(), event.getEnvelopeId(), context);
+        event.setValidSubject((boolean) messageAttributes.get("isValidSubject"));
+        logger.log(Level.INFO, "[Service] [Step 7] isValidSubject: {0}", event.isValidSubject());
 
         // Step 8: Extract CustomFields → targetrepository, DocId, BeneficiaryUPI, ParticipantId
         JsonObject customFieldsObj = envelopeStatus.has("CustomFields") ? envelopeStatus.getAsJsonObject("CustomFields") : null;
         JsonElement customFieldArray = customFieldsObj != null ? customFieldsObj.get("CustomField") : null;
         List<JsonObject> customFields = JsonHelper.getSafeJsonArray(customFieldArray);
 
-        String targetRepository = extractCustomFieldValue(customFields, "targetrepository").toLowerCase();
-        String docId = extractCustomFieldValue(customFields, "DocId");
-        String beneficiaryUpi = extractCustomFieldValue(customFields, "BeneficiaryUPI");
-        String participantUpi = extractCustomFieldValue(customFields, "ParticipantId");
+        event.setTargetRepository(extractCustomFieldValue(customFields, "targetrepository").toLowerCase());
+        event.setDocId(extractCustomFieldValue(customFields, "DocId"));
+        event.setBeneficiaryUpi(extractCustomFieldValue(customFields, "BeneficiaryUPI"));
+        event.setParticipantUpi(extractCustomFieldValue(customFields, "ParticipantId"));
+
+        logger.log(Level.INFO, "[Service] [Step 8] TargetRepository: {0}", event.getTargetRepository());
+        logger.log(Level.INFO, "[Service] [Step 8] DocId: {0}", event.getDocId());
+        logger.log(Level.INFO, "[Service] [Step 8] BeneficiaryUPI: {0}", event.getBeneficiaryUpi());
+        logger.log(Level.INFO, "[Service] [Step 8] ParticipantUPI: {0}", event.getParticipantUpi());
 
-        logger.log(Level.INFO, "[Service] [Step 8] TargetRepository: {0}", targetRepository);
-        logger.log(Level.INFO, "[Service] [Step 8] DocId: {0}", docId);
-        logger.log(Level.INFO, "[Service] [Step 8] BeneficiaryUPI: {0}", beneficiaryUpi);
-        logger.log(Level.INFO, "[Service] [Step 8] ParticipantUPI: {0}", participantUpi);
+        return event;
+    }
 
+    // Steps 9-10: status check and the repository-specific flow
+    private CompletableFuture<String> route(ConnectEvent event, CompletableFuture<DocusignOAuthToken> token,
+                                            String correlationId, StageTimings timings) {
         // Step 9: Check Envelope Status == completed
-        if (!"completed".equalsIgnoreCase(status)) {
+        if (!"completed".equalsIgnoreCase(event.getStatus())) {
             logger.log(Level.INFO, "[Service] [Step 9] Envelope status is not completed. Skipping processing.");
-            return "Envelope status not completed.";
+            return CompletableFuture.completedFuture(NOT_COMPLETED_RESPONSE);
         }
 
         // Step 10: Switch on TargetRepository
-        switch (targetRepository) {
+        CompletableFuture<String> flow;
+        switch (event.getTargetRepository()) {
             case "prs":
-                try {
-                    // Step 10.1: Extract envIdValue from TabStatus array
-                    logger.log(Level.INFO, "[Service] [Step 10.1] Start: Extracting envIdValue");
-                    List<JsonObject> tabStatusList = new ArrayList<>();
-                    for (JsonElement element : tabStatusArray) {
-                        if (element != null && element.isJsonObject()) {
-                            tabStatusList.add(element.getAsJsonObject());
-                        }
-                    }
-        
-                    String envIdValue = tabStatusList.stream()
-                            .filter(tab -> tab.has("TabLabel") && "envId".equalsIgnoreCase(tab.get("TabLabel").getAsString()))
-                            .map(tab -> tab.get("Value").getAsString())
-                            .findFirst()
-                            .orElse("");
-                    logger.log(Level.INFO, "[Service] [Step 10.1] End: envIdValue: {0}", envIdValue);
-        
-                    // Step 10.2: Validate required values before continuing
-                    logger.log(Level.INFO, "[Service] [Step 10.2] Start: Validating PRS fields");
-                    /*if (envIdValue.isEmpty() || signedDate.isEmpty() || docId.isEmpty()
-                            || beneficiaryUpi.isEmpty() || participantUpi.isEmpty()) {
-                        logger.log(Level.SEVERE, "[Service] [Step 10.2] End: Missing required data. Aborting.");
-                        return String.format("{\"error\":\"Missing required PRS fields\", \"correlationId\":\"%s\"}", correlationId);
-                    }*/
-                    logger.log(Level.INFO, "[Service] [Step 10.2] End: Validation passed");
-        
-                    // Step 10.3: Read environment variables for OAuth and Repo
-                    logger.log(Level.INFO, "[Service] [Step 10.3] Start: Reading environment variables");
-                    String integratorKey = System.getenv("DOCUSIGN_INTEGRATOR_KEY");
-                    String userId = System.getenv("DOCUSIGN_PENSION_USERID");
-                    String privateKey = System.getenv("DOCUSIGN_PRIVATE_KEY");
-                    //String oauthBasePath = System.getenv("Docusign_OAuthBasePath");
-                    //String docusignApiHost = System.getenv("Docusign_API_Host");
-                    String docusignRepo = System.getenv("DOCUSIGN_REPO_PENSION");
-                    logger.log(Level.INFO, "[Service] [Step 10.3] End: Environment variables loaded");
-        
-                    // Step 10.4: Fetch OAuth Token
-                    logger.log(Level.INFO, "[Service] [Step 10.4] Start: Fetching OAuth token");
-                    String oauthResponse = DocusignOAuthTokenGeneration.fetchOAuthTokenUsingJwt(
-                        userId, integratorKey, privateKey, context
-                    );
-                    logger.log(Level.INFO, "[Service] [Step 10.4] JWT Token Recieved: {0}", oauthResponse);
-                    JsonObject oauthJson = JsonParser.parseString(oauthResponse).getAsJsonObject();
-                    boolean isTokenValid = oauthJson.has("isTokenValid") && oauthJson.get("isTokenValid").getAsBoolean();
-                    if (!isTokenValid) {
-                        logger.log(Level.SEVERE, "[Service] [Step 10.4] End: OAuth token invalid. Aborting.");
-                        return String.format("{\"error\":\"DocuSign OAuth token invalid\", \"correlationId\":\"%s\"}", correlationId);
-                    }
-                    String accessToken = oauthJson.getAsJsonObject("DocuSignOauthToken").get("access_token").getAsString();
-                    logger.log(Level.INFO, "[Service] [Step 10.4] End: OAuth token received successfully");
-        
-                    // Step 10.5: Download the document from DocuSign
-                    logger.log(Level.INFO, "[Service] [Step 10.5] Start: Downloading and base64 encoding DocuSign document");
-                    String base64File = DocuSignDocumentFetcher.downloadAndEncodeCombinedDocument(
-                        accountId, envelopeId, accessToken, correlationId
-                    );
-                    logger.log(Level.INFO, "[Service] [Step 10.5] End: Document successfully fetched and encoded");
-        
-                    // Step 10.6: Build SOAP Payload using MuleSoft format
-                    logger.log(Level.INFO, "[Service] [Step 10.6] Start: Constructing SOAP payload");
-                    String soapPayload = PrsSoapPayloadBuilder.buildMuleSoftPrsPayload(
-                        participantUpi, docId, beneficiaryUpi, signedDate,
-                        envIdValue, docusignRepo, base64File
-                    );
-                    logger.log(Level.INFO, "[Service] [Step 10.6] End: SOAP Payload constructed (MuleSoft style)");
-        
-                    // Step 10.7: POST SOAP payload to external REND API
-                    logger.log(Level.INFO, "[Service] [Step 10.7] Start: Posting SOAP to REND API using utility");
-                    String rendPensionResponse = DocuSignSoapSender.postToRendApi(soapPayload, correlationId);
-                    logger.log(Level.INFO, "[Service] [Step 10.7] End: Pension REND API call complete. Response: {0}", rendPensionResponse);
-                    return rendPensionResponse;
-        
-                } catch (Exception e) {
-                    logger.log(Level.SEVERE, "[Service] [Step 10] Exception in PRS flow: " + e.getMessage(), e);
-                
-                    String message = e.getMessage();
-                    String details = "{\"error\":\"Exception in PRS flow\"}";
-                    int statusCode = 500;
-                
-                    if (message != null && message.contains("::")) {
-                        String[] parts = message.split("::", 2);
-                        try {
-                            statusCode = Integer.parseInt(parts[0]);
-                            details = parts[1]; // This is the actual DocuSign JSON error
-                        } catch (Exception parseEx) {
-                            logger.log(Level.SEVERE, "[Service] [Step 10] Failed to parse status and body: " + parseEx.getMessage());
-                        }
-                    }
-                
-                    // Return error JSON as string with statusCode and actual JSON
-                    return String.format("{\"statusCode\": %d, \"response\": %s}", statusCode, details);
-                }
-               
- 
-//================================================================================================================================================
+                flow = processPensionFlow(event, token, correlationId, timings);
+                break;
             case "4506-c":
-                logger.log(Level.INFO, "[Service] [Step 10] Processing Tax 4506-c flow...");
-                try {
-                    // Step 10.1: Validate required fields for Tax flow
-                    logger.log(Level.INFO, "[Service] [Step 10.1] Validating required Tax fields");
-                    if (signedDate.isEmpty() || docId.isEmpty() || participantUpi.isEmpty() || envelopeId.isEmpty()) {
-                        logger.log(Level.SEVERE, "[Service] [Step 10.1] Missing required Tax fields. Aborting.");
-                        return String.format("{\"error\":\"Missing required Tax fields\", \"correlationId\":\"%s\"}", correlationId);
-                    }
-                    logger.log(Level.INFO, "[Service] [Step 10.1] Tax fields validated successfully");
-            
-                    // Step 10.2: Load environment variables required for OAuth and endpoint
-                    logger.log(Level.INFO, "[Service] [Step 10.2] Reading environment variables for Tax flow");
-                    String integratorKey = System.getenv("DOCUSIGN_INTEGRATOR_KEY");
-                    String userId = System.getenv("DOCUSIGN_TAX_USERID");
-                    String privateKey = System.getenv("DOCUSIGN_PRIVATE_KEY");
-                    //String docusignHost = System.getenv("Docusign_API_Host");
-                    //String docusignRepoTax = System.getenv("Docusign_Repo_Tax");
-                    String taxApiHost = System.getenv("HTTP_MYHRSS_HOST");
-                    String taxApiPath = System.getenv("HTTP_MYHRSS_PATH");
-                    String taxApiPort = System.getenv("HTTP_MYHRSS_PORT");
-                    String taxApiUser = System.getenv("HTTP_MYHRSS_BASIC_USER");
-                    String taxApiPassword = System.getenv("HTTP_MYHRSS_BASIC_PASSWORD");
-
-                    if (taxApiUser == null || taxApiUser.isEmpty()) {
-                        throw new IllegalArgumentException("Missing environment variable: HTTP_MYHRSS_BASIC_USER");
-                    }
-                    if (taxApiPassword == null || taxApiPassword.isEmpty()) {
-                        throw new IllegalArgumentException("Missing environment variable: HTTP_MYHRSS_BASIC_PASSWORD");
-                    }
+                flow = processTaxFlow(event, token, correlationId, timings);
+                break;
+            case "srm":
+                flow = processHrFlow(event, token, correlationId, timings);
+                break;
+            default:
+                logger.log(Level.WARNING, "[Service] [Step 10] Unknown target repository: {0}. Skipping processing.", event.getTargetRepository());
+                return CompletableFuture.completedFuture(NOT_HR_LOA_RESPONSE);
+        }
+        return flow
+                .whenComplete((response, error) -> invalidateTokenIfRejected(event.getTargetRepository(), error))
+                .exceptionally(this::toErrorResponse);
+    }
 
-                    // Construct raw string: user:password
-                    String taxBasicAuth = taxApiUser + ":" + taxApiPassword;
-                    logger.log(Level.INFO, "[Service] [Step 10.2] Environment variables loaded");
-            
-                    // Step 10.3: Fetch OAuth token
-                    logger.log(Level.INFO, "[Service] [Step 10.3] Fetching OAuth token for Tax flow");
-                    String oauthTaxResponse = DocusignOAuthTokenGeneration.fetchOAuthTokenUsingJwt(
-                        userId, integratorKey, privateKey, context
-                    );
-                    JsonObject oauthTaxJson = JsonParser.parseString(oauthTaxResponse).getAsJsonObject();
-                    boolean isTaxTokenValid = oauthTaxJson.has("isTokenValid") && oauthTaxJson.get("isTokenValid").getAsBoolean();
-                    if (!isTaxTokenValid) {
-                        logger.log(Level.SEVERE, "[Service] [Step 10.3] OAuth token invalid for Tax flow");
-                        return String.format("{\"error\":\"DocuSign OAuth token invalid\", \"correlationId\":\"%s\"}", correlationId);
-                    }
-                    String accessTokenTax = oauthTaxJson.getAsJsonObject("DocuSignOauthToken").get("access_token").getAsString();
-                    logger.log(Level.INFO, "[Service] [Step 10.3] OAuth token successfully received for Tax");
-            
-                    // Step 10.4: Download document from DocuSign
-                    logger.log(Level.INFO, "[Service] [Step 10.4] Downloading DocuSign document (Tax)");
-                    String base64TaxDoc = DocuSignDocumentFetcher.downloadAndEncodeCombinedDocument(
-                        accountId, envelopeId, accessTokenTax, correlationId
-                    );
-                    logger.log(Level.INFO, "[Service] [Step 10.4] Document downloaded and base64 encoded (Tax)");
-            
-                    if (base64TaxDoc.isEmpty()) {
-                        logger.log(Level.SEVERE, "[Service] [Step 10.4] Base64 document is empty. Aborting.");
-                        return String.format("{\"error\":\"Downloaded document is empty\", \"correlationId\":\"%s\"}", correlationId);
-                    }
-            
-                    // Step 10.5: Construct final POST JSON payload
-                    logger.log(Level.INFO, "[Service] [Step 10.5] Preparing POST payload to Tax endpoint");
-                    JsonObject payload = new JsonObject();
-                    payload.addProperty("envelopeId", envelopeId);
-                    payload.addProperty("documentBase64", base64TaxDoc);
-            
-                    // Step 10.6: Build Tax API endpoint URL
-                    String taxUrl = String.format("https://%s:%s%s", taxApiHost, taxApiPort, taxApiPath);
-            
-                    // Step 10.7: Prepare headers with Basic Auth
-                    Map<String, String> headersMap = new HashMap<>();
-                    headersMap.put("Host", taxApiHost);
-                    headersMap.put("Content-Type", "application/json");
-                    headersMap.put("Authorization", "Basic " + Base64.getEncoder().encodeToString(taxBasicAuth.getBytes(StandardCharsets.UTF_8)));
-            
-                    // Step 10.8: POST to Tax endpoint
-                    logger.log(Level.INFO, "[Service] [Step 10.8] Posting to Tax endpoint...");
-                    String taxFinalResponse = DocuSignSoapSender.postToTaxApi(taxUrl, headersMap, payload.toString(), correlationId);
-                    logger.log(Level.INFO, "[Service] [Step 10.8] Tax API call complete. Response: {0}", taxFinalResponse);
-                    return taxFinalResponse;
-            
-                } catch (Exception e) {
-                    logger.log(Level.SEVERE, "[Service] [Step 10] Exception in PRS flow: " + e.getMessage(), e);
-                
-                    String message = e.getMessage();
-                    String details = "{\"error\":\"Exception in PRS flow\"}";
-                    int statusCode = 500;
-                
-                    if (message != null && message.contains("::")) {
-                        String[] parts = message.split("::", 2);
-                        try {
-                            statusCode = Integer.parseInt(parts[0]);
-                            details = parts[1]; // This is the actual DocuSign JSON error
-                        } catch (Exception parseEx) {
-                            logger.log(Level.SEVERE, "[Service] [Step 10] Failed to parse status and body: " + parseEx.getMessage());
+    private CompletableFuture<String> processPensionFlow(ConnectEvent event, CompletableFuture<DocusignOAuthToken> token,
+                                                         String correlationId, StageTimings timings) {
+        // Step 10.1: Extract envIdValue from TabStatus array
+        logger.log(Level.INFO, "[Service] [Step 10.1] Start: Extracting envIdValue");
+        List<JsonObject> tabStatusList = new ArrayList<>();
+        for (JsonElement element : event.getTabStatuses()) {
+            if (element != null && element.isJsonObject()) {
+                tabStatusList.add(element.getAsJsonObject());
+            }
+        }
+
+        String envIdValue = tabStatusList.stream()
+                .filter(tab -> tab.has("TabLabel") && "envId".equalsIgnoreCase(tab.get("TabLabel").getAsString()))
+                .map(tab -> tab.get("Value").getAsString())
+                .findFirst()
+                .orElse("");
+        logger.log(Level.INFO, "[Service] [Step 10.1] End: envIdValue: {0}", envIdValue);
+
+        // Step 10.2: Validate required values before continuing
+        logger.log(Level.INFO, "[Service] [Step 10.2] Start: Validating PRS fields");
+        /*if (envIdValue.isEmpty() || signedDate.isEmpty() || docId.isEmpty()
+                || beneficiaryUpi.isEmpty() || participantUpi.isEmpty()) {
+            logger.log(Level.SEVERE, "[Service] [Step 10.2] End: Missing required data. Aborting.");
+            return String.format("{\"error\":\"Missing required PRS fields\", \"correlationId\":\"%s\"}", correlationId);
+        }*/
+        logger.log(Level.INFO, "[Service] [Step 10.2] End: Validation passed");
+
+        // Step 10.3: Read environment variables for the Repo
+        String docusignRepo = System.getenv("DOCUSIGN_REPO_PENSION");
+
+        // Step 10.4 - 10.7: Token, download, SOAP payload, REND upload
+        return withAccessToken(token, correlationId, "PRS", accessToken -> uploadToRend(
+                event, accessToken, correlationId, timings,
+                () -> PrsSoapPayloadBuilder.buildMuleSoftPrsEnvelope(
+                        event.getParticipantUpi(), event.getDocId(), event.getBeneficiaryUpi(), event.getSignedDate(),
+                        envIdValue, docusignRepo)));
+    }
+
+    private CompletableFuture<String> processHrFlow(ConnectEvent event, CompletableFuture<DocusignOAuthToken> token,
+                                                    String correlationId, StageTimings timings) {
+        logger.log(Level.INFO, "[Service] [Step 10] Start: Processing HR flow (SRM)...");
+
+        // Step 10.1: Validate required fields for HR
+        logger.log(Level.INFO, "[Service] [Step 10.1] HR fields validated successfully");
+
+        // Step 10.2: Read environment variables for the Repo
+        String docusignRepoHR = System.getenv("DOCUSIGN_REPO_HRSRM");
+
+        // Step 10.3 - 10.6: Token, download, SOAP payload, REND upload
+        return withAccessToken(token, correlationId, "HR", accessTokenHR -> {
+            if (!event.isValidSubject()) {
+                // Step 10.4: Skip HR flow as isValidSubject is false validate it with Narmadha
+                logger.log(Level.INFO, "[Service] [Step 10.4] Skipping HR flow as isValidSubject is false");
+                return CompletableFuture.completedFuture(NOT_HR_LOA_RESPONSE);
+            }
+            return uploadToRend(event, accessTokenHR, correlationId, timings,
+                    () -> HrSoapPayloadBuilder.buildHrSoapEnvelope(
+                            event.getParticipantUpi(), event.getDocId(), event.getEnvelopeId(), docusignRepoHR));
+        });
+    }
+
+    private CompletableFuture<String> processTaxFlow(ConnectEvent event, CompletableFuture<DocusignOAuthToken> token,
+                                                     String correlationId, StageTimings timings) {
+        logger.log(Level.INFO, "[Service] [Step 10] Processing Tax 4506-c flow...");
+
+        // Step 10.1: Validate required fields for Tax flow
+        logger.log(Level.INFO, "[Service] [Step 10.1] Validating required Tax fields");
+        if (event.getSignedDate().isEmpty() || event.getDocId().isEmpty() || event.getParticipantUpi().isEmpty() || event.getEnvelopeId().isEmpty()) {
+            logger.log(Level.SEVERE, "[Service] [Step 10.1] Missing required Tax fields. Aborting.");
+            return CompletableFuture.completedFuture(
+                    String.format("{\"error\":\"Missing required Tax fields\", \"correlationId\":\"%s\"}", correlationId));
+        }
+        logger.log(Level.INFO, "[Service] [Step 10.1] Tax fields validated successfully");
+
+        // Step 10.2: Read environment variables for the Tax endpoint
+        logger.log(Level.INFO, "[Service] [Step 10.2] Reading environment variables for Tax flow");
+        String taxApiHost = System.getenv("HTTP_MYHRSS_HOST");
+        String taxApiPath = System.getenv("HTTP_MYHRSS_PATH");
+        String taxApiPort = System.getenv("HTTP_MYHRSS_PORT");
+        String taxApiUser = System.getenv("HTTP_MYHRSS_BASIC_USER");
+        String taxApiPassword = System.getenv("HTTP_MYHRSS_BASIC_PASSWORD");
+
+        if (taxApiUser == null || taxApiUser.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Missing environment variable: HTTP_MYHRSS_BASIC_USER"));
+        }
+        if (taxApiPassword == null || taxApiPassword.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Missing environment variable: HTTP_MYHRSS_BASIC_PASSWORD"));
+        }
+
+        // Construct raw string: user:password
+        String taxBasicAuth = taxApiUser + ":" + taxApiPassword;
+        logger.log(Level.INFO, "[Service] [Step 10.2] Environment variables loaded");
+
+        // Step 10.4: Build Tax API endpoint URL
+        String taxUrl = String.format("https://%s:%s%s", taxApiHost, taxApiPort, taxApiPath);
+
+        // Step 10.5: Prepare headers with Basic Auth
+        Map<String, String> headersMap = new HashMap<>();
+        headersMap.put("Host", taxApiHost);
+        headersMap.put("Content-Type", "application/json");
+        headersMap.put("Authorization", "Basic " + Base64.getEncoder().encodeToString(taxBasicAuth.getBytes(StandardCharsets.UTF_8)));
+
+        String emptyDocumentResponse = String.format("{\"error\":\"Downloaded document is empty\", \"correlationId\":\"%s\"}", correlationId);
+
+        // Step 10.3 and 10.6 - 10.8: Token, download, JSON payload, Tax upload
+        return withAccessToken(token, correlationId, "Tax", accessTokenTax -> {
+            if (DocuSignSoapSender.isStreamingTaxUploadEnabled()) {
+                // Step 10.6 - 10.7: Open the download and wrap it in the JSON payload as it streams
+                return CompletableFuture
+                        .supplyAsync(() -> timings.time("download", () -> openTaxDocumentBody(event, accessTokenTax, correlationId)), ioExecutor)
+                        .thenApplyAsync(taxBody -> {
+                            if (taxBody == null) {
+                                logger.log(Level.SEVERE, "[Service] [Step 10.6] Downloaded document is empty. Aborting.");
+                                return emptyDocumentResponse;
+                            }
+                            // Step 10.8: POST to Tax endpoint
+                            logger.log(Level.INFO, "[Service] [Step 10.8] Streaming to Tax endpoint...");
+                            return logTaxResponse(timings.time("upload", () -> DocuSignSoapSender.postToTaxApi(taxUrl, headersMap, taxBody, correlationId)));
+                        }, ioExecutor);
+            }
+
+            // Step 10.6: Download document from DocuSign
+            return CompletableFuture
+                    .supplyAsync(() -> timings.time("download", () -> DocuSignDocumentFetcher.downloadAndEncodeDocument(
+                            event.getAccountId(), event.getEnvelopeId(), accessTokenTax, correlationId,
+                            DocumentSelection.forRepository(event.getTargetRepository()))), ioExecutor)
+                    .thenApplyAsync(base64TaxDoc -> {
+                        logger.log(Level.INFO, "[Service] [Step 10.6] Document downloaded and base64 encoded (Tax)");
+                        if (base64TaxDoc.isEmpty()) {
+                            logger.log(Level.SEVERE, "[Service] [Step 10.6] Base64 document is empty. Aborting.");
+                            return null;
                         }
-                    }
-                
-                    // Return error JSON as string with statusCode and actual JSON
-                    return String.format("{\"statusCode\": %d, \"response\": %s}", statusCode, details);
-                }
-//=================================================================================================================================================
-            case "srm":
-                logger.log(Level.INFO, "[Service] [Step 10] Start: Processing HR flow (SRM)...");
-        
-                try {
-                    // Step 10.1: Validate required fields for HR
-                    logger.log(Level.INFO, "[Service] [Step 10.1] Validating required HR fields");
-                    /*if (signedDate.isEmpty() || docId.isEmpty() || participantUpi.isEmpty() || envelopeId.isEmpty()) {
-                        logger.log(Level.SEVERE, "[Service] [Step 10.1] Missing required HR fields. Aborting.");
-                        return String.format("{\"error\":\"Missing required HR fields\", \"correlationId\":\"%s\"}", correlationId);
-                    }*/
-                    logger.log(Level.INFO, "[Service] [Step 10.1] HR fields validated successfully");
-        
-                    // Step 10.2: Load environment variables required for OAuth
-                    logger.log(Level.INFO, "[Service] [Step 10.2] Reading environment variables for HR flow");
-                    String integratorKeyHR = System.getenv("DOCUSIGN_INTEGRATOR_KEY");
-                    String userIdHR = System.getenv("DOCUSIGN_HRLOA_USERID");
-                    String privateKey = System.getenv("DOCUSIGN_PRIVATE_KEY");
-                    //String oauthBasePathHR = System.getenv("Docusign_OAuthBasePath");
-                    //String docusignHostHR = System.getenv("Docusign_API_Host");
-                    String docusignRepoHR = System.getenv("DOCUSIGN_REPO_HRSRM");
-                    logger.log(Level.INFO, "[Service] [Step 10.2] Environment variables loaded");
-        
-                    // Step 10.3: Fetch OAuth token
-                    logger.log(Level.INFO, "[Service] [Step 10.3] Fetching OAuth token for HR flow");
-                    String oauthHRResponse = DocusignOAuthTokenGeneration.fetchOAuthTokenUsingJwt(
-                        userIdHR, integratorKeyHR, privateKey, context
-                    );
-                    JsonObject oauthHRJson = JsonParser.parseString(oauthHRResponse).getAsJsonObject();
-                    boolean isHRTokenValid = oauthHRJson.has("isTokenValid") && oauthHRJson.get("isTokenValid").getAsBoolean();
-                    if (!isHRTokenValid) {
-                        logger.log(Level.SEVERE, "[Service] [Step 10.3] OAuth token invalid for HR flow");
-                        return String.format("{\"error\":\"DocuSign OAuth token invalid\", \"correlationId\":\"%s\"}", correlationId);
-                    }
-                    String accessTokenHR = oauthHRJson.getAsJsonObject("DocuSignOauthToken").get("access_token").getAsString();
-                    logger.log(Level.INFO, "[Service] [Step 10.3] OAuth token successfully received for HR");
-                    
-                    if(isValidSubject){
-                        // Step 10.4: Fetch Document from DocuSign
-                        logger.log(Level.INFO, "[Service] [Step 10.4] Downloading DocuSign document (HR)");
-                        String base64HRDoc = DocuSignDocumentFetcher.downloadAndEncodeCombinedDocument(
-                            accountId, envelopeId, accessTokenHR, correlationId
-                        );
-                        logger.log(Level.INFO, "[Service] [Step 10.4] Document downloaded and base64 encoded (HR)");
-            
-                        // Step 10.5: Build SOAP Payload for HR
-                        logger.log(Level.INFO, "[Service] [Step 10.5] Building SOAP payload for HR flow");
-                        String soapPayloadHR = HrSoapPayloadBuilder.buildHrSoapPayload(
-                            participantUpi, docId, envelopeId, docusignRepoHR, base64HRDoc
-                        );
-                        logger.log(Level.INFO, "[Service] [Step 10.5] SOAP payload built successfully");
-            
-                        // Step 10.6: Send SOAP payload to HR endpoint
-                        logger.log(Level.INFO, "[Service] [Step 10.6] Sending HR SOAP payload using reusable utility");
-                        String hrResponse = DocuSignSoapSender.postToRendApi(soapPayloadHR, correlationId);
-                        logger.log(Level.INFO, "[Service] [Step 10.6] HR flow complete. Response: {0}", hrResponse);
-                        return hrResponse;
-                    }else{
-                        // Step 10.4: Skip HR flow as isValidSubject is false validate it with Narmadha
-                        logger.log(Level.INFO, "[Service] [Step 10.4] Skipping HR flow as isValidSubject is false");
-                        return "{\"ESBResponse\": {\"ResponseCode\": 200, \"ResponseText\": \"Document will NOT be retrieved nor failed because this is not an HR LOA\", \"DetailsMessage\": \"\"}}";
-                    }
-        
-                } catch (Exception e) {
-                    logger.log(Level.SEVERE, "[Service] [Step 10] Exception in PRS flow: " + e.getMessage(), e);
-                
-                    String message = e.getMessage();
-                    String details = "{\"error\":\"Exception in PRS flow\"}";
-                    int statusCode = 500;
-                
-                    if (message != null && message.contains("::")) {
-                        String[] parts = message.split("::", 2);
-                        try {
-                            statusCode = Integer.parseInt(parts[0]);
-                            details = parts[1]; // This is the actual DocuSign JSON error
-                        } catch (Exception parseEx) {
-                            logger.log(Level.SEVERE, "[Service] [Step 10] Failed to parse status and body: " + parseEx.getMessage());
+                        // Step 10.7: Construct final POST JSON payload
+                        return timings.time("payload", () -> TaxJsonPayloadBuilder.buildTaxPayload(event.getEnvelopeId(), base64TaxDoc));
+                    }, cpuExecutor)
+                    .thenApplyAsync(payload -> {
+                        if (payload == null) {
+                            return emptyDocumentResponse;
                         }
+                        // Step 10.8: POST to Tax endpoint
+                        logger.log(Level.INFO, "[Service] [Step 10.8] Posting to Tax endpoint...");
+                        return logTaxResponse(timings.time("upload", () -> DocuSignSoapSender.postToTaxApi(taxUrl, headersMap, payload, correlationId)));
+                    }, ioExecutor);
+        });
+    }
+
+    /**
+     * Waits for the token without blocking a pool thread, turns an invalid token into the usual error response,
+     * and otherwise continues the flow with the access token.
+     */
+    private CompletableFuture<String> withAccessToken(CompletableFuture<DocusignOAuthToken> token, String correlationId, String flow,
+                                                      Function<String, CompletableFuture<String>> next) {
+        return token.thenCompose(oauthToken -> {
+            logger.log(Level.INFO, "[Service] [Step 10] {0} JWT Token Recieved. Valid: {1}", new Object[]{flow, oauthToken.isValid()});
+            if (!oauthToken.isValid()) {
+                logger.log(Level.SEVERE, "[Service] [Step 10] OAuth token invalid for {0} flow. Error: {1}", new Object[]{flow, oauthToken.getError()});
+                return CompletableFuture.completedFuture(
+                        String.format("{\"error\":\"DocuSign OAuth token invalid\", \"correlationId\":\"%s\"}", correlationId));
+            }
+            return next.apply(oauthToken.getAccessToken());
+        });
+    }
+
+    /**
+     * Downloads the document and uploads it to REND. The envelope is built on the CPU pool while the download runs;
+     * in streaming mode the upload then reads straight through the download, otherwise the Base64 payload is
+     * assembled on the CPU pool before the upload, which may share a render request with other events
+     * (see {@link RendBatchSender}).
+     */
+    private CompletableFuture<String> uploadToRend(ConnectEvent event, String accessToken, String correlationId,
+                                                   StageTimings timings, Callable<RendSoapEnvelope> envelopeBuilder) {
+        CompletableFuture<RendSoapEnvelope> envelope =
+                CompletableFuture.supplyAsync(() -> timings.time("payload", envelopeBuilder), cpuExecutor);
+        DocumentSelection selection = DocumentSelection.forRepository(event.getTargetRepository());
+
+        // Batched render calls need the whole payload, so they take the buffered path below
+        if (DocuSignSoapSender.isStreamingUploadEnabled() && !rendBatchSender.isEnabled()) {
+            // Step 10.5: Open the document download from DocuSign
+            CompletableFuture<DocumentCache.Document> download = CompletableFuture.supplyAsync(() -> timings.time("download",
+                    () -> DocuSignDocumentFetcher.openDocumentSource(event.getAccountId(), event.getEnvelopeId(), accessToken, correlationId, selection)),
+                    ioExecutor);
+
+            // Don't leave the download open if the envelope could not be built
+            envelope.whenComplete((built, error) -> {
+                if (error != null) download.thenAccept(DocusignConnectService::closeQuietly);
+            });
+
+            // Step 10.6 - 10.7: Stream the document through to the REND API
+            return download.thenCombineAsync(envelope, (document, soapEnvelope) -> {
+                logger.log(Level.INFO, "[Service] [Step 10.7] Start: Streaming SOAP to REND API using utility");
+                // A retried upload downloads the document again
+                Callable<InputStream> reopen = () -> DocuSignDocumentFetcher.openDocumentSource(
+                        event.getAccountId(), event.getEnvelopeId(), accessToken, correlationId, selection).getInputStream();
+                return logRendResponse(timings.time("upload", () -> DocuSignSoapSender.postToRendApi(
+                        soapEnvelope, document.getInputStream(), document.getLength(), reopen, correlationId)));
+            }, ioExecutor);
+        }
+
+        // Step 10.5: Download the document from DocuSign
+        CompletableFuture<String> base64File = CompletableFuture.supplyAsync(() -> timings.time("download",
+                () -> DocuSignDocumentFetcher.downloadAndEncodeDocument(event.getAccountId(), event.getEnvelopeId(), accessToken, correlationId, selection)),
+                ioExecutor);
+
+        // Step 10.6 - 10.7: Build the SOAP payload off the I/O pool, then POST it to REND
+        return base64File
+                .thenCombineAsync(envelope, (file, soapEnvelope) -> timings.time("payload", () -> soapEnvelope.withFileData(file)), cpuExecutor)
+                .thenComposeAsync(soapPayload -> {
+                    if (rendBatchSender.isEnabled()) {
+                        // Step 10.7: Share a render request with other uploads for the same repository
+                        logger.log(Level.INFO, "[Service] [Step 10.7] Start: Queuing SOAP for a batched REND render call");
+                        long start = System.nanoTime();
+                        return rendBatchSender.submit(event.getTargetRepository(), soapPayload, correlationId, timings.getDeadline())
+                                .thenApply(response -> {
+                                    timings.record("upload", System.nanoTime() - start);
+                                    return logRendResponse(response);
+                                });
                     }
-                
-                    // Return error JSON as string with statusCode and actual JSON
-                    return String.format("{\"statusCode\": %d, \"response\": %s}", statusCode, details);
-                }
-//=================================================================================================================================================        
+                    logger.log(Level.INFO, "[Service] [Step 10.7] Start: Posting SOAP to REND API using utility");
+                    return CompletableFuture.completedFuture(
+                            logRendResponse(timings.time("upload", () -> DocuSignSoapSender.postToRendApi(soapPayload, correlationId))));
+                }, ioExecutor);
+    }
+
+    /**
+     * Opens the document download and wraps it in the Tax JSON payload; returns null (with the download closed)
+     * if DocuSign sent an empty document.
+     */
+    private static Base64DocumentBody openTaxDocumentBody(ConnectEvent event, String accessToken, String correlationId) throws Exception {
+        logger.log(Level.INFO, "[Service] [Step 10.6] Opening DocuSign document download (Tax)");
+        DocumentSelection selection = DocumentSelection.forRepository(event.getTargetRepository());
+        DocumentCache.Document document = DocuSignDocumentFetcher.openDocumentSource(
+                event.getAccountId(), event.getEnvelopeId(), accessToken, correlationId, selection);
+
+        PushbackInputStream stream = new PushbackInputStream(document.getInputStream());
+        int firstByte = stream.read();
+        if (firstByte == -1) {
+            stream.close();
+            return null;
+        }
+        stream.unread(firstByte);
+
+        return Base64DocumentBody.of(
+                TaxJsonPayloadBuilder.buildTaxPayloadPrefix(event.getEnvelopeId()),
+                stream,
+                document.getLength(),
+                TaxJsonPayloadBuilder.buildTaxPayloadSuffix())
+                // A retried upload downloads the document again
+                .withReopen(() -> DocuSignDocumentFetcher.openDocumentSource(
+                        event.getAccountId(), event.getEnvelopeId(), accessToken, correlationId, selection).getInputStream());
+    }
+
+    /**
+     * Starts fetching the OAuth token for the repository's DocuSign user; null for repositories without one.
+     */
+    private CompletableFuture<DocusignOAuthToken> fetchToken(String targetRepository, StageTimings timings, ExecutionContext context) {
+        String userIdVariable = userIdVariable(targetRepository);
+        if (userIdVariable == null) return null;
+
+        String userId = System.getenv(userIdVariable);
+        String integratorKey = System.getenv("DOCUSIGN_INTEGRATOR_KEY");
+        String privateKey = System.getenv("DOCUSIGN_PRIVATE_KEY");
+
+        long start = System.nanoTime();
+        Deadline.Scope scope = timings.getDeadline().enter();
+        try {
+            return DocusignOAuthTokenGeneration.fetchOAuthTokenAsync(userId, integratorKey, privateKey, context)
+                    .whenComplete((token, error) -> timings.record("token", System.nanoTime() - start));
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Drops the repository user's OAuth token when DocuSign answered the flow with 401, so the next event fetches
+     * a new token instead of failing the same way until the cached one expires.
+     */
+    private static void invalidateTokenIfRejected(String targetRepository, Throwable error) {
+        String message = error == null ? null : unwrap(error).getMessage();
+        String userIdVariable = userIdVariable(targetRepository);
+        if (message == null || userIdVariable == null || !message.startsWith("401::")) return;
+
+        DocusignOAuthTokenGeneration.invalidateOAuthToken(System.getenv(userIdVariable), System.getenv("DOCUSIGN_INTEGRATOR_KEY"));
+    }
+
+    // Environment variable holding the DocuSign user for the repository; null for repositories without one
+    private static String userIdVariable(String targetRepository) {
+        if (targetRepository == null) return null;
+        switch (targetRepository) {
+            case "prs":
+                return "DOCUSIGN_PENSION_USERID";
+            case "4506-c":
+                return "DOCUSIGN_TAX_USERID";
+            case "srm":
+                return "DOCUSIGN_HRLOA_USERID";
             default:
-                logger.log(Level.WARNING, "[Service] [Step 10] Unknown target repository: {0}. Skipping processing.", targetRepository);
-                return "{\"ESBResponse\": {\"ResponseCode\": 200, \"ResponseText\": \"Document will NOT be retrieved nor failed because this is not an HR LOA\", \"DetailsMessage\": \"\"}}";
+                return null;
+        }
+    }
+
+    private String logRendResponse(String response) {
+        logger.log(Level.INFO, "[Service] [Step 10.7] End: REND API call complete. Response: {0}", response);
+        return response;
+    }
+
+    private String logTaxResponse(String response) {
+        logger.log(Level.INFO, "[Service] [Step 10.8] Tax API call complete. Response: {0}", response);
+        return response;
+    }
+
+    // Maps a failed flow to {"statusCode": N, "response": ...}, using the "status::body" convention when present
+    private String toErrorResponse(Throwable error) {
+        Throwable e = unwrap(error);
+        logger.log(Level.SEVERE, "[Service] [Step 10] Exception in PRS flow: " + e.getMessage(), e);
+
+        String message = e.getMessage();
+        String details = "{\"error\":\"Exception in PRS flow\"}";
+        int statusCode = 500;
+
+        if (message != null && message.contains("::")) {
+            String[] parts = message.split("::", 2);
+            try {
+                statusCode = Integer.parseInt(parts[0]);
+                details = parts[1]; // This is the actual DocuSign JSON error
+            } catch (Exception parseEx) {
+                logger.log(Level.SEVERE, "[Service] [Step 10] Failed to parse status and body: " + parseEx.getMessage());
+            }
         }
+
+        // Return error JSON as string with statusCode and actual JSON
+        return String.format("{\"statusCode\": %d, \"response\": %s}", statusCode, details);
     }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable e = error;
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private static void closeQuietly(DocumentCache.Document document) {
+        try {
+            document.getInputStream().close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+
     // Helper methods
+    private String extractFileLabel(JsonElement rootJson) {
+        String fileLabel = null;
+        try {
+            JsonObject documentPdfs = Optional.ofNullable(rootJson)
+                    .filter(JsonElement::isJsonObject)
+                    .map(JsonElement::getAsJsonObject)
+                    .map(obj -> obj.get("EnvelopeInformation"))
+                    .filter(JsonElement::isJsonObject)
+                    .map(JsonElement::getAsJsonObject)
+                    .map(obj -> obj.get("DocumentPDFs"))
+                    .filter(JsonElement::isJsonObject)
+                    .map(JsonElement::getAsJsonObject)
+                    .orElse(null);
+
+            if (documentPdfs != null && documentPdfs.has("DocumentPDF")) {
+                JsonElement docPdfElement = documentPdfs.get("DocumentPDF");
+                String extractedName = null;
+
+                if (docPdfElement.isJsonObject()) {
+                    JsonObject docPdf = docPdfElement.getAsJsonObject();
+                    extractedName = docPdf.has("Name") && !docPdf.get("Name").isJsonNull()
+                            ? docPdf.get("Name").getAsString()
+                            : null;
+                } else if (docPdfElement.isJsonArray() && docPdfElement.getAsJsonArray().size() > 0) {
+                    JsonObject firstDoc = docPdfElement.getAsJsonArray().get(0).getAsJsonObject();
+                    extractedName = firstDoc.has("Name") && !firstDoc.get("Name").isJsonNull()
+                            ? firstDoc.get("Name").getAsString()
+                            : null;
+                }
+
+                fileLabel = (extractedName == null) ? ".pdf" : extractedName + ".pdf";
+                logger.log(Level.INFO, "[Service] [EXTRA] Extracted DocumentPDF Name: {0}", fileLabel);
+            }
+
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "[Service] [EXTRA] Failed to extract DocumentPDF Name safely: {0}", e.getMessage());
+        }
+        return fileLabel;
+    }
+
     private String getString(JsonObject obj, String key) {
         return obj != null && obj.has(key) && !obj.get(key).isJsonNull()
                 ? obj.get(key).getAsString() : "";
@@ -0,0 +1,133 @@
+package com.function.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.function.model.DocusignOAuthToken;
+import com.function.utils.DocusignOAuthTokenCache;
+import com.function.utils.DocusignOAuthTokenGeneration;
+import com.function.utils.PipelineExecutors;
+import com.microsoft.azure.functions.ExecutionContext;
+
+/**
+ * Service to refresh OAuth tokens for the configured DocuSign impersonation users ahead of expiry,
+ * so Connect events do not pay for the JWT grant inline.
+ */
+public class DocusignOAuthTokenPrewarmService {
+
+    // Impersonation users used by the Connect flows (PENSION, TAX, HRLOA)
+    private static final String[] USER_ID_VARIABLES = {
+        "DOCUSIGN_PENSION_USERID",
+        "DOCUSIGN_TAX_USERID",
+        "DOCUSIGN_HRLOA_USERID"
+    };
+
+    private static final long DEFAULT_PREWARM_WINDOW_SECONDS = 900;
+
+    /**
+     * Refreshes, in parallel, every configured user's token that is missing or expires within the pre-warm window
+     * (env DOCUSIGN_TOKEN_PREWARM_WINDOW_SECONDS, default 900).
+     *
+     * @param context - Azure Function ExecutionContext for logging
+     * @return Summary with refreshed, fresh and failed counts
+     */
+    public Map<String, Object> prewarmTokens(ExecutionContext context) {
+        Logger logger = context.getLogger();
+
+        // Step A: Collect configured users
+        String integratorKey = System.getenv("DOCUSIGN_INTEGRATOR_KEY");
+        String privateKey = System.getenv("DOCUSIGN_PRIVATE_KEY");
+        long windowMillis = TimeUnit.SECONDS.toMillis(readWindowSeconds(logger));
+
+        Set<String> userIds = new LinkedHashSet<>();
+        for (String variable : USER_ID_VARIABLES) {
+            String userId = System.getenv(variable);
+            if (userId != null && !userId.isEmpty()) {
+                userIds.add(userId);
+            } else {
+                logger.warning(String.format("[Service] Step A: %s is not configured, skipping.", variable));
+            }
+        }
+        logger.info(String.format("[Service] Step A: Pre-warming OAuth tokens for %d user(s)", userIds.size()));
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        if (userIds.isEmpty()) {
+            summary.put("refreshed", 0);
+            summary.put("fresh", 0);
+            summary.put("failed", 0);
+            return summary;
+        }
+
+        // Step B: Refresh each user in parallel
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (String userId : userIds) {
+            results.add(CompletableFuture.supplyAsync(
+                    () -> prewarmUser(userId, integratorKey, privateKey, windowMillis, context), PipelineExecutors.io()));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+
+        // Step C: Summarise
+        int refreshed = 0, fresh = 0, failed = 0;
+        for (CompletableFuture<String> result : results) {
+            switch (result.join()) {
+                case "refreshed": refreshed++; break;
+                case "fresh": fresh++; break;
+                default: failed++; break;
+            }
+        }
+        summary.put("refreshed", refreshed);
+        summary.put("fresh", fresh);
+        summary.put("failed", failed);
+        summary.put("cache", DocusignOAuthTokenCache.getInstance().getStats());
+
+        logger.info(String.format("[Service] Step C: Pre-warm complete. Refreshed: %d, Fresh: %d, Failed: %d, Cache: %s",
+                refreshed, fresh, failed, DocusignOAuthTokenCache.getInstance().getStats()));
+        return summary;
+    }
+
+    private String prewarmUser(String userId, String integratorKey, String privateKey, long windowMillis,
+                               ExecutionContext context) {
+        Logger logger = context.getLogger();
+        long start = System.nanoTime();
+        try {
+            DocusignOAuthToken token = DocusignOAuthTokenGeneration.prewarmOAuthToken(userId, integratorKey, privateKey, windowMillis, context);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            if (token == null) {
+                logger.info(String.format("[Service] Step B: Token for user %s is still fresh", userId));
+                return "fresh";
+            }
+
+            if (!token.isValid()) {
+                logger.severe(String.format("[Service] Step B: Token refresh failed for user %s after %d ms: %s",
+                        userId, elapsedMillis, token.getError()));
+                return "failed";
+            }
+
+            logger.info(String.format("[Service] Step B: Token refreshed for user %s in %d ms", userId, elapsedMillis));
+            return "refreshed";
+
+        } catch (Exception ex) {
+            logger.severe(String.format("[Service] Step B: Exception while refreshing token for user %s: %s", userId, ex.getMessage()));
+            return "failed";
+        }
+    }
+
+    private long readWindowSeconds(Logger logger) {
+        String value = System.getenv("DOCUSIGN_TOKEN_PREWARM_WINDOW_SECONDS");
+        if (value == null || value.isEmpty()) return DEFAULT_PREWARM_WINDOW_SECONDS;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warning("[Service] Ignoring invalid DOCUSIGN_TOKEN_PREWARM_WINDOW_SECONDS: " + value);
+            return DEFAULT_PREWARM_WINDOW_SECONDS;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.function.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 import com.azure.messaging.servicebus.ServiceBusClientBuilder;
@@ -9,6 +12,7 @@ import com.azure.messaging.servicebus.ServiceBusReceivedMessage;
 import com.azure.messaging.servicebus.ServiceBusReceiverClient;
 import com.azure.messaging.servicebus.ServiceBusSenderClient;
 import com.azure.messaging.servicebus.models.ServiceBusReceiveMode;
+import com.function.utils.PipelineExecutors;
 import com.microsoft.azure.functions.ExecutionContext;
 
 /**
@@ -56,29 +60,14 @@ public class DocusignReportsReprocessService {
             Iterable<ServiceBusReceivedMessage> dlqMessages = receiver.receiveMessages(50);
             int count = 0;
 
+            // Forward messages concurrently on the pipeline's I/O executor; each one blocks on two Service Bus calls
+            List<CompletableFuture<Void>> forwards = new ArrayList<>();
             for (ServiceBusReceivedMessage message : dlqMessages) {
                 count++;
-                String messageId = message.getMessageId();
-
-                // Step G: Log DLQ message
-                logger.info(String.format("[Service] Step F%d: DLQ message received with ID: %s", count, messageId));
-
-                // Step H: Create new message with original content
-                ServiceBusMessage forwardMessage = new ServiceBusMessage(message.getBody());
-
-                // Copy basic properties
-                forwardMessage.getApplicationProperties().putAll(message.getApplicationProperties());
-                forwardMessage.setContentType(message.getContentType());
-                forwardMessage.setSubject(message.getSubject());
-
-                // Step I: Send message to main queue
-                sender.sendMessage(forwardMessage);
-                logger.info(String.format("[Service] Step G%d: Message forwarded to main queue. ID: %s", count, messageId));
-
-                // Step J: Complete (remove) message from DLQ
-                receiver.complete(message);
-                logger.info(String.format("[Service] Step H%d: Message completed from DLQ. ID: %s", count, messageId));
+                int index = count;
+                forwards.add(CompletableFuture.runAsync(() -> forwardMessage(receiver, sender, message, index, logger), PipelineExecutors.io()));
             }
+            CompletableFuture.allOf(forwards.toArray(new CompletableFuture<?>[0])).join();
 
             // Step K: Summary
             if (count == 0) {
@@ -91,4 +80,29 @@ public class DocusignReportsReprocessService {
             logger.severe(String.format("[Service] Step Z: Exception occurred: %s", ex.getMessage()));
         }
     }
+
+    @SuppressWarnings("LoggerStringConcat")
+    private void forwardMessage(ServiceBusReceiverClient receiver, ServiceBusSenderClient sender,
+                                ServiceBusReceivedMessage message, int count, Logger logger) {
+        String messageId = message.getMessageId();
+
+        // Step G: Log DLQ message
+        logger.info(String.format("[Service] Step F%d: DLQ message received with ID: %s", count, messageId));
+
+        // Step H: Create new message with original content
+        ServiceBusMessage forwardMessage = new ServiceBusMessage(message.getBody());
+
+        // Copy basic properties
+        forwardMessage.getApplicationProperties().putAll(message.getApplicationProperties());
+        forwardMessage.setContentType(message.getContentType());
+        forwardMessage.setSubject(message.getSubject());
+
+        // Step I: Send message to main queue
+        sender.sendMessage(forwardMessage);
+        logger.info(String.format("[Service] Step G%d: Message forwarded to main queue. ID: %s", count, messageId));
+
+        // Step J: Complete (remove) message from DLQ
+        receiver.complete(message);
+        logger.info(String.format("[Service] Step H%d: Message completed from DLQ. ID: %s", count, messageId));
+    }
 }
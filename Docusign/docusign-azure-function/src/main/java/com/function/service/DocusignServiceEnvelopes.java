@@ -1,13 +1,19 @@
 package com.function.service;
 
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.UUID;
 
+import com.function.model.DocusignOAuthToken;
+import com.function.utils.Deadline;
 import com.function.utils.DocusignOAuthTokenGeneration;
+import com.function.utils.DocusignRateLimiter;
+import com.function.utils.Downstream;
+import com.function.utils.HttpClientRegistry;
 import com.microsoft.azure.functions.ExecutionContext;
 
 public class DocusignServiceEnvelopes {
@@ -16,6 +22,8 @@ public class DocusignServiceEnvelopes {
         String correlationId = UUID.randomUUID().toString();
         context.getLogger().info(() -> "[DocusignServiceEnvelopes] - Correlation ID: " + correlationId);
 
+        // Bound the token validation, OAuth and envelope calls by the function's time budget
+        Deadline.Scope deadline = Deadline.forFunction().enter();
         try {
             context.getLogger().info(() -> "[START] Step 1: Extract accountId");
             String accountId = headers.getOrDefault("accountid", System.getenv("DocuSignHRLOAAccountId"));
@@ -26,25 +34,22 @@ public class DocusignServiceEnvelopes {
             String azureTokenValidationUrl = "https://int.apiqa.worldbank.org/azure/v2.0/validate-token";
             String resourceId = System.getenv("docusign.services.esb.azuretoken.resource.id");
 
-            HttpURLConnection tokenConn = (HttpURLConnection) new URL(azureTokenValidationUrl).openConnection();
-            tokenConn.setRequestMethod("GET");
-            tokenConn.setRequestProperty("resource", resourceId);
-            tokenConn.setRequestProperty("Authorization", headers.get("Authorization"));
-
-            int tokenResponseCode = tokenConn.getResponseCode();
-            Scanner tokenScanner = new Scanner(
-                (tokenResponseCode >= 200 && tokenResponseCode < 300) ? tokenConn.getInputStream() : tokenConn.getErrorStream()
-            );
-            StringBuilder tokenResponse = new StringBuilder();
-            while (tokenScanner.hasNextLine()) {
-                tokenResponse.append(tokenScanner.nextLine());
-            }
-            tokenScanner.close();
+            Map<String, String> tokenHeaders = new HashMap<>();
+            tokenHeaders.put("resource", resourceId);
+            tokenHeaders.put("Authorization", headers.get("Authorization"));
+            HttpRequest tokenRequest = HttpClientRegistry.headers(
+                    HttpClientRegistry.newRequest(Downstream.AZURE_TOKEN, new URI(azureTokenValidationUrl)), tokenHeaders)
+                    .GET()
+                    .build();
+
+            HttpResponse<String> tokenHttpResponse = HttpClientRegistry.send(Downstream.AZURE_TOKEN, tokenRequest, HttpResponse.BodyHandlers.ofString());
+            int tokenResponseCode = tokenHttpResponse.statusCode();
+            String tokenResponse = tokenHttpResponse.body();
             context.getLogger().info(() -> "Azure Token Validation Response Code: " + tokenResponseCode);
             context.getLogger().info(() -> "Azure Token Validation Response Body: " + tokenResponse);
             context.getLogger().info(() -> "[END] Step 2: Token validation completed");
 
-            if (!tokenResponse.toString().contains("\"isTokenValid\":true")) {
+            if (!tokenResponse.contains("\"isTokenValid\":true")) {
                 return String.format("{\"error\": \"Invalid Azure Token\", \"statusCode\": %d, \"correlationId\": \"%s\"}", tokenResponseCode, correlationId);
             }
 
@@ -53,14 +58,14 @@ public class DocusignServiceEnvelopes {
             String integratorKey = System.getenv("docusign.services.integrator_key");
             String privateKey = System.getenv("DOCUSIGN_PRIVATE_KEY");
 
-            String oauthResponse = DocusignOAuthTokenGeneration.fetchOAuthTokenUsingJwt(userId, integratorKey, privateKey, context);
-            context.getLogger().info(() -> "OAuth Response: " + oauthResponse);
-            String accessToken = extractAccessToken(oauthResponse);
+            DocusignOAuthToken oauthToken = DocusignOAuthTokenGeneration.fetchOAuthToken(userId, integratorKey, privateKey, context);
+            context.getLogger().info(() -> "OAuth token valid: " + oauthToken.isValid());
             context.getLogger().info(() -> "[END] Step 3: Access token extraction completed");
 
-            if (accessToken == null) {
-                return String.format("{\"error\": \"OAuth Token Invalid\", \"details\": %s, \"correlationId\": \"%s\"}", oauthResponse, correlationId);
+            if (!oauthToken.isValid()) {
+                return String.format("{\"error\": \"OAuth Token Invalid\", \"details\": %s, \"correlationId\": \"%s\"}", oauthToken.toLogicAppJson(), correlationId);
             }
+            String accessToken = oauthToken.getAccessToken();
 
             context.getLogger().info(() -> "[START] Step 4: Call DocuSign Envelope API");
             String host = System.getenv("docusign.services.http.host");
@@ -69,27 +74,17 @@ public class DocusignServiceEnvelopes {
             String uri = String.format("https://%s:%s%s%s", host, port, basePath, docusignApiPath);
 
             context.getLogger().info(() -> "DocuSign Envelope API URI: " + uri);
-            HttpURLConnection conn = (HttpURLConnection) new URL(uri).openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Authorization", "Bearer " + accessToken);
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("Host", host);
-            conn.setDoOutput(true);
-
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(body.getBytes("UTF-8"));
-                os.flush();
-            }
-
-            int responseCode = conn.getResponseCode();
-            Scanner scanner = new Scanner(
-                (responseCode >= 200 && responseCode < 300) ? conn.getInputStream() : conn.getErrorStream()
-            );
-            StringBuilder response = new StringBuilder();
-            while (scanner.hasNextLine()) {
-                response.append(scanner.nextLine());
-            }
-            scanner.close();
+            HttpRequest envelopeRequest = HttpClientRegistry.newRequest(Downstream.DOCUSIGN, new URI(uri))
+                    .header("Authorization", "Bearer " + accessToken)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                    .build();
+
+            // Paced against the account's DocuSign rate limit; envelope creation yields budget to archival downloads
+            HttpResponse<String> envelopeResponse = DocusignRateLimiter.getInstance().send(accountId, DocusignRateLimiter.Priority.NORMAL,
+                    envelopeRequest, HttpResponse.BodyHandlers.ofString(), false);
+            int responseCode = envelopeResponse.statusCode();
+            String response = envelopeResponse.body();
             context.getLogger().info(() -> "DocuSign API Response Code: " + responseCode);
             context.getLogger().info(() -> "DocuSign API Response Body: " + response);
             context.getLogger().info(() -> "[END] Step 4: DocuSign envelope API call completed");
@@ -106,18 +101,8 @@ public class DocusignServiceEnvelopes {
         } catch (Exception ex) {
             context.getLogger().severe(() -> "Exception: " + ex.getMessage());
             return String.format("{\"error\": \"Internal Server Error\", \"details\": \"%s\", \"correlationId\": \"%s\"}", ex.getMessage().replace("\"", "'"), correlationId);
-        }
-    }
-
-    private String extractAccessToken(String jsonResponse) {
-        try {
-            int index = jsonResponse.indexOf("\"access_token\":\"");
-            if (index == -1) return null;
-            int start = index + 17;
-            int end = jsonResponse.indexOf("\"", start);
-            return jsonResponse.substring(start, end);
-        } catch (Exception e) {
-            return null;
+        } finally {
+            deadline.close();
         }
     }
 }
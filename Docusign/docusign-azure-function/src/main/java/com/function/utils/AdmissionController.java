@@ -0,0 +1,202 @@
+package com.function.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Admission control for the Connect endpoint. Tracks the Connect events being processed and the bytes they hold
+ * (request bodies plus open document downloads) and turns new events away once either passes its limit, or while
+ * DocuSign or its OAuth endpoint is unavailable. Rejected events are answered with 429 or 503 and a Retry-After,
+ * so DocuSign Connect redelivers them on its own schedule instead of piling up behind function timeouts.
+ *
+ * Settings: CONNECT_ADMISSION_ENABLED (default true), CONNECT_MAX_IN_FLIGHT_EVENTS (default 64),
+ * CONNECT_MAX_IN_FLIGHT_MB (default 256) and CONNECT_RETRY_AFTER_SECONDS (default 30).
+ */
+public class AdmissionController {
+
+    private static final Logger logger = Logger.getLogger(AdmissionController.class.getName());
+
+    // Every Connect event needs a token and a document download
+    private static final Downstream[] REQUIRED_DOWNSTREAMS = {Downstream.OAUTH, Downstream.DOCUSIGN};
+
+    private static final AdmissionController INSTANCE = new AdmissionController(
+            !"false".equalsIgnoreCase(System.getenv("CONNECT_ADMISSION_ENABLED")),
+            readLong("CONNECT_MAX_IN_FLIGHT_EVENTS", 64),
+            readLong("CONNECT_MAX_IN_FLIGHT_MB", 256) * 1024 * 1024,
+            readLong("CONNECT_RETRY_AFTER_SECONDS", 30));
+
+    private final boolean enabled;
+    private final long maxEvents;
+    private final long maxBytes;
+    private final long retryAfterSeconds;
+
+    private final AtomicLong inFlightEvents = new AtomicLong();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedOverloaded = new AtomicLong();
+    private final AtomicLong rejectedUnavailable = new AtomicLong();
+
+    public AdmissionController(boolean enabled, long maxEvents, long maxBytes, long retryAfterSeconds) {
+        this.enabled = enabled;
+        this.maxEvents = Math.max(1, maxEvents);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public static AdmissionController getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Admits a Connect event or tells the caller to come back later.
+     *
+     * @param requestBytes Size of the Connect request body
+     * @return Ticket to close once the event has been processed
+     * @throws OverloadedException if the event must be turned away; carries the status and Retry-After to answer with
+     */
+    public Ticket admit(long requestBytes) throws OverloadedException {
+        if (!enabled) {
+            return new Ticket(this, 0);
+        }
+
+        // Step 1: Don't take work that can only fail while a required downstream's circuit is open
+        for (Downstream downstream : REQUIRED_DOWNSTREAMS) {
+            long unavailableMs = Resilience.unavailableForMillis(downstream);
+            if (unavailableMs > 0) {
+                rejectedUnavailable.incrementAndGet();
+                long seconds = Math.max(retryAfterSeconds, (unavailableMs + 999) / 1000);
+                logger.log(Level.WARNING, "[Utils] [Admission] Rejecting event: {0} unavailable, Retry-After {1}s",
+                        new Object[]{downstream, String.valueOf(seconds)});
+                throw new OverloadedException(503, seconds, downstream + " is unavailable");
+            }
+        }
+
+        // Step 2: Reserve the event and its bytes, backing out if either limit is exceeded
+        long events = inFlightEvents.incrementAndGet();
+        long bytes = inFlightBytes.addAndGet(requestBytes);
+        if (events > maxEvents || (bytes > maxBytes && events > 1)) {
+            inFlightEvents.decrementAndGet();
+            inFlightBytes.addAndGet(-requestBytes);
+            rejectedOverloaded.incrementAndGet();
+            long seconds = jitteredRetryAfter();
+            logger.log(Level.WARNING, "[Utils] [Admission] Rejecting event: {0} events / {1} bytes in flight, Retry-After {2}s",
+                    new Object[]{String.valueOf(events - 1), String.valueOf(bytes - requestBytes), String.valueOf(seconds)});
+            throw new OverloadedException(429, seconds, "Too many Connect events in progress");
+        }
+
+        admitted.incrementAndGet();
+        return new Ticket(this, requestBytes);
+    }
+
+    /**
+     * Counts an open document download towards the in-flight bytes until its stream is closed.
+     *
+     * @param document Document just opened
+     * @return The same document, with a stream that releases its bytes on close
+     */
+    public DocumentCache.Document track(DocumentCache.Document document) {
+        long length = document.getLength();
+        if (!enabled || length <= 0) return document;
+
+        inFlightBytes.addAndGet(length);
+        AtomicBoolean released = new AtomicBoolean();
+        return document.withInputStream(new FilterInputStream(document.getInputStream()) {
+            @Override
+            public void close() throws IOException {
+                if (released.compareAndSet(false, true)) {
+                    inFlightBytes.addAndGet(-length);
+                }
+                super.close();
+            }
+        });
+    }
+
+    /**
+     * Snapshot of the admission counters, suitable for logging or returning from a diagnostics endpoint.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlightEvents", inFlightEvents.get());
+        stats.put("inFlightBytes", inFlightBytes.get());
+        stats.put("maxEvents", maxEvents);
+        stats.put("maxBytes", maxBytes);
+        stats.put("admitted", admitted.get());
+        stats.put("rejectedOverloaded", rejectedOverloaded.get());
+        stats.put("rejectedUnavailable", rejectedUnavailable.get());
+        return stats;
+    }
+
+    // Spread redeliveries out so rejected events don't all come back at the same moment
+    private long jitteredRetryAfter() {
+        return retryAfterSeconds + ThreadLocalRandom.current().nextLong(retryAfterSeconds / 2 + 1);
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [Admission] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    private void release(long requestBytes) {
+        inFlightEvents.decrementAndGet();
+        inFlightBytes.addAndGet(-requestBytes);
+    }
+
+    /**
+     * An admitted event; closing it (once) frees its slot.
+     */
+    public static final class Ticket implements AutoCloseable {
+        private final AdmissionController controller;
+        private final long requestBytes;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Ticket(AdmissionController controller, long requestBytes) {
+            this.controller = controller;
+            this.requestBytes = requestBytes;
+        }
+
+        @Override
+        public void close() {
+            if (controller.enabled && closed.compareAndSet(false, true)) {
+                controller.release(requestBytes);
+            }
+        }
+    }
+
+    /**
+     * Thrown when an event is turned away.
+     */
+    public static final class OverloadedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+        private final long retryAfterSeconds;
+
+        public OverloadedException(int statusCode, long retryAfterSeconds, String message) {
+            super(message);
+            this.statusCode = statusCode;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.function.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Request body made of a fixed prefix, a document Base64-encoded on the fly from an open stream, and a fixed
+ * suffix. Used to upload DocuSign documents to REND and the Tax API without ever holding them in memory.
+ *
+ * The document stream can only be read once, so the body can only be sent once unless a way to re-open the
+ * download is supplied with {@link #withReopen(Callable)}; such bodies can be retried. Call {@link #releaseIfUnused()}
+ * after the request so a download that was never consumed (e.g. the connection failed) is closed.
+ */
+public final class Base64DocumentBody {
+
+    private final byte[] prefix;
+    private final InputStream document;
+    private final long documentLength;
+    private final byte[] suffix;
+    private final AtomicBoolean opened = new AtomicBoolean();
+    private Callable<InputStream> reopen;
+    private volatile InputStream current;
+
+    private Base64DocumentBody(byte[] prefix, InputStream document, long documentLength, byte[] suffix) {
+        this.prefix = prefix;
+        this.document = document;
+        this.documentLength = documentLength;
+        this.suffix = suffix;
+    }
+
+    /**
+     * @param prefix         Bytes sent before the document
+     * @param document       Raw document stream; closed once fully read
+     * @param documentLength Raw document length, or -1 if unknown (the body is then sent chunked)
+     * @param suffix         Bytes sent after the document
+     */
+    public static Base64DocumentBody of(byte[] prefix, InputStream document, long documentLength, byte[] suffix) {
+        return new Base64DocumentBody(prefix, document, documentLength, suffix);
+    }
+
+    /**
+     * Allows the body to be sent again by downloading the document afresh for every send after the first.
+     *
+     * @param reopen Opens a new stream over the same document bytes
+     * @return This body
+     */
+    public Base64DocumentBody withReopen(Callable<InputStream> reopen) {
+        this.reopen = reopen;
+        return this;
+    }
+
+    /**
+     * @return Whether the body can be sent more than once
+     */
+    public boolean isReplayable() {
+        return reopen != null;
+    }
+
+    /**
+     * @return Publisher for the body, with an exact Content-Length when the document length is known
+     */
+    public HttpRequest.BodyPublisher publisher() {
+        HttpRequest.BodyPublisher streaming = HttpRequest.BodyPublishers.ofInputStream(this::openStream);
+        long length = contentLength();
+        return length < 0 ? streaming : HttpRequest.BodyPublishers.fromPublisher(streaming, length);
+    }
+
+    /**
+     * Opens the body for one send: prefix, Base64 document, suffix. Every call after the first re-opens the
+     * document, or fails if the body is not replayable.
+     *
+     * @throws UncheckedIOException if the document cannot be (re-)opened
+     */
+    public InputStream openStream() {
+        InputStream source = document;
+        if (!opened.compareAndSet(false, true)) {
+            if (reopen == null) {
+                throw new UncheckedIOException(new IOException("Document stream was already consumed"));
+            }
+            // Release the previous attempt's stream before downloading again
+            closeQuietly(current);
+            try {
+                source = reopen.call();
+            } catch (Exception e) {
+                throw new UncheckedIOException(new IOException("Could not re-open document: " + e.getMessage(), e));
+            }
+        }
+        current = source;
+        return new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(prefix),
+                new Base64EncodingInputStream(source),
+                new ByteArrayInputStream(suffix))));
+    }
+
+    /**
+     * @return Exact body length, or -1 if the document length is unknown
+     */
+    public long contentLength() {
+        return documentLength < 0 ? -1 : prefix.length + Base64EncodingInputStream.encodedLength(documentLength) + suffix.length;
+    }
+
+    /**
+     * Closes the document stream if the body was never sent.
+     */
+    public void releaseIfUnused() {
+        if (opened.compareAndSet(false, true)) {
+            closeQuietly(document);
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        if (stream == null) return;
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+}
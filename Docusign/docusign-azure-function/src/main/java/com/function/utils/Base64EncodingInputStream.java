@@ -0,0 +1,86 @@
+package com.function.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Reads a raw byte stream and yields its Base64 encoding (no line breaks), encoding one chunk at a time.
+ * The JDK only offers Base64 encoding as an {@code OutputStream} wrapper; this is the pull-side equivalent
+ * needed to feed an HTTP body publisher.
+ */
+public class Base64EncodingInputStream extends InputStream {
+
+    // Multiple of 3 so every chunk but the last encodes without padding
+    private static final int RAW_CHUNK_SIZE = 3 * 4096;
+
+    private final InputStream source;
+    private final Base64.Encoder encoder = Base64.getEncoder();
+    private final byte[] raw = new byte[RAW_CHUNK_SIZE];
+    private final byte[] encoded = new byte[RAW_CHUNK_SIZE / 3 * 4];
+
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    public Base64EncodingInputStream(InputStream source) {
+        this.source = source;
+    }
+
+    /**
+     * @return Length of the Base64 encoding of {@code rawLength} bytes
+     */
+    public static long encodedLength(long rawLength) {
+        return 4 * ((rawLength + 2) / 3);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return encoded[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, limit - position);
+        System.arraycopy(encoded, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private boolean fill() throws IOException {
+        if (position < limit) return true;
+        if (eof) return false;
+
+        // Fill a whole chunk so padding only ever appears at the end of the stream
+        int count = 0;
+        while (count < raw.length) {
+            int read = source.read(raw, count, raw.length - count);
+            if (read == -1) {
+                eof = true;
+                break;
+            }
+            count += read;
+        }
+        if (count == 0) return false;
+
+        limit = count == raw.length
+                ? encoder.encode(raw, encoded)
+                : encoder.encode(Arrays.copyOf(raw, count), encoded);
+        position = 0;
+        return true;
+    }
+}
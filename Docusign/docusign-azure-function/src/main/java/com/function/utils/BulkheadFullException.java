@@ -0,0 +1,16 @@
+package com.function.utils;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a call waited longer than allowed for a concurrency slot on a downstream. The message follows the
+ * {@code "status::body"} convention (503) so callers map it to a retryable response.
+ */
+public class BulkheadFullException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BulkheadFullException(String downstream, long waitedMs) {
+        super("503::{\"error\":\"" + downstream + " is saturated (no slot after " + waitedMs + "ms)\"}");
+    }
+}
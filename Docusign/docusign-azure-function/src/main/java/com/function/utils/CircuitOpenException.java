@@ -0,0 +1,16 @@
+package com.function.utils;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling a downstream whose circuit breaker is open. The message follows the
+ * {@code "status::body"} convention (503) so callers map it to a retryable response.
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(Downstream downstream) {
+        super("503::{\"error\":\"" + downstream.name() + " is unavailable (circuit open)\"}");
+    }
+}
@@ -0,0 +1,244 @@
+package com.function.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Adaptive concurrency limit (bulkhead) for one downstream.
+ *
+ * Calls beyond the current limit queue for a slot, up to {@code maxWaitMs}, and then fail with
+ * {@link BulkheadFullException}. The limit follows AIMD: it grows by about one per round of successful calls while
+ * the slots are in use, and shrinks by {@code backoffRatio} when a call is dropped (I/O error, timeout, 429/503/504)
+ * or takes longer than {@code tolerance} times the long-run average latency, which is the gradient signal that the
+ * downstream is queueing.
+ */
+public class ConcurrencyLimiter {
+
+    private static final Logger logger = Logger.getLogger(ConcurrencyLimiter.class.getName());
+
+    // Weight of a new sample in the long-run latency average
+    private static final double BASELINE_ALPHA = 0.05;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final long maxWaitMs;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double baselineNanos = -1;
+
+    private long acquired;
+    private long rejected;
+    private long drops;
+    private long queuedCalls;
+    private long totalQueueWaitNanos;
+    private long maxQueueWaitNanos;
+
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, double tolerance, double backoffRatio,
+                              long maxWaitMs) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    /**
+     * Waits for a slot, blocking the caller.
+     *
+     * @return Permit to release once the call completes
+     * @throws BulkheadFullException if no slot became free within the maximum wait
+     */
+    public Permit acquire() throws BulkheadFullException, InterruptedException {
+        return acquire(maxWaitMs);
+    }
+
+    /**
+     * Waits for a slot, blocking the caller for at most {@code maxWaitMs}.
+     *
+     * @return Permit to release once the call completes
+     * @throws BulkheadFullException if no slot became free within {@code maxWaitMs}
+     */
+    public Permit acquire(long maxWaitMs) throws BulkheadFullException, InterruptedException {
+        CompletableFuture<Permit> future = acquireAsync(maxWaitMs);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // Hand the slot back if it was granted while we were being interrupted
+            if (!future.cancel(false) && !future.isCompletedExceptionally()) {
+                future.join().release(false);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw (BulkheadFullException) e.getCause();
+        }
+    }
+
+    /**
+     * Requests a slot without blocking.
+     *
+     * @return Future completing with a permit, or exceptionally with {@link BulkheadFullException}
+     */
+    public CompletableFuture<Permit> acquireAsync() {
+        return acquireAsync(maxWaitMs);
+    }
+
+    /**
+     * Requests a slot without blocking, giving up after {@code maxWaitMs}.
+     *
+     * @return Future completing with a permit, or exceptionally with {@link BulkheadFullException}
+     */
+    public CompletableFuture<Permit> acquireAsync(long maxWaitMs) {
+        long requestedAt = System.nanoTime();
+        Waiter waiter = new Waiter(requestedAt);
+        synchronized (this) {
+            if (waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                acquired++;
+                return CompletableFuture.completedFuture(new Permit(requestedAt));
+            }
+            waiters.add(waiter);
+            queuedCalls++;
+        }
+
+        CompletableFuture.delayedExecutor(maxWaitMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (waiter.future.completeExceptionally(new BulkheadFullException(name, maxWaitMs))) {
+                synchronized (this) {
+                    waiters.remove(waiter);
+                    rejected++;
+                }
+                logger.log(Level.WARNING, "[Utils] [Limiter] {0} rejected a call after waiting {1}ms for a slot",
+                        new Object[]{name, String.valueOf(maxWaitMs)});
+            }
+        });
+        return waiter.future;
+    }
+
+    /**
+     * @return Longest wait for a slot when the caller does not give one
+     */
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limit", (int) limit);
+        stats.put("inFlight", inFlight);
+        stats.put("queued", waiters.size());
+        stats.put("acquired", acquired);
+        stats.put("rejected", rejected);
+        stats.put("drops", drops);
+        stats.put("queuedCalls", queuedCalls);
+        stats.put("avgQueueWaitMs", queuedCalls == 0 ? 0.0 : totalQueueWaitNanos / 1e6 / queuedCalls);
+        stats.put("maxQueueWaitMs", maxQueueWaitNanos / 1e6);
+        stats.put("baselineLatencyMs", baselineNanos < 0 ? 0.0 : baselineNanos / 1e6);
+        return stats;
+    }
+
+    private void onRelease(long latencyNanos, boolean dropped) {
+        synchronized (this) {
+            inFlight--;
+            if (dropped) {
+                drops++;
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else {
+                if (baselineNanos < 0) {
+                    baselineNanos = latencyNanos;
+                } else if (latencyNanos > tolerance * baselineNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else if (inFlight + 1 >= limit / 2) {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+                baselineNanos += BASELINE_ALPHA * (latencyNanos - baselineNanos);
+            }
+        }
+        dispatch();
+    }
+
+    // Completes waiting futures outside the lock, since completing one runs the caller's dependent stages
+    private void dispatch() {
+        while (true) {
+            List<Waiter> granted = new ArrayList<>();
+            synchronized (this) {
+                while (!waiters.isEmpty() && inFlight < (int) limit) {
+                    granted.add(waiters.poll());
+                    inFlight++;
+                }
+            }
+            if (granted.isEmpty()) return;
+
+            boolean returned = false;
+            for (Waiter waiter : granted) {
+                long now = System.nanoTime();
+                if (waiter.future.complete(new Permit(waiter.requestedAt))) {
+                    synchronized (this) {
+                        acquired++;
+                        long waited = now - waiter.requestedAt;
+                        totalQueueWaitNanos += waited;
+                        maxQueueWaitNanos = Math.max(maxQueueWaitNanos, waited);
+                    }
+                } else {
+                    // Timed out in the meantime: give its slot to the next waiter
+                    synchronized (this) {
+                        inFlight--;
+                    }
+                    returned = true;
+                }
+            }
+            if (!returned) return;
+        }
+    }
+
+    private static final class Waiter {
+        private final long requestedAt;
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        private Waiter(long requestedAt) {
+            this.requestedAt = requestedAt;
+        }
+    }
+
+    /**
+     * A held slot. Release exactly once, reporting whether the call was dropped by the downstream.
+     */
+    public final class Permit {
+        private final long grantedAt = System.nanoTime();
+        private final long requestedAt;
+        private boolean released;
+
+        private Permit(long requestedAt) {
+            this.requestedAt = requestedAt;
+        }
+
+        /**
+         * @return Time spent queueing for this slot, in milliseconds
+         */
+        public long getQueueWaitMs() {
+            return TimeUnit.NANOSECONDS.toMillis(grantedAt - requestedAt);
+        }
+
+        public void release(boolean dropped) {
+            synchronized (this) {
+                if (released) return;
+                released = true;
+            }
+            onRelease(System.nanoTime() - grantedAt, dropped);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.function.utils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces bursts of Connect events for the same envelope. DocuSign often sends several notifications for one
+ * envelope within seconds; each event waits for a short window, and only the newest one by TimeGenerated is
+ * processed. Older events arriving in the meantime, or shortly after the newest was let through, are superseded
+ * and can be answered without being parsed.
+ *
+ * TimeGenerated values are compared as ISO-8601 strings, which orders them correctly as DocuSign always sends
+ * them in the same format.
+ *
+ * Settings: CONNECT_COALESCE_ENABLED (default false) and CONNECT_COALESCE_WINDOW_MS (default 2000).
+ */
+public class ConnectEventCoalescer {
+
+    private static final Logger logger = Logger.getLogger(ConnectEventCoalescer.class.getName());
+
+    private static final ConnectEventCoalescer INSTANCE = new ConnectEventCoalescer(
+            "true".equalsIgnoreCase(System.getenv("CONNECT_COALESCE_ENABLED")),
+            readLong("CONNECT_COALESCE_WINDOW_MS", 2000));
+
+    private final boolean enabled;
+    private final long windowMs;
+    private final Executor afterWindow;
+
+    // Guarded by itself
+    private final Map<String, Slot> slots = new HashMap<>();
+
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+
+    public ConnectEventCoalescer(boolean enabled, long windowMs) {
+        this.enabled = enabled;
+        this.windowMs = Math.max(0, windowMs);
+        this.afterWindow = CompletableFuture.delayedExecutor(this.windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static ConnectEventCoalescer getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Holds the event for the coalescing window.
+     *
+     * @param envelopeId    Envelope the event belongs to
+     * @param timeGenerated When DocuSign generated the event
+     * @return Future completing with true once the window has passed and the event is still the newest for its
+     * envelope, or with false as soon as a newer event supersedes it
+     */
+    public CompletableFuture<Boolean> awaitNewest(String envelopeId, String timeGenerated) {
+        if (!enabled || envelopeId == null || timeGenerated == null) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        CompletableFuture<Boolean> replaced = null;
+        String newest = timeGenerated;
+        Slot slot;
+        synchronized (slots) {
+            Slot current = slots.get(envelopeId);
+            if (current != null && timeGenerated.compareTo(current.timeGenerated) < 0) {
+                // Step 1: A newer event is waiting or was just let through
+                newest = current.timeGenerated;
+                slot = null;
+            } else {
+                // Step 2: This is the newest so far; it replaces whichever event was waiting
+                if (current != null && current.waiting != null) replaced = current.waiting;
+                slot = new Slot(timeGenerated, result);
+                slots.put(envelopeId, slot);
+            }
+        }
+
+        if (slot == null) {
+            supersede(result, envelopeId, newest);
+            return result;
+        }
+        if (replaced != null) {
+            supersede(replaced, envelopeId, timeGenerated);
+        }
+
+        // Step 3: Let the newest event through after the window, and remember it for one more window so that
+        // stragglers older than it are still superseded
+        afterWindow.execute(() -> {
+            boolean stillNewest;
+            synchronized (slots) {
+                stillNewest = slots.get(envelopeId) == slot;
+                if (stillNewest) slot.waiting = null;
+            }
+            if (stillNewest) {
+                released.incrementAndGet();
+                result.complete(true);
+                afterWindow.execute(() -> {
+                    synchronized (slots) {
+                        slots.remove(envelopeId, slot);
+                    }
+                });
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Events let through and events superseded, plus envelopes currently tracked.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("windowMillis", windowMs);
+        stats.put("released", released.get());
+        stats.put("superseded", superseded.get());
+        synchronized (slots) {
+            stats.put("trackedEnvelopes", slots.size());
+        }
+        return stats;
+    }
+
+    private void supersede(CompletableFuture<Boolean> event, String envelopeId, String newerThan) {
+        superseded.incrementAndGet();
+        logger.log(Level.INFO, "[Utils] [Coalesce] Event for envelope {0} superseded (newest TimeGenerated {1})",
+                new Object[]{envelopeId, newerThan});
+        event.complete(false);
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [Coalesce] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Newest event seen for one envelope; {@code waiting} is cleared once it has been let through.
+     */
+    private static final class Slot {
+        private final String timeGenerated;
+        private CompletableFuture<Boolean> waiting;
+
+        private Slot(String timeGenerated, CompletableFuture<Boolean> waiting) {
+            this.timeGenerated = timeGenerated;
+            this.waiting = waiting;
+        }
+    }
+}
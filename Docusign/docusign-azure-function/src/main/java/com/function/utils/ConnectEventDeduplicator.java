@@ -0,0 +1,203 @@
+package com.function.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Makes Connect processing idempotent per (envelopeId, status, timeGenerated).
+ *
+ * A Bloom filter answers "never seen" without touching the {@link ConnectEventStore}; only possible duplicates are
+ * looked up. Events already archived return their stored result immediately, duplicates arriving while the first
+ * delivery is still running share its result, and a delivery being processed by another instance is answered
+ * with 503 and a Retry-After so DocuSign retries it later. Only results that finished the upload (2xx other than
+ * 202) are stored, so failed events and uploads that were merely queued are still reprocessed.
+ *
+ * Settings: CONNECT_DEDUPE_ENABLED (default false), CONNECT_DEDUPE_EXPECTED_EVENTS (default 100000) and
+ * CONNECT_DEDUPE_FALSE_POSITIVE_RATE (default 0.01) size the filter, CONNECT_DEDUPE_CLAIM_SECONDS (default 600)
+ * bounds how long a claim outlives a crashed instance.
+ */
+public class ConnectEventDeduplicator {
+
+    private static final Logger logger = Logger.getLogger(ConnectEventDeduplicator.class.getName());
+
+    private static final int IN_PROGRESS_RETRY_AFTER_SECONDS = 30;
+
+    static final String IN_PROGRESS_RESPONSE = "{\"statusCode\": 503, \"retryAfterSeconds\": " + IN_PROGRESS_RETRY_AFTER_SECONDS
+            + ", \"response\": {\"error\":\"Envelope event is already being processed\"}}";
+
+    private static final Pattern STATUS_CODE = Pattern.compile("^\\s*\\{\\s*\"statusCode\"\\s*:\\s*(\\d{3})");
+
+    private static final ConnectEventDeduplicator INSTANCE = fromEnvironment();
+
+    private final boolean enabled;
+    private final ConnectEventStore store;
+    private final BloomFilter filter;
+    private final long claimMillis;
+    private final String owner = UUID.randomUUID().toString();
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong filterNegatives = new AtomicLong();
+    private final AtomicLong storeLookups = new AtomicLong();
+    private final AtomicLong duplicatesAnswered = new AtomicLong();
+    private final AtomicLong duplicatesCoalesced = new AtomicLong();
+    private final AtomicLong claimsRejected = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+
+    public ConnectEventDeduplicator(boolean enabled, ConnectEventStore store, long expectedEvents, double falsePositiveRate,
+                                    long claimMillis) {
+        this.enabled = enabled;
+        this.store = store;
+        this.filter = new BloomFilter(expectedEvents, falsePositiveRate);
+        this.claimMillis = claimMillis;
+        if (enabled) {
+            store.forEachKey(filter::put);
+        }
+    }
+
+    public static ConnectEventDeduplicator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return Idempotency key for the event, or null if any part is missing (such events are not deduplicated)
+     */
+    public static String keyOf(String envelopeId, String status, String timeGenerated) {
+        if (isBlank(envelopeId) || isBlank(status) || isBlank(timeGenerated)) return null;
+        return envelopeId.trim() + "|" + status.trim().toLowerCase() + "|" + timeGenerated.trim();
+    }
+
+    /**
+     * Runs {@code work} for the event unless it was already archived or is being processed.
+     *
+     * @param key  Key from {@link #keyOf}, or null to always run the work
+     * @param work Processes the event and produces the response
+     * @return Future completing with the stored, shared or freshly produced response
+     */
+    public CompletableFuture<String> process(String key, Supplier<CompletableFuture<String>> work) {
+        if (!enabled || key == null) {
+            return work.get();
+        }
+
+        String archived = lookup(key);
+        if (archived != null) {
+            duplicatesAnswered.incrementAndGet();
+            logger.log(Level.INFO, "[Utils] [Dedupe] Event {0} already archived, returning stored result", key);
+            return CompletableFuture.completedFuture(archived);
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, result);
+        if (existing != null) {
+            duplicatesCoalesced.incrementAndGet();
+            logger.log(Level.INFO, "[Utils] [Dedupe] Event {0} is already being processed here, sharing its result", key);
+            return existing;
+        }
+
+        if (!store.tryClaim(key, owner, claimMillis)) {
+            inFlight.remove(key, result);
+            claimsRejected.incrementAndGet();
+            logger.log(Level.INFO, "[Utils] [Dedupe] Event {0} is being processed by another instance", key);
+            result.complete(IN_PROGRESS_RESPONSE);
+            return result;
+        }
+
+        CompletableFuture<String> processing;
+        try {
+            processing = work.get();
+        } catch (RuntimeException e) {
+            processing = CompletableFuture.failedFuture(e);
+        }
+        processing.whenComplete((response, error) -> {
+            try {
+                if (error == null && isSuccess(response)) {
+                    store.put(key, response);
+                    filter.put(key);
+                    recorded.incrementAndGet();
+                }
+            } finally {
+                store.release(key, owner);
+                inFlight.remove(key, result);
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Cheap pre-check, so work that only a new event needs can be skipped for likely redeliveries. Never consults
+     * the store; false positives are possible, false negatives are not.
+     *
+     * @return Whether the event is being processed here or may already be archived
+     */
+    public boolean mightBeDuplicate(String key) {
+        return enabled && key != null && (inFlight.containsKey(key) || filter.mightContain(key));
+    }
+
+    /**
+     * Snapshot of the dedupe counters, suitable for logging or returning from a diagnostics endpoint.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("filterNegatives", filterNegatives.get());
+        stats.put("storeLookups", storeLookups.get());
+        stats.put("duplicatesAnswered", duplicatesAnswered.get());
+        stats.put("duplicatesCoalesced", duplicatesCoalesced.get());
+        stats.put("claimsRejected", claimsRejected.get());
+        stats.put("recorded", recorded.get());
+        return stats;
+    }
+
+    private String lookup(String key) {
+        if (!filter.mightContain(key)) {
+            filterNegatives.incrementAndGet();
+            return null;
+        }
+        storeLookups.incrementAndGet();
+        return store.get(key);
+    }
+
+    // Repository responses carry the downstream status as a leading "statusCode" field; 202 means the upload was
+    // only queued in the outbox and may still fail, so the event is not final yet
+    static boolean isSuccess(String response) {
+        if (response == null) return false;
+        Matcher matcher = STATUS_CODE.matcher(response);
+        if (!matcher.find()) return false;
+        int statusCode = Integer.parseInt(matcher.group(1));
+        return statusCode >= 200 && statusCode < 300 && statusCode != 202;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static ConnectEventDeduplicator fromEnvironment() {
+        boolean enabled = "true".equalsIgnoreCase(System.getenv("CONNECT_DEDUPE_ENABLED"));
+        double falsePositiveRate = 0.01;
+        String rate = System.getenv("CONNECT_DEDUPE_FALSE_POSITIVE_RATE");
+        if (rate != null && !rate.isEmpty()) {
+            try {
+                falsePositiveRate = Double.parseDouble(rate.trim());
+            } catch (NumberFormatException e) {
+                logger.log(Level.WARNING, "[Utils] [Dedupe] Ignoring invalid CONNECT_DEDUPE_FALSE_POSITIVE_RATE: {0}", rate);
+            }
+        }
+        return new ConnectEventDeduplicator(enabled,
+                enabled ? ConnectEventStore.fromEnvironment() : new InMemoryConnectEventStore(1, 0),
+                InMemoryConnectEventStore.readLong("CONNECT_DEDUPE_EXPECTED_EVENTS", 100000),
+                falsePositiveRate,
+                InMemoryConnectEventStore.readLong("CONNECT_DEDUPE_CLAIM_SECONDS", 600) * 1000);
+    }
+}
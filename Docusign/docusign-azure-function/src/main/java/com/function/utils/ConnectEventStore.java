@@ -0,0 +1,62 @@
+package com.function.utils;
+
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Storage for the results of Connect events that were already delivered to their repository, keyed by
+ * (envelopeId, status, timeGenerated), so redelivered events can be answered without uploading again.
+ *
+ * Claims make sure only one instance processes a given event at a time; a claim expires on its own after
+ * {@code leaseMillis} so a crashed holder cannot block the event forever.
+ */
+public interface ConnectEventStore {
+
+    /**
+     * @return The stored result for the event, or null if it has not been archived
+     */
+    String get(String key);
+
+    /**
+     * Records the result of a successfully archived event.
+     */
+    void put(String key, String result);
+
+    /**
+     * Tries to claim the event for processing.
+     *
+     * @return true if the caller now holds the claim
+     */
+    boolean tryClaim(String key, String owner, long leaseMillis);
+
+    /**
+     * Releases the claim if it is still held by {@code owner}.
+     */
+    void release(String key, String owner);
+
+    /**
+     * Calls {@code consumer} with every stored key; used to warm the Bloom filter on start-up.
+     */
+    void forEachKey(Consumer<String> consumer);
+
+    /**
+     * Builds the store selected by env CONNECT_DEDUPE_STORE: {@code memory} (default) or {@code file}.
+     * The file store uses CONNECT_DEDUPE_STORE_DIR.
+     */
+    static ConnectEventStore fromEnvironment() {
+        Logger logger = Logger.getLogger(ConnectEventStore.class.getName());
+        String type = System.getenv("CONNECT_DEDUPE_STORE");
+
+        if ("file".equalsIgnoreCase(type)) {
+            try {
+                return FileConnectEventStore.fromEnvironment();
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "[Utils] [Dedupe] File event store unavailable, using in-memory store: {0}", e.getMessage());
+            }
+        } else if (type != null && !type.isEmpty() && !"memory".equalsIgnoreCase(type)) {
+            logger.log(Level.WARNING, "[Utils] [Dedupe] Unknown CONNECT_DEDUPE_STORE {0}, using in-memory store", type);
+        }
+        return InMemoryConnectEventStore.fromEnvironment();
+    }
+}
@@ -0,0 +1,101 @@
+package com.function.utils;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap lookups on raw DocuSign Connect XML, used to start work (such as token acquisition) before the full
+ * XML-to-JSON conversion has finished. Results are hints only; the parsed event stays authoritative.
+ */
+public class ConnectXmlScanner {
+
+    private static final Pattern CUSTOM_FIELD = Pattern.compile(
+            "<(?:\\w+:)?CustomField>(.*?)</(?:\\w+:)?CustomField>", Pattern.DOTALL);
+    private static final Pattern NAME = Pattern.compile("<(?:\\w+:)?Name>\\s*(.*?)\\s*</(?:\\w+:)?Name>", Pattern.DOTALL);
+    private static final Pattern VALUE = Pattern.compile("<(?:\\w+:)?Value>\\s*(.*?)\\s*</(?:\\w+:)?Value>", Pattern.DOTALL);
+
+    private static final Pattern ENVELOPE_STATUS = Pattern.compile(
+            "<(?:\\w+:)?EnvelopeStatus>(.*?)</(?:\\w+:)?EnvelopeStatus>", Pattern.DOTALL);
+    // Recipients carry their own Status and TimeGenerated, so they are cut out before looking for the envelope's
+    private static final Pattern RECIPIENT_STATUSES = Pattern.compile(
+            "<(?:\\w+:)?RecipientStatuses>.*?</(?:\\w+:)?RecipientStatuses>", Pattern.DOTALL);
+    private static final Pattern ENVELOPE_ID = element("EnvelopeID");
+    private static final Pattern STATUS = element("Status");
+    private static final Pattern TIME_GENERATED = element("TimeGenerated");
+
+    /**
+     * @param xml  Raw Connect XML
+     * @param name Custom field name, matched case-insensitively
+     * @return The field's value, or null if it is not present
+     */
+    public static String findCustomFieldValue(String xml, String name) {
+        if (xml == null || name == null) return null;
+
+        Matcher field = CUSTOM_FIELD.matcher(xml);
+        while (field.find()) {
+            String body = field.group(1);
+            Matcher fieldName = NAME.matcher(body);
+            if (fieldName.find() && name.equalsIgnoreCase(fieldName.group(1))) {
+                Matcher value = VALUE.matcher(body);
+                return value.find() ? value.group(1) : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the envelope-level EnvelopeID, Status and TimeGenerated without converting the XML.
+     *
+     * @param xml Raw Connect XML
+     * @return The summary, or null if the EnvelopeStatus block or any of the three fields is missing
+     */
+    public static EnvelopeSummary findEnvelopeSummary(String xml) {
+        if (xml == null) return null;
+
+        Matcher envelope = ENVELOPE_STATUS.matcher(xml);
+        if (!envelope.find()) return null;
+        String body = RECIPIENT_STATUSES.matcher(envelope.group(1)).replaceAll("");
+
+        String envelopeId = find(ENVELOPE_ID, body);
+        String status = find(STATUS, body);
+        String timeGenerated = find(TIME_GENERATED, body);
+        if (envelopeId == null || status == null || timeGenerated == null) return null;
+        return new EnvelopeSummary(envelopeId, status, timeGenerated);
+    }
+
+    private static String find(Pattern pattern, String xml) {
+        Matcher matcher = pattern.matcher(xml);
+        return matcher.find() && !matcher.group(1).isEmpty() ? matcher.group(1) : null;
+    }
+
+    private static Pattern element(String name) {
+        return Pattern.compile("<(?:\\w+:)?" + name + ">\\s*(.*?)\\s*</(?:\\w+:)?" + name + ">", Pattern.DOTALL);
+    }
+
+    /**
+     * Envelope-level fields of a Connect notification.
+     */
+    public static final class EnvelopeSummary {
+        private final String envelopeId;
+        private final String status;
+        private final String timeGenerated;
+
+        private EnvelopeSummary(String envelopeId, String status, String timeGenerated) {
+            this.envelopeId = envelopeId;
+            this.status = status;
+            this.timeGenerated = timeGenerated;
+        }
+
+        public String getEnvelopeId() {
+            return envelopeId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getTimeGenerated() {
+            return timeGenerated;
+        }
+    }
+}
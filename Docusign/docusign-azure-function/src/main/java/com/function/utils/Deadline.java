@@ -0,0 +1,150 @@
+package com.function.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Point in time by which one event's work must be finished, derived from the function's time budget.
+ *
+ * The deadline is made current for the calling thread with {@link #enter()} (or for each pipeline stage by
+ * {@link StageTimings}); {@link HttpClientRegistry} then bounds every outbound request by the remaining time,
+ * {@link Resilience} stops retrying once it has run out, and {@link #guard(InputStream)} closes streamed
+ * bodies that are still being read when it passes.
+ *
+ * The budget is FUNCTION_TIMEOUT_MS (default 230000, the Azure HTTP trigger limit) minus
+ * DEADLINE_SAFETY_MARGIN_MS (default 10000), which leaves time to answer the caller.
+ */
+public final class Deadline {
+
+    private static final Logger logger = Logger.getLogger(Deadline.class.getName());
+
+    private static final long FUNCTION_BUDGET_MS =
+            readLong("FUNCTION_TIMEOUT_MS", 230000) - readLong("DEADLINE_SAFETY_MARGIN_MS", 10000);
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * @return Deadline for an event starting now
+     */
+    public static Deadline forFunction() {
+        return after(Math.max(1, FUNCTION_BUDGET_MS));
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * @return The calling thread's deadline, or null outside any event
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Makes this the calling thread's deadline until the returned scope is closed.
+     */
+    public Scope enter() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Bounds a configured timeout by the current deadline.
+     *
+     * @param timeout Configured timeout
+     * @return The smaller of the timeout and the time left
+     * @throws DeadlineExceededException if the current deadline has already passed
+     */
+    public static Duration bound(Duration timeout) throws DeadlineExceededException {
+        Deadline deadline = current();
+        return deadline == null ? timeout : deadline.cap(timeout);
+    }
+
+    /**
+     * Bounds a configured timeout by this deadline, for work that runs after the caller's thread has moved on.
+     *
+     * @param timeout Configured timeout
+     * @return The smaller of the timeout and the time left
+     * @throws DeadlineExceededException if this deadline has already passed
+     */
+    public Duration cap(Duration timeout) throws DeadlineExceededException {
+        long remaining = remainingMillis();
+        if (remaining <= 0) throw new DeadlineExceededException();
+        return timeout.toMillis() <= remaining ? timeout : Duration.ofMillis(remaining);
+    }
+
+    /**
+     * Closes the stream if it is still open when the current deadline passes, which unblocks a read stuck on a
+     * hung connection. Returns the stream unchanged outside any event.
+     */
+    public static InputStream guard(InputStream stream) {
+        Deadline deadline = current();
+        if (deadline == null) return stream;
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture.delayedExecutor(deadline.remainingMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            if (done.complete(null)) {
+                logger.warning("[Utils] [Deadline] Deadline passed while reading a response body, closing it");
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                    // The reader sees the stream as closed either way
+                }
+            }
+        });
+        return new FilterInputStream(stream) {
+            @Override
+            public void close() throws IOException {
+                done.complete(null);
+                super.close();
+            }
+        };
+    }
+
+    /**
+     * Restores the previous deadline; never throws.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [Deadline] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.function.utils;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of starting an outbound call once the event's {@link Deadline} has passed. The message follows
+ * the {@code "status::body"} convention so it surfaces as a 504.
+ */
+public class DeadlineExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException() {
+        super("504::{\"error\":\"Deadline exceeded before the call could be made\"}");
+    }
+}
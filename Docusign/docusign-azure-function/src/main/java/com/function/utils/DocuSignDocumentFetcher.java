@@ -1,22 +1,44 @@
 package com.function.utils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
+import java.net.URLEncoder;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
 public class DocuSignDocumentFetcher {
 
     private static final Logger logger = Logger.getLogger(DocuSignDocumentFetcher.class.getName());
 
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+
+    // Names the downloads are accounted under in HttpCompression.getStats()
+    private static final String DOCUMENT_ENDPOINT = "DOCUSIGN document";
+    private static final String DOCUMENT_LIST_ENDPOINT = "DOCUSIGN document list";
+
     /**
      * Downloads and base64-encodes the combined document from DocuSign using the standard Logic App behavior.
      * Reusable across PRS, HR, and Tax flows.
      *
-     * @param docusignApiHost DocuSign API host (e.g., DEMO.DOCUSIGN.NET)
+     * The PDF is streamed from the response straight into the Base64 encoder, so only the encoded text is held
+     * in memory; the raw response body is materialised only for error responses. Repeated requests for the same
+     * envelope are served from the {@link DocumentCache}.
+     *
      * @param accountId       DocuSign account ID
      * @param envelopeId      Envelope ID to fetch the signed document for
      * @param accessToken     Bearer token for authorization
@@ -25,24 +47,150 @@ public class DocuSignDocumentFetcher {
      * @throws Exception if the document could not be downloaded
      */
     public static String downloadAndEncodeCombinedDocument(String accountId, String envelopeId, String accessToken, String correlationId) throws Exception {
+        return downloadAndEncodeDocument(accountId, envelopeId, accessToken, correlationId, DocumentSelection.COMBINED);
+    }
+
+    /**
+     * Variant of {@link #downloadAndEncodeCombinedDocument} for the repository's {@link DocumentSelection}.
+     *
+     * @param accountId     DocuSign account ID
+     * @param envelopeId    Envelope ID to fetch the signed document for
+     * @param accessToken   Bearer token for authorization
+     * @param correlationId Correlation ID for logging
+     * @param selection     Which documents to download
+     * @return Base64-encoded PDF as String
+     * @throws Exception if the document could not be downloaded
+     */
+    public static String downloadAndEncodeDocument(String accountId, String envelopeId, String accessToken, String correlationId,
+                                                   DocumentSelection selection) throws Exception {
         logger.log(Level.INFO, "[Utils] [DocDownload] Start: Preparing HTTP GET to fetch combined signed document");
 
         try {
-        logger.info("[Utils] [DocDownload] Start: Preparing HTTP GET to fetch combined signed document");
- 
+            DocumentCache.Document document = openDocumentSource(accountId, envelopeId, accessToken, correlationId, selection);
+
+            // ✅ Size the buffer for the encoded document up front when the length is known
+            long contentLength = document.getLength();
+            int initialSize = contentLength > 0 && contentLength < Integer.MAX_VALUE / 2
+                    ? (int) (4 * ((contentLength + 2) / 3))
+                    : COPY_BUFFER_SIZE;
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(initialSize);
+
+            long rawBytes;
+            try (InputStream body = document.getInputStream()) {
+                rawBytes = encodeBase64(body, encoded);
+            }
+
+            logger.info("[Utils] [DocDownload] Success: Document base64 encoded. Size: " + rawBytes + " bytes");
+            return encoded.toString(StandardCharsets.US_ASCII);
+
+        } catch (Exception ex) {
+            logger.severe("[Utils] [DocDownload] Exception occurred while fetching document: " + ex.getMessage());
+            throw new Exception(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Opens the repository's {@link DocumentSelection} through the {@link DocumentCache}: the combined document with
+     * or without the certificate, or a single document fetched directly when the envelope has only one document the
+     * repository needs. A cached copy is read from local disk, otherwise the download is cached as the caller reads
+     * it. The caller must close the stream.
+     *
+     * @param accountId     DocuSign account ID
+     * @param envelopeId    Envelope ID to fetch the signed document for
+     * @param accessToken   Bearer token for authorization
+     * @param correlationId Correlation ID for logging
+     * @param selection     Which documents to download
+     * @return Stream over the PDF bytes and its length (-1 if unknown)
+     * @throws Exception if the document could not be downloaded; the message follows the {@code "status::body"} convention
+     */
+    public static DocumentCache.Document openDocumentSource(String accountId, String envelopeId, String accessToken,
+                                                            String correlationId, DocumentSelection selection) throws Exception {
+        DocumentCache.Document document = DocumentCache.getInstance().open(accountId, envelopeId, selection.getCacheVariant(), () -> {
+            HttpResponse<InputStream> response;
+            try {
+                String documentUrl = documentsUrl(accountId, envelopeId) + documentPath(accountId, envelopeId, accessToken, selection);
+                if (ResumableDownload.isEnabled()) {
+                    // Checkpointed to disk, so a dropped connection resumes instead of starting over
+                    return ResumableDownload.download(accountId, documentUrl, accessToken);
+                }
+                response = sendDocumentRequest(accountId, documentUrl, accessToken);
+            } catch (Exception ex) {
+                logger.severe("[Utils] [DocDownload] Exception occurred while fetching document: " + ex.getMessage());
+                throw new Exception(ex.getMessage(), ex);
+            }
+            // A download still running when the event's deadline passes is cut off rather than left hanging
+            return new DocumentCache.Document(Deadline.guard(response.body()), HttpCompression.decodedLength(response));
+        });
+        if (document.isFromCache()) {
+            logger.info("[Utils] [DocDownload] Serving envelope " + envelopeId + " from the document cache");
+        }
+        // Open documents count towards the Connect endpoint's in-flight bytes
+        return AdmissionController.getInstance().track(document);
+    }
+
+    /**
+     * Resolves the path below {@code /documents} for the selection. Per-document mode lists the envelope's documents
+     * and fetches a single needed document directly; when several are needed DocuSign merges them, since the
+     * repositories take one PDF.
+     */
+    private static String documentPath(String accountId, String envelopeId, String accessToken, DocumentSelection selection) throws Exception {
+        String combined = selection.isIncludeCertificate() ? "/combined" : "/combined?certificate=false";
+        if (!selection.isPerDocument()) return combined;
+
+        List<String> needed = new ArrayList<>();
+        for (JsonElement element : listDocuments(accountId, envelopeId, accessToken)) {
+            JsonObject document = element.getAsJsonObject();
+            boolean certificate = "summary".equalsIgnoreCase(getString(document, "type"));
+            if (!certificate || selection.isIncludeCertificate()) {
+                needed.add(getString(document, "documentId"));
+            }
+        }
+        logger.info("[Utils] [DocDownload] Envelope " + envelopeId + " needs " + needed.size() + " document(s): " + needed);
+
+        return needed.size() == 1 && needed.get(0) != null
+                ? "/" + URLEncoder.encode(needed.get(0), StandardCharsets.UTF_8)
+                : combined;
+    }
+
+    private static JsonArray listDocuments(String accountId, String envelopeId, String accessToken) throws Exception {
+        HttpRequest listRequest = HttpCompression.acceptCompressed(Downstream.DOCUSIGN,
+                        HttpClientRegistry.newRequest(Downstream.DOCUSIGN, new URI(documentsUrl(accountId, envelopeId))))
+                .header("Authorization", "Bearer " + accessToken)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        HttpResponse<String> listResponse = DocusignRateLimiter.getInstance().send(accountId, DocusignRateLimiter.Priority.ARCHIVAL,
+                listRequest, HttpCompression.ofString(DOCUMENT_LIST_ENDPOINT), true);
+        if (listResponse.statusCode() != 200) {
+            logger.severe("[Utils] [DocDownload] Failed to list documents. HTTP " + listResponse.statusCode());
+            throw new Exception(listResponse.statusCode() + "::" + listResponse.body().trim());
+        }
+        JsonObject json = JsonParser.parseString(listResponse.body()).getAsJsonObject();
+        return json.has("envelopeDocuments") ? json.getAsJsonArray("envelopeDocuments") : new JsonArray();
+    }
+
+    private static String getString(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    /**
+     * @return URL of the envelope's {@code /documents} collection
+     */
+    private static String documentsUrl(String accountId, String envelopeId) throws Exception {
         String docusignApiHost = System.getenv("DOCUSIGN_HTTP_HOST");
         String docusignApiPort = System.getenv("DOCUSIGN_HTTP_PORT");
         String docusignApiBasepath = System.getenv("DOCUSIGN_BASEPATH");
         String docusignRelativeApiPath = System.getenv("DOCUSIGN_RELATIVE_API_PATH");
- 
+
         if (docusignApiHost == null || docusignApiPort == null || docusignApiBasepath == null || docusignRelativeApiPath == null) {
             logger.severe("[Utils] [DocDownload] Missing environment variables for DocuSign API");
             throw new Exception("Missing environment variables for DocuSign API");
         }
- 
-        // ✅ Build final document URL
-        String documentUrl = String.format(
-            "https://%s:%s%s%s/%s/envelopes/%s/documents/combined",
+
+        return String.format(
+            "https://%s:%s%s%s/%s/envelopes/%s/documents",
             docusignApiHost,
             docusignApiPort,
             docusignApiBasepath,
@@ -50,39 +198,78 @@ public class DocuSignDocumentFetcher {
             accountId,
             envelopeId
         );
- 
-        logger.info("[Utils] [DocDownload] Request URL: " + documentUrl);
- 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest docRequest = HttpRequest.newBuilder()
-                .uri(new URI(documentUrl))
+    }
+
+    /**
+     * Starts the GET for a document with the headers every document download sends, including the ranged
+     * requests of {@link ResumableDownload}.
+     */
+    static HttpRequest.Builder documentRequest(URI documentUri, String accessToken) {
+        return HttpClientRegistry.newRequest(Downstream.DOCUSIGN, documentUri)
                 .header("Authorization", "Bearer " + accessToken)
                 .header("Content-Transfer-Encoding", "base64")
-                .GET()
+                .GET();
+    }
+
+    /**
+     * Sends the GET for a document and checks the status. On success the body stream is left unread;
+     * on failure the error body is read (it is small) and thrown as {@code "status::body"}. An open circuit fails
+     * fast as {@code "503::..."}.
+     */
+    private static HttpResponse<InputStream> sendDocumentRequest(String accountId, String documentUrl, String accessToken) throws Exception {
+        logger.info("[Utils] [DocDownload] Start: Preparing HTTP GET to fetch signed document");
+        logger.info("[Utils] [DocDownload] Request URL: " + documentUrl);
+
+        HttpRequest docRequest = HttpCompression.acceptCompressed(Downstream.DOCUSIGN, documentRequest(new URI(documentUrl), accessToken))
                 .build();
- 
-        HttpResponse<byte[]> docResponse = client.send(docRequest, HttpResponse.BodyHandlers.ofByteArray());
- 
+
+        // GET is idempotent: transient failures are retried and a failing DocuSign trips its circuit breaker
+        HttpResponse<InputStream> docResponse = DocusignRateLimiter.getInstance().send(accountId, DocusignRateLimiter.Priority.ARCHIVAL,
+                docRequest, HttpCompression.ofInputStream(DOCUMENT_ENDPOINT), true);
+
         int statusCode = docResponse.statusCode();
-        String responseBody = new String(docResponse.body());
- 
         logger.info("[Utils] [DocDownload] Response status: " + statusCode);
- 
+
         if (statusCode != 200) {
+            String responseBody;
+            try (InputStream errorBody = docResponse.body()) {
+                responseBody = new String(errorBody.readAllBytes(), StandardCharsets.UTF_8);
+            }
             logger.severe("[Utils] [DocDownload] Failed to download document. HTTP " + statusCode);
             logger.severe("[Utils] [DocDownload] Error Response Body:\n" + responseBody);
             // ✅ Return original response JSON (assuming DocuSign sends JSON)
-            throw new Exception(statusCode +"::"+ responseBody.trim());
+            throw new Exception(statusCode + "::" + responseBody.trim());
         }
- 
-        String base64File = Base64.getEncoder().encodeToString(docResponse.body());
-        logger.info("[Utils] [DocDownload] Success: Document base64 encoded. Size: " + docResponse.body().length + " bytes");
- 
-        return base64File;
- 
-    } catch (Exception ex) {
-        logger.severe("[Utils] [DocDownload] Exception occurred while fetching document: " + ex.getMessage());
-        throw new Exception(ex.getMessage(), ex);
+
+        return docResponse;
     }
+
+    /**
+     * Copies {@code in} through a Base64 encoder into {@code out}, leaving {@code out} open.
+     *
+     * @return Number of raw bytes read from {@code in}
+     */
+    private static long encodeBase64(InputStream in, OutputStream out) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        // Closing the wrapper flushes the final quantum and padding; the shield keeps the caller's stream open.
+        try (OutputStream encoder = Base64.getEncoder().wrap(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.flush();
+            }
+        })) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                encoder.write(buffer, 0, read);
+                total += read;
+            }
+        }
+        return total;
     }
-} 
\ No newline at end of file
+}
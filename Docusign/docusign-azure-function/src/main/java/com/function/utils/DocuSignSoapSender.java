@@ -1,17 +1,31 @@
 package com.function.utils;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.function.payloads.RendSoapEnvelope;
+
 public class DocuSignSoapSender {
 
     private static final Logger logger = Logger.getLogger(DocuSignSoapSender.class.getName());
 
+    // Names the uploads are accounted under in HttpCompression.getStats()
+    private static final String REND_ENDPOINT = "REND SOAP";
+    private static final String TAX_ENDPOINT = "MYHRSS Tax";
+
+    private static final Map<String, String> REND_HEADERS = Map.of("Content-Type", "application/xml");
+
     /**
      * Sends the given SOAP payload to the external REND API.
      * Reusable across PRS, HR, and Tax flows.
@@ -19,6 +33,8 @@ public class DocuSignSoapSender {
      * @param soapPayload   The SOAP XML payload to send
      * @param correlationId Correlation ID for tracing and logs
      * @return JSON String with statusCode, responseBody, and correlationId
+     * @throws CompletionException wrapping {@link CircuitOpenException}, {@link BulkheadFullException} or
+     *                             {@link DeadlineExceededException}, whose "status::body" message the caller answers with
      */
     public static String postToRendApi(String soapPayload, String correlationId) {
         logger.log(Level.INFO, "[Utils] [SOAPPOST] Start: Sending SOAP to REND endpoint");
@@ -34,17 +50,14 @@ public class DocuSignSoapSender {
             String rendUrl = String.format("https://%s:%s%s%s", rendHost, rendPort, rendBasePath, rendPath);
             logger.log(Level.INFO, "[Utils] [SOAPPOST] REND URL: {0}", rendUrl);
 
-            // Step 3: Create HTTP client and request
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest rendRequest = HttpRequest.newBuilder()
-                    .uri(new URI(rendUrl))
-                    .header("Content-Type", "application/xml")
-                    .header("host", rendHost)
-                    .POST(HttpRequest.BodyPublishers.ofString(soapPayload))
-                    .build();
+            if (UploadOutbox.isEnabled()) {
+                byte[] payload = soapPayload.getBytes(StandardCharsets.UTF_8);
+                return postThroughOutbox(Downstream.REND, REND_ENDPOINT, rendUrl, REND_HEADERS,
+                        new ByteArrayInputStream(payload), payload.length, correlationId);
+            }
 
-            // Step 4: Execute HTTP call
-            HttpResponse<String> rendResponse = client.send(rendRequest, HttpResponse.BodyHandlers.ofString());
+            // Step 3 - 4: Send on the shared REND client, retrying transient failures
+            HttpResponse<String> rendResponse = sendToRend(rendUrl, soapPayload);
             int statusCode = rendResponse.statusCode();
             String responseBody = rendResponse.body();
 
@@ -56,12 +69,125 @@ public class DocuSignSoapSender {
                     statusCode, responseBody.replaceAll("\"", "\\\""), correlationId);
         } catch (Exception ex) {
             // Step 6: Exception handling
+            rethrowIfUnavailable(ex);
             logger.log(Level.SEVERE, "[Utils] [SOAPPOST] Exception while calling REND API: {0}", ex.getMessage());
             return String.format("{\"error\":\"Failed to call REND API\", \"details\":\"%s\", \"correlationId\":\"%s\"}",
                     ex.getMessage().replace("\"", "'"), correlationId);
         }
     }
 
+    /**
+     * Sends a complete SOAP payload to the REND API and returns the raw response; used for batched render calls.
+     *
+     * @param soapPayload SOAP XML payload
+     * @return REND's response
+     * @throws Exception if the call could not be made
+     */
+    static HttpResponse<String> sendToRend(String soapPayload) throws Exception {
+        return sendToRend(rendUrl(), soapPayload);
+    }
+
+    /**
+     * Formats a REND response the way {@link #postToRendApi(String, String)} returns it.
+     */
+    static String rendResponse(int statusCode, String responseBody, String correlationId) {
+        return String.format("{\"statusCode\":%d, \"response\":\"%s\", \"correlationId\":\"%s\"}",
+                statusCode, responseBody.replaceAll("\"", "\\\""), correlationId);
+    }
+
+    // Step 3 - 4 of postToRendApi: create the request (compressed per HTTP_CLIENT_REND_* settings) and send it
+    private static HttpResponse<String> sendToRend(String rendUrl, String soapPayload) throws Exception {
+        HttpRequest.Builder requestBuilder = HttpClientRegistry.newRequest(Downstream.REND, new URI(rendUrl))
+                .header("Content-Type", "application/xml");
+        HttpCompression.acceptCompressed(Downstream.REND, requestBuilder);
+        HttpRequest rendRequest = HttpCompression.post(Downstream.REND, REND_ENDPOINT, requestBuilder, soapPayload).build();
+        return Resilience.send(Downstream.REND, rendRequest, HttpCompression.ofString(REND_ENDPOINT), true);
+    }
+
+    private static String rendUrl() {
+        return String.format("https://%s:%s%s%s", System.getenv("HTTP_DOCAPI_HOST"), System.getenv("HTTP_DOCAPI_PORT"),
+                System.getenv("HTTP_DOCAPI_BASEPATH"), System.getenv("HTTP_DOCAPI_PATH"));
+    }
+
+    /**
+     * Streams a SOAP payload to the REND API: the envelope prefix, then the document Base64-encoded on the fly
+     * straight from the DocuSign download, then the suffix. The upload starts as soon as the download does and the
+     * full payload is never held in memory. When DocuSign reports the document length the request carries a
+     * Content-Length; otherwise it is sent chunked. A retry downloads the document again through {@code reopen}.
+     *
+     * @param envelope       SOAP envelope split around {@code <fileData>}
+     * @param document       Open document stream; consumed and closed
+     * @param documentLength Raw document length, or -1 if unknown
+     * @param reopen         Opens the same document again for a retry, or null to send at most once
+     * @param correlationId  Correlation ID for tracing and logs
+     * @return JSON String with statusCode, responseBody, and correlationId
+     * @throws CompletionException as for {@link #postToRendApi(String, String)}
+     */
+    public static String postToRendApi(RendSoapEnvelope envelope, InputStream document, long documentLength, Callable<InputStream> reopen,
+                                       String correlationId) {
+        logger.log(Level.INFO, "[Utils] [SOAPPOST] Start: Streaming SOAP to REND endpoint");
+
+        // Step 1: Read environment variables for endpoint
+        String rendHost = System.getenv("HTTP_DOCAPI_HOST");
+        String rendPort = System.getenv("HTTP_DOCAPI_PORT");
+        String rendBasePath = System.getenv("HTTP_DOCAPI_BASEPATH");
+        String rendPath = System.getenv("HTTP_DOCAPI_PATH");
+
+        // Step 2: Construct full URL
+        String rendUrl = String.format("https://%s:%s%s%s", rendHost, rendPort, rendBasePath, rendPath);
+        logger.log(Level.INFO, "[Utils] [SOAPPOST] REND URL: {0}", rendUrl);
+
+        return postToRendApi(rendUrl, envelope, document, documentLength, reopen, correlationId);
+    }
+
+    // Steps 3 - 6 of the streaming postToRendApi, against the given REND URL
+    static String postToRendApi(String rendUrl, RendSoapEnvelope envelope, InputStream document, long documentLength,
+                                Callable<InputStream> reopen, String correlationId) {
+        Base64DocumentBody body = Base64DocumentBody.of(envelope.getPrefixBytes(), document, documentLength, envelope.getSuffixBytes())
+                .withReopen(reopen);
+        try {
+            if (UploadOutbox.isEnabled()) {
+                // Journaled in full before anything is sent, so the upload no longer overlaps the download
+                return postThroughOutbox(Downstream.REND, REND_ENDPOINT, rendUrl, REND_HEADERS, body.openStream(),
+                        body.contentLength(), correlationId);
+            }
+
+            // Step 3: Build a request whose body reads through the download
+            HttpRequest.Builder requestBuilder = HttpClientRegistry.newRequest(Downstream.REND, new URI(rendUrl))
+                    .header("Content-Type", "application/xml");
+            HttpCompression.acceptCompressed(Downstream.REND, requestBuilder);
+            HttpRequest rendRequest = HttpCompression.post(Downstream.REND, REND_ENDPOINT, requestBuilder, body::openStream, body.contentLength())
+                    .build();
+
+            // Step 4: Execute HTTP call on the shared REND client; retried only when the download can be re-opened
+            HttpResponse<String> rendResponse = Resilience.send(Downstream.REND, rendRequest, HttpCompression.ofString(REND_ENDPOINT), body.isReplayable());
+            int statusCode = rendResponse.statusCode();
+            String responseBody = rendResponse.body();
+
+            // Step 5: Log and return response
+            logger.log(Level.INFO, "[Utils] [SOAPPOST] REND Response Code: {0}", statusCode);
+            logger.log(Level.INFO, "[Utils] [SOAPPOST] REND Response Body: {0}", responseBody);
+
+            return String.format("{\"statusCode\":%d, \"response\":\"%s\", \"correlationId\":\"%s\"}",
+                    statusCode, responseBody.replaceAll("\"", "\\\""), correlationId);
+        } catch (Exception ex) {
+            // Step 6: Exception handling
+            rethrowIfUnavailable(ex);
+            logger.log(Level.SEVERE, "[Utils] [SOAPPOST] Exception while streaming to REND API: {0}", ex.getMessage());
+            return String.format("{\"error\":\"Failed to call REND API\", \"details\":\"%s\", \"correlationId\":\"%s\"}",
+                    String.valueOf(ex.getMessage()).replace("\"", "'"), correlationId);
+        } finally {
+            body.releaseIfUnused();
+        }
+    }
+
+    /**
+     * @return Whether REND uploads should be streamed (env REND_STREAMING_UPLOAD, default true)
+     */
+    public static boolean isStreamingUploadEnabled() {
+        return !"false".equalsIgnoreCase(System.getenv("REND_STREAMING_UPLOAD"));
+    }
+
     /**
      * Sends a POST request with JSON payload to the Tax endpoint.
      *
@@ -70,25 +196,57 @@ public class DocuSignSoapSender {
      * @param jsonPayload    JSON payload to be sent
      * @param correlationId  Correlation ID for tracing
      * @return Response as a JSON string with status code and response
+     * @throws CompletionException as for {@link #postToRendApi(String, String)}
      */
     public static String postToTaxApi(String url, Map<String, String> headers, String jsonPayload, String correlationId) {
-        logger.log(Level.INFO, "[Utils] [TaxPOST] Start: Sending POST to Tax API endpoint");
+        byte[] payload = jsonPayload.getBytes(StandardCharsets.UTF_8);
+        return postToTaxApi(url, headers, () -> new ByteArrayInputStream(payload), payload.length, true, correlationId);
+    }
 
+    /**
+     * Streams a JSON payload to the Tax endpoint: the payload prefix, then the document Base64-encoded on the fly
+     * straight from the DocuSign download, then the suffix. Memory use does not depend on the document size.
+     *
+     * @param url           The full endpoint URL
+     * @param headers       Map of HTTP headers (includes Basic Auth, Content-Type)
+     * @param body          Prefix, document and suffix of the JSON payload; consumed and released
+     * @param correlationId Correlation ID for tracing
+     * @return Response as a JSON string with status code and response
+     */
+    public static String postToTaxApi(String url, Map<String, String> headers, Base64DocumentBody body, String correlationId) {
         try {
-            // Step 1: Build request
-            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                    .uri(new URI(url))
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonPayload));
+            return postToTaxApi(url, headers, body::openStream, body.contentLength(), body.isReplayable(), correlationId);
+        } finally {
+            body.releaseIfUnused();
+        }
+    }
 
-            for (Map.Entry<String, String> entry : headers.entrySet()) {
-                requestBuilder.header(entry.getKey(), entry.getValue());
+    /**
+     * @return Whether Tax uploads should be streamed (env TAX_STREAMING_UPLOAD, default true)
+     */
+    public static boolean isStreamingTaxUploadEnabled() {
+        return !"false".equalsIgnoreCase(System.getenv("TAX_STREAMING_UPLOAD"));
+    }
+
+    private static String postToTaxApi(String url, Map<String, String> headers, Supplier<InputStream> body, long length,
+                                       boolean replayable, String correlationId) {
+        logger.log(Level.INFO, "[Utils] [TaxPOST] Start: Sending POST to Tax API endpoint");
+
+        try {
+            if (UploadOutbox.isEnabled()) {
+                return postThroughOutbox(Downstream.MYHRSS, TAX_ENDPOINT, url, headers, body.get(), length, correlationId);
             }
 
-            HttpClient client = HttpClient.newHttpClient();
+            // Step 1: Build request (compressed per HTTP_CLIENT_MYHRSS_* settings)
+            HttpRequest.Builder requestBuilder = HttpClientRegistry.newRequest(Downstream.MYHRSS, new URI(url));
+            HttpClientRegistry.headers(requestBuilder, headers);
+            HttpCompression.acceptCompressed(Downstream.MYHRSS, requestBuilder);
+            HttpCompression.post(Downstream.MYHRSS, TAX_ENDPOINT, requestBuilder, body, length);
+
             HttpRequest request = requestBuilder.build();
 
-            // Step 2: Send request
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            // Step 2: Send request on the shared MYHRSS client, retrying transient failures
+            HttpResponse<String> response = Resilience.send(Downstream.MYHRSS, request, HttpCompression.ofString(TAX_ENDPOINT), replayable);
 
             int statusCode = response.statusCode();
             String responseBody = response.body();
@@ -101,9 +259,39 @@ public class DocuSignSoapSender {
                     statusCode, responseBody.replaceAll("\"", "\\\""), correlationId);
 
         } catch (Exception e) {
+            rethrowIfUnavailable(e);
             logger.log(Level.SEVERE, "[Utils] [TaxPOST] Exception while calling Tax API: {0}", e.getMessage());
             return String.format("{\"error\":\"Exception in Tax POST\", \"details\":\"%s\", \"correlationId\":\"%s\"}",
-                    e.getMessage().replace("\"", "'"), correlationId);
+                    String.valueOf(e.getMessage()).replace("\"", "'"), correlationId);
+        }
+    }
+
+    /**
+     * An open circuit, a full bulkhead or a passed deadline is not an answer from the downstream: it is passed on
+     * so the event is answered with its 503 or 504 and redelivered, instead of with an error body and 200.
+     */
+    private static void rethrowIfUnavailable(Exception e) {
+        if (e instanceof CircuitOpenException || e instanceof BulkheadFullException || e instanceof DeadlineExceededException) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Journals the upload in the {@link UploadOutbox} and tries it once. An upload that could not be delivered yet
+     * is answered with 202: it is durable and will be delivered in the background, so the event can be acknowledged.
+     *
+     * @throws IOException if the upload could not be journaled
+     */
+    private static String postThroughOutbox(Downstream downstream, String endpoint, String url, Map<String, String> headers,
+                                            InputStream body, long length, String correlationId) throws IOException {
+        HttpResponse<String> response = UploadOutbox.getInstance().deliver(downstream, endpoint, url, headers, body, length, correlationId);
+        if (response == null) {
+            return String.format("{\"statusCode\":202, \"response\":\"Upload queued for delivery\", \"correlationId\":\"%s\"}",
+                    correlationId);
         }
+        logger.log(Level.INFO, "[Utils] [Outbox] {0} Response Code: {1}", new Object[]{downstream, response.statusCode()});
+        logger.log(Level.INFO, "[Utils] [Outbox] {0} Response Body: {1}", new Object[]{downstream, response.body()});
+        return String.format("{\"statusCode\":%d, \"response\":\"%s\", \"correlationId\":\"%s\"}",
+                response.statusCode(), response.body().replaceAll("\"", "\\\""), correlationId);
     }
-} 
\ No newline at end of file
+}
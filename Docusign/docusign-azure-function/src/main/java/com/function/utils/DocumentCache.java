@@ -0,0 +1,481 @@
+package com.function.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local-disk LRU cache of DocuSign documents keyed by (accountId, envelopeId), so Connect redeliveries of the same
+ * envelope do not download it again.
+ *
+ * A miss streams the download to the caller and copies it to a cache file as it is read; the file is only added
+ * once the stream has been read to the end. Concurrent requests for the same envelope wait for that download and
+ * then read the cached file, waiting no longer than DOCUMENT_CACHE_WAIT_MS (default 30000) or the event's
+ * {@link Deadline} before downloading their own copy. Entries expire after DOCUMENT_CACHE_TTL_SECONDS (default 3600)
+ * and the least recently used are evicted once the files exceed DOCUMENT_CACHE_MAX_BYTES (default 512 MB).
+ *
+ * The cache is off unless DOCUMENT_CACHE_ENABLED=true, as it writes envelope documents to disk unencrypted. Each
+ * process keeps its files in its own {@code process-<pid>} subdirectory of DOCUMENT_CACHE_DIR (default
+ * {@code <tmp>/docusign-document-cache}), readable by the owner only where the file system supports POSIX
+ * permissions. On start a process clears its own subdirectory and those of processes that are no longer running,
+ * never the files of a live instance sharing the directory.
+ */
+public class DocumentCache {
+
+    private static final Logger logger = Logger.getLogger(DocumentCache.class.getName());
+
+    private static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+    private static final long DEFAULT_TTL_SECONDS = 3600;
+    private static final long DEFAULT_WAIT_MS = 30000;
+    private static final String PROCESS_DIR_PREFIX = "process-";
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private static final DocumentCache INSTANCE = new DocumentCache(
+            "true".equalsIgnoreCase(System.getenv("DOCUMENT_CACHE_ENABLED")),
+            cacheDirectory(),
+            readLongEnv("DOCUMENT_CACHE_MAX_BYTES", DEFAULT_MAX_BYTES),
+            TimeUnit.SECONDS.toMillis(readLongEnv("DOCUMENT_CACHE_TTL_SECONDS", DEFAULT_TTL_SECONDS)),
+            readLongEnv("DOCUMENT_CACHE_WAIT_MS", DEFAULT_WAIT_MS));
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final long waitMillis;
+    private boolean enabled;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    DocumentCache(boolean enabled, Path root, long maxBytes, long ttlMillis, long waitMillis) {
+        this.directory = root.resolve(PROCESS_DIR_PREFIX + ProcessHandle.current().pid());
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.waitMillis = Math.max(0, waitMillis);
+        this.enabled = enabled && maxBytes > 0;
+        if (this.enabled) {
+            try {
+                Files.createDirectories(root);
+                removeOrphans(root);
+                clearDirectory(directory);
+                createOwnerOnly(directory);
+                logger.log(Level.INFO, "[Utils] [DocCache] Caching documents in {0} (maxBytes={1}, ttl={2}ms)",
+                        new Object[]{directory, String.valueOf(maxBytes), String.valueOf(ttlMillis)});
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "[Utils] [DocCache] Cache directory unusable, caching disabled: {0}", e.getMessage());
+                this.enabled = false;
+            }
+        }
+    }
+
+    public static DocumentCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the document from the cache, or from {@code loader} on a miss. The caller must read or close the
+     * returned stream; a miss is only cached once its stream has been read to the end.
+     *
+     * @param accountId  DocuSign account ID
+     * @param envelopeId Envelope ID
+     * @param loader     Opens the document download
+     * @return Document stream and length
+     * @throws Exception if the loader fails
+     */
+    public Document open(String accountId, String envelopeId, Callable<Document> loader) throws Exception {
+        return open(accountId, envelopeId, null, loader);
+    }
+
+    /**
+     * Variant of {@link #open(String, String, Callable)} for a specific selection of the envelope's documents.
+     *
+     * @param variant Distinguishes different documents of the same envelope, or null for the combined document
+     */
+    public Document open(String accountId, String envelopeId, String variant, Callable<Document> loader) throws Exception {
+        if (!enabled || accountId == null || envelopeId == null) {
+            return loader.call();
+        }
+
+        String key = accountId + "/" + envelopeId + (variant == null ? "" : "/" + variant);
+        while (true) {
+            Document cached = lookup(key);
+            if (cached != null) return cached;
+
+            CompletableFuture<Void> download = new CompletableFuture<>();
+            CompletableFuture<Void> existing = inFlight.putIfAbsent(key, download);
+            if (existing == null) {
+                // Another download may have finished between the lookup and registering ours
+                cached = lookup(key);
+                if (cached != null) {
+                    finish(key, download, null);
+                    return cached;
+                }
+                misses.incrementAndGet();
+                Document document;
+                try {
+                    document = loader.call();
+                } catch (Exception e) {
+                    finish(key, download, e);
+                    throw e;
+                }
+                if (document.getLength() > maxBytes) {
+                    finish(key, download, new IOException("Document too large to cache"));
+                    return document;
+                }
+                return new Document(new CachingInputStream(key, document.getInputStream(), download), document.getLength(), false);
+            }
+
+            coalesced.incrementAndGet();
+            try {
+                existing.get(waitBudgetMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                // The shared download did not complete; fetch our own copy without caching
+                logger.log(Level.INFO, "[Utils] [DocCache] Shared download of {0} failed, downloading again", key);
+                return loader.call();
+            } catch (TimeoutException e) {
+                logger.log(Level.INFO, "[Utils] [DocCache] Shared download of {0} still running, downloading again", key);
+                return loader.call();
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the cache counters, suitable for logging or returning from a diagnostics endpoint.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("coalesced", coalesced.get());
+        stats.put("evictions", evictions.get());
+        stats.put("bytesServedFromCache", bytesServed.get());
+        return stats;
+    }
+
+    private Document lookup(String key) throws IOException {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) return null;
+            if (System.currentTimeMillis() - entry.createdAt > ttlMillis || !Files.exists(entry.path)) {
+                remove(key, entry);
+                return null;
+            }
+            hits.incrementAndGet();
+            bytesServed.addAndGet(entry.size);
+            return new Document(Files.newInputStream(entry.path), entry.size, true);
+        }
+    }
+
+    private void commit(String key, Path file, long size) {
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(file, size));
+            if (previous != null) {
+                totalBytes -= previous.size;
+                delete(previous.path);
+            }
+            totalBytes += size;
+
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                boolean expired = now - eldest.getValue().createdAt > ttlMillis;
+                if (!expired && totalBytes <= maxBytes) break;
+                if (eldest.getKey().equals(key)) continue;
+                it.remove();
+                totalBytes -= eldest.getValue().size;
+                delete(eldest.getValue().path);
+                evictions.incrementAndGet();
+            }
+        }
+        logger.log(Level.INFO, "[Utils] [DocCache] Cached {0} ({1} bytes)", new Object[]{key, String.valueOf(size)});
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        totalBytes -= entry.size;
+        delete(entry.path);
+        evictions.incrementAndGet();
+    }
+
+    private void finish(String key, CompletableFuture<Void> download, Exception error) {
+        inFlight.remove(key, download);
+        if (error == null) {
+            download.complete(null);
+        } else {
+            download.completeExceptionally(error);
+        }
+    }
+
+    // Followers wait for the shared download no longer than the configured limit or what is left of their event
+    private long waitBudgetMillis() {
+        Deadline deadline = Deadline.current();
+        return deadline == null ? waitMillis : Math.min(waitMillis, deadline.remainingMillis());
+    }
+
+    // Subdirectories left behind by processes that are no longer running
+    private static void removeOrphans(Path root) throws IOException {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, PROCESS_DIR_PREFIX + "*")) {
+            for (Path dir : dirs) {
+                long pid;
+                try {
+                    pid = Long.parseLong(dir.getFileName().toString().substring(PROCESS_DIR_PREFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (pid == ProcessHandle.current().pid() || ProcessHandle.of(pid).isPresent()) continue;
+                clearDirectory(dir);
+                delete(dir);
+            }
+        }
+    }
+
+    private static void clearDirectory(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                delete(file);
+            }
+        }
+    }
+
+    private static void createOwnerOnly(Path dir) throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(dir);
+            return;
+        }
+        if (!Files.isDirectory(dir)) {
+            Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        // createDirectory is subject to the umask, and an existing directory may have been created differently
+        Files.setPosixFilePermissions(dir, OWNER_ONLY);
+    }
+
+    // Windows refuses to delete files that are still being read; those are cleared on the next start instead
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    private static Path cacheDirectory() {
+        String dir = System.getenv("DOCUMENT_CACHE_DIR");
+        return dir != null && !dir.isEmpty()
+                ? Paths.get(dir)
+                : Paths.get(System.getProperty("java.io.tmpdir"), "docusign-document-cache");
+    }
+
+    private static long readLongEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [DocCache] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    /**
+     * An open document and its length in bytes (-1 if unknown).
+     */
+    public static final class Document {
+        private final InputStream inputStream;
+        private final long length;
+        private final boolean fromCache;
+
+        public Document(InputStream inputStream, long length) {
+            this(inputStream, length, false);
+        }
+
+        private Document(InputStream inputStream, long length, boolean fromCache) {
+            this.inputStream = inputStream;
+            this.length = length;
+            this.fromCache = fromCache;
+        }
+
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public boolean isFromCache() {
+            return fromCache;
+        }
+
+        /**
+         * @return This document read through a different stream, e.g. one wrapping the original
+         */
+        public Document withInputStream(InputStream inputStream) {
+            return new Document(inputStream, length, fromCache);
+        }
+    }
+
+    private static final class Entry {
+        private final Path path;
+        private final long size;
+        private final long createdAt = System.currentTimeMillis();
+
+        private Entry(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Copies everything the caller reads into a part file, which becomes the cache entry at end of stream.
+     * Closing early, a read error or exceeding the size limit abandons the copy without affecting the caller.
+     */
+    private final class CachingInputStream extends FilterInputStream {
+        private final String key;
+        private final CompletableFuture<Void> download;
+        private Path partFile;
+        private OutputStream copy;
+        private long size;
+        private boolean finished;
+
+        private CachingInputStream(String key, InputStream in, CompletableFuture<Void> download) {
+            super(in);
+            this.key = key;
+            this.download = download;
+            try {
+                this.partFile = Files.createTempFile(directory, "doc-", ".part");
+                this.copy = new BufferedOutputStream(Files.newOutputStream(partFile));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "[Utils] [DocCache] Could not create cache file: {0}", e.getMessage());
+                abandon(e);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = readOrAbandon(() -> super.read());
+            if (b == -1) {
+                complete();
+            } else {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = readOrAbandon(() -> super.read(b, off, len));
+            if (n == -1) {
+                complete();
+            } else {
+                write(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                abandon(new IOException("Download closed before the end of the document"));
+            }
+        }
+
+        private int readOrAbandon(Callable<Integer> read) throws IOException {
+            try {
+                return read.call();
+            } catch (IOException | RuntimeException e) {
+                abandon(e);
+                throw e;
+            } catch (Exception e) {
+                abandon(e);
+                throw new IOException(e);
+            }
+        }
+
+        private void write(byte[] b, int off, int len) {
+            if (copy == null) return;
+            size += len;
+            if (size > maxBytes) {
+                abandon(new IOException("Document too large to cache"));
+                return;
+            }
+            try {
+                copy.write(b, off, len);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "[Utils] [DocCache] Could not write cache file: {0}", e.getMessage());
+                abandon(e);
+            }
+        }
+
+        private synchronized void complete() {
+            if (finished) return;
+            finished = true;
+            try {
+                copy.close();
+                Path target = directory.resolve(partFile.getFileName().toString().replace(".part", ".pdf"));
+                Files.move(partFile, target, StandardCopyOption.ATOMIC_MOVE);
+                commit(key, target, size);
+                finish(key, download, null);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "[Utils] [DocCache] Could not commit cache file: {0}", e.getMessage());
+                delete(partFile);
+                finish(key, download, e);
+            }
+        }
+
+        private synchronized void abandon(Exception reason) {
+            if (finished) return;
+            finished = true;
+            if (copy != null) {
+                try {
+                    copy.close();
+                } catch (IOException ignored) {
+                    // Part file is deleted below
+                }
+                copy = null;
+            }
+            if (partFile != null) delete(partFile);
+            finish(key, download, reason);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.function.utils;
+
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Which part of an envelope a repository needs, read per repository from the environment:
+ * <ul>
+ *   <li>DOCUSIGN_DOCUMENT_MODE_{REPO}: {@code combined} (default) downloads /documents/combined;
+ *       {@code documents} lists the envelope's documents first and downloads a single needed document directly</li>
+ *   <li>DOCUSIGN_INCLUDE_CERTIFICATE_{REPO}: whether the certificate of completion is included (default true)</li>
+ * </ul>
+ * {REPO} is the target repository upper-cased with other characters replaced by '_' (e.g. 4506-c becomes 4506_C).
+ */
+public final class DocumentSelection {
+
+    private static final Logger logger = Logger.getLogger(DocumentSelection.class.getName());
+
+    /** The combined document including the certificate, as DocuSign Connect flows always fetched it. */
+    public static final DocumentSelection COMBINED = new DocumentSelection(false, true);
+
+    private final boolean perDocument;
+    private final boolean includeCertificate;
+
+    public DocumentSelection(boolean perDocument, boolean includeCertificate) {
+        this.perDocument = perDocument;
+        this.includeCertificate = includeCertificate;
+    }
+
+    /**
+     * @param repository Target repository (prs, srm, 4506-c, ...); null gives {@link #COMBINED}
+     */
+    public static DocumentSelection forRepository(String repository) {
+        if (repository == null || repository.isEmpty()) return COMBINED;
+        String name = repository.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "_");
+
+        String mode = System.getenv("DOCUSIGN_DOCUMENT_MODE_" + name);
+        boolean perDocument = "documents".equalsIgnoreCase(mode);
+        if (mode != null && !mode.isEmpty() && !perDocument && !"combined".equalsIgnoreCase(mode)) {
+            logger.log(Level.WARNING, "[Utils] [DocDownload] Ignoring invalid DOCUSIGN_DOCUMENT_MODE_{0}: {1}", new Object[]{name, mode});
+        }
+        boolean includeCertificate = !"false".equalsIgnoreCase(System.getenv("DOCUSIGN_INCLUDE_CERTIFICATE_" + name));
+
+        return perDocument || !includeCertificate ? new DocumentSelection(perDocument, includeCertificate) : COMBINED;
+    }
+
+    public boolean isPerDocument() {
+        return perDocument;
+    }
+
+    public boolean isIncludeCertificate() {
+        return includeCertificate;
+    }
+
+    /**
+     * @return Suffix distinguishing this selection in the {@link DocumentCache}, or null for {@link #COMBINED}
+     */
+    public String getCacheVariant() {
+        if (!perDocument && includeCertificate) return null;
+        return (perDocument ? "documents" : "combined") + (includeCertificate ? "" : "-nocert");
+    }
+}
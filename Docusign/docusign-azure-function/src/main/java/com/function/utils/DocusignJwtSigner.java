@@ -0,0 +1,235 @@
+package com.function.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.Security;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemReader;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+
+/**
+ * Signs DocuSign JWT grant assertions.
+ *
+ * RSA keys are parsed and the BouncyCastle provider registered once; the resulting {@link Algorithm} is cached
+ * per key. Assertions are valid for 60 seconds and are reused for the same (key, clientId, userId, audience, scopes)
+ * while more than {@link #REUSE_MARGIN_MILLIS} of that window remains. The signer holds no mutable static state.
+ */
+public final class DocusignJwtSigner {
+
+    private static final Logger logger = Logger.getLogger(DocusignJwtSigner.class.getName());
+
+    public static final long ASSERTION_LIFETIME_MILLIS = 60000;
+    public static final long REUSE_MARGIN_MILLIS = 20000;
+
+    private static final DocusignJwtSigner INSTANCE = new DocusignJwtSigner();
+
+    private final Map<String, Algorithm> algorithms = new ConcurrentHashMap<>();
+    private final Map<AssertionKey, SignedAssertion> assertions = new ConcurrentHashMap<>();
+
+    private DocusignJwtSigner() {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+
+        // Parse the configured key up front so the first token request does not pay for it.
+        String configuredKey = System.getenv("DOCUSIGN_PRIVATE_KEY");
+        if (configuredKey != null && !configuredKey.isEmpty()) {
+            try {
+                getAlgorithm(configuredKey);
+                logger.log(Level.INFO, "[Utils] [JwtSigner] Preloaded private key: {0}", configuredKey);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "[Utils] [JwtSigner] Unable to preload private key {0}: {1}",
+                        new Object[]{configuredKey, e.getMessage()});
+            }
+        }
+    }
+
+    public static DocusignJwtSigner getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the RS256 algorithm for a PEM key on the classpath, parsing it on first use only.
+     *
+     * @param privateKeyFileName The filename of the private key (inside resources)
+     * @return Cached signing algorithm
+     * @throws IOException if the key cannot be read or parsed
+     */
+    public Algorithm getAlgorithm(String privateKeyFileName) throws IOException {
+        if (privateKeyFileName == null || privateKeyFileName.isEmpty()) {
+            throw new IllegalArgumentException("privateKeyFileName is empty");
+        }
+        Algorithm algorithm = algorithms.get("resource:" + privateKeyFileName);
+        if (algorithm == null) {
+            algorithm = Algorithm.RSA256(null, readPrivateKey(readResource(privateKeyFileName)));
+            Algorithm existing = algorithms.putIfAbsent("resource:" + privateKeyFileName, algorithm);
+            if (existing != null) algorithm = existing;
+        }
+        return algorithm;
+    }
+
+    /**
+     * Returns the RS256 algorithm for raw PEM bytes, keyed by a digest of the bytes.
+     *
+     * @param rsaPrivateKey PEM encoded PKCS#8 private key
+     * @return Cached signing algorithm
+     * @throws IOException if the key cannot be parsed
+     */
+    public Algorithm getAlgorithm(byte[] rsaPrivateKey) throws IOException {
+        if (rsaPrivateKey == null || rsaPrivateKey.length == 0) {
+            throw new IllegalArgumentException("rsaPrivateKey byte array is empty");
+        }
+        String cacheKey = "sha256:" + digest(rsaPrivateKey);
+        Algorithm algorithm = algorithms.get(cacheKey);
+        if (algorithm == null) {
+            algorithm = Algorithm.RSA256(null, readPrivateKey(rsaPrivateKey));
+            Algorithm existing = algorithms.putIfAbsent(cacheKey, algorithm);
+            if (existing != null) algorithm = existing;
+        }
+        return algorithm;
+    }
+
+    /**
+     * Returns a signed JWT assertion for the key on the classpath, reusing a previous one while it is still
+     * comfortably inside its validity window.
+     *
+     * @param privateKeyFileName The filename of the private key (inside resources)
+     * @param clientId           The DocuSign integrator key (issuer)
+     * @param userId             The DocuSign user ID (subject), may be empty
+     * @param audience           The OAuth host (audience)
+     * @param scopes             Space separated scopes
+     * @return Signed JWT assertion
+     * @throws IOException if the key cannot be read or parsed
+     */
+    public String sign(String privateKeyFileName, String clientId, String userId, String audience, String scopes)
+            throws IOException {
+        return sign("resource:" + privateKeyFileName, getAlgorithm(privateKeyFileName), clientId, userId, audience, scopes);
+    }
+
+    /**
+     * Same as {@link #sign(String, String, String, String, String)} for raw PEM bytes.
+     */
+    public String sign(byte[] rsaPrivateKey, String clientId, String userId, String audience, String scopes)
+            throws IOException {
+        return sign("sha256:" + digest(rsaPrivateKey), getAlgorithm(rsaPrivateKey), clientId, userId, audience, scopes);
+    }
+
+    private String sign(String keyId, Algorithm algorithm, String clientId, String userId, String audience, String scopes) {
+        AssertionKey key = new AssertionKey(keyId, clientId, userId, audience, scopes);
+        long now = System.currentTimeMillis();
+
+        SignedAssertion cached = assertions.get(key);
+        if (cached != null && now < cached.expiresAt - REUSE_MARGIN_MILLIS) {
+            return cached.assertion;
+        }
+
+        long expiresAt = now + ASSERTION_LIFETIME_MILLIS;
+        JWTCreator.Builder builder = JWT.create()
+                .withIssuer(clientId)
+                .withAudience(audience)
+                .withIssuedAt(new Date(now))
+                .withClaim("scope", scopes)
+                .withExpiresAt(new Date(expiresAt));
+
+        if (userId != null && !userId.isEmpty()) {
+            builder = builder.withSubject(userId);
+        }
+
+        String assertion = builder.sign(algorithm);
+        assertions.put(key, new SignedAssertion(assertion, expiresAt));
+        return assertion;
+    }
+
+    private static byte[] readResource(String fileName) throws IOException {
+        ClassLoader classLoader = DocusignJwtSigner.class.getClassLoader();
+        try (InputStream inputStream = classLoader.getResourceAsStream(fileName)) {
+            if (inputStream == null) {
+                throw new IOException("Private key file not found: " + fileName);
+            }
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static RSAPrivateKey readPrivateKey(byte[] privateKeyBytes) throws IOException {
+        try (PemReader reader = new PemReader(new StringReader(new String(privateKeyBytes, StandardCharsets.US_ASCII)))) {
+            PemObject pemObject = reader.readPemObject();
+            if (pemObject == null) {
+                throw new IOException("Private key is not PEM encoded");
+            }
+            KeyFactory kf = KeyFactory.getInstance("RSA", BouncyCastleProvider.PROVIDER_NAME);
+            return (RSAPrivateKey) kf.generatePrivate(new PKCS8EncodedKeySpec(pemObject.getContent()));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not reconstruct the private key: " + e.getMessage(), e);
+        }
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class AssertionKey {
+        private final String keyId;
+        private final String clientId;
+        private final String userId;
+        private final String audience;
+        private final String scopes;
+
+        private AssertionKey(String keyId, String clientId, String userId, String audience, String scopes) {
+            this.keyId = keyId;
+            this.clientId = clientId;
+            this.userId = userId;
+            this.audience = audience;
+            this.scopes = scopes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof AssertionKey)) return false;
+            AssertionKey other = (AssertionKey) o;
+            return keyId.equals(other.keyId)
+                    && Objects.equals(clientId, other.clientId)
+                    && Objects.equals(userId, other.userId)
+                    && Objects.equals(audience, other.audience)
+                    && Objects.equals(scopes, other.scopes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(keyId, clientId, userId, audience, scopes);
+        }
+    }
+
+    private static final class SignedAssertion {
+        private final String assertion;
+        private final long expiresAt;
+
+        private SignedAssertion(String assertion, long expiresAt) {
+            this.assertion = assertion;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -2,30 +2,10 @@ package com.function.utils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
-import java.security.Security;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.spec.EncodedKeySpec;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.util.io.pem.PemObject;
-import org.bouncycastle.util.io.pem.PemReader;
-
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTCreator;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTCreationException;
 
 public class DocusignJwtToken  {
@@ -33,8 +13,7 @@ public class DocusignJwtToken  {
 	private String privateKey;
 	private String baseUrl;
 	private String integratorKey;
-
-	public static String OAUTH_BASEPATH = "";
+	private String oauthBasePath = "";
 
 	public final static String GRANT_TYPE_JWT = "urn:ietf:params:oauth:grant-type:jwt-bearer";
 
@@ -43,12 +22,10 @@ public class DocusignJwtToken  {
 		System.out.println("operating for user id :"+ docusignUserId);
 		Map<String, String> jwtMap = new HashMap<String, String>();
 		String DocusignUserId = docusignUserId;
-		OAUTH_BASEPATH = oauthBasePath;
+		this.oauthBasePath = oauthBasePath;
 		this.integratorKey = inputIntegratorKey;
 		
 		try {
-			byte[] privateKeyBytes = DocusignJwtToken.getPrivateKeyFromResourceAsStream(privateKey);
-
 			java.util.List<String> scopes = new ArrayList<>();
 			scopes.add("signature");
 			scopes.add("impersonation");
@@ -59,9 +36,7 @@ public class DocusignJwtToken  {
 				sb.append(" " + scopes.get(i));
 			}
 			
-			String docuSignAssertion = this.generateJWTAssertionFromByteArray(privateKeyBytes, integratorKey, DocusignUserId, 3600, sb.toString());
-			
-			System.out.println("docuSignAssertion generated :"+ docuSignAssertion);
+			String docuSignAssertion = DocusignJwtSigner.getInstance().sign(privateKey, integratorKey, DocusignUserId, this.oauthBasePath, sb.toString());
 
 			jwtMap.put("assertion", docuSignAssertion);
 			jwtMap.put("grant_type", GRANT_TYPE_JWT);
@@ -82,19 +57,7 @@ public class DocusignJwtToken  {
 			throw new IllegalArgumentException("rsaPrivateKey byte array is empty");
 		}
 
-		long nowTime = new Date().getTime();
-		long expireTime = (new Date().getTime()) + 60000;
-		Date expireDate = new Date(expireTime);
-		
-		RSAPrivateKey privateKey = readPrivateKeyFromByteArray(rsaPrivateKey, "RSA");
-		Algorithm algorithm = Algorithm.RSA256(null, privateKey);
-		JWTCreator.Builder builder = JWT.create().withIssuer(clientId).withAudience(OAUTH_BASEPATH)
-				.withIssuedAt(new Date(nowTime)).withClaim("scope", scopes).withExpiresAt(expireDate);
-		
-		if (userId != null && userId != "") {
-			builder = builder.withSubject(userId);
-		}
-		return builder.sign(algorithm);
+		return DocusignJwtSigner.getInstance().sign(rsaPrivateKey, clientId, userId, oauthBasePath, scopes);
 	}
 
 	/*private byte[] getPrivateKeyFromResourceAsStream(String fileName) {
@@ -131,28 +94,6 @@ public class DocusignJwtToken  {
 
 
 
-	private RSAPrivateKey readPrivateKeyFromByteArray(byte[] privateKeyBytes, String algorithm) throws IOException {
-		try (PemReader reader = new PemReader(new StringReader(new String(privateKeyBytes)))) {
-			PemObject pemObject = reader.readPemObject();
-			byte[] bytes = pemObject.getContent();
-			RSAPrivateKey privateKey = null;
-			try {
-				Security.addProvider(new BouncyCastleProvider());
-				KeyFactory kf = KeyFactory.getInstance(algorithm, "BC");
-				EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(bytes);
-				privateKey = (RSAPrivateKey) kf.generatePrivate(keySpec);
-			} catch (NoSuchAlgorithmException e) {
-				System.out.println("Could not reconstruct the private key, the given algorithm could not be found.");
-			} catch (InvalidKeySpecException e) {
-				System.out.println("Could not reconstruct the private key");
-			} catch (NoSuchProviderException e) {
-				System.out.println("Could not reconstruct the private key, invalid provider.");
-			}
-
-			return privateKey;
-		}
-	}
-
 	public String getBaseUrl() {
 		return baseUrl;
 	}
@@ -0,0 +1,105 @@
+package com.function.utils;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.function.model.DocusignOAuthToken;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Client for the DocuSign OAuth JWT grant. Requests run on the shared OAUTH client from {@link HttpClientRegistry},
+ * and the response is parsed once into a {@link DocusignOAuthToken}; failures are returned as invalid tokens
+ * rather than thrown.
+ */
+public class DocusignOAuthClient {
+
+    private static final Logger logger = Logger.getLogger(DocusignOAuthClient.class.getName());
+
+    private static final String SCOPES = "signature impersonation";
+
+    /**
+     * Blocking variant of {@link #requestTokenAsync(String, String, String)}.
+     */
+    public static DocusignOAuthToken requestToken(String userId, String integratorKey, String privateKeyFileName) {
+        return requestTokenAsync(userId, integratorKey, privateKeyFileName).join();
+    }
+
+    /**
+     * Signs a JWT assertion and exchanges it for an access token without blocking the caller.
+     *
+     * @param userId             The DocuSign user ID (GUID) to impersonate
+     * @param integratorKey      The DocuSign integrator key (client ID)
+     * @param privateKeyFileName The filename of the private key (inside resources)
+     * @return Future completing with the token, or with an invalid token describing the error
+     */
+    public static CompletableFuture<DocusignOAuthToken> requestTokenAsync(String userId, String integratorKey,
+                                                                           String privateKeyFileName) {
+        // Step 1: Read OAuth endpoint from environment variables
+        String oauthHost = System.getenv("DOCUSIGN_OAUTH_HOST"); // e.g. account-d.docusign.com
+        String oauthPath = System.getenv("DOCUSIGN_OAUTH_PATH"); // e.g. /oauth/token
+
+        if (oauthHost == null || oauthPath == null || userId == null || integratorKey == null) {
+            logger.severe("[Utils] [OAuth] Missing environment variables: DOCUSIGN_OAUTH_HOST, DOCUSIGN_OAUTH_PATH, userId or integratorKey");
+            return CompletableFuture.completedFuture(DocusignOAuthToken.failure(
+                    "Missing OAuth host, path, userId or integratorKey from environment", 0, null));
+        }
+
+        HttpRequest request;
+        try {
+            // Step 2: Generate JWT assertion
+            String assertion = DocusignJwtSigner.getInstance().sign(privateKeyFileName, integratorKey, userId, oauthHost, SCOPES);
+
+            // Step 3: Prepare form-urlencoded request
+            String finalUrl = String.format("https://%s:%d%s", oauthHost, 443, oauthPath);
+            logger.log(Level.INFO, "[Utils] [OAuth] Requesting token from {0} for user {1}", new Object[]{finalUrl, userId});
+
+            String requestBody = "grant_type=" + URLEncoder.encode(DocusignJwtToken.GRANT_TYPE_JWT, StandardCharsets.UTF_8)
+                    + "&assertion=" + URLEncoder.encode(assertion, StandardCharsets.UTF_8);
+            request = HttpClientRegistry.newRequest(Downstream.OAUTH, new URI(finalUrl))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                    .build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "[Utils] [OAuth] Exception while preparing JWT grant: {0}", e.getMessage());
+            return CompletableFuture.completedFuture(DocusignOAuthToken.failure(String.valueOf(e.getMessage()), 0, null));
+        }
+
+        // Step 4: Send and parse the response
+        return HttpClientRegistry.sendAsync(Downstream.OAUTH, request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(DocusignOAuthClient::toToken)
+                .exceptionally(e -> {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    logger.log(Level.SEVERE, "[Utils] [OAuth] Exception while generating DocuSign OAuth token: {0}", cause.getMessage());
+                    return DocusignOAuthToken.failure(String.valueOf(cause.getMessage()), 0, null);
+                });
+    }
+
+    private static DocusignOAuthToken toToken(HttpResponse<String> response) {
+        int statusCode = response.statusCode();
+        String body = response.body();
+        logger.log(Level.INFO, "[Utils] [OAuth] Received response from DocuSign: HTTP {0}", statusCode);
+
+        try {
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+            if (statusCode >= 200 && statusCode < 300 && json.has("access_token")) {
+                return DocusignOAuthToken.success(
+                        json.get("access_token").getAsString(),
+                        json.has("token_type") ? json.get("token_type").getAsString() : "Bearer",
+                        json.has("expires_in") ? json.get("expires_in").getAsLong() : 3600,
+                        statusCode,
+                        body);
+            }
+            String error = json.has("error") ? json.get("error").getAsString() : "HTTP " + statusCode;
+            return DocusignOAuthToken.failure(error, statusCode, body);
+        } catch (Exception e) {
+            return DocusignOAuthToken.failure("Unreadable OAuth response (HTTP " + statusCode + ")", statusCode, body);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.function.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.function.model.DocusignOAuthToken;
+
+/**
+ * In-process cache for DocuSign OAuth tokens keyed by (userId, integratorKey, oauthHost).
+ *
+ * Tokens are kept until {@code expires_in} minus a refresh-ahead window (env DOCUSIGN_TOKEN_REFRESH_AHEAD_SECONDS,
+ * default 300). Inside that window one caller refreshes while the others keep using the still-valid token;
+ * concurrent callers with no usable token share the same in-flight refresh.
+ */
+public class DocusignOAuthTokenCache {
+
+    private static final Logger logger = Logger.getLogger(DocusignOAuthTokenCache.class.getName());
+
+    private static final long DEFAULT_REFRESH_AHEAD_SECONDS = 300;
+
+    private static final DocusignOAuthTokenCache INSTANCE = new DocusignOAuthTokenCache(
+            TimeUnit.SECONDS.toMillis(readLongEnv("DOCUSIGN_TOKEN_REFRESH_AHEAD_SECONDS", DEFAULT_REFRESH_AHEAD_SECONDS)));
+
+    private final long refreshAheadMillis;
+    private final Map<CacheKey, DocusignOAuthToken> tokens = new ConcurrentHashMap<>();
+    private final Map<CacheKey, CompletableFuture<DocusignOAuthToken>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+    private final AtomicLong totalRefreshNanos = new AtomicLong();
+    private final AtomicLong maxRefreshNanos = new AtomicLong();
+
+    DocusignOAuthTokenCache(long refreshAheadMillis) {
+        this.refreshAheadMillis = refreshAheadMillis;
+    }
+
+    public static DocusignOAuthTokenCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Blocking variant of {@link #getTokenAsync(String, String, String, Supplier)}.
+     */
+    public DocusignOAuthToken getToken(String userId, String integratorKey, String oauthHost,
+                                       Supplier<CompletableFuture<DocusignOAuthToken>> loader) {
+        return getTokenAsync(userId, integratorKey, oauthHost, loader).join();
+    }
+
+    /**
+     * Returns the cached token for the given key, calling the loader only when no token is cached
+     * or the cached one has entered its refresh-ahead window.
+     *
+     * @param userId        The DocuSign user ID (GUID) being impersonated
+     * @param integratorKey The DocuSign integrator key (client ID)
+     * @param oauthHost     The OAuth host the token was issued by
+     * @param loader        Performs the JWT grant
+     * @return Future completing with the cached or freshly issued token
+     */
+    public CompletableFuture<DocusignOAuthToken> getTokenAsync(String userId, String integratorKey, String oauthHost,
+                                                               Supplier<CompletableFuture<DocusignOAuthToken>> loader) {
+        if (userId == null || integratorKey == null || oauthHost == null) {
+            // Nothing to key on; let the loader report the missing configuration.
+            return loader.get();
+        }
+
+        CacheKey key = new CacheKey(userId, integratorKey, oauthHost);
+        DocusignOAuthToken cached = tokens.get(key);
+
+        if (cached != null && cached.isUsableFor(refreshAheadMillis)) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        if (cached != null && cached.isUsableFor(0) && inFlight.containsKey(key)) {
+            // Refresh-ahead: only one caller refreshes, everybody else keeps the still-valid token.
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        misses.incrementAndGet();
+        return refresh(key, loader);
+    }
+
+    /**
+     * Refreshes the token for the given key when it is missing or expires within {@code withinMillis}.
+     * Used by the scheduled pre-warmer so that request threads rarely see a miss.
+     *
+     * @return Future completing with the new token if a refresh happened, or with null if the cached token is still good
+     */
+    public CompletableFuture<DocusignOAuthToken> refreshIfExpiring(String userId, String integratorKey, String oauthHost,
+                                                                   long withinMillis,
+                                                                   Supplier<CompletableFuture<DocusignOAuthToken>> loader) {
+        if (userId == null || integratorKey == null || oauthHost == null) {
+            return loader.get();
+        }
+
+        CacheKey key = new CacheKey(userId, integratorKey, oauthHost);
+        DocusignOAuthToken cached = tokens.get(key);
+        if (cached != null && cached.isUsableFor(withinMillis)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return refresh(key, loader);
+    }
+
+    /**
+     * Drops a cached token, e.g. after DocuSign rejected it with 401.
+     */
+    public void invalidate(String userId, String integratorKey, String oauthHost) {
+        if (userId != null && integratorKey != null && oauthHost != null) {
+            tokens.remove(new CacheKey(userId, integratorKey, oauthHost));
+        }
+    }
+
+    private CompletableFuture<DocusignOAuthToken> refresh(CacheKey key, Supplier<CompletableFuture<DocusignOAuthToken>> loader) {
+        CompletableFuture<DocusignOAuthToken> mine = new CompletableFuture<>();
+        CompletableFuture<DocusignOAuthToken> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            logger.log(Level.INFO, "[Utils] [TokenCache] Joining in-flight refresh for user {0}", key.userId);
+            return existing;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<DocusignOAuthToken> loaded;
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException e) {
+            loaded = CompletableFuture.failedFuture(e);
+        }
+
+        loaded.whenComplete((token, error) -> {
+            long elapsed = System.nanoTime() - start;
+            refreshes.incrementAndGet();
+            totalRefreshNanos.addAndGet(elapsed);
+            maxRefreshNanos.accumulateAndGet(elapsed, Math::max);
+            logger.log(Level.INFO, "[Utils] [TokenCache] Refresh for user {0} took {1} ms",
+                    new Object[]{key.userId, TimeUnit.NANOSECONDS.toMillis(elapsed)});
+
+            if (error == null && token != null && token.isValid()) {
+                tokens.put(key, token);
+            } else {
+                refreshFailures.incrementAndGet();
+            }
+            inFlight.remove(key, mine);
+
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(token);
+            }
+        });
+        return mine;
+    }
+
+    public long getRefreshAheadMillis() {
+        return refreshAheadMillis;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    public long getRefreshFailureCount() {
+        return refreshFailures.get();
+    }
+
+    public long getAverageRefreshMillis() {
+        long count = refreshes.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRefreshNanos.get() / count);
+    }
+
+    public long getMaxRefreshMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxRefreshNanos.get());
+    }
+
+    /**
+     * Snapshot of the cache counters, suitable for logging or returning from a diagnostics endpoint.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedTokens", tokens.size());
+        stats.put("hits", getHitCount());
+        stats.put("misses", getMissCount());
+        stats.put("refreshes", getRefreshCount());
+        stats.put("refreshFailures", getRefreshFailureCount());
+        stats.put("avgRefreshMillis", getAverageRefreshMillis());
+        stats.put("maxRefreshMillis", getMaxRefreshMillis());
+        return stats;
+    }
+
+    private static long readLongEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [TokenCache] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    private static final class CacheKey {
+        private final String userId;
+        private final String integratorKey;
+        private final String oauthHost;
+
+        private CacheKey(String userId, String integratorKey, String oauthHost) {
+            this.userId = userId;
+            this.integratorKey = integratorKey;
+            this.oauthHost = oauthHost.toLowerCase();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CacheKey)) return false;
+            CacheKey other = (CacheKey) o;
+            return userId.equals(other.userId)
+                    && integratorKey.equals(other.integratorKey)
+                    && oauthHost.equals(other.oauthHost);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, integratorKey, oauthHost);
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package com.function.utils;
 
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Map;
-import java.util.Scanner;
-
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.function.model.DocusignOAuthToken;
 import com.microsoft.azure.functions.ExecutionContext;
 
 /**
@@ -14,8 +16,52 @@ import com.microsoft.azure.functions.ExecutionContext;
  */
 public class DocusignOAuthTokenGeneration {
 
+    private static final Logger logger = Logger.getLogger(DocusignOAuthTokenGeneration.class.getName());
+
+    // Shared token store (env DOCUSIGN_TOKEN_STORE) and this instance's identity for refresh leases
+    private static final DocusignTokenStore tokenStore = DocusignTokenStore.fromEnvironment();
+    private static final String INSTANCE_ID = UUID.randomUUID().toString();
+
+    private static final long LEASE_MILLIS = 30000;
+    private static final long LEASE_POLL_MILLIS = 250;
+
     /**
-     * Fetches OAuth token by generating JWT and making HTTP request to DocuSign OAuth endpoint.
+     * Returns an OAuth token for the user, served from {@link DocusignOAuthTokenCache} while it is valid
+     * and fetched from DocuSign otherwise.
+     *
+     * @param userId             The DocuSign user ID (GUID) to impersonate
+     * @param integratorKey      The DocuSign integrator key (client ID)
+     * @param privateKeyFileName The filename of the private key (inside resources)
+     * @param context            Azure Function's ExecutionContext for logging
+     * @return Typed token; check {@link DocusignOAuthToken#isValid()} before use
+     */
+    public static DocusignOAuthToken fetchOAuthToken(
+            String userId,
+            String integratorKey,
+            String privateKeyFileName,
+            ExecutionContext context
+    ) {
+        return fetchOAuthTokenAsync(userId, integratorKey, privateKeyFileName, context).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #fetchOAuthToken(String, String, String, ExecutionContext)}, so token
+     * acquisition can overlap other work.
+     */
+    public static CompletableFuture<DocusignOAuthToken> fetchOAuthTokenAsync(
+            String userId,
+            String integratorKey,
+            String privateKeyFileName,
+            ExecutionContext context
+    ) {
+        String oauthHost = System.getenv("DOCUSIGN_OAUTH_HOST");
+        DocusignOAuthTokenCache cache = DocusignOAuthTokenCache.getInstance();
+        return cache.getTokenAsync(userId, integratorKey, oauthHost,
+                () -> loadThroughStore(userId, integratorKey, privateKeyFileName, oauthHost, cache.getRefreshAheadMillis()));
+    }
+
+    /**
+     * Fetches OAuth token and renders it in the Logic App-style JSON envelope.
      *
      * @param userId             The DocuSign user ID (GUID) to impersonate
      * @param integratorKey      The DocuSign integrator key (client ID)
@@ -29,87 +75,123 @@ public class DocusignOAuthTokenGeneration {
             String privateKeyFileName,
             ExecutionContext context
     ) {
-        HttpURLConnection connection = null;
-        Scanner scanner = null;
-
-        try {
-            // ✅ Step 1: Read OAuth endpoint from environment variables
-            String oauthHost = System.getenv("DOCUSIGN_OAUTH_HOST"); // e.g. account-d.docusign.com
-            String oauthPath = System.getenv("DOCUSIGN_OAUTH_PATH"); // e.g. /oauth/token
-
-            if (oauthHost == null || oauthPath == null || userId== null || integratorKey == null) {
-                context.getLogger().severe("Missing environment variables: DOCUSIGN_OAUTH_HOST, DOCUSIGN_OAUTH_PATH, userId or integratorKey");
-                return "{ \"error\": \"Missing OAuth host, path, userId or integratorKey from environment\", \"isTokenValid\": false }";
-                //return "{ \"error\": \"Missing OAuth host or path from environment\", \"isTokenValid\": false }";
-            }
-
-            String finalUrl = String.format("https://%s:%d%s", oauthHost, 443, oauthPath);
-            context.getLogger().info("Constructed DocuSign OAuth URL: " + finalUrl);
-
-            // ✅ Step 2: Generate JWT assertion
-            context.getLogger().info("Generating JWT assertion...");
-            DocusignJwtToken jwtUtil = new DocusignJwtToken();
-            jwtUtil.setPrivateKey(privateKeyFileName);
-            jwtUtil.setIntegratorKey(integratorKey);
-
-            @SuppressWarnings("unchecked")
-            Map<String, String> jwtData = (Map<String, String>) jwtUtil.onCall(userId, oauthHost, integratorKey);
-
-            String assertion = jwtData.get("assertion");
-            String grantType = jwtData.get("grant_type");
-
-            if (assertion == null || grantType == null) {
-                context.getLogger().severe("JWT generation failed: assertion or grant_type is null");
-                return "{ \"error\": \"Missing assertion or grant_type from JWT\", \"isTokenValid\": false }";
-            }
-
-            // ✅ Step 3: Prepare and send HTTP request
-            context.getLogger().info("Sending POST request to DocuSign OAuth endpoint...");
-            URL url = new URL(finalUrl);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Host", oauthHost);
-            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setDoOutput(true);
-
-            // ✅ Step 4: Write form-urlencoded body
-            String requestBody = "grant_type=" + grantType + "&assertion=" + assertion;
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(requestBody.getBytes("UTF-8"));
-                os.flush();
-            }
-
-            // ✅ Step 5: Read the response
-            int responseCode = connection.getResponseCode();
-            context.getLogger().info("Received response from DocuSign: HTTP " + responseCode);
-
-            scanner = new Scanner(
-                    (responseCode >= 200 && responseCode < 300)
-                            ? connection.getInputStream()
-                            : connection.getErrorStream()
-            );
-
-            StringBuilder response = new StringBuilder();
-            while (scanner.hasNextLine()) {
-                response.append(scanner.nextLine());
-            }
-
-            // ✅ Step 6: Return Logic App-style response
-            return String.format(
-                    "{ \"DocuSignOauthToken\": %s, \"isTokenValid\": %s }",
-                    response.toString(),
-                    (responseCode >= 200 && responseCode < 300) ? "true" : "false"
-            );
-
-        } catch (Exception e) {
-            context.getLogger().severe("Exception while generating DocuSign OAuth token: " + e.getMessage());
-            return String.format(
-                    "{ \"error\": \"%s\", \"isTokenValid\": false }",
-                    e.getMessage().replace("\"", "'")
-            );
-        } finally {
-            if (scanner != null) scanner.close();
-            if (connection != null) connection.disconnect();
+        DocusignOAuthToken token = fetchOAuthToken(userId, integratorKey, privateKeyFileName, context);
+        if (!token.isValid()) {
+            context.getLogger().severe("Exception while generating DocuSign OAuth token: " + token.getError());
         }
+        return token.toLogicAppJson();
+    }
+
+    /**
+     * Refreshes the cached OAuth token for the user if it is missing or expires within the given window.
+     *
+     * @param userId             The DocuSign user ID (GUID) to impersonate
+     * @param integratorKey      The DocuSign integrator key (client ID)
+     * @param privateKeyFileName The filename of the private key (inside resources)
+     * @param withinMillis       Refresh when the token expires within this many milliseconds
+     * @param context            Azure Function's ExecutionContext for logging
+     * @return The new token, or null if the cached token is still good
+     */
+    public static DocusignOAuthToken prewarmOAuthToken(
+            String userId,
+            String integratorKey,
+            String privateKeyFileName,
+            long withinMillis,
+            ExecutionContext context
+    ) {
+        String oauthHost = System.getenv("DOCUSIGN_OAUTH_HOST");
+        return DocusignOAuthTokenCache.getInstance().refreshIfExpiring(userId, integratorKey, oauthHost, withinMillis,
+                () -> loadThroughStore(userId, integratorKey, privateKeyFileName, oauthHost, withinMillis)).join();
+    }
+
+    /**
+     * Drops the user's token from the in-process cache and the shared store after DocuSign rejected it with 401,
+     * so the next call fetches a new one instead of reusing a token that only looks valid.
+     *
+     * @param userId        The DocuSign user ID (GUID) the token impersonates
+     * @param integratorKey The DocuSign integrator key (client ID)
+     */
+    public static void invalidateOAuthToken(String userId, String integratorKey) {
+        String oauthHost = System.getenv("DOCUSIGN_OAUTH_HOST");
+        if (userId == null || integratorKey == null || oauthHost == null) return;
+
+        logger.log(Level.WARNING, "[Utils] [OAuth] DocuSign rejected the token for user {0}, dropping it", userId);
+        DocusignOAuthTokenCache.getInstance().invalidate(userId, integratorKey, oauthHost);
+        tokenStore.remove(storeKey(userId, integratorKey, oauthHost));
+    }
+
+    /**
+     * Loads a token that stays valid for at least {@code minValidityMillis}: from the shared store if another
+     * instance already refreshed it, otherwise from DocuSign while holding the refresh lease. Instances that
+     * find the lease taken wait for the holder's token and take the lease over once it is free, for example
+     * because the holder's refresh failed. Only if neither happens within the lease time, or before the event's
+     * deadline, do they refresh on their own.
+     */
+    private static CompletableFuture<DocusignOAuthToken> loadThroughStore(
+            String userId,
+            String integratorKey,
+            String privateKeyFileName,
+            String oauthHost,
+            long minValidityMillis
+    ) {
+        if (userId == null || integratorKey == null || oauthHost == null) {
+            return DocusignOAuthClient.requestTokenAsync(userId, integratorKey, privateKeyFileName);
+        }
+
+        String key = storeKey(userId, integratorKey, oauthHost);
+        Supplier<CompletableFuture<DocusignOAuthToken>> refresh =
+                () -> DocusignOAuthClient.requestTokenAsync(userId, integratorKey, privateKeyFileName);
+        DocusignOAuthToken shared = tokenStore.get(key);
+        if (shared != null && shared.isUsableFor(minValidityMillis)) {
+            logger.log(Level.INFO, "[Utils] [OAuth] Reusing token from shared store for user {0}", userId);
+            return CompletableFuture.completedFuture(shared);
+        }
+
+        if (tokenStore.tryAcquireLease(key, INSTANCE_ID, LEASE_MILLIS)) {
+            return refreshUnderLease(key, refresh);
+        }
+
+        logger.log(Level.INFO, "[Utils] [OAuth] Another instance is refreshing the token for user {0}, waiting", userId);
+        Deadline deadline = Deadline.current();
+        long waitMillis = deadline == null ? LEASE_MILLIS : Math.min(LEASE_MILLIS, deadline.remainingMillis());
+        return awaitSharedToken(key, minValidityMillis, System.currentTimeMillis() + waitMillis, refresh);
+    }
+
+    private static String storeKey(String userId, String integratorKey, String oauthHost) {
+        return userId + "|" + integratorKey + "|" + oauthHost.toLowerCase();
+    }
+
+    private static CompletableFuture<DocusignOAuthToken> refreshUnderLease(
+            String key,
+            Supplier<CompletableFuture<DocusignOAuthToken>> refresh
+    ) {
+        return refresh.get().whenComplete((token, error) -> {
+            tokenStore.put(key, token);
+            tokenStore.releaseLease(key, INSTANCE_ID);
+        });
+    }
+
+    private static CompletableFuture<DocusignOAuthToken> awaitSharedToken(
+            String key,
+            long minValidityMillis,
+            long waitUntil,
+            Supplier<CompletableFuture<DocusignOAuthToken>> refresh
+    ) {
+        return CompletableFuture
+                .supplyAsync(() -> tokenStore.get(key), CompletableFuture.delayedExecutor(LEASE_POLL_MILLIS, TimeUnit.MILLISECONDS))
+                .thenCompose(token -> {
+                    if (token != null && token.isUsableFor(minValidityMillis)) {
+                        return CompletableFuture.completedFuture(token);
+                    }
+                    if (tokenStore.tryAcquireLease(key, INSTANCE_ID, LEASE_MILLIS)) {
+                        logger.info("[Utils] [OAuth] Refresh lease is free again, taking over the refresh");
+                        return refreshUnderLease(key, refresh);
+                    }
+                    if (System.currentTimeMillis() >= waitUntil) {
+                        logger.warning("[Utils] [OAuth] Lease holder did not publish a token in time, refreshing locally");
+                        return refresh.get().whenComplete((fallback, error) -> tokenStore.put(key, fallback));
+                    }
+                    return awaitSharedToken(key, minValidityMillis, waitUntil, refresh);
+                });
     }
 }
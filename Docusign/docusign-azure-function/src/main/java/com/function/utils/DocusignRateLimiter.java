@@ -0,0 +1,224 @@
+package com.function.utils;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Paces DocuSign API calls per account from the rate-limit headers DocuSign returns
+ * (X-RateLimit-Limit / -Remaining / -Reset for the hourly limit, X-BurstLimit-Limit / -Remaining for the burst limit).
+ *
+ * Each account has a token bucket. Until the hourly budget drops below DOCUSIGN_RATE_LIMIT_PACE_RATIO of the limit
+ * (default 0.5) calls go straight through; after that the bucket refills at the rate that spreads what is left evenly
+ * up to the reset, holding back DOCUSIGN_RATE_LIMIT_RESERVE_RATIO (default 0.1) of the limit for {@link Priority#ARCHIVAL}
+ * work. When the burst budget runs out every call pauses DOCUSIGN_BURST_PAUSE_MS (default 1000). A call that would
+ * have to wait longer than DOCUSIGN_RATE_LIMIT_MAX_WAIT_MS (default 30000), or past the caller's {@link Deadline},
+ * fails with {@code "429::..."} instead and gives its token back.
+ */
+public class DocusignRateLimiter {
+
+    private static final Logger logger = Logger.getLogger(DocusignRateLimiter.class.getName());
+
+    public enum Priority {
+        /** Downloading completed envelopes for archival; may use the reserved budget. */
+        ARCHIVAL,
+        /** Everything else. */
+        NORMAL
+    }
+
+    private static final DocusignRateLimiter INSTANCE = new DocusignRateLimiter(
+            readDouble("DOCUSIGN_RATE_LIMIT_PACE_RATIO", 0.5),
+            readDouble("DOCUSIGN_RATE_LIMIT_RESERVE_RATIO", 0.1),
+            readLong("DOCUSIGN_RATE_LIMIT_BURST", 10),
+            readLong("DOCUSIGN_BURST_PAUSE_MS", 1000),
+            readLong("DOCUSIGN_RATE_LIMIT_MAX_WAIT_MS", 30000));
+
+    private final double paceRatio;
+    private final double reserveRatio;
+    private final long burst;
+    private final long burstPauseMs;
+    private final long maxWaitMs;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public DocusignRateLimiter(double paceRatio, double reserveRatio, long burst, long burstPauseMs, long maxWaitMs) {
+        this.paceRatio = paceRatio;
+        this.reserveRatio = reserveRatio;
+        this.burst = Math.max(1, burst);
+        this.burstPauseMs = burstPauseMs;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public static DocusignRateLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sends a DocuSign request once the account's budget allows it (through {@link Resilience}) and updates the
+     * budget from the response headers.
+     *
+     * @param accountId  DocuSign account the call is billed to
+     * @param priority   Priority of the call
+     * @param request    Request to send
+     * @param handler    Body handler for the response
+     * @param replayable Whether the request body can be sent more than once
+     * @return Response of the last attempt
+     * @throws IOException with a {@code "429::..."} message if the budget would not allow the call in time
+     *                     or before the caller's deadline
+     */
+    public <T> HttpResponse<T> send(String accountId, Priority priority, HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                    boolean replayable) throws IOException, InterruptedException {
+        Bucket bucket = bucket(accountId);
+        Deadline deadline = Deadline.current();
+        long allowedWaitMs = deadline == null ? maxWaitMs : Math.min(maxWaitMs, deadline.remainingMillis());
+        long waitMs = bucket.reserve(priority, allowedWaitMs);
+        if (waitMs > allowedWaitMs) {
+            bucket.refused.incrementAndGet();
+            logger.log(Level.WARNING, "[Utils] [RateLimit] Account {0}: {1} call would wait {2}ms for DocuSign budget, refusing",
+                    new Object[]{accountId, priority, String.valueOf(waitMs)});
+            throw new IOException("429::{\"error\":\"DocuSign API rate limit budget exhausted\"}");
+        }
+        if (waitMs > 0) {
+            bucket.paced.incrementAndGet();
+            bucket.waitedMs.addAndGet(waitMs);
+            Thread.sleep(waitMs);
+        }
+
+        HttpResponse<T> response = Resilience.send(Downstream.DOCUSIGN, request, handler, replayable);
+        bucket.update(accountId, response.headers());
+        return response;
+    }
+
+    /**
+     * Remaining DocuSign budget per account, suitable for logging or returning from a diagnostics endpoint.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        buckets.forEach((accountId, bucket) -> stats.put(accountId, bucket.getStats()));
+        return stats;
+    }
+
+    Bucket bucket(String accountId) {
+        return buckets.computeIfAbsent(accountId == null ? "" : accountId, key -> new Bucket());
+    }
+
+    final class Bucket {
+        private long limit = -1;
+        private long remaining = -1;
+        private long resetAt;
+        private long burstLimit = -1;
+        private long burstRemaining = -1;
+        private long burstPausedUntil;
+
+        private double tokens = burst;
+        private long refilledAt = System.currentTimeMillis();
+
+        private final AtomicLong paced = new AtomicLong();
+        private final AtomicLong waitedMs = new AtomicLong();
+        private final AtomicLong refused = new AtomicLong();
+
+        /**
+         * Takes a token, going into debt if none is left so concurrent callers queue up behind each other.
+         * Nothing is taken if the wait would exceed {@code maxWait}, so a refused call does not hold up the
+         * callers behind it.
+         *
+         * @return How long the caller must wait before sending
+         */
+        synchronized long reserve(Priority priority, long maxWait) {
+            long now = System.currentTimeMillis();
+            long wait = Math.max(0, burstPausedUntil - now);
+
+            // No headers seen yet, the window has reset, or plenty left: no pacing
+            if (remaining < 0 || now >= resetAt || remaining >= limit * paceRatio) {
+                if (wait <= maxWait) take();
+                return wait;
+            }
+
+            long reserve = priority == Priority.ARCHIVAL ? 0 : (long) Math.ceil(limit * reserveRatio);
+            long spendable = remaining - reserve;
+            if (spendable <= 0) {
+                // Nothing left for this priority until the window resets
+                return Math.max(wait, resetAt - now);
+            }
+
+            double ratePerMs = (double) spendable / Math.max(1, resetAt - now);
+            tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerMs);
+            refilledAt = now;
+            long paceWait = tokens >= 1 ? wait : Math.max(wait, (long) Math.ceil((1 - tokens) / ratePerMs));
+            if (paceWait <= maxWait) {
+                tokens -= 1;
+                take();
+            }
+            return paceWait;
+        }
+
+        private void take() {
+            if (burstRemaining > 0) burstRemaining--;
+            if (remaining > 0) remaining--;
+        }
+
+        synchronized void update(String accountId, HttpHeaders headers) {
+            long headerLimit = headers.firstValueAsLong("X-RateLimit-Limit").orElse(-1);
+            long headerRemaining = headers.firstValueAsLong("X-RateLimit-Remaining").orElse(-1);
+            long headerReset = headers.firstValueAsLong("X-RateLimit-Reset").orElse(-1);
+            if (headerLimit > 0 && headerRemaining >= 0 && headerReset > 0) {
+                boolean startedPacing = remaining >= limit * paceRatio && headerRemaining < headerLimit * paceRatio;
+                limit = headerLimit;
+                remaining = headerRemaining;
+                resetAt = headerReset * 1000;
+                if (startedPacing) {
+                    logger.log(Level.WARNING, "[Utils] [RateLimit] Account {0}: {1}/{2} DocuSign calls left until reset, pacing calls",
+                            new Object[]{accountId, String.valueOf(remaining), String.valueOf(limit)});
+                }
+            }
+
+            burstLimit = headers.firstValueAsLong("X-BurstLimit-Limit").orElse(burstLimit);
+            burstRemaining = headers.firstValueAsLong("X-BurstLimit-Remaining").orElse(burstRemaining);
+            if (burstRemaining == 0) {
+                burstPausedUntil = System.currentTimeMillis() + burstPauseMs;
+                logger.log(Level.WARNING, "[Utils] [RateLimit] Account {0}: DocuSign burst limit reached, pausing calls", accountId);
+            }
+        }
+
+        synchronized Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", limit);
+            stats.put("remaining", remaining);
+            stats.put("resetInSeconds", remaining < 0 ? -1 : Math.max(0, (resetAt - System.currentTimeMillis()) / 1000));
+            stats.put("burstLimit", burstLimit);
+            stats.put("burstRemaining", burstRemaining);
+            stats.put("paced", paced.get());
+            stats.put("waitedMs", waitedMs.get());
+            stats.put("refused", refused.get());
+            return stats;
+        }
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [RateLimit] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    private static double readDouble(String name, double defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [RateLimit] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.function.utils;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.function.model.DocusignOAuthToken;
+
+/**
+ * Storage for DocuSign OAuth tokens that may be shared between function instances.
+ *
+ * Leases make sure only one instance refreshes a given key at a time; the others read the refreshed token
+ * back from the store once the lease holder has written it.
+ */
+public interface DocusignTokenStore {
+
+    /**
+     * @return The stored token for the key, or null if there is none
+     */
+    DocusignOAuthToken get(String key);
+
+    /**
+     * Stores a valid token for the key, replacing any previous one.
+     */
+    void put(String key, DocusignOAuthToken token);
+
+    /**
+     * Drops the stored token for the key, e.g. after DocuSign rejected it with 401.
+     */
+    void remove(String key);
+
+    /**
+     * Tries to take the refresh lease for the key. The lease expires on its own after {@code leaseMillis}
+     * so a crashed holder cannot block refreshes forever.
+     *
+     * @return true if the caller now holds the lease
+     */
+    boolean tryAcquireLease(String key, String owner, long leaseMillis);
+
+    /**
+     * Releases the lease if it is still held by {@code owner}.
+     */
+    void releaseLease(String key, String owner);
+
+    /**
+     * Builds the store selected by env DOCUSIGN_TOKEN_STORE: {@code memory} (default) or {@code file}.
+     * The file store needs DOCUSIGN_TOKEN_STORE_SECRET and optionally DOCUSIGN_TOKEN_STORE_DIR.
+     */
+    static DocusignTokenStore fromEnvironment() {
+        Logger logger = Logger.getLogger(DocusignTokenStore.class.getName());
+        String type = System.getenv("DOCUSIGN_TOKEN_STORE");
+
+        if ("file".equalsIgnoreCase(type)) {
+            try {
+                return FileDocusignTokenStore.fromEnvironment();
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "[Utils] [TokenStore] File token store unavailable, using in-memory store: {0}", e.getMessage());
+            }
+        } else if (type != null && !type.isEmpty() && !"memory".equalsIgnoreCase(type)) {
+            logger.log(Level.WARNING, "[Utils] [TokenStore] Unknown DOCUSIGN_TOKEN_STORE {0}, using in-memory store", type);
+        }
+        return new InMemoryDocusignTokenStore();
+    }
+}
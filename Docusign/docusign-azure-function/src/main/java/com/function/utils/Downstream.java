@@ -0,0 +1,12 @@
+package com.function.utils;
+
+/**
+ * Outbound systems this function app talks to. Used to key per-downstream HTTP clients and their settings.
+ */
+public enum Downstream {
+    DOCUSIGN,
+    OAUTH,
+    REND,
+    MYHRSS,
+    AZURE_TOKEN
+}
@@ -0,0 +1,159 @@
+package com.function.utils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Event store on the local file system, shared by every JVM on the node that points at the same directory and
+ * surviving restarts.
+ *
+ * Each key maps to files named after a SHA-256 of the key: {@code .evt} holds the key and the stored result,
+ * {@code .lease} the current claim ("owner expiresAt"), and {@code .lock} is only used for an exclusive
+ * {@link FileLock} around claim updates. Results older than CONNECT_DEDUPE_TTL_HOURS (default 168) are ignored
+ * and deleted when read.
+ */
+public class FileConnectEventStore implements ConnectEventStore {
+
+    private static final Logger logger = Logger.getLogger(FileConnectEventStore.class.getName());
+
+    private final Path directory;
+    private final long ttlMillis;
+
+    public FileConnectEventStore(Path directory, long ttlMillis) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Builds the store from env CONNECT_DEDUPE_STORE_DIR (default {java.io.tmpdir}/docusign-connect-events).
+     */
+    public static FileConnectEventStore fromEnvironment() throws IOException {
+        String dir = System.getenv("CONNECT_DEDUPE_STORE_DIR");
+        Path directory = dir == null || dir.isEmpty()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "docusign-connect-events")
+                : Paths.get(dir);
+        logger.log(Level.INFO, "[Utils] [Dedupe] Using file event store at {0}", directory);
+        return new FileConnectEventStore(directory,
+                TimeUnit.HOURS.toMillis(InMemoryConnectEventStore.readLong("CONNECT_DEDUPE_TTL_HOURS", 168)));
+    }
+
+    @Override
+    public String get(String key) {
+        Path eventFile = file(key, ".evt");
+        try {
+            if (!Files.exists(eventFile)) return null;
+            if (System.currentTimeMillis() - Files.getLastModifiedTime(eventFile).toMillis() > ttlMillis) {
+                Files.deleteIfExists(eventFile);
+                return null;
+            }
+            String content = Files.readString(eventFile, StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            return newline < 0 || !content.substring(0, newline).equals(key) ? null : content.substring(newline + 1);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "[Utils] [Dedupe] Unable to read stored event: {0}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, String result) {
+        try {
+            writeAtomically(file(key, ".evt"), (key + "\n" + result).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "[Utils] [Dedupe] Unable to store event: {0}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean tryClaim(String key, String owner, long leaseMillis) {
+        try (FileChannel lockChannel = FileChannel.open(file(key, ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Held until the channel is closed
+            lockChannel.lock();
+
+            Path leaseFile = file(key, ".lease");
+            long now = System.currentTimeMillis();
+            if (Files.exists(leaseFile)) {
+                String[] lease = Files.readString(leaseFile, StandardCharsets.UTF_8).trim().split(" ");
+                boolean held = lease.length == 2 && !lease[0].equals(owner) && Long.parseLong(lease[1]) > now;
+                if (held) return false;
+            }
+            writeAtomically(leaseFile, (owner + " " + (now + leaseMillis)).getBytes(StandardCharsets.UTF_8));
+            return true;
+
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "[Utils] [Dedupe] Unable to claim event, processing locally: {0}", e.getMessage());
+            return true;
+        }
+    }
+
+    @Override
+    public void release(String key, String owner) {
+        try (FileChannel lockChannel = FileChannel.open(file(key, ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Held until the channel is closed
+            lockChannel.lock();
+
+            Path leaseFile = file(key, ".lease");
+            if (Files.exists(leaseFile)
+                    && Files.readString(leaseFile, StandardCharsets.UTF_8).startsWith(owner + " ")) {
+                Files.delete(leaseFile);
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "[Utils] [Dedupe] Unable to release claim: {0}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void forEachKey(Consumer<String> consumer) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.evt")) {
+            for (Path eventFile : files) {
+                String content = Files.readString(eventFile, StandardCharsets.UTF_8);
+                int newline = content.indexOf('\n');
+                if (newline > 0) consumer.accept(content.substring(0, newline));
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "[Utils] [Dedupe] Unable to list stored events: {0}", e.getMessage());
+        }
+    }
+
+    private Path file(String key, String suffix) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : sha256(key.getBytes(StandardCharsets.UTF_8))) {
+            name.append(String.format("%02x", b));
+        }
+        return directory.resolve(name.append(suffix).toString());
+    }
+
+    private void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(directory, "tmp", ".part");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static byte[] sha256(byte[] input) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(input);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.function.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.function.model.DocusignOAuthToken;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Token store on the local file system, shared by every JVM on the node that points at the same directory.
+ *
+ * Each key maps to three files named after a SHA-256 of the key: {@code .tok} holds the token encrypted with
+ * AES-256-GCM, {@code .lease} holds the current refresh lease ("owner expiresAt"), and {@code .lock} is only
+ * used for an exclusive {@link FileLock} around lease updates so check-and-set is atomic across processes.
+ *
+ * A lease file that cannot be parsed counts as expired and is overwritten. Only when the lease files cannot be
+ * read or written at all does {@link #tryAcquireLease} let the caller refresh anyway.
+ */
+public class FileDocusignTokenStore implements DocusignTokenStore {
+
+    private static final Logger logger = Logger.getLogger(FileDocusignTokenStore.class.getName());
+
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    // A JVM may hold only one lock on a file, so lease updates from this process take turns first
+    private static final Object LEASE_LOCK = new Object();
+
+    private final Path directory;
+    private final SecretKeySpec secretKey;
+    private final SecureRandom random = new SecureRandom();
+
+    public FileDocusignTokenStore(Path directory, String secret) throws IOException {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("Token store secret is empty");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.secretKey = new SecretKeySpec(sha256(secret.getBytes(StandardCharsets.UTF_8)), "AES");
+    }
+
+    /**
+     * Builds the store from env DOCUSIGN_TOKEN_STORE_DIR (default {java.io.tmpdir}/docusign-token-store)
+     * and DOCUSIGN_TOKEN_STORE_SECRET.
+     */
+    public static FileDocusignTokenStore fromEnvironment() throws IOException {
+        String dir = System.getenv("DOCUSIGN_TOKEN_STORE_DIR");
+        Path directory = dir == null || dir.isEmpty()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "docusign-token-store")
+                : Paths.get(dir);
+        String secret = System.getenv("DOCUSIGN_TOKEN_STORE_SECRET");
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("Missing environment variable: DOCUSIGN_TOKEN_STORE_SECRET");
+        }
+        logger.log(Level.INFO, "[Utils] [TokenStore] Using file token store at {0}", directory);
+        return new FileDocusignTokenStore(directory, secret);
+    }
+
+    @Override
+    public DocusignOAuthToken get(String key) {
+        Path tokenFile = file(key, ".tok");
+        if (!Files.exists(tokenFile)) return null;
+        try {
+            JsonObject json = JsonParser.parseString(decrypt(Files.readAllBytes(tokenFile))).getAsJsonObject();
+            return DocusignOAuthToken.restore(
+                    json.get("accessToken").getAsString(),
+                    json.get("tokenType").getAsString(),
+                    json.get("expiresIn").getAsLong(),
+                    json.get("expiresAt").getAsLong(),
+                    json.has("rawResponse") && !json.get("rawResponse").isJsonNull() ? json.get("rawResponse").getAsString() : null);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "[Utils] [TokenStore] Unable to read stored token: {0}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, DocusignOAuthToken token) {
+        if (token == null || !token.isValid()) return;
+
+        JsonObject json = new JsonObject();
+        json.addProperty("accessToken", token.getAccessToken());
+        json.addProperty("tokenType", token.getTokenType());
+        json.addProperty("expiresIn", token.getExpiresIn());
+        json.addProperty("expiresAt", token.getExpiresAt());
+        json.addProperty("rawResponse", token.getRawResponse());
+
+        try {
+            writeAtomically(file(key, ".tok"), encrypt(json.toString()));
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "[Utils] [TokenStore] Unable to store token: {0}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        try {
+            Files.deleteIfExists(file(key, ".tok"));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "[Utils] [TokenStore] Unable to remove stored token: {0}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean tryAcquireLease(String key, String owner, long leaseMillis) {
+        synchronized (LEASE_LOCK) {
+            try (FileChannel lockChannel = FileChannel.open(file(key, ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Held until the channel is closed
+                lockChannel.lock();
+
+                Path leaseFile = file(key, ".lease");
+                long now = System.currentTimeMillis();
+                if (Files.exists(leaseFile)) {
+                    String[] lease = Files.readString(leaseFile, StandardCharsets.UTF_8).trim().split(" ");
+                    boolean held = lease.length == 2 && !lease[0].equals(owner) && expiresAt(lease[1]) > now;
+                    if (held) return false;
+                }
+                writeAtomically(leaseFile, (owner + " " + (now + leaseMillis)).getBytes(StandardCharsets.UTF_8));
+                return true;
+
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "[Utils] [TokenStore] Unable to acquire lease, refreshing locally: {0}", e.getMessage());
+                return true;
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "[Utils] [TokenStore] Unable to acquire lease: {0}", e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void releaseLease(String key, String owner) {
+        synchronized (LEASE_LOCK) {
+            try (FileChannel lockChannel = FileChannel.open(file(key, ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Held until the channel is closed
+                lockChannel.lock();
+
+                Path leaseFile = file(key, ".lease");
+                if (Files.exists(leaseFile)
+                        && Files.readString(leaseFile, StandardCharsets.UTF_8).startsWith(owner + " ")) {
+                    Files.delete(leaseFile);
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "[Utils] [TokenStore] Unable to release lease: {0}", e.getMessage());
+            }
+        }
+    }
+
+    // A lease whose expiry cannot be read is treated as expired, so it is overwritten rather than honoured forever
+    private static long expiresAt(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [TokenStore] Ignoring unreadable lease expiry: {0}", value);
+            return 0;
+        }
+    }
+
+    private Path file(String key, String suffix) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : sha256(key.getBytes(StandardCharsets.UTF_8))) {
+            name.append(String.format("%02x", b));
+        }
+        return directory.resolve(name.append(suffix).toString());
+    }
+
+    private void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(directory, "tmp", ".part");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private byte[] encrypt(String plainText) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        byte[] cipherText = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.allocate(IV_LENGTH + cipherText.length).put(iv).put(cipherText).array();
+    }
+
+    private String decrypt(byte[] content) throws GeneralSecurityException {
+        if (content.length <= IV_LENGTH) {
+            throw new GeneralSecurityException("Stored token is truncated");
+        }
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH_BITS, content, 0, IV_LENGTH));
+        return new String(cipher.doFinal(content, IV_LENGTH, content.length - IV_LENGTH), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] sha256(byte[] input) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(input);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.function.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Reads a raw byte stream and yields its gzip encoding, compressing one chunk at a time. The JDK only offers gzip
+ * as an {@code OutputStream} wrapper; this is the pull-side equivalent needed to feed an HTTP body publisher
+ * without buffering the whole body.
+ */
+public class GzipEncodingInputStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final InputStream source;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] raw = new byte[CHUNK_SIZE];
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+
+    private int position;
+    private int limit;
+    private boolean headerWritten;
+    private boolean sourceDone;
+    private boolean trailerWritten;
+
+    public GzipEncodingInputStream(InputStream source) {
+        this(source, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public GzipEncodingInputStream(InputStream source, int level) {
+        this.source = source;
+        this.deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        source.close();
+    }
+
+    private boolean fill() throws IOException {
+        while (position >= limit) {
+            position = 0;
+            limit = 0;
+            if (!headerWritten) {
+                System.arraycopy(HEADER, 0, buffer, 0, HEADER.length);
+                limit = HEADER.length;
+                headerWritten = true;
+            } else if (trailerWritten) {
+                return false;
+            } else if (deflater.finished()) {
+                writeTrailer();
+            } else if (deflater.needsInput() && !sourceDone) {
+                int read = source.read(raw, 0, raw.length);
+                if (read == -1) {
+                    sourceDone = true;
+                    deflater.finish();
+                } else if (read > 0) {
+                    crc.update(raw, 0, read);
+                    deflater.setInput(raw, 0, read);
+                }
+            } else {
+                limit = deflater.deflate(buffer, 0, buffer.length);
+            }
+        }
+        return true;
+    }
+
+    private void writeTrailer() {
+        long checksum = crc.getValue();
+        long size = deflater.getBytesRead();
+        for (int i = 0; i < 4; i++) buffer[i] = (byte) (checksum >>> (8 * i));
+        for (int i = 0; i < 4; i++) buffer[4 + i] = (byte) (size >>> (8 * i));
+        limit = 8;
+        trailerWritten = true;
+    }
+}
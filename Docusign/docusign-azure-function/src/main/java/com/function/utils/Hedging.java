@@ -0,0 +1,202 @@
+package com.function.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hedged requests for idempotent GETs: if the response headers have not arrived once the downstream's observed
+ * p95 latency has passed, a second identical request is sent and whichever answers first is used. The other
+ * response is discarded when it arrives. This trims the latency tail caused by one slow connection at the cost of
+ * roughly 5% extra requests.
+ *
+ * Off by default; enabled per downstream with HEDGE_{NAME}_ENABLED. HEDGE_{NAME}_MIN_DELAY_MS (default 50) is the
+ * shortest hedge delay. No hedging happens until HEDGE_MIN_SAMPLES (20) latencies have been observed.
+ */
+public class Hedging {
+
+    private static final Logger logger = Logger.getLogger(Hedging.class.getName());
+
+    private static final int WINDOW_SIZE = 200;
+    private static final int HEDGE_MIN_SAMPLES = 20;
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    private static final Map<Downstream, Tracker> trackers = new EnumMap<>(Downstream.class);
+
+    static {
+        for (Downstream downstream : Downstream.values()) {
+            trackers.put(downstream, new Tracker(downstream));
+        }
+    }
+
+    /**
+     * @return Whether GETs to the downstream are hedged
+     */
+    public static boolean isEnabled(Downstream downstream) {
+        return trackers.get(downstream).enabled;
+    }
+
+    /**
+     * Sends an idempotent request, hedging it once the downstream's p95 latency has passed.
+     */
+    public static <T> HttpResponse<T> send(Downstream downstream, HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        Tracker tracker = trackers.get(downstream);
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> primary = HttpClientRegistry.sendAsync(downstream, request, handler);
+
+        long hedgeAfterMs = tracker.hedgeDelayMs();
+        if (hedgeAfterMs >= 0) {
+            try {
+                HttpResponse<T> response = primary.get(hedgeAfterMs, TimeUnit.MILLISECONDS);
+                tracker.record(System.nanoTime() - start);
+                return response;
+            } catch (TimeoutException e) {
+                // Slower than usual: race a second request against the first
+                tracker.hedged.incrementAndGet();
+                logger.log(Level.INFO, "[Utils] [Hedge] {0} request slower than {1}ms, sending hedge",
+                        new Object[]{downstream, String.valueOf(hedgeAfterMs)});
+                CompletableFuture<HttpResponse<T>> hedge = HttpClientRegistry.sendAsync(downstream, request, handler);
+                HttpResponse<T> response = await(firstSuccessful(primary, hedge));
+                if (hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.join() == response) {
+                    tracker.hedgeWins.incrementAndGet();
+                }
+                tracker.record(System.nanoTime() - start);
+                return response;
+            } catch (ExecutionException e) {
+                throw rethrow(e);
+            }
+        }
+
+        HttpResponse<T> response = await(primary);
+        tracker.record(System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Per-downstream p95 latency, hedges sent and hedges that answered first.
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        trackers.forEach((downstream, tracker) -> {
+            if (!tracker.enabled) return;
+            Map<String, Object> downstreamStats = new LinkedHashMap<>();
+            downstreamStats.put("p95Millis", tracker.percentileMs());
+            downstreamStats.put("hedged", tracker.hedged.get());
+            downstreamStats.put("hedgeWins", tracker.hedgeWins.get());
+            stats.put(downstream.name(), downstreamStats);
+        });
+        return stats;
+    }
+
+    // Completes with the first response; fails only if both attempts fail. A late response is discarded.
+    private static <T> CompletableFuture<HttpResponse<T>> firstSuccessful(CompletableFuture<HttpResponse<T>> first,
+                                                                          CompletableFuture<HttpResponse<T>> second) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        BiConsumer<HttpResponse<T>, Throwable> onComplete = (response, error) -> {
+            if (error == null) {
+                if (!result.complete(response)) discard(response);
+            } else if (failures.incrementAndGet() == 2) {
+                result.completeExceptionally(error);
+            }
+        };
+        first.whenComplete(onComplete);
+        second.whenComplete(onComplete);
+        return result;
+    }
+
+    private static <T> HttpResponse<T> await(CompletableFuture<HttpResponse<T>> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static IOException rethrow(ExecutionException e) {
+        Throwable cause = e.getCause();
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof IOException) return (IOException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        return new IOException(cause);
+    }
+
+    private static void discard(HttpResponse<?> response) {
+        if (response.body() instanceof InputStream) {
+            try {
+                ((InputStream) response.body()).close();
+            } catch (IOException ignored) {
+                // Connection is dropped either way
+            }
+        }
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [Hedge] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Sliding window of the latest latencies for one downstream.
+     */
+    private static final class Tracker {
+        private final boolean enabled;
+        private final long minDelayMs;
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+
+        private final AtomicLong hedged = new AtomicLong();
+        private final AtomicLong hedgeWins = new AtomicLong();
+
+        private Tracker(Downstream downstream) {
+            this.enabled = "true".equalsIgnoreCase(System.getenv("HEDGE_" + downstream.name() + "_ENABLED"));
+            this.minDelayMs = readLong("HEDGE_" + downstream.name() + "_MIN_DELAY_MS", 50);
+        }
+
+        private synchronized void record(long nanos) {
+            samples[next] = TimeUnit.NANOSECONDS.toMillis(nanos);
+            next = (next + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+        }
+
+        private synchronized long percentileMs() {
+            if (count == 0) return -1;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(count - 1, Math.ceil(count * HEDGE_PERCENTILE) - 1)];
+        }
+
+        /**
+         * @return How long to wait before hedging, or -1 when there are too few samples to tell what is slow
+         */
+        private synchronized long hedgeDelayMs() {
+            if (count < HEDGE_MIN_SAMPLES) return -1;
+            return Math.max(minDelayMs, percentileMs());
+        }
+    }
+}
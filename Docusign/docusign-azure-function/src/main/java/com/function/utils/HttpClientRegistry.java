@@ -0,0 +1,332 @@
+package com.function.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One shared, pooled {@link HttpClient} per {@link Downstream}.
+ *
+ * Clients keep connections alive between events, prefer HTTP/2 (falling back to HTTP/1.1 when the server does
+ * not negotiate it) and run on a bounded executor. Settings are read per downstream from the environment:
+ * <ul>
+ *   <li>HTTP_CLIENT_{NAME}_CONNECT_TIMEOUT_MS (default 10000)</li>
+ *   <li>HTTP_CLIENT_{NAME}_REQUEST_TIMEOUT_MS (default 120000)</li>
+ *   <li>HTTP_CLIENT_{NAME}_MAX_THREADS (default 8)</li>
+ *   <li>HTTP_CLIENT_{NAME}_HTTP2 (default true)</li>
+ * </ul>
+ * and HTTP_CLIENT_KEEPALIVE_SECONDS for the idle connection timeout shared by all clients.
+ *
+ * Every downstream also has its own adaptive {@link ConcurrencyLimiter}, so a slow dependency only queues its own
+ * calls instead of tying up every worker:
+ * <ul>
+ *   <li>LIMIT_{NAME}_INITIAL (default 16), LIMIT_{NAME}_MIN (default 2), LIMIT_{NAME}_MAX (default 64)</li>
+ *   <li>LIMIT_{NAME}_TOLERANCE (default 2.0): latency, relative to the long-run average, treated as overload</li>
+ *   <li>LIMIT_{NAME}_MAX_WAIT_MS (default 30000): longest wait for a slot before failing with {@link BulkheadFullException}</li>
+ * </ul>
+ * A slot is held until the response headers arrive; streamed response bodies are read outside the limit.
+ *
+ * When the caller has a current {@link Deadline}, the wait for a slot is cut to the time left, each request's
+ * timeout is cut to what is left once the slot is granted, and calls are refused with
+ * {@link DeadlineExceededException} once it has passed.
+ */
+public class HttpClientRegistry {
+
+    private static final Logger logger = Logger.getLogger(HttpClientRegistry.class.getName());
+
+    private static final long DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    private static final long DEFAULT_REQUEST_TIMEOUT_MS = 120000;
+    private static final int DEFAULT_MAX_THREADS = 8;
+    private static final int DEFAULT_INITIAL_LIMIT = 16;
+    private static final int DEFAULT_MIN_LIMIT = 2;
+    private static final int DEFAULT_MAX_LIMIT = 64;
+    private static final double DEFAULT_LIMIT_TOLERANCE = 2.0;
+    private static final double LIMIT_BACKOFF_RATIO = 0.9;
+    private static final long DEFAULT_LIMIT_MAX_WAIT_MS = 30000;
+    private static final long SLOW_QUEUE_WAIT_MS = 1000;
+
+    // Headers java.net.http sets itself and rejects when supplied by the caller
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private static final Map<Downstream, Entry> entries = new ConcurrentHashMap<>();
+
+    static {
+        String keepAlive = System.getenv("HTTP_CLIENT_KEEPALIVE_SECONDS");
+        if (keepAlive != null && !keepAlive.isEmpty() && System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", keepAlive.trim());
+        }
+    }
+
+    /**
+     * Starts a request to the downstream with its configured request timeout already applied.
+     */
+    public static HttpRequest.Builder newRequest(Downstream downstream, URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(entry(downstream).requestTimeout);
+    }
+
+    /**
+     * Copies caller headers onto the request, skipping headers the JDK client manages itself (Host, Content-Length, ...),
+     * which it would otherwise reject.
+     */
+    public static HttpRequest.Builder headers(HttpRequest.Builder builder, Map<String, String> headers) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getValue() == null || RESTRICTED_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            builder.header(header.getKey(), header.getValue());
+        }
+        return builder;
+    }
+
+    /**
+     * Sends a request on the downstream's shared client within its concurrency limit and records connection statistics.
+     *
+     * @throws BulkheadFullException     if no concurrency slot became free in time
+     * @throws DeadlineExceededException if the caller's deadline passed before the call could be made
+     */
+    public static <T> HttpResponse<T> send(Downstream downstream, HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        Entry entry = entry(downstream);
+        Deadline deadline = Deadline.current();
+        long maxWaitMs = maxWaitMs(entry, deadline);
+        ConcurrencyLimiter.Permit permit;
+        try {
+            permit = entry.limiter.acquire(maxWaitMs);
+        } catch (BulkheadFullException e) {
+            throw maxWaitMs < entry.limiter.getMaxWaitMs() ? new DeadlineExceededException() : e;
+        }
+        logQueueWait(downstream, permit);
+        HttpRequest bounded;
+        try {
+            bounded = withinDeadline(request, deadline);
+        } catch (DeadlineExceededException e) {
+            permit.release(false);
+            throw e;
+        }
+        entry.requests.incrementAndGet();
+        try {
+            HttpResponse<T> response = entry.client.send(bounded, handler);
+            entry.record(response);
+            permit.release(isOverload(response.statusCode()));
+            return response;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            entry.failures.incrementAndGet();
+            permit.release(e instanceof IOException);
+            throw e;
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #send(Downstream, HttpRequest, HttpResponse.BodyHandler)}; waiting for a
+     * concurrency slot does not block the caller.
+     */
+    public static <T> CompletableFuture<HttpResponse<T>> sendAsync(Downstream downstream, HttpRequest request,
+                                                                   HttpResponse.BodyHandler<T> handler) {
+        Entry entry = entry(downstream);
+        Deadline deadline = Deadline.current();
+        long maxWaitMs;
+        try {
+            maxWaitMs = maxWaitMs(entry, deadline);
+        } catch (DeadlineExceededException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        boolean cutByDeadline = maxWaitMs < entry.limiter.getMaxWaitMs();
+        return entry.limiter.acquireAsync(maxWaitMs).exceptionallyCompose(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return CompletableFuture.failedFuture(
+                    cutByDeadline && cause instanceof BulkheadFullException ? new DeadlineExceededException() : cause);
+        }).thenCompose(permit -> {
+            logQueueWait(downstream, permit);
+            HttpRequest bounded;
+            try {
+                bounded = withinDeadline(request, deadline);
+            } catch (DeadlineExceededException e) {
+                permit.release(false);
+                return CompletableFuture.failedFuture(e);
+            }
+            entry.requests.incrementAndGet();
+            return entry.client.sendAsync(bounded, handler).whenComplete((response, error) -> {
+                if (error != null) {
+                    entry.failures.incrementAndGet();
+                    permit.release(true);
+                } else {
+                    entry.record(response);
+                    permit.release(isOverload(response.statusCode()));
+                }
+            });
+        });
+    }
+
+    /**
+     * Per-downstream request counts, negotiated protocol versions and TLS session reuse.
+     * {@code distinctTlsSessions} approximates the number of full handshakes; the rest of the requests reused a connection.
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Downstream downstream : Downstream.values()) {
+            Entry entry = entries.get(downstream);
+            if (entry == null) continue;
+
+            long requests = entry.requests.get();
+            long sessions = entry.sessionIds.size();
+            Map<String, Object> downstreamStats = new LinkedHashMap<>();
+            downstreamStats.put("requests", requests);
+            downstreamStats.put("failures", entry.failures.get());
+            downstreamStats.put("http2Responses", entry.http2Responses.get());
+            downstreamStats.put("http11Responses", entry.http11Responses.get());
+            downstreamStats.put("distinctTlsSessions", sessions);
+            downstreamStats.put("connectionReuseRatio", requests == 0 ? 0.0 : Math.max(0.0, 1.0 - (double) sessions / requests));
+            downstreamStats.put("concurrency", entry.limiter.getStats());
+            stats.put(downstream.name(), downstreamStats);
+        }
+        return stats;
+    }
+
+    // Longest wait for a concurrency slot: the limiter's own, or less if the caller's deadline is nearer
+    private static long maxWaitMs(Entry entry, Deadline deadline) throws DeadlineExceededException {
+        long maxWaitMs = entry.limiter.getMaxWaitMs();
+        if (deadline == null) return maxWaitMs;
+        long remaining = deadline.remainingMillis();
+        if (remaining <= 0) throw new DeadlineExceededException();
+        return Math.min(maxWaitMs, remaining);
+    }
+
+    // Shortens the request timeout to the time left before the caller's deadline, once the slot is held
+    private static HttpRequest withinDeadline(HttpRequest request, Deadline deadline) throws DeadlineExceededException {
+        Duration timeout = request.timeout().orElse(null);
+        if (deadline == null || timeout == null) return request;
+        Duration bounded = deadline.cap(timeout);
+        return bounded.equals(timeout) ? request : HttpRequest.newBuilder(request, (name, value) -> true).timeout(bounded).build();
+    }
+
+    private static Entry entry(Downstream downstream) {
+        return entries.computeIfAbsent(downstream, Entry::new);
+    }
+
+    // Responses that mean the downstream is shedding load
+    private static boolean isOverload(int statusCode) {
+        return statusCode == 429 || statusCode == 503 || statusCode == 504;
+    }
+
+    private static void logQueueWait(Downstream downstream, ConcurrencyLimiter.Permit permit) {
+        long waited = permit.getQueueWaitMs();
+        if (waited >= SLOW_QUEUE_WAIT_MS) {
+            logger.log(Level.WARNING, "[Utils] [HttpClient] {0} call queued {1}ms for a concurrency slot",
+                    new Object[]{downstream, String.valueOf(waited)});
+        }
+    }
+
+    private static double readDouble(String name, double defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [HttpClient] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [HttpClient] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    private static final class Entry {
+        private static final int MAX_TRACKED_SESSIONS = 1024;
+
+        private final HttpClient client;
+        private final Duration requestTimeout;
+        private final ConcurrencyLimiter limiter;
+
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong http2Responses = new AtomicLong();
+        private final AtomicLong http11Responses = new AtomicLong();
+        private final Set<String> sessionIds = Collections.synchronizedSet(new TreeSet<>());
+
+        private Entry(Downstream downstream) {
+            String prefix = "HTTP_CLIENT_" + downstream.name() + "_";
+            long connectTimeout = readLong(prefix + "CONNECT_TIMEOUT_MS", DEFAULT_CONNECT_TIMEOUT_MS);
+            long requestTimeoutMs = readLong(prefix + "REQUEST_TIMEOUT_MS", DEFAULT_REQUEST_TIMEOUT_MS);
+            int maxThreads = (int) readLong(prefix + "MAX_THREADS", DEFAULT_MAX_THREADS);
+            boolean http2 = !"false".equalsIgnoreCase(System.getenv(prefix + "HTTP2"));
+
+            this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+            this.client = HttpClient.newBuilder()
+                    .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofMillis(connectTimeout))
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .executor(newExecutor(downstream, maxThreads))
+                    .build();
+
+            String limitPrefix = "LIMIT_" + downstream.name() + "_";
+            this.limiter = new ConcurrencyLimiter(downstream.name(),
+                    (int) readLong(limitPrefix + "INITIAL", DEFAULT_INITIAL_LIMIT),
+                    (int) readLong(limitPrefix + "MIN", DEFAULT_MIN_LIMIT),
+                    (int) readLong(limitPrefix + "MAX", DEFAULT_MAX_LIMIT),
+                    readDouble(limitPrefix + "TOLERANCE", DEFAULT_LIMIT_TOLERANCE),
+                    LIMIT_BACKOFF_RATIO,
+                    readLong(limitPrefix + "MAX_WAIT_MS", DEFAULT_LIMIT_MAX_WAIT_MS));
+
+            logger.log(Level.INFO, "[Utils] [HttpClient] Created client for {0}: connectTimeout={1}ms, requestTimeout={2}ms, maxThreads={3}, http2={4}",
+                    new Object[]{downstream, connectTimeout, requestTimeoutMs, maxThreads, http2});
+        }
+
+        private void record(HttpResponse<?> response) {
+            if (response.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.incrementAndGet();
+            } else {
+                http11Responses.incrementAndGet();
+            }
+            response.sslSession().ifPresent(session -> {
+                if (sessionIds.size() < MAX_TRACKED_SESSIONS) {
+                    StringBuilder id = new StringBuilder();
+                    for (byte b : session.getId()) {
+                        id.append(String.format("%02x", b));
+                    }
+                    sessionIds.add(id.toString());
+                }
+            });
+        }
+
+        private static ExecutorService newExecutor(Downstream downstream, int maxThreads) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "http-" + downstream.name().toLowerCase(Locale.ROOT) + "-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
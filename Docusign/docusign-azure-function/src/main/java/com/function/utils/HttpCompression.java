@@ -0,0 +1,351 @@
+package com.function.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiated response compression, opt-in gzip request bodies and bytes-on-wire accounting per endpoint.
+ *
+ * Responses: requests advertise {@code Accept-Encoding: gzip, deflate} and the body handlers from this class
+ * decode whatever the server chose, streaming for {@link #ofInputStream(String)}. Requests: bodies are gzipped on
+ * the fly when HTTP_CLIENT_{NAME}_GZIP_REQUESTS is true (default false, since the receiver must accept
+ * {@code Content-Encoding: gzip}). HTTP_CLIENT_{NAME}_ACCEPT_COMPRESSED=false stops advertising compression.
+ *
+ * Raw and on-the-wire byte counts are kept per endpoint. With HTTP_COMPRESSION_MEASURE=true, uncompressed
+ * request bodies are also run through a deflater on the side to report what gzip would have saved, and every
+ * transfer is logged.
+ */
+public class HttpCompression {
+
+    private static final Logger logger = Logger.getLogger(HttpCompression.class.getName());
+
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    // gzip header and trailer around the deflate stream
+    private static final int GZIP_OVERHEAD = 18;
+
+    private static final boolean MEASURE = "true".equalsIgnoreCase(System.getenv("HTTP_COMPRESSION_MEASURE"));
+
+    private static final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Advertises compressed responses unless disabled for the downstream.
+     */
+    public static HttpRequest.Builder acceptCompressed(Downstream downstream, HttpRequest.Builder builder) {
+        if (!"false".equalsIgnoreCase(System.getenv("HTTP_CLIENT_" + downstream.name() + "_ACCEPT_COMPRESSED"))) {
+            builder.header("Accept-Encoding", ACCEPT_ENCODING);
+        }
+        return builder;
+    }
+
+    /**
+     * @return Whether request bodies to the downstream are gzipped (env HTTP_CLIENT_{NAME}_GZIP_REQUESTS, default false)
+     */
+    public static boolean isRequestGzipEnabled(Downstream downstream) {
+        return "true".equalsIgnoreCase(System.getenv("HTTP_CLIENT_" + downstream.name() + "_GZIP_REQUESTS"));
+    }
+
+    /**
+     * Sets a POST body read from {@code body}, gzipped on the fly when enabled for the downstream.
+     *
+     * @param downstream Downstream the request goes to
+     * @param endpoint   Name the transfer is accounted under
+     * @param builder    Request being built
+     * @param body       Opens the raw body; called once per send, so the request can be retried
+     * @param length     Raw body length, or -1 if unknown (the body is then sent chunked)
+     * @return The builder
+     */
+    public static HttpRequest.Builder post(Downstream downstream, String endpoint, HttpRequest.Builder builder,
+                                           Supplier<InputStream> body, long length) {
+        EndpointStats endpointStats = stats(endpoint);
+        if (isRequestGzipEnabled(downstream)) {
+            // Compressed length is unknown up front, so gzip bodies are always chunked
+            return builder.header("Content-Encoding", "gzip").POST(HttpRequest.BodyPublishers.ofInputStream(() ->
+                    new CountingInputStream(new GzipEncodingInputStream(
+                            new CountingInputStream(body.get(), endpointStats.requestRawBytes)),
+                            endpointStats.requestWireBytes, () -> endpointStats.logRequest(endpoint))));
+        }
+
+        HttpRequest.BodyPublisher plain = HttpRequest.BodyPublishers.ofInputStream(() -> {
+            InputStream raw = new CountingInputStream(body.get(), endpointStats.requestRawBytes);
+            return new CountingInputStream(MEASURE ? new MeasuringInputStream(raw, endpointStats) : raw,
+                    endpointStats.requestWireBytes, () -> endpointStats.logRequest(endpoint));
+        });
+        return builder.POST(length < 0 ? plain : HttpRequest.BodyPublishers.fromPublisher(plain, length));
+    }
+
+    /**
+     * String variant of {@link #post(Downstream, String, HttpRequest.Builder, Supplier, long)}.
+     */
+    public static HttpRequest.Builder post(Downstream downstream, String endpoint, HttpRequest.Builder builder, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        return post(downstream, endpoint, builder, () -> new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    /**
+     * Body handler that decodes gzip/deflate responses into a String, using the charset from Content-Type
+     * (UTF-8 by default).
+     */
+    public static HttpResponse.BodyHandler<String> ofString(String endpoint) {
+        EndpointStats endpointStats = stats(endpoint);
+        return info -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), wire -> {
+            endpointStats.responseWireBytes.addAndGet(wire.length);
+            try (InputStream decoded = decode(new ByteArrayInputStream(wire), info.headers())) {
+                byte[] bytes = decoded.readAllBytes();
+                endpointStats.responseDecodedBytes.addAndGet(bytes.length);
+                endpointStats.logResponse(endpoint);
+                return new String(bytes, charset(info.headers()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Body handler that decodes gzip/deflate responses while the caller reads the stream.
+     */
+    public static HttpResponse.BodyHandler<InputStream> ofInputStream(String endpoint) {
+        EndpointStats endpointStats = stats(endpoint);
+        // The decoder reads the gzip header, so it is only created on the caller's first read, never on the client's thread
+        return info -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(), wire ->
+                new CountingInputStream(new LazyDecodingInputStream(
+                        new CountingInputStream(wire, endpointStats.responseWireBytes), info.headers()),
+                        endpointStats.responseDecodedBytes, () -> endpointStats.logResponse(endpoint)));
+    }
+
+    /**
+     * @return Length of the decoded body from Content-Length, or -1 if unknown or the body is compressed
+     */
+    public static long decodedLength(HttpResponse<?> response) {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("identity");
+        return "identity".equalsIgnoreCase(encoding.trim())
+                ? response.headers().firstValueAsLong("Content-Length").orElse(-1)
+                : -1;
+    }
+
+    /**
+     * Per-endpoint raw and on-the-wire byte counts and the resulting savings.
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        new TreeMap<>(stats).forEach((endpoint, endpointStats) -> result.put(endpoint, endpointStats.toMap()));
+        return result;
+    }
+
+    private static InputStream decode(InputStream wire, HttpHeaders headers) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+        switch (encoding) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(wire);
+            case "deflate":
+                return new InflaterInputStream(wire);
+            default:
+                return wire;
+        }
+    }
+
+    private static Charset charset(HttpHeaders headers) {
+        String contentType = headers.firstValue("Content-Type").orElse("");
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index >= 0) {
+            try {
+                return Charset.forName(contentType.substring(index + 8).split(";")[0].replace("\"", "").trim());
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "[Utils] [Compression] Unknown charset in {0}, using UTF-8", contentType);
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static EndpointStats stats(String endpoint) {
+        return stats.computeIfAbsent(endpoint, e -> new EndpointStats());
+    }
+
+    private static final class EndpointStats {
+        private final AtomicLong requestRawBytes = new AtomicLong();
+        private final AtomicLong requestWireBytes = new AtomicLong();
+        private final AtomicLong requestGzipEstimateBytes = new AtomicLong();
+        private final AtomicLong responseWireBytes = new AtomicLong();
+        private final AtomicLong responseDecodedBytes = new AtomicLong();
+
+        private void logRequest(String endpoint) {
+            if (MEASURE) {
+                logger.log(Level.INFO, "[Utils] [Compression] {0} request: raw={1} wire={2} gzipEstimate={3} (cumulative)",
+                        new Object[]{endpoint, String.valueOf(requestRawBytes.get()), String.valueOf(requestWireBytes.get()),
+                                String.valueOf(requestGzipEstimateBytes.get())});
+            }
+        }
+
+        private void logResponse(String endpoint) {
+            if (MEASURE) {
+                logger.log(Level.INFO, "[Utils] [Compression] {0} response: wire={1} decoded={2} (cumulative)",
+                        new Object[]{endpoint, String.valueOf(responseWireBytes.get()), String.valueOf(responseDecodedBytes.get())});
+            }
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long requestRaw = requestRawBytes.get();
+            long requestWire = requestWireBytes.get();
+            long responseWire = responseWireBytes.get();
+            long responseDecoded = responseDecodedBytes.get();
+            map.put("requestRawBytes", requestRaw);
+            map.put("requestWireBytes", requestWire);
+            map.put("requestSavedRatio", requestRaw == 0 ? 0.0 : 1.0 - (double) requestWire / requestRaw);
+            if (MEASURE) {
+                long estimate = requestGzipEstimateBytes.get();
+                map.put("requestGzipEstimateBytes", estimate);
+                map.put("requestGzipEstimatedSavedRatio", requestRaw == 0 || estimate == 0 ? 0.0 : 1.0 - (double) estimate / requestRaw);
+            }
+            map.put("responseWireBytes", responseWire);
+            map.put("responseDecodedBytes", responseDecoded);
+            map.put("responseSavedRatio", responseDecoded == 0 ? 0.0 : 1.0 - (double) responseWire / responseDecoded);
+            return map;
+        }
+    }
+
+    /**
+     * Adds the number of bytes read to a counter, and runs {@code onEnd} once at end of stream.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+        private final Runnable onEnd;
+        private boolean ended;
+
+        private CountingInputStream(InputStream in, AtomicLong counter) {
+            this(in, counter, null);
+        }
+
+        private CountingInputStream(InputStream in, AtomicLong counter, Runnable onEnd) {
+            super(in);
+            this.counter = counter;
+            this.onEnd = onEnd;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) end(); else counter.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) end(); else counter.addAndGet(n);
+            return n;
+        }
+
+        private void end() {
+            if (!ended && onEnd != null) onEnd.run();
+            ended = true;
+        }
+    }
+
+    /**
+     * Passes bytes through unchanged while deflating them on the side to count what gzip would produce.
+     */
+    private static final class MeasuringInputStream extends FilterInputStream {
+        private final EndpointStats endpointStats;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final byte[] scratch = new byte[8 * 1024];
+        private long compressed;
+        private boolean done;
+
+        private MeasuringInputStream(InputStream in, EndpointStats endpointStats) {
+            super(in);
+            this.endpointStats = endpointStats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) finish(); else measure(new byte[]{(byte) b}, 0, 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) finish(); else measure(b, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            super.close();
+        }
+
+        private void measure(byte[] b, int off, int len) {
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                compressed += deflater.deflate(scratch);
+            }
+        }
+
+        private void finish() {
+            if (done) return;
+            done = true;
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(scratch);
+            }
+            endpointStats.requestGzipEstimateBytes.addAndGet(compressed + GZIP_OVERHEAD);
+        }
+    }
+
+    /**
+     * Creates the decoder on first read, since constructing a {@link GZIPInputStream} blocks reading the header.
+     */
+    private static final class LazyDecodingInputStream extends InputStream {
+        private final InputStream wire;
+        private final HttpHeaders headers;
+        private InputStream decoded;
+
+        private LazyDecodingInputStream(InputStream wire, HttpHeaders headers) {
+            this.wire = wire;
+            this.headers = headers;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return decoded().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return decoded().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decoded != null) decoded.close(); else wire.close();
+        }
+
+        private InputStream decoded() throws IOException {
+            if (decoded == null) decoded = decode(wire, headers);
+            return decoded;
+        }
+    }
+}
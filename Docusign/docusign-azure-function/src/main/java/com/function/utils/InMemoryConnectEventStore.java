@@ -0,0 +1,112 @@
+package com.function.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Event store local to this JVM, bounded to the most recent CONNECT_DEDUPE_MAX_ENTRIES results (default 100000),
+ * each kept for CONNECT_DEDUPE_TTL_HOURS (default 168).
+ */
+public class InMemoryConnectEventStore implements ConnectEventStore {
+
+    private static final Logger logger = Logger.getLogger(InMemoryConnectEventStore.class.getName());
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<String, Result> results;
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    public InMemoryConnectEventStore(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.results = new LinkedHashMap<String, Result>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > InMemoryConnectEventStore.this.maxEntries;
+            }
+        };
+    }
+
+    public static InMemoryConnectEventStore fromEnvironment() {
+        return new InMemoryConnectEventStore(
+                (int) readLong("CONNECT_DEDUPE_MAX_ENTRIES", 100000),
+                TimeUnit.HOURS.toMillis(readLong("CONNECT_DEDUPE_TTL_HOURS", 168)));
+    }
+
+    @Override
+    public synchronized String get(String key) {
+        Result result = results.get(key);
+        if (result == null) return null;
+        if (System.currentTimeMillis() - result.storedAt > ttlMillis) {
+            results.remove(key);
+            return null;
+        }
+        return result.value;
+    }
+
+    @Override
+    public synchronized void put(String key, String result) {
+        results.put(key, new Result(result));
+    }
+
+    @Override
+    public boolean tryClaim(String key, String owner, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        Lease granted = leases.compute(key, (k, current) ->
+                current == null || current.expiresAt <= now || current.owner.equals(owner)
+                        ? new Lease(owner, now + leaseMillis)
+                        : current);
+        return granted.owner.equals(owner);
+    }
+
+    @Override
+    public void release(String key, String owner) {
+        leases.computeIfPresent(key, (k, current) -> current.owner.equals(owner) ? null : current);
+    }
+
+    @Override
+    public void forEachKey(Consumer<String> consumer) {
+        List<String> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(results.keySet());
+        }
+        keys.forEach(consumer);
+    }
+
+    static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [Dedupe] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    private static final class Result {
+        private final String value;
+        private final long storedAt = System.currentTimeMillis();
+
+        private Result(String value) {
+            this.value = value;
+        }
+    }
+
+    private static final class Lease {
+        private final String owner;
+        private final long expiresAt;
+
+        private Lease(String owner, long expiresAt) {
+            this.owner = owner;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.function.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.function.model.DocusignOAuthToken;
+
+/**
+ * Token store local to this JVM. Tokens never leave the process, so nothing is written at rest.
+ */
+public class InMemoryDocusignTokenStore implements DocusignTokenStore {
+
+    private final Map<String, DocusignOAuthToken> tokens = new ConcurrentHashMap<>();
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    @Override
+    public DocusignOAuthToken get(String key) {
+        return tokens.get(key);
+    }
+
+    @Override
+    public void put(String key, DocusignOAuthToken token) {
+        if (token != null && token.isValid()) {
+            tokens.put(key, token);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        tokens.remove(key);
+    }
+
+    @Override
+    public boolean tryAcquireLease(String key, String owner, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        Lease granted = leases.compute(key, (k, current) ->
+                current == null || current.expiresAt <= now || current.owner.equals(owner)
+                        ? new Lease(owner, now + leaseMillis)
+                        : current);
+        return granted.owner.equals(owner);
+    }
+
+    @Override
+    public void releaseLease(String key, String owner) {
+        leases.computeIfPresent(key, (k, current) -> current.owner.equals(owner) ? null : current);
+    }
+
+    private static final class Lease {
+        private final String owner;
+        private final long expiresAt;
+
+        private Lease(String owner, long expiresAt) {
+            this.owner = owner;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,542 @@
+package com.function.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of pending uploads, kept in memory-mapped segment files.
+ *
+ * A record is a header (opaque bytes, JSON in practice) plus a body. Completing a record appends a small DONE
+ * marker. A record's space is first claimed with a placeholder magic number, filled in, and only then given its
+ * real magic number, so a write torn by a crash is never read back; a CRC32 over header and body catches
+ * anything else. On open, every segment is scanned oldest first to rebuild the
+ * set of pending records.
+ *
+ * Segments are only ever deleted oldest first, so a DONE marker is never lost while the record it completes is
+ * still on disk. {@link #compact()} deletes leading segments with nothing pending and moves the few pending
+ * records out of a mostly finished oldest segment, so one stuck upload does not pin the journal.
+ *
+ * Windows will not delete a file that is still mapped, and a mapping only goes away once its buffer has been
+ * garbage collected. A compacted segment is therefore dropped from memory first and its file deleted afterwards,
+ * with a {@code .retired} marker written beforehand; a file that could not be deleted yet is retried on the next
+ * compaction, and recovery deletes, and never reads, a segment that has a marker.
+ */
+public class OutboxJournal {
+
+    private static final Logger logger = Logger.getLogger(OutboxJournal.class.getName());
+
+    private static final int MAGIC = 0x4F425831; // "OBX1"
+    // Space claimed by a record whose body is still being copied
+    private static final int RESERVED = 0x4F425830; // "OBX0"
+    private static final byte TYPE_RECORD = 1;
+    private static final byte TYPE_DONE = 2;
+    // magic, type, id, header length, body length, crc
+    private static final int RECORD_OVERHEAD = 4 + 1 + 8 + 4 + 8 + 8;
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String RETIRED_SUFFIX = ".retired";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+
+    // Oldest first, by sequence number
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    // By id, so oldest first even after compaction has copied a record forward
+    private final Map<Long, Record> pending = new TreeMap<>();
+    // Compacted segments whose files are still on disk, oldest first
+    private final List<Path> undeleted = new ArrayList<>();
+    private Segment active;
+    private long nextId = 1;
+    private long nextSequence = 1;
+
+    public OutboxJournal(Path directory, long segmentBytes, boolean fsync) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        recover();
+    }
+
+    /**
+     * Journals a record. Space is reserved under the journal lock, but the body is copied outside it, so a slow
+     * body stream does not hold up other writers.
+     *
+     * @param header Record header
+     * @param body   Record body; read to the end and closed
+     * @param length Body length, or -1 if unknown (the body is then buffered first)
+     * @return The pending record
+     * @throws IOException if the journal could not be written or the body did not have the announced length
+     */
+    public Record append(byte[] header, InputStream body, long length) throws IOException {
+        try (InputStream in = body) {
+            ByteBuffer buffered = null;
+            if (length < 0) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                in.transferTo(bytes);
+                buffered = ByteBuffer.wrap(bytes.toByteArray());
+                length = buffered.remaining();
+            }
+
+            // Step 1: Reserve the space; until committed the record is skipped on recovery
+            Reservation reservation;
+            synchronized (this) {
+                reservation = reserve(nextId++, TYPE_RECORD, header.length, length);
+            }
+
+            // Step 2: Copy header and body into the mapping
+            long crc;
+            try {
+                crc = reservation.write(header, buffered, buffered == null ? in : null);
+            } finally {
+                synchronized (this) {
+                    reservation.segment.writers--;
+                }
+            }
+
+            // Step 3: Write the magic number that makes the record visible
+            synchronized (this) {
+                return commit(reservation, header, crc);
+            }
+        }
+    }
+
+    /**
+     * Marks a record as delivered (or given up on); it will not be recovered again.
+     */
+    public synchronized void complete(Record record) throws IOException {
+        Record current = pending.get(record.id);
+        if (current == null) return;
+        Reservation reservation = reserve(record.id, TYPE_DONE, 0, 0);
+        reservation.segment.writers--;
+        MappedByteBuffer buffer = reservation.segment.buffer;
+        buffer.putLong(reservation.start + 25, 0);
+        publish(buffer, reservation.start, RECORD_OVERHEAD, MAGIC);
+        forget(current);
+    }
+
+    /**
+     * @return The pending record with this id, or null once it is complete. Compaction may have moved it since it
+     * was appended.
+     */
+    public synchronized Record get(long id) {
+        return pending.get(id);
+    }
+
+    /**
+     * @return Snapshot of the pending records, oldest first
+     */
+    public synchronized List<Record> pending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Drops leading segments with nothing pending and deletes their files. A leading segment that is mostly
+     * finished has its pending records copied forward first.
+     *
+     * @return Number of segments dropped; a file that could not be deleted yet is retried on the next call
+     * @throws IOException if a segment could not be marked as retired; nothing newer is deleted until it is
+     */
+    public synchronized int compact() throws IOException {
+        int retired = 0;
+        while (!segments.isEmpty()) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active || oldest.writers > 0) break;
+            if (oldest.live > 0) {
+                if (oldest.liveBytes * 4 > oldest.buffer.capacity()) break;
+                relocate(oldest);
+            }
+            // Nothing refers to the segment any more, so its mapping can be collected
+            segments.pollFirstEntry();
+            undeleted.add(oldest.path);
+            retired++;
+        }
+        deleteRetired();
+        if (retired > 0) {
+            logger.log(Level.INFO, "[Utils] [Outbox] Compacted journal: {0} segment(s) retired, {1} remaining, {2} file(s) awaiting deletion",
+                    new Object[]{retired, segments.size(), undeleted.size()});
+        }
+        return retired;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("segments", segments.size());
+        long bytes = 0;
+        for (Segment segment : segments.values()) bytes += segment.buffer.capacity();
+        stats.put("journalBytes", bytes);
+        stats.put("undeletedSegments", undeleted.size());
+        return stats;
+    }
+
+    // Oldest first, and stops at the first segment that cannot be marked, so a DONE marker is never deleted while
+    // the record it completes can still be read back
+    private void deleteRetired() throws IOException {
+        for (Iterator<Path> it = undeleted.iterator(); it.hasNext(); ) {
+            if (deleteSegmentFile(it.next())) it.remove();
+        }
+    }
+
+    /**
+     * Deletes a retired segment's file, leaving a marker behind if that fails.
+     *
+     * @return Whether the file is gone
+     * @throws IOException if the marker could not be written
+     */
+    private boolean deleteSegmentFile(Path segment) throws IOException {
+        Path marker = segment.resolveSibling(segment.getFileName() + RETIRED_SUFFIX);
+        if (!Files.exists(marker)) Files.write(marker, new byte[0]);
+        try {
+            delete(segment);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "[Utils] [Outbox] Could not delete {0} yet: {1}", new Object[]{segment, e.getMessage()});
+            return false;
+        }
+        Files.deleteIfExists(marker);
+        return true;
+    }
+
+    // Replaced in tests to act like Windows with a segment that is still mapped
+    void delete(Path segment) throws IOException {
+        Files.deleteIfExists(segment);
+    }
+
+    // Copies the segment's pending records to the active segment under the same ids
+    private void relocate(Segment segment) throws IOException {
+        for (Record record : new ArrayList<>(pending.values())) {
+            if (record.segment != segment) continue;
+            Reservation reservation = reserve(record.id, TYPE_RECORD, record.header.length, record.bodyLength);
+            long crc;
+            try {
+                crc = reservation.write(record.header, record.body(), null);
+            } finally {
+                reservation.segment.writers--;
+            }
+            forget(record);
+            commit(reservation, record.header, crc);
+        }
+    }
+
+    // Claims space for a record and marks it as reserved, so recovery can step over it
+    private Reservation reserve(long id, byte type, int headerLength, long bodyLength) throws IOException {
+        long size = RECORD_OVERHEAD + headerLength + bodyLength;
+        Segment segment = ensureCapacity(size);
+        int start = segment.position;
+        segment.position = (int) (start + size);
+        segment.writers++;
+
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.put(start + 4, type);
+        buffer.putLong(start + 5, id);
+        buffer.putInt(start + 13, headerLength);
+        buffer.putLong(start + 17, bodyLength);
+        publish(buffer, start, RECORD_OVERHEAD, type == TYPE_RECORD ? RESERVED : 0);
+        return new Reservation(id, segment, start, bodyLength);
+    }
+
+    private Record commit(Reservation reservation, byte[] header, long crc) {
+        MappedByteBuffer buffer = reservation.segment.buffer;
+        buffer.putLong(reservation.start + 25, crc);
+        long size = RECORD_OVERHEAD + header.length + reservation.bodyLength;
+        publish(buffer, reservation.start, (int) size, MAGIC);
+        return track(new Record(reservation.id, header, reservation.segment,
+                reservation.start + RECORD_OVERHEAD + header.length, (int) reservation.bodyLength));
+    }
+
+    // Flushes the record, then writes its magic number and flushes that, so the magic never reaches disk first
+    private void publish(MappedByteBuffer buffer, int start, int size, int magic) {
+        if (fsync) buffer.force(start, size);
+        if (magic != 0) {
+            buffer.putInt(start, magic);
+            if (fsync) buffer.force(start, 4);
+        }
+    }
+
+    private Record track(Record record) {
+        record.segment.live++;
+        record.segment.liveBytes += record.size();
+        Record previous = pending.put(record.id, record);
+        if (previous != null && previous != record) {
+            // Copied forward by an earlier compaction; the newer copy wins
+            previous.segment.live--;
+            previous.segment.liveBytes -= previous.size();
+        }
+        return record;
+    }
+
+    private void forget(Record record) {
+        if (pending.get(record.id) == record) pending.remove(record.id);
+        record.segment.live--;
+        record.segment.liveBytes -= record.size();
+    }
+
+    private Segment ensureCapacity(long size) throws IOException {
+        if (active != null && active.buffer.capacity() - active.position >= size) {
+            return active;
+        }
+        long capacity = Math.max(segmentBytes, size);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Upload of " + size + " bytes is too large for the outbox journal");
+        }
+        long sequence = nextSequence++;
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%012d", sequence) + SEGMENT_SUFFIX);
+        active = new Segment(path, map(path, capacity));
+        segments.put(sequence, active);
+        return active;
+    }
+
+    private void recover() throws IOException {
+        // Step 1: Finish deleting segments a previous process had already compacted away
+        TreeMap<Long, Path> retired = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX + RETIRED_SUFFIX)) {
+            for (Path marker : stream) {
+                String name = marker.getFileName().toString();
+                Path segment = marker.resolveSibling(name.substring(0, name.length() - RETIRED_SUFFIX.length()));
+                Long sequence = sequenceOf(segment);
+                if (sequence != null) retired.put(sequence, segment);
+            }
+        }
+        for (Map.Entry<Long, Path> segment : retired.entrySet()) {
+            nextSequence = Math.max(nextSequence, segment.getKey() + 1);
+            if (!deleteSegmentFile(segment.getValue())) undeleted.add(segment.getValue());
+        }
+
+        // Step 2: Read the remaining segments oldest first
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                Long sequence = sequenceOf(path);
+                if (sequence == null) {
+                    logger.log(Level.WARNING, "[Utils] [Outbox] Ignoring unexpected file {0}", path);
+                } else if (!retired.containsKey(sequence)) {
+                    files.put(sequence, path);
+                }
+            }
+        }
+
+        for (Map.Entry<Long, Path> file : files.entrySet()) {
+            Segment segment = new Segment(file.getValue(), map(file.getValue(), Files.size(file.getValue())));
+            segments.put(file.getKey(), segment);
+            nextSequence = Math.max(nextSequence, file.getKey() + 1);
+            scan(segment);
+        }
+        if (!files.isEmpty()) {
+            logger.log(Level.INFO, "[Utils] [Outbox] Recovered {0} pending upload(s) from {1} segment(s)",
+                    new Object[]{pending.size(), files.size()});
+        }
+    }
+
+    private static Long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private void scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + RECORD_OVERHEAD <= buffer.capacity()) {
+            int magic = buffer.getInt(position);
+            if (magic != MAGIC && magic != RESERVED) break;
+            byte type = buffer.get(position + 4);
+            long id = buffer.getLong(position + 5);
+            int headerLength = buffer.getInt(position + 13);
+            long bodyLength = buffer.getLong(position + 17);
+            long size = RECORD_OVERHEAD + headerLength + bodyLength;
+            if (headerLength < 0 || bodyLength < 0 || position + size > buffer.capacity()) break;
+            nextId = Math.max(nextId, id + 1);
+
+            if (magic == RESERVED) {
+                // Never finished; the caller was not told it had been journaled
+            } else if (type == TYPE_DONE) {
+                Record done = pending.get(id);
+                if (done != null) forget(done);
+            } else if (type == TYPE_RECORD) {
+                ByteBuffer data = buffer.duplicate();
+                data.position(position + RECORD_OVERHEAD).limit((int) (position + size));
+                CRC32 crc = new CRC32();
+                crc.update(data.duplicate());
+                if (crc.getValue() != buffer.getLong(position + 25)) {
+                    logger.log(Level.WARNING, "[Utils] [Outbox] Skipping corrupt record {0} in {1}", new Object[]{id, segment.path});
+                } else {
+                    byte[] header = new byte[headerLength];
+                    data.get(header);
+                    track(new Record(id, header, segment, data.position(), (int) bodyLength));
+                }
+            }
+            position += (int) size;
+        }
+        segment.position = position;
+    }
+
+    private static MappedByteBuffer map(Path path, long capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    /**
+     * A journaled record. The body is read straight from the mapped segment.
+     */
+    public static final class Record {
+        private final long id;
+        private final byte[] header;
+        private final Segment segment;
+        private final int bodyOffset;
+        private final int bodyLength;
+
+        private Record(long id, byte[] header, Segment segment, int bodyOffset, int bodyLength) {
+            this.id = id;
+            this.header = header;
+            this.segment = segment;
+            this.bodyOffset = bodyOffset;
+            this.bodyLength = bodyLength;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public byte[] getHeader() {
+            return header;
+        }
+
+        public int getBodyLength() {
+            return bodyLength;
+        }
+
+        /**
+         * @return Read-only view of the body
+         */
+        public ByteBuffer body() {
+            ByteBuffer body = segment.buffer.asReadOnlyBuffer();
+            body.position(bodyOffset).limit(bodyOffset + bodyLength);
+            return body.slice();
+        }
+
+        /**
+         * @return New stream over the body
+         */
+        public InputStream openBody() {
+            ByteBuffer body = body();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return body.hasRemaining() ? body.get() & 0xff : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (len == 0) return 0;
+                    if (!body.hasRemaining()) return -1;
+                    int n = Math.min(len, body.remaining());
+                    body.get(b, off, n);
+                    return n;
+                }
+
+                @Override
+                public int available() {
+                    return body.remaining();
+                }
+            };
+        }
+
+        private long size() {
+            return RECORD_OVERHEAD + header.length + bodyLength;
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int live;
+        private long liveBytes;
+        // Reservations still being filled in
+        private int writers;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Space claimed for one record, filled in outside the journal lock.
+     */
+    private static final class Reservation {
+        private final long id;
+        private final Segment segment;
+        private final int start;
+        private final long bodyLength;
+
+        private Reservation(long id, Segment segment, int start, long bodyLength) {
+            this.id = id;
+            this.segment = segment;
+            this.start = start;
+            this.bodyLength = bodyLength;
+        }
+
+        /**
+         * Copies the header and then the body from either {@code bytes} or {@code in}, which must supply exactly
+         * the reserved length.
+         *
+         * @return CRC32 over header and body
+         */
+        private long write(byte[] header, ByteBuffer bytes, InputStream in) throws IOException {
+            CRC32 crc = new CRC32();
+            ByteBuffer target = segment.buffer.duplicate();
+            target.position(start + RECORD_OVERHEAD);
+            target.put(header);
+            crc.update(header);
+
+            if (bytes != null) {
+                if (bytes.remaining() != bodyLength) {
+                    throw new IOException("Upload body has " + bytes.remaining() + " bytes, expected " + bodyLength);
+                }
+                ByteBuffer body = bytes.duplicate();
+                crc.update(body.duplicate());
+                target.put(body);
+                return crc.getValue();
+            }
+
+            byte[] chunk = new byte[COPY_BUFFER_SIZE];
+            long copied = 0;
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                if (copied + read > bodyLength) {
+                    throw new IOException("Upload body is longer than its announced " + bodyLength + " bytes");
+                }
+                target.put(chunk, 0, read);
+                crc.update(chunk, 0, read);
+                copied += read;
+            }
+            if (copied != bodyLength) {
+                throw new IOException("Upload body ended after " + copied + " of " + bodyLength + " bytes");
+            }
+            return crc.getValue();
+        }
+    }
+}
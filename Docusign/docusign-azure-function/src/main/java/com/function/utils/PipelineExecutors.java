@@ -0,0 +1,93 @@
+package com.function.utils;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executors for the Connect processing pipeline: an I/O executor for stages that block on DocuSign, REND, MyHRSS
+ * or Service Bus, and a CPU pool sized to the machine for parsing and payload work, so the two never starve
+ * each other.
+ *
+ * The I/O executor strategy comes from CONNECT_EXECUTOR_MODE:
+ * <ul>
+ *   <li>auto (default): one virtual thread per task when the runtime supports it (Java 21+), otherwise a bounded
+ *       platform pool</li>
+ *   <li>virtual: virtual threads; falls back to the platform pool with a warning if unsupported</li>
+ *   <li>platform: always the bounded platform pool</li>
+ * </ul>
+ * Pool sizes come from CONNECT_IO_THREADS (default 64, platform mode only) and CONNECT_CPU_THREADS
+ * (default: available processors).
+ */
+public class PipelineExecutors {
+
+    private static final Logger logger = Logger.getLogger(PipelineExecutors.class.getName());
+
+    public static final String MODE_AUTO = "auto";
+    public static final String MODE_VIRTUAL = "virtual";
+    public static final String MODE_PLATFORM = "platform";
+
+    private static final ExecutorService IO;
+    private static final ExecutorService CPU = newPool("connect-cpu",
+            readInt("CONNECT_CPU_THREADS", Runtime.getRuntime().availableProcessors()));
+
+    static {
+        String mode = System.getenv("CONNECT_EXECUTOR_MODE");
+        mode = mode == null || mode.isEmpty() ? MODE_AUTO : mode.trim().toLowerCase(Locale.ROOT);
+
+        ExecutorService virtual = MODE_PLATFORM.equals(mode) ? null : newVirtualThreadExecutor();
+        if (virtual == null && MODE_VIRTUAL.equals(mode)) {
+            logger.warning("[Utils] [Pipeline] Virtual threads requested but not supported by this runtime, using platform pool");
+        }
+        IO = virtual != null ? virtual : newPool("connect-io", readInt("CONNECT_IO_THREADS", 64));
+        logger.log(Level.INFO, "[Utils] [Pipeline] I/O executor mode={0}, virtualThreads={1}", new Object[]{mode, virtual != null});
+    }
+
+    public static ExecutorService io() {
+        return IO;
+    }
+
+    public static ExecutorService cpu() {
+        return CPU;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively so the code still builds for Java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPool(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        logger.log(Level.INFO, "[Utils] [Pipeline] Created {0} pool with {1} threads", new Object[]{name, threads});
+        return executor;
+    }
+
+    private static int readInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [Pipeline] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+}
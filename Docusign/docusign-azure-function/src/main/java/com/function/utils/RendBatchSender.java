@@ -0,0 +1,340 @@
+package com.function.utils;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Micro-batches REND render calls: uploads for the same repository (and so the same REND source) that arrive within
+ * a short window are sent as one SOAP request, with one {@code <api:render>} element per document in the body. The
+ * batch is sent when the window closes or as soon as it reaches the document or byte budget.
+ *
+ * REND answers a batch with one {@code renderResponse} per render element, in order, and each is handed back to its
+ * event as if it had been sent alone. A batch REND rejects as a whole (non-2xx, or the call fails) is resent one
+ * document at a time. If a successful answer carries fewer results than documents, the results are matched in
+ * order, the rest are resent one at a time, and batching is switched off for the rest of the process, since this
+ * REND deployment evidently does not support it.
+ *
+ * Batching needs the full payload, so enabled uploads are buffered rather than streamed. It is not used while the
+ * {@link UploadOutbox} is enabled, which sends each upload on its own.
+ *
+ * Settings: REND_BATCH_ENABLED (default false), REND_BATCH_WINDOW_MS (default 50), REND_BATCH_MAX_DOCUMENTS
+ * (default 8) and REND_BATCH_MAX_MB (default 16).
+ */
+public class RendBatchSender {
+
+    private static final Logger logger = Logger.getLogger(RendBatchSender.class.getName());
+
+    private static final Pattern BODY_START = Pattern.compile("<(\\w+:)?Body\\b[^>]*>");
+    private static final Pattern BODY_END = Pattern.compile("</(\\w+:)?Body>");
+    private static final Pattern RENDER_RESPONSE = Pattern.compile(
+            "<(\\w+:)?renderResponse\\b[^>]*?(?:/>|>.*?</\\1renderResponse>)", Pattern.DOTALL);
+
+    private static final RendBatchSender INSTANCE = new RendBatchSender(
+            "true".equalsIgnoreCase(System.getenv("REND_BATCH_ENABLED")) && !UploadOutbox.isEnabled(),
+            readLong("REND_BATCH_WINDOW_MS", 50),
+            readLong("REND_BATCH_MAX_DOCUMENTS", 8),
+            readLong("REND_BATCH_MAX_MB", 16) * 1024 * 1024,
+            PipelineExecutors.io());
+
+    private volatile boolean enabled;
+    private final Transport transport;
+    private final long maxDocuments;
+    private final long maxBytes;
+    private final Executor sender;
+    private final Executor afterWindow;
+
+    // Guarded by itself
+    private final Map<String, Batch> open = new HashMap<>();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedDocuments = new AtomicLong();
+    private final AtomicLong sentAlone = new AtomicLong();
+    private final AtomicLong resentAlone = new AtomicLong();
+
+    public RendBatchSender(boolean enabled, long windowMs, long maxDocuments, long maxBytes, Executor sender) {
+        this(enabled, windowMs, maxDocuments, maxBytes, sender, new RendTransport());
+    }
+
+    RendBatchSender(boolean enabled, long windowMs, long maxDocuments, long maxBytes, Executor sender, Transport transport) {
+        this.enabled = enabled;
+        this.transport = transport;
+        this.maxDocuments = Math.max(1, maxDocuments);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.sender = sender;
+        this.afterWindow = CompletableFuture.delayedExecutor(Math.max(0, windowMs), TimeUnit.MILLISECONDS, sender);
+    }
+
+    public static RendBatchSender getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a render call for the next batch of its repository.
+     *
+     * @param batchKey      Uploads with the same key may share a request; the target repository
+     * @param soapPayload   Complete SOAP payload for one document
+     * @param correlationId Correlation ID for tracing and logs
+     * @param deadline      The event's deadline, or null
+     * @return Future completing with the same JSON String {@link DocuSignSoapSender#postToRendApi(String, String)} returns
+     */
+    public CompletableFuture<String> submit(String batchKey, String soapPayload, String correlationId, Deadline deadline) {
+        Item item = new Item(soapPayload, correlationId, deadline);
+        if (!enabled) {
+            sender.execute(() -> sendAlone(item, sentAlone));
+            return item.result;
+        }
+
+        Batch full = null;
+        Batch ready = null;
+        synchronized (open) {
+            // Step 1: A payload that would overflow the open batch sends that batch first
+            Batch batch = open.get(batchKey);
+            if (batch != null && batch.bytes + soapPayload.length() > maxBytes) {
+                open.remove(batchKey);
+                full = batch;
+                batch = null;
+            }
+
+            // Step 2: Join the open batch, or open one that is sent when the window closes
+            if (batch == null) {
+                Batch created = new Batch();
+                open.put(batchKey, created);
+                afterWindow.execute(() -> flushIfOpen(batchKey, created));
+                batch = created;
+            }
+            batch.items.add(item);
+            batch.bytes += soapPayload.length();
+
+            // Step 3: Send straight away once the budget is used up
+            if (batch.items.size() >= maxDocuments || batch.bytes >= maxBytes) {
+                open.remove(batchKey);
+                ready = batch;
+            }
+        }
+
+        if (full != null) dispatch(full);
+        if (ready != null) dispatch(ready);
+        return item.result;
+    }
+
+    /**
+     * Batches sent, documents sent in batches, documents sent alone, and documents resent alone after a batch failed.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("batches", batches.get());
+        stats.put("batchedDocuments", batchedDocuments.get());
+        stats.put("sentAlone", sentAlone.get());
+        stats.put("resentAlone", resentAlone.get());
+        return stats;
+    }
+
+    private void flushIfOpen(String batchKey, Batch batch) {
+        synchronized (open) {
+            if (!open.remove(batchKey, batch)) return;
+        }
+        send(batch);
+    }
+
+    private void dispatch(Batch batch) {
+        sender.execute(() -> send(batch));
+    }
+
+    private void send(Batch batch) {
+        try {
+            sendBatch(batch);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "[Utils] [RendBatch] Batch failed unexpectedly: {0}", e.getMessage());
+            batch.items.forEach(item -> item.result.completeExceptionally(e));
+        }
+    }
+
+    private void sendBatch(Batch batch) {
+        List<Item> items = batch.items;
+        if (items.size() == 1) {
+            sendAlone(items.get(0), sentAlone);
+            return;
+        }
+
+        // Step 1: One envelope, one render element per document; the header and trailer come from the first payload
+        StringBuilder combined = new StringBuilder((int) Math.min(Integer.MAX_VALUE, batch.bytes));
+        int[] firstBody = null;
+        for (Item item : items) {
+            int[] body = bodyOf(item.soapPayload);
+            if (body == null) {
+                logger.warning("[Utils] [RendBatch] Payload without a SOAP body, sending the batch one document at a time");
+                resendAlone(items, 0);
+                return;
+            }
+            if (firstBody == null) {
+                firstBody = body;
+                combined.append(item.soapPayload, 0, body[0]);
+            }
+            combined.append(item.soapPayload, body[0], body[1]);
+        }
+        String first = items.get(0).soapPayload;
+        combined.append(first, firstBody[1], first.length());
+
+        // Step 2: The batch runs within the soonest deadline of its events
+        Deadline deadline = items.stream().map(item -> item.deadline).filter(d -> d != null)
+                .min((a, b) -> Long.compare(a.remainingMillis(), b.remainingMillis())).orElse(null);
+        HttpResponse<String> response;
+        Deadline.Scope scope = deadline != null ? deadline.enter() : null;
+        try {
+            logger.log(Level.INFO, "[Utils] [RendBatch] Sending {0} documents in one render request", items.size());
+            response = transport.sendBatch(combined.toString());
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "[Utils] [RendBatch] Batch of {0} failed ({1}), sending one document at a time",
+                    new Object[]{items.size(), e.getMessage()});
+            resendAlone(items, 0);
+            return;
+        } finally {
+            if (scope != null) scope.close();
+        }
+        batches.incrementAndGet();
+
+        // Step 3: A rejected batch was not processed; send its documents one at a time
+        int statusCode = response.statusCode();
+        String body = response.body() == null ? "" : response.body();
+        if (statusCode < 200 || statusCode >= 300) {
+            logger.log(Level.WARNING, "[Utils] [RendBatch] Batch of {0} answered HTTP {1}, sending one document at a time",
+                    new Object[]{items.size(), statusCode});
+            resendAlone(items, 0);
+            return;
+        }
+
+        // Step 4: Hand each result back to its event, wrapped in the response's own envelope
+        int[] responseBody = bodyOf(body);
+        List<String> results = new ArrayList<>();
+        if (responseBody != null) {
+            Matcher result = RENDER_RESPONSE.matcher(body).region(responseBody[0], responseBody[1]);
+            while (result.find()) results.add(result.group());
+        }
+        int matched = Math.min(results.size(), items.size());
+        for (int i = 0; i < matched; i++) {
+            Item item = items.get(i);
+            String single = body.substring(0, responseBody[0]) + results.get(i) + body.substring(responseBody[1]);
+            item.result.complete(DocuSignSoapSender.rendResponse(statusCode, single, item.correlationId));
+        }
+        batchedDocuments.addAndGet(matched);
+
+        if (matched < items.size()) {
+            enabled = false;
+            logger.log(Level.SEVERE, "[Utils] [RendBatch] REND answered {0} of {1} batched documents; batching disabled",
+                    new Object[]{matched, items.size()});
+            resendAlone(items, matched);
+        }
+    }
+
+    private void resendAlone(List<Item> items, int from) {
+        for (Item item : items.subList(from, items.size())) {
+            sendAlone(item, resentAlone);
+        }
+    }
+
+    private void sendAlone(Item item, AtomicLong counter) {
+        counter.incrementAndGet();
+        Deadline.Scope scope = item.deadline != null ? item.deadline.enter() : null;
+        try {
+            item.result.complete(transport.sendAlone(item.soapPayload, item.correlationId));
+        } catch (RuntimeException e) {
+            item.result.completeExceptionally(e);
+        } finally {
+            if (scope != null) scope.close();
+        }
+    }
+
+    /**
+     * @return Start and end of the SOAP body's content, or null if there is no body
+     */
+    private static int[] bodyOf(String soap) {
+        Matcher start = BODY_START.matcher(soap);
+        if (!start.find()) return null;
+        Matcher end = BODY_END.matcher(soap);
+        int bodyEnd = -1;
+        while (end.find()) bodyEnd = end.start();
+        return bodyEnd >= start.end() ? new int[]{start.end(), bodyEnd} : null;
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [RendBatch] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    /**
+     * How render calls reach REND.
+     */
+    interface Transport {
+        /**
+         * @return REND's raw response to a combined payload
+         */
+        HttpResponse<String> sendBatch(String soapPayload) throws Exception;
+
+        /**
+         * @return The JSON String {@link DocuSignSoapSender#postToRendApi(String, String)} returns
+         */
+        String sendAlone(String soapPayload, String correlationId);
+    }
+
+    /**
+     * Sends to the REND API configured for the process.
+     */
+    private static final class RendTransport implements Transport {
+        @Override
+        public HttpResponse<String> sendBatch(String soapPayload) throws Exception {
+            return DocuSignSoapSender.sendToRend(soapPayload);
+        }
+
+        @Override
+        public String sendAlone(String soapPayload, String correlationId) {
+            return DocuSignSoapSender.postToRendApi(soapPayload, correlationId);
+        }
+    }
+
+    /**
+     * Uploads waiting to be sent together.
+     */
+    private static final class Batch {
+        private final List<Item> items = new ArrayList<>();
+        private long bytes;
+    }
+
+    /**
+     * One event's render call and the future its response is handed back through.
+     */
+    private static final class Item {
+        private final String soapPayload;
+        private final String correlationId;
+        private final Deadline deadline;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private Item(String soapPayload, String correlationId, Deadline deadline) {
+            this.soapPayload = soapPayload;
+            this.correlationId = correlationId;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.function.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Retries with exponential backoff and full jitter, per-downstream circuit breakers and a global retry budget,
+ * layered over {@link HttpClientRegistry#send}.
+ *
+ * An idempotent call (GET, HEAD, PUT, DELETE) is retried on I/O errors (including timeouts) and on 408, 429, 500,
+ * 502, 503 and 504 responses, as long as the request body can be sent again and the shared {@link RetryBudget}
+ * allows it. Other calls, such as the REND and MYHRSS upload POSTs, may already have been processed when a timeout,
+ * 500, 502 or 504 comes back, and sending them again could file the document twice; they are only retried when
+ * the connection could not be made and on 408, 429 and 503, which mean the request was not processed.
+ *
+ * A {@code Retry-After} header is honoured when it is shorter than the maximum backoff. When a downstream's circuit
+ * is open, calls fail immediately with {@link CircuitOpenException} instead of waiting for timeouts. No retry is
+ * attempted once the caller's {@link Deadline} is about to pass, and idempotent GETs are hedged where
+ * {@link Hedging} is enabled.
+ *
+ * Settings are read per downstream from the environment:
+ * <ul>
+ *   <li>RETRY_{NAME}_MAX_ATTEMPTS (default 3, including the first attempt)</li>
+ *   <li>RETRY_{NAME}_BASE_DELAY_MS (default 200)</li>
+ *   <li>RETRY_{NAME}_MAX_DELAY_MS (default 5000)</li>
+ *   <li>CIRCUIT_{NAME}_FAILURE_THRESHOLD (default 5 consecutive failures)</li>
+ *   <li>CIRCUIT_{NAME}_OPEN_MS (default 30000)</li>
+ * </ul>
+ * and RETRY_BUDGET_RATIO (default 0.2 retries per request) and RETRY_BUDGET_MIN_PER_SECOND (default 5) for the
+ * shared budget.
+ */
+public class Resilience {
+
+    private static final Logger logger = Logger.getLogger(Resilience.class.getName());
+
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(408, 429, 500, 502, 503, 504);
+    private static final Set<Integer> NOT_PROCESSED_STATUSES = Set.of(408, 429, 503);
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "PUT", "DELETE");
+
+    private static final RetryBudget budget = new RetryBudget(
+            readDouble("RETRY_BUDGET_RATIO", 0.2),
+            100,
+            (int) readLong("RETRY_BUDGET_MIN_PER_SECOND", 5));
+
+    private static final Map<Downstream, Policy> policies = new EnumMap<>(Downstream.class);
+
+    static {
+        for (Downstream downstream : Downstream.values()) {
+            policies.put(downstream, new Policy(downstream));
+        }
+    }
+
+    /**
+     * Sends a request through the downstream's circuit breaker, retrying transient failures.
+     * The final response is returned as-is, so callers keep their own status handling.
+     *
+     * @param downstream Downstream the request goes to
+     * @param request    Request to send; sent again on retry
+     * @param handler    Body handler for the response
+     * @param replayable Whether the request body can be sent more than once; when false only the breaker applies
+     * @return Response of the last attempt
+     * @throws CircuitOpenException if the downstream's circuit is open
+     */
+    public static <T> HttpResponse<T> send(Downstream downstream, HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                           boolean replayable) throws IOException, InterruptedException {
+        Policy policy = policies.get(downstream);
+        boolean idempotent = IDEMPOTENT_METHODS.contains(request.method());
+        budget.recordRequest();
+
+        for (int attempt = 1; ; attempt++) {
+            if (!policy.breaker.tryAcquire()) {
+                throw new CircuitOpenException(downstream);
+            }
+
+            HttpResponse<T> response;
+            try {
+                response = replayable && Hedging.isEnabled(downstream) && "GET".equals(request.method())
+                        ? Hedging.send(downstream, request, handler)
+                        : HttpClientRegistry.send(downstream, request, handler);
+            } catch (BulkheadFullException | DeadlineExceededException e) {
+                // Our own concurrency limit or time budget, not a downstream failure: neither retried nor counted by the breaker
+                policy.breaker.recordIgnored();
+                throw e;
+            } catch (IOException e) {
+                policy.breaker.recordFailure();
+                if (!(idempotent || isNotSent(e)) || !canRetry(policy, attempt, replayable)) throw e;
+                logger.log(Level.WARNING, "[Utils] [Retry] {0} attempt {1} failed: {2}", new Object[]{downstream, attempt, e.getMessage()});
+                backoff(policy, attempt, -1);
+                continue;
+            } catch (InterruptedException | RuntimeException e) {
+                policy.breaker.recordFailure();
+                throw e;
+            }
+
+            int statusCode = response.statusCode();
+            if (statusCode >= 500) {
+                policy.breaker.recordFailure();
+            } else {
+                policy.breaker.recordSuccess();
+            }
+            Set<Integer> retryable = idempotent ? RETRYABLE_STATUSES : NOT_PROCESSED_STATUSES;
+            if (!retryable.contains(statusCode) || !canRetry(policy, attempt, replayable)) {
+                return response;
+            }
+
+            logger.log(Level.WARNING, "[Utils] [Retry] {0} attempt {1} returned HTTP {2}", new Object[]{downstream, attempt, statusCode});
+            long retryAfterMs = response.headers().firstValueAsLong("Retry-After").orElse(-1) * 1000;
+            discard(response);
+            backoff(policy, attempt, retryAfterMs);
+        }
+    }
+
+    /**
+     * @return Milliseconds until the downstream's open circuit lets a probe through, or 0 if it is accepting calls
+     */
+    public static long unavailableForMillis(Downstream downstream) {
+        return policies.get(downstream).breaker.getOpenRemainingMillis();
+    }
+
+    /**
+     * @return Whether a response with this status is worth sending again later
+     */
+    public static boolean isRetryableStatus(int statusCode) {
+        return RETRYABLE_STATUSES.contains(statusCode);
+    }
+
+    /**
+     * Per-downstream breaker state and retry counts, plus the shared retry budget.
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<Downstream, Policy> entry : policies.entrySet()) {
+            Map<String, Object> downstreamStats = new LinkedHashMap<>(entry.getValue().breaker.getStats());
+            downstreamStats.put("retries", entry.getValue().retries.get());
+            stats.put(entry.getKey().name(), downstreamStats);
+        }
+        stats.put("budget", budget.getStats());
+        return stats;
+    }
+
+    // The connection was never established, so the downstream cannot have seen the request
+    private static boolean isNotSent(IOException e) {
+        return e instanceof ConnectException || e instanceof HttpConnectTimeoutException;
+    }
+
+    private static boolean canRetry(Policy policy, int attempt, boolean replayable) {
+        if (!replayable || attempt >= policy.maxAttempts) return false;
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.remainingMillis() <= policy.baseDelayMs) {
+            logger.warning("[Utils] [Retry] Deadline nearly reached, not retrying");
+            return false;
+        }
+        if (!budget.tryAcquireRetry()) {
+            logger.warning("[Utils] [Retry] Retry budget exhausted, not retrying");
+            return false;
+        }
+        policy.retries.incrementAndGet();
+        return true;
+    }
+
+    // Full jitter: sleep a random time up to the exponential cap, unless the server asked for a (short) specific delay
+    private static void backoff(Policy policy, int attempt, long retryAfterMs) throws InterruptedException {
+        long delay;
+        if (retryAfterMs >= 0 && retryAfterMs <= policy.maxDelayMs) {
+            delay = retryAfterMs;
+        } else {
+            long cap = Math.min(policy.maxDelayMs, policy.baseDelayMs << Math.min(attempt - 1, 20));
+            delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        }
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            delay = Math.min(delay, deadline.remainingMillis());
+        }
+        Thread.sleep(delay);
+    }
+
+    private static void discard(HttpResponse<?> response) {
+        if (response.body() instanceof InputStream) {
+            try {
+                ((InputStream) response.body()).close();
+            } catch (IOException ignored) {
+                // Connection is dropped either way
+            }
+        }
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [Retry] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    private static double readDouble(String name, double defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [Retry] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    private static final class Policy {
+        private final int maxAttempts;
+        private final long baseDelayMs;
+        private final long maxDelayMs;
+        private final CircuitBreaker breaker;
+        private final AtomicLong retries = new AtomicLong();
+
+        private Policy(Downstream downstream) {
+            String name = downstream.name();
+            this.maxAttempts = (int) Math.max(1, readLong("RETRY_" + name + "_MAX_ATTEMPTS", 3));
+            this.baseDelayMs = Math.max(1, readLong("RETRY_" + name + "_BASE_DELAY_MS", 200));
+            this.maxDelayMs = Math.max(baseDelayMs, readLong("RETRY_" + name + "_MAX_DELAY_MS", 5000));
+            this.breaker = new CircuitBreaker(name,
+                    (int) readLong("CIRCUIT_" + name + "_FAILURE_THRESHOLD", 5),
+                    readLong("CIRCUIT_" + name + "_OPEN_MS", 30000));
+        }
+    }
+}
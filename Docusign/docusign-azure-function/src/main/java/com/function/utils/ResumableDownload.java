@@ -0,0 +1,287 @@
+package com.function.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a DocuSign document into a checkpoint file, resuming with HTTP {@code Range} requests when the
+ * connection drops partway through, so a large envelope over a flaky link costs one transfer instead of several.
+ *
+ * The document is requested uncompressed, because byte ranges refer to the encoded representation. A resume is
+ * only attempted when the server advertised {@code Accept-Ranges: bytes} and the response carried an ETag or a
+ * Content-Length to verify against; it is sent with {@code If-Range}, so a document that changed in between comes
+ * back whole. A 206 must continue exactly where the checkpoint ends and match the original ETag and total length,
+ * otherwise the checkpoint is discarded and the download starts over. The finished file must match Content-Length.
+ *
+ * Checkpointing means the caller only gets the document once all of it has arrived, so the upload can no longer
+ * overlap the download. That is only worth it for large documents: a response that cannot be resumed, or whose
+ * Content-Length is below DOCUSIGN_RESUME_MIN_MB (default 8), is handed to the caller as it streams in, exactly
+ * as without this class. A document of unknown length that can be resumed is checkpointed.
+ *
+ * Enabled with DOCUSIGN_RESUMABLE_DOWNLOADS (default false). DOCUSIGN_RESUMABLE_DIR (default
+ * {java.io.tmpdir}/docusign-downloads) holds the checkpoints, and DOCUSIGN_RESUME_MAX_ATTEMPTS (default 5) bounds
+ * the number of transfers per document.
+ */
+public class ResumableDownload {
+
+    private static final Logger logger = Logger.getLogger(ResumableDownload.class.getName());
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+    // Name the downloads are accounted under in HttpCompression.getStats()
+    private static final String ENDPOINT = "DOCUSIGN document (resumable)";
+
+    private static final boolean ENABLED = "true".equalsIgnoreCase(System.getenv("DOCUSIGN_RESUMABLE_DOWNLOADS"));
+    private static final int MAX_ATTEMPTS = (int) Math.max(1, readLong("DOCUSIGN_RESUME_MAX_ATTEMPTS", 5));
+    private static final long MIN_BYTES = Math.max(0, readLong("DOCUSIGN_RESUME_MIN_MB", 8)) * 1024 * 1024;
+
+    private static final AtomicLong downloads = new AtomicLong();
+    private static final AtomicLong streamed = new AtomicLong();
+    private static final AtomicLong resumes = new AtomicLong();
+    private static final AtomicLong restarts = new AtomicLong();
+    private static final AtomicLong bytesSaved = new AtomicLong();
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Downloads the document, resuming after dropped connections.
+     *
+     * @param accountId   DocuSign account the call is billed to
+     * @param documentUrl Document URL
+     * @param accessToken Bearer token for authorization
+     * @return Document streamed straight from the response when it is small or cannot be resumed, otherwise read
+     * from the completed checkpoint file, which is deleted when the stream is closed
+     * @throws Exception if the download fails for good; the message follows the {@code "status::body"} convention
+     */
+    public static DocumentCache.Document download(String accountId, String documentUrl, String accessToken) throws Exception {
+        return download(accountId, URI.create(documentUrl), accessToken, MIN_BYTES, checkpointDirectory());
+    }
+
+    static DocumentCache.Document download(String accountId, URI uri, String accessToken, long minBytes, Path directory)
+            throws Exception {
+        downloads.incrementAndGet();
+
+        // Step 1: Ask for the whole document and see whether it is worth checkpointing
+        HttpResponse<InputStream> response = request(accountId, uri, accessToken, 0, null);
+        if (response.statusCode() != 200) {
+            throw failure(response);
+        }
+        Download state = new Download(response);
+        if (!state.rangesSupported || (state.totalLength >= 0 && state.totalLength < minBytes)) {
+            streamed.incrementAndGet();
+            return new DocumentCache.Document(Deadline.guard(response.body()), state.totalLength);
+        }
+
+        Path file = directory.resolve(UUID.randomUUID() + ".download");
+        try {
+            long length = transfer(accountId, uri, accessToken, file, state, response);
+            return new DocumentCache.Document(new DeletingInputStream(Files.newInputStream(file), file), length);
+        } catch (Exception e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Download counts, downloads streamed without a checkpoint, resumes, restarts and bytes that did not have to be
+     * transferred again.
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("downloads", downloads.get());
+        stats.put("streamed", streamed.get());
+        stats.put("resumes", resumes.get());
+        stats.put("restarts", restarts.get());
+        stats.put("bytesSaved", bytesSaved.get());
+        return stats;
+    }
+
+    private static long transfer(String accountId, URI uri, String accessToken, Path file, Download state,
+                                 HttpResponse<InputStream> firstResponse) throws Exception {
+        HttpResponse<InputStream> response = firstResponse;
+
+        for (int attempt = 1; ; attempt++) {
+            long offset = Files.exists(file) ? Files.size(file) : 0;
+
+            // Step 2: Ask for the rest of the document, or all of it
+            if (response == null) {
+                response = request(accountId, uri, accessToken, offset, state.etag);
+            }
+
+            // Step 3: Decide whether the response continues the checkpoint or replaces it
+            int statusCode = response.statusCode();
+            boolean append;
+            if (statusCode == 206 && offset > 0 && continues(response, offset, state.etag, state.totalLength)) {
+                append = true;
+                resumes.incrementAndGet();
+                bytesSaved.addAndGet(offset);
+                logger.log(Level.INFO, "[Utils] [DocDownload] Resuming download at byte {0} of {1}",
+                        new Object[]{String.valueOf(offset), String.valueOf(state.totalLength)});
+            } else if (statusCode == 200) {
+                append = false;
+                if (offset > 0) {
+                    restarts.incrementAndGet();
+                    logger.warning("[Utils] [DocDownload] Server sent the whole document instead of the remaining range, starting over");
+                }
+                state = new Download(response);
+            } else if (statusCode == 206 || statusCode == 416) {
+                // The range does not fit what we already have: discard the checkpoint and start over
+                discard(response);
+                response = null;
+                Files.deleteIfExists(file);
+                restarts.incrementAndGet();
+                if (attempt >= MAX_ATTEMPTS) throw new IOException("502::{\"error\":\"DocuSign document range could not be resumed\"}");
+                continue;
+            } else {
+                throw failure(response);
+            }
+
+            // Step 4: Copy into the checkpoint; a dropped connection keeps what arrived
+            try (InputStream body = Deadline.guard(response.body());
+                 OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+                body.transferTo(out);
+            } catch (IOException e) {
+                long received = Files.exists(file) ? Files.size(file) : 0;
+                if (!state.rangesSupported || attempt >= MAX_ATTEMPTS) {
+                    logger.log(Level.SEVERE, "[Utils] [DocDownload] Download failed after {0} bytes: {1}",
+                            new Object[]{String.valueOf(received), e.getMessage()});
+                    throw e;
+                }
+                logger.log(Level.WARNING, "[Utils] [DocDownload] Connection dropped after {0} bytes, will resume: {1}",
+                        new Object[]{String.valueOf(received), e.getMessage()});
+                response = null;
+                continue;
+            }
+            response = null;
+
+            // Step 5: Verify the result
+            long size = Files.size(file);
+            if (state.totalLength >= 0 && size != state.totalLength) {
+                if (!state.rangesSupported || attempt >= MAX_ATTEMPTS) {
+                    throw new IOException("502::{\"error\":\"DocuSign document incomplete: " + size + " of " + state.totalLength + " bytes\"}");
+                }
+                logger.log(Level.WARNING, "[Utils] [DocDownload] Body ended early at {0} of {1} bytes, will resume",
+                        new Object[]{String.valueOf(size), String.valueOf(state.totalLength)});
+                continue;
+            }
+            return size;
+        }
+    }
+
+    // The same GET as an ordinary document download, uncompressed, and limited to the missing range once resuming
+    private static HttpResponse<InputStream> request(String accountId, URI uri, String accessToken, long offset, String etag)
+            throws Exception {
+        HttpRequest.Builder builder = DocuSignDocumentFetcher.documentRequest(uri, accessToken)
+                .header("Accept-Encoding", "identity");
+        if (offset > 0) {
+            builder.header("Range", "bytes=" + offset + "-");
+            if (etag != null) builder.header("If-Range", etag);
+        }
+        return DocusignRateLimiter.getInstance().send(accountId,
+                DocusignRateLimiter.Priority.ARCHIVAL, builder.build(), HttpCompression.ofInputStream(ENDPOINT), true);
+    }
+
+    private static Exception failure(HttpResponse<InputStream> response) throws IOException {
+        String body;
+        try (InputStream errorBody = response.body()) {
+            body = new String(errorBody.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        logger.severe("[Utils] [DocDownload] Failed to download document. HTTP " + response.statusCode());
+        return new Exception(response.statusCode() + "::" + body.trim());
+    }
+
+    // A 206 continues the checkpoint only if it starts where it ends and describes the same document
+    private static boolean continues(HttpResponse<?> response, long offset, String etag, long totalLength) {
+        String responseEtag = response.headers().firstValue("ETag").orElse(null);
+        if (etag != null && !etag.equals(responseEtag)) return false;
+
+        Matcher range = CONTENT_RANGE.matcher(response.headers().firstValue("Content-Range").orElse(""));
+        if (!range.find() || Long.parseLong(range.group(1)) != offset) return false;
+        return totalLength < 0 || "*".equals(range.group(3)) || Long.parseLong(range.group(3)) == totalLength;
+    }
+
+    private static void discard(HttpResponse<InputStream> response) {
+        try {
+            response.body().close();
+        } catch (IOException ignored) {
+            // Connection is dropped either way
+        }
+    }
+
+    private static Path checkpointDirectory() throws IOException {
+        String configured = System.getenv("DOCUSIGN_RESUMABLE_DIR");
+        Path directory = configured != null && !configured.isEmpty()
+                ? Paths.get(configured.trim())
+                : Paths.get(System.getProperty("java.io.tmpdir"), "docusign-downloads");
+        return Files.createDirectories(directory);
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [DocDownload] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    /**
+     * What a full (200) response said about the document, which later ranges are checked against.
+     */
+    private static final class Download {
+        private final String etag;
+        private final long totalLength;
+        private final boolean rangesSupported;
+
+        private Download(HttpResponse<?> response) {
+            this.etag = response.headers().firstValue("ETag").orElse(null);
+            this.totalLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            this.rangesSupported = response.headers().firstValue("Accept-Ranges").map(v -> v.toLowerCase().contains("bytes")).orElse(false)
+                    && (etag != null || totalLength >= 0);
+        }
+    }
+
+    /**
+     * Deletes the checkpoint file once the document has been read.
+     */
+    private static final class DeletingInputStream extends FilterInputStream {
+        private final Path file;
+
+        private DeletingInputStream(InputStream in, Path file) {
+            super(in);
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.function.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Global budget that caps retries at a fraction of recent traffic, so retries cannot multiply load while a
+ * dependency is failing.
+ *
+ * Every first attempt deposits {@code ratio} of a token (up to {@code maxTokens}); every retry withdraws one.
+ * A small floor of {@code minPerSecond} retries is always available so low-traffic periods can still retry.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private final int minPerSecond;
+
+    private double tokens;
+    private long currentSecond;
+    private int floorUsedThisSecond;
+    private long granted;
+    private long denied;
+
+    public RetryBudget(double ratio, double maxTokens, int minPerSecond) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.minPerSecond = minPerSecond;
+    }
+
+    /**
+     * Records a first attempt, earning retry credit.
+     */
+    public synchronized void recordRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * @return Whether a retry may be made now
+     */
+    public synchronized boolean tryAcquireRetry() {
+        long second = System.currentTimeMillis() / 1000;
+        if (second != currentSecond) {
+            currentSecond = second;
+            floorUsedThisSecond = 0;
+        }
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            granted++;
+            return true;
+        }
+        if (floorUsedThisSecond < minPerSecond) {
+            floorUsedThisSecond++;
+            granted++;
+            return true;
+        }
+        denied++;
+        return false;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("availableTokens", Math.floor(tokens * 100) / 100);
+        stats.put("retriesGranted", granted);
+        stats.put("retriesDenied", denied);
+        return stats;
+    }
+}
@@ -0,0 +1,109 @@
+package com.function.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how long each pipeline stage took for one request, and aggregates the same stages across requests.
+ * Each stage runs under the request's {@link Deadline}, whichever pool thread it lands on.
+ */
+public class StageTimings {
+
+    private static final Map<String, StageStats> totals = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> stageNanos = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+    private final Deadline deadline;
+
+    public StageTimings() {
+        this(null);
+    }
+
+    /**
+     * @param deadline Deadline made current while each stage runs, or null for none
+     */
+    public StageTimings(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return The request's deadline, or null if it has none
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Runs a stage and records its duration. Checked exceptions are wrapped in {@link CompletionException} so
+     * stages can be used directly inside {@code CompletableFuture} callbacks.
+     *
+     * @param stage Stage name, e.g. "parse" or "download"
+     * @param work  The stage body
+     * @return The stage result
+     */
+    public <T> T time(String stage, Callable<T> work) {
+        long start = System.nanoTime();
+        Deadline.Scope scope = deadline != null ? deadline.enter() : null;
+        try {
+            return work.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            if (scope != null) scope.close();
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records a stage measured elsewhere.
+     */
+    public void record(String stage, long nanos) {
+        stageNanos.merge(stage, nanos, Long::sum);
+        totals.computeIfAbsent(stage, s -> new StageStats()).add(nanos);
+    }
+
+    /**
+     * @return One line such as {@code parse=3ms token=0ms download=120ms ... total=410ms}
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        stageNanos.forEach((stage, nanos) ->
+                sb.append(stage).append('=').append(TimeUnit.NANOSECONDS.toMillis(nanos)).append("ms "));
+        return sb.append("total=").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)).append("ms").toString();
+    }
+
+    /**
+     * Count, average and max duration per stage since startup.
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        totals.forEach((stage, s) -> {
+            long count = s.count.get();
+            Map<String, Object> stageStats = new LinkedHashMap<>();
+            stageStats.put("count", count);
+            stageStats.put("avgMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(s.totalNanos.get() / count));
+            stageStats.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(s.maxNanos.get()));
+            stats.put(stage, stageStats);
+        });
+        return stats;
+    }
+
+    private static final class StageStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void add(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.function.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+
+/**
+ * Durable outbox for REND and MYHRSS uploads. The built upload is written to an {@link OutboxJournal} before it is
+ * sent, so once it is journaled the Connect event can be acknowledged even if the downstream is unavailable: the
+ * upload is delivered in the background and survives a host restart.
+ *
+ * An upload is first sent inline (with the usual {@link Resilience} retries). If that fails with an I/O error or
+ * a retryable status (408, 429, 5xx) it stays in the journal and the drainer resends it with exponential backoff
+ * and jitter until it is accepted or UPLOAD_OUTBOX_MAX_ATTEMPTS is reached; then it is moved to the dead-letter
+ * directory. Any other response is final and completes the record. The drainer compacts the journal after each
+ * pass.
+ *
+ * Credentials are never written to disk: Authorization headers are kept in memory only. An upload recovered after
+ * a restart is resent with the credentials of the latest upload to the same downstream and waits until there is one.
+ *
+ * Settings: UPLOAD_OUTBOX_ENABLED (default false), UPLOAD_OUTBOX_DIR (default {java.io.tmpdir}/docusign-outbox),
+ * UPLOAD_OUTBOX_SEGMENT_MB (default 64), UPLOAD_OUTBOX_FSYNC (default true), UPLOAD_OUTBOX_DRAIN_INTERVAL_MS
+ * (default 5000), UPLOAD_OUTBOX_RETRY_BASE_MS (default 5000), UPLOAD_OUTBOX_RETRY_MAX_MS (default 600000) and
+ * UPLOAD_OUTBOX_MAX_ATTEMPTS (default 50).
+ */
+public class UploadOutbox {
+
+    private static final Logger logger = Logger.getLogger(UploadOutbox.class.getName());
+
+    private static final Gson gson = new Gson();
+    private static final Set<String> SECRET_HEADERS = Set.of("authorization", "proxy-authorization");
+
+    private static final boolean ENABLED = "true".equalsIgnoreCase(System.getenv("UPLOAD_OUTBOX_ENABLED"));
+
+    private static UploadOutbox instance;
+
+    private final OutboxJournal journal;
+    private final Path deadLetterDirectory;
+    private final long retryBaseMs;
+    private final long retryMaxMs;
+    private final long maxAttempts;
+    private final ScheduledExecutorService drainer;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    // Latest credentials seen per downstream, for uploads recovered from disk
+    private final Map<Downstream, Map<String, String>> secretHeaders = new ConcurrentHashMap<>();
+
+    private final AtomicLong journaled = new AtomicLong();
+    private final AtomicLong deliveredInline = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong deliveredLater = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    public UploadOutbox(Path directory, long segmentBytes, boolean fsync, long drainIntervalMs, long retryBaseMs,
+                        long retryMaxMs, long maxAttempts) throws IOException {
+        this.journal = new OutboxJournal(directory, segmentBytes, fsync);
+        this.deadLetterDirectory = directory.resolve("dead");
+        this.retryBaseMs = Math.max(1, retryBaseMs);
+        this.retryMaxMs = Math.max(this.retryBaseMs, retryMaxMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+
+        // Step 1: Pick up uploads left over from a previous run
+        for (OutboxJournal.Record record : journal.pending()) {
+            Upload upload = gson.fromJson(new String(record.getHeader(), StandardCharsets.UTF_8), Upload.class);
+            entries.put(record.getId(), new Entry(record.getId(), upload, upload.headers));
+        }
+
+        // Step 2: Start the drainer
+        this.drainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upload-outbox-drainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, drainIntervalMs);
+        drainer.scheduleWithFixedDelay(this::drain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Whether uploads go through the outbox (env UPLOAD_OUTBOX_ENABLED, default false)
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Opens the journal on first use.
+     *
+     * @throws IOException if the journal directory cannot be used
+     */
+    public static synchronized UploadOutbox getInstance() throws IOException {
+        if (instance == null) {
+            String configured = System.getenv("UPLOAD_OUTBOX_DIR");
+            Path directory = configured != null && !configured.isEmpty()
+                    ? Paths.get(configured.trim())
+                    : Paths.get(System.getProperty("java.io.tmpdir"), "docusign-outbox");
+            instance = new UploadOutbox(directory,
+                    readLong("UPLOAD_OUTBOX_SEGMENT_MB", 64) * 1024 * 1024,
+                    !"false".equalsIgnoreCase(System.getenv("UPLOAD_OUTBOX_FSYNC")),
+                    readLong("UPLOAD_OUTBOX_DRAIN_INTERVAL_MS", 5000),
+                    readLong("UPLOAD_OUTBOX_RETRY_BASE_MS", 5000),
+                    readLong("UPLOAD_OUTBOX_RETRY_MAX_MS", 600000),
+                    readLong("UPLOAD_OUTBOX_MAX_ATTEMPTS", 50));
+            logger.log(Level.INFO, "[Utils] [Outbox] Upload outbox open at {0}", directory);
+        }
+        return instance;
+    }
+
+    /**
+     * Journals an upload and tries to deliver it straight away.
+     *
+     * @param downstream    Downstream the upload goes to
+     * @param endpoint      Name the upload is accounted under in {@link HttpCompression#getStats()}
+     * @param url           Full endpoint URL
+     * @param headers       Request headers
+     * @param body          Request body; read to the end and closed before anything is sent
+     * @param length        Body length, or -1 if unknown
+     * @param correlationId Correlation ID for tracing and logs
+     * @return The downstream's final response, or null if the upload was queued for background delivery
+     * @throws IOException if the upload could not be journaled; nothing has been sent in that case
+     */
+    public HttpResponse<String> deliver(Downstream downstream, String endpoint, String url, Map<String, String> headers,
+                                        InputStream body, long length, String correlationId) throws IOException {
+        // Step 1: Write ahead; credentials stay in memory
+        Map<String, String> persisted = new LinkedHashMap<>();
+        Map<String, String> secrets = new LinkedHashMap<>();
+        headers.forEach((name, value) -> (isSecret(name) ? secrets : persisted).put(name, value));
+        if (!secrets.isEmpty()) secretHeaders.put(downstream, secrets);
+
+        Upload upload = new Upload(downstream, endpoint, url, persisted, new ArrayList<>(secrets.keySet()), correlationId);
+        OutboxJournal.Record record = journal.append(gson.toJson(upload).getBytes(StandardCharsets.UTF_8), body, length);
+        Entry entry = new Entry(record.getId(), upload, new LinkedHashMap<>(headers));
+        entry.inFlight = true;
+        entries.put(record.getId(), entry);
+        journaled.incrementAndGet();
+
+        // Step 2: Try to deliver it now; whatever does not go through is left to the drainer
+        try {
+            HttpResponse<String> response = attempt(entry);
+            if (response != null) {
+                deliveredInline.incrementAndGet();
+                return response;
+            }
+        } finally {
+            entry.inFlight = false;
+        }
+        queued.incrementAndGet();
+        logger.log(Level.WARNING, "[Utils] [Outbox] {0} upload {1} queued for background delivery (correlationId={2})",
+                new Object[]{downstream, String.valueOf(record.getId()), correlationId});
+        return null;
+    }
+
+    /**
+     * Uploads journaled, delivered inline or later, rejected, dead-lettered, plus the journal size.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("journaled", journaled.get());
+        stats.put("deliveredInline", deliveredInline.get());
+        stats.put("queued", queued.get());
+        stats.put("deliveredLater", deliveredLater.get());
+        stats.put("rejected", rejected.get());
+        stats.put("deadLettered", deadLettered.get());
+        stats.putAll(journal.getStats());
+        return stats;
+    }
+
+    // Resends what is due, then compacts the journal
+    private void drain() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Entry entry : entries.values()) {
+                if (entry.inFlight || entry.nextAttemptAt > now) continue;
+                if (entry.headers == entry.upload.headers && !entry.upload.withheldHeaders.isEmpty()) {
+                    // Recovered from disk: borrow the latest credentials for this downstream, or wait for some
+                    Map<String, String> secrets = secretHeaders.get(entry.upload.downstream);
+                    if (secrets == null) continue;
+                    Map<String, String> headers = new LinkedHashMap<>(entry.upload.headers);
+                    headers.putAll(secrets);
+                    entry.headers = headers;
+                }
+                entry.inFlight = true;
+                try {
+                    if (attempt(entry) != null) {
+                        deliveredLater.incrementAndGet();
+                        logger.log(Level.INFO, "[Utils] [Outbox] {0} upload {1} delivered after {2} attempt(s) (correlationId={3})",
+                                new Object[]{entry.upload.downstream, String.valueOf(entry.id),
+                                        entry.attempts, entry.upload.correlationId});
+                    } else if (entry.attempts >= maxAttempts) {
+                        deadLetter(entry);
+                    }
+                } finally {
+                    entry.inFlight = false;
+                }
+            }
+            journal.compact();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "[Utils] [Outbox] Drain pass failed: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Sends the journaled upload once (plus {@link Resilience} retries).
+     *
+     * @return The final response, or null if the upload must be tried again later
+     */
+    private HttpResponse<String> attempt(Entry entry) throws IOException {
+        Upload upload = entry.upload;
+        OutboxJournal.Record record = journal.get(entry.id);
+        if (record == null) {
+            // Completed by another attempt
+            entries.remove(entry.id);
+            return null;
+        }
+        entry.attempts++;
+        try {
+            HttpRequest.Builder builder = HttpClientRegistry.newRequest(upload.downstream, new URI(upload.url));
+            HttpClientRegistry.headers(builder, entry.headers);
+            HttpCompression.acceptCompressed(upload.downstream, builder);
+            HttpCompression.post(upload.downstream, upload.endpoint, builder, record::openBody, record.getBodyLength());
+
+            HttpResponse<String> response = Resilience.send(upload.downstream, builder.build(),
+                    HttpCompression.ofString(upload.endpoint), true);
+            if (Resilience.isRetryableStatus(response.statusCode())) {
+                scheduleRetry(entry, "HTTP " + response.statusCode());
+                return null;
+            }
+            if (response.statusCode() >= 300) {
+                // Resending will not change the answer; hand it back like any other response
+                rejected.incrementAndGet();
+            }
+            complete(entry, record);
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scheduleRetry(entry, "interrupted");
+            return null;
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            scheduleRetry(entry, e.getMessage());
+            return null;
+        }
+    }
+
+    private void scheduleRetry(Entry entry, String reason) {
+        long exponential = retryBaseMs << Math.min(20, entry.attempts - 1);
+        long delay = Math.min(retryMaxMs, exponential);
+        // Full jitter over the upper half, so uploads queued together don't retry together
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        entry.nextAttemptAt = System.currentTimeMillis() + delay;
+        logger.log(Level.WARNING, "[Utils] [Outbox] {0} upload {1} attempt {2} failed ({3}), next in {4}ms",
+                new Object[]{entry.upload.downstream, String.valueOf(entry.id), entry.attempts, reason,
+                        String.valueOf(delay)});
+    }
+
+    private void complete(Entry entry, OutboxJournal.Record record) throws IOException {
+        journal.complete(record);
+        entries.remove(entry.id);
+    }
+
+    // Keeps a copy of the upload (without credentials) for manual replay, then drops it from the journal
+    private void deadLetter(Entry entry) throws IOException {
+        OutboxJournal.Record record = journal.get(entry.id);
+        if (record == null) return;
+        Files.createDirectories(deadLetterDirectory);
+        long id = entry.id;
+        Files.write(deadLetterDirectory.resolve(id + ".json"), record.getHeader());
+        try (InputStream body = record.openBody()) {
+            Files.copy(body, deadLetterDirectory.resolve(id + ".body"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        complete(entry, record);
+        deadLettered.incrementAndGet();
+        logger.log(Level.SEVERE, "[Utils] [Outbox] {0} upload {1} gave up after {2} attempts, moved to {3} (correlationId={4})",
+                new Object[]{entry.upload.downstream, String.valueOf(id), entry.attempts, deadLetterDirectory,
+                        entry.upload.correlationId});
+    }
+
+    private static boolean isSecret(String header) {
+        return SECRET_HEADERS.contains(header.toLowerCase(Locale.ROOT));
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "[Utils] [Outbox] Ignoring invalid {0}: {1}", new Object[]{name, value});
+            return defaultValue;
+        }
+    }
+
+    /**
+     * What is journaled alongside the body: everything needed to send the upload again.
+     */
+    private static final class Upload {
+        private final Downstream downstream;
+        private final String endpoint;
+        private final String url;
+        private final Map<String, String> headers;
+        // Names of the credential headers that were left out
+        private final List<String> withheldHeaders;
+        private final String correlationId;
+
+        private Upload(Downstream downstream, String endpoint, String url, Map<String, String> headers,
+                       List<String> withheldHeaders, String correlationId) {
+            this.downstream = downstream;
+            this.endpoint = endpoint;
+            this.url = url;
+            this.headers = headers;
+            this.withheldHeaders = withheldHeaders;
+            this.correlationId = correlationId;
+        }
+    }
+
+    /**
+     * A pending upload and its delivery state.
+     */
+    private static final class Entry {
+        private final long id;
+        private final Upload upload;
+        private volatile Map<String, String> headers;
+        private volatile boolean inFlight;
+        private volatile long nextAttemptAt;
+        private int attempts;
+
+        private Entry(long id, Upload upload, Map<String, String> headers) {
+            this.id = id;
+            this.upload = upload;
+            this.headers = headers;
+        }
+    }
+}
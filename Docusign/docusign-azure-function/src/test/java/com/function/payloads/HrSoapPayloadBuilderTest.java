@@ -0,0 +1,60 @@
+package com.function.payloads;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class HrSoapPayloadBuilderTest {
+
+    private static final String PROFILE_MIDDLE = "~~Sender_UPI=~~HRSSC_PROCESSING=N~~UPI_NOTIFICATION=N~~SENDER_NOTIFICATION=N~~ParentUnid=";
+    private static final String PROFILE_END = "~~Deposited_By=~~RA=~~RTG=~~PageCount=N/A~~CaptureSource=eSignature~~#HD="
+            + "~~SubSystem=DocuSign~~ABBN=~~Rev=N~~Subject=~~CC=~~";
+
+    @Test
+    void testBuildHrSoapPayload_GoldenOutput() {
+        String payload = HrSoapPayloadBuilder.buildHrSoapPayload("00123456", "DOC-1", "env-1", "HR_REPO", "JVBERi0=");
+
+        assertEquals("<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" "
+                + "xmlns:api=\"http://api.rend.worldbank.org/\" api:name=\"\">"
+                + "<soap:Header/><soap:Body><api:render>"
+                + "<profile>~~UPI=00123456~~Doc_ID=DOC-1" + PROFILE_MIDDLE + "~~Unid=env-1" + PROFILE_END + "</profile>"
+                + "<unid>env-1</unid>"
+                + "<source>HRSRM</source>"
+                + "<repo>HR_REPO</repo>"
+                + "<attachment><fileData>JVBERi0=</fileData>"
+                + "<fileName>00123456-LOA.pdf</fileName>"
+                + "<firstFile>false</firstFile></attachment>"
+                + "</api:render></soap:Body></soap:Envelope>", payload);
+    }
+
+    @Test
+    void testBuildHrSoapPayload_EscapesValues() {
+        String payload = HrSoapPayloadBuilder.buildHrSoapPayload("A&B", "<doc>", "'u'", "\"r\"", "QQ==");
+
+        assertEquals(legacyPayload("A&B", "<doc>", "'u'", "\"r\"", "QQ=="), payload);
+    }
+
+    @Test
+    void testBuildHrSoapPayload_NullAndEmptyValues() {
+        assertEquals(legacyPayload(null, null, null, null, null),
+                HrSoapPayloadBuilder.buildHrSoapPayload(null, null, null, null, null));
+        assertEquals(legacyPayload("", "", "", "", ""),
+                HrSoapPayloadBuilder.buildHrSoapPayload("", "", "", "", ""));
+    }
+
+    // The payload as built by string concatenation before the templates were introduced
+    private static String legacyPayload(String upi, String docId, String unid, String docusignRepo, String base64File) {
+        String profile = "~~UPI=" + upi + "~~Doc_ID=" + docId + PROFILE_MIDDLE + "~~Unid=" + unid + PROFILE_END;
+        return "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" "
+                + "xmlns:api=\"http://api.rend.worldbank.org/\" api:name=\"\">"
+                + "<soap:Header/><soap:Body><api:render>"
+                + "<profile>" + PrsSoapPayloadBuilderTest.legacyEscape(profile) + "</profile>"
+                + "<unid>" + PrsSoapPayloadBuilderTest.legacyEscape(unid) + "</unid>"
+                + "<source>HRSRM</source>"
+                + "<repo>" + PrsSoapPayloadBuilderTest.legacyEscape(docusignRepo) + "</repo>"
+                + "<attachment><fileData>" + PrsSoapPayloadBuilderTest.legacyEscape(base64File) + "</fileData>"
+                + "<fileName>" + PrsSoapPayloadBuilderTest.legacyEscape(upi + "-LOA.pdf") + "</fileName>"
+                + "<firstFile>false</firstFile></attachment>"
+                + "</api:render></soap:Body></soap:Envelope>";
+    }
+}
@@ -0,0 +1,94 @@
+package com.function.payloads;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PrsSoapPayloadBuilderTest {
+
+    @Test
+    void testBuildMuleSoftPrsPayload_GoldenOutput() {
+        String payload = PrsSoapPayloadBuilder.buildMuleSoftPrsPayload(
+                "00123456", "DOC-1", "00654321", "2024-05-01", "env-1", "PENSION_REPO", "JVBERi0=");
+
+        assertEquals("<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" "
+                + "xmlns:api=\"http://api.rend.worldbank.org/\" api:name=\"\">"
+                + "<soap:Header/><soap:Body><api:render>"
+                + "<profile>~~Participant_UPI=00123456~~Doc_ID=DOC-1~~Beneficiary_UPI=00654321"
+                + "~~capture_source=eSignature~~SubSystem=DocuSign~~document_date=2024-05-01"
+                + "~~doc_title=LifeCertificate~~Unid=env-1</profile>"
+                + "<unid>env-1</unid>"
+                + "<source>PENSION</source>"
+                + "<repo>PENSION_REPO</repo>"
+                + "<attachment><fileData>JVBERi0=</fileData>"
+                + "<fileName>00123456.pdf</fileName>"
+                + "<firstFile>false</firstFile></attachment>"
+                + "</api:render></soap:Body></soap:Envelope>", payload);
+    }
+
+    @Test
+    void testBuildMuleSoftPrsPayload_EscapesValues() {
+        String payload = PrsSoapPayloadBuilder.buildMuleSoftPrsPayload(
+                "A&B", "<doc>", "\"x\"", "'d'", "e&1", "r<1>", "QQ==");
+
+        assertEquals(legacyPayload("A&B", "<doc>", "\"x\"", "'d'", "e&1", "r<1>", "QQ=="), payload);
+        assertTrue(payload.contains("<profile>~~Participant_UPI=A&amp;B~~Doc_ID=&lt;doc&gt;~~Beneficiary_UPI=&quot;x&quot;"), payload);
+        assertTrue(payload.contains("~~document_date=&apos;d&apos;"), payload);
+        assertTrue(payload.contains("<unid>e&amp;1</unid>"), payload);
+        assertTrue(payload.contains("<repo>r&lt;1&gt;</repo>"), payload);
+        assertTrue(payload.contains("<fileName>A&amp;B.pdf</fileName>"), payload);
+    }
+
+    @Test
+    void testBuildMuleSoftPrsPayload_NullAndEmptyValues() {
+        assertEquals(legacyPayload("u", null, null, "", null, null, null),
+                PrsSoapPayloadBuilder.buildMuleSoftPrsPayload("u", null, null, "", null, null, null));
+        assertEquals(legacyPayload("", "", "", "", "", "", ""),
+                PrsSoapPayloadBuilder.buildMuleSoftPrsPayload("", "", "", "", "", "", ""));
+    }
+
+    @Test
+    void testBuildMuleSoftPrsEnvelope_SplitsAroundFileData() {
+        RendSoapEnvelope envelope = PrsSoapPayloadBuilder.buildMuleSoftPrsEnvelope(
+                "00123456", "DOC-1", "00654321", "2024-05-01", "env-1", "PENSION_REPO");
+
+        assertEquals(PrsSoapPayloadBuilder.buildMuleSoftPrsPayload(
+                        "00123456", "DOC-1", "00654321", "2024-05-01", "env-1", "PENSION_REPO", "JVBERi0="),
+                envelope.getPrefix() + "JVBERi0=" + envelope.getSuffix());
+    }
+
+    // The payload as built by string concatenation before the templates were introduced
+    private static String legacyPayload(String participantUpi, String docId, String beneficiaryUpi, String signedDate,
+                                        String envIdValue, String docusignRepo, String base64File) {
+        String profile = "~~Participant_UPI=" + participantUpi
+                + "~~Doc_ID=" + docId
+                + "~~Beneficiary_UPI=" + beneficiaryUpi
+                + "~~capture_source=eSignature"
+                + "~~SubSystem=DocuSign"
+                + "~~document_date=" + signedDate
+                + "~~doc_title=LifeCertificate"
+                + "~~Unid=" + envIdValue;
+        return "<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" "
+                + "xmlns:api=\"http://api.rend.worldbank.org/\" api:name=\"\">"
+                + "<soap:Header/><soap:Body><api:render>"
+                + "<profile>" + legacyEscape(profile) + "</profile>"
+                + "<unid>" + legacyEscape(envIdValue) + "</unid>"
+                + "<source>PENSION</source>"
+                + "<repo>" + legacyEscape(docusignRepo) + "</repo>"
+                + "<attachment><fileData>" + legacyEscape(base64File) + "</fileData>"
+                + "<fileName>" + legacyEscape(participantUpi + ".pdf") + "</fileName>"
+                + "<firstFile>false</firstFile></attachment>"
+                + "</api:render></soap:Body></soap:Envelope>";
+    }
+
+    static String legacyEscape(String value) {
+        if (value == null) return "";
+        return value
+                .replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("'", "&apos;");
+    }
+}
@@ -0,0 +1,53 @@
+package com.function.payloads;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class RendPayloadTemplateTest {
+
+    @Test
+    void testForSource_CompilesOncePerSource() {
+        assertSame(RendPayloadTemplate.PENSION, RendPayloadTemplate.forSource("PENSION"));
+        assertSame(RendPayloadTemplate.forSource("OTHER"), RendPayloadTemplate.forSource("OTHER"));
+    }
+
+    @Test
+    void testRender_EscapesSourceAndValues() {
+        RendSoapEnvelope envelope = RendPayloadTemplate.forSource("A&B").render("~~K=<v>", "u'1", null, "f\".pdf");
+
+        assertEquals("<soap:Envelope xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\" "
+                + "xmlns:api=\"http://api.rend.worldbank.org/\" api:name=\"\">"
+                + "<soap:Header/><soap:Body><api:render>"
+                + "<profile>~~K=&lt;v&gt;</profile>"
+                + "<unid>u&apos;1</unid>"
+                + "<source>A&amp;B</source>"
+                + "<repo></repo>"
+                + "<attachment><fileData>", envelope.getPrefix());
+        assertEquals("</fileData><fileName>f&quot;.pdf</fileName>"
+                + "<firstFile>false</firstFile></attachment>"
+                + "</api:render></soap:Body></soap:Envelope>", envelope.getSuffix());
+    }
+
+    @Test
+    void testWithFileData_NullIsEmpty() {
+        RendSoapEnvelope envelope = new RendSoapEnvelope("<fileData>", "</fileData>");
+
+        assertEquals("<fileData></fileData>", envelope.withFileData(null));
+        assertEquals("<fileData>QQ==</fileData>", envelope.withFileData("QQ=="));
+    }
+
+    @Test
+    void testEnvelopeBytes_EncodedOnceAsUtf8() {
+        RendSoapEnvelope envelope = RendPayloadTemplate.HRSRM.render("~~Subject=café", "u", "r", "ü.pdf");
+
+        assertArrayEquals(envelope.getPrefix().getBytes(StandardCharsets.UTF_8), envelope.getPrefixBytes());
+        assertArrayEquals(envelope.getSuffix().getBytes(StandardCharsets.UTF_8), envelope.getSuffixBytes());
+        assertSame(envelope.getPrefixBytes(), envelope.getPrefixBytes());
+        assertSame(envelope.getSuffixBytes(), envelope.getSuffixBytes());
+    }
+}
@@ -0,0 +1,74 @@
+package com.function.payloads;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.function.utils.Base64EncodingInputStream;
+import com.google.gson.JsonObject;
+
+class TaxJsonPayloadBuilderTest {
+
+    @Test
+    void testStreamedPayload_MatchesJsonObject() throws Exception {
+        byte[] document = new byte[50_000];
+        new Random(7).nextBytes(document);
+
+        for (String envelopeId : new String[]{"3f1c9a2e-0000-4b1d-9c3e-1234567890ab", "a\"b\\c", "tab\tnew\nline", "<é>", "", null}) {
+            assertEquals(legacyPayload(envelopeId, document), streamedPayload(envelopeId, document), "envelopeId " + envelopeId);
+        }
+    }
+
+    @Test
+    void testStreamedPayload_EmptyAndShortDocuments() throws Exception {
+        for (int length = 0; length <= 4; length++) {
+            byte[] document = new byte[length];
+            new Random(length).nextBytes(document);
+
+            assertEquals(legacyPayload("env-1", document), streamedPayload("env-1", document), "length " + length);
+        }
+    }
+
+    @Test
+    void testBuildTaxPayload_MatchesJsonObject() {
+        String base64 = Base64.getEncoder().encodeToString("%PDF-1.7".getBytes(StandardCharsets.US_ASCII));
+        JsonObject legacy = new JsonObject();
+        legacy.addProperty("envelopeId", "a\"b");
+        legacy.addProperty("documentBase64", base64);
+
+        assertEquals(legacy.toString(), TaxJsonPayloadBuilder.buildTaxPayload("a\"b", base64));
+    }
+
+    @Test
+    void testBuildTaxPayloadSuffix_IsACopy() {
+        TaxJsonPayloadBuilder.buildTaxPayloadSuffix()[0] = 'x';
+
+        assertEquals("\"}", new String(TaxJsonPayloadBuilder.buildTaxPayloadSuffix(), StandardCharsets.UTF_8));
+    }
+
+    // The payload as built with Gson before the document was streamed
+    private static String legacyPayload(String envelopeId, byte[] document) {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("envelopeId", envelopeId);
+        payload.addProperty("documentBase64", Base64.getEncoder().encodeToString(document));
+        return payload.toString();
+    }
+
+    private static String streamedPayload(String envelopeId, byte[] document) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(TaxJsonPayloadBuilder.buildTaxPayloadPrefix(envelopeId));
+        try (InputStream base64 = new Base64EncodingInputStream(new ByteArrayInputStream(document))) {
+            base64.transferTo(out);
+        }
+        out.write(TaxJsonPayloadBuilder.buildTaxPayloadSuffix());
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package com.function.payloads;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class XmlEscaperTest {
+
+    @Test
+    void testEscape_ReplacesAllSpecialCharacters() {
+        assertEquals("a &amp; b &lt;c&gt; &quot;d&quot; &apos;e&apos;", XmlEscaper.escape("a & b <c> \"d\" 'e'"));
+    }
+
+    @Test
+    void testEscape_EscapesAtBothEnds() {
+        assertEquals("&lt;x&gt;", XmlEscaper.escape("<x>"));
+        assertEquals("&amp;&amp;", XmlEscaper.escape("&&"));
+    }
+
+    @Test
+    void testEscape_ReturnsPlainValueItself() {
+        String plain = "QUJDRA+/=";
+
+        assertSame(plain, XmlEscaper.escape(plain));
+    }
+
+    @Test
+    void testEscape_NullAndEmpty() {
+        assertEquals("", XmlEscaper.escape(null));
+        assertEquals("", XmlEscaper.escape(""));
+    }
+
+    @Test
+    void testEscape_AppendsToBuilder() {
+        StringBuilder sb = new StringBuilder("<a>");
+
+        XmlEscaper.escape(sb, "x<y");
+        XmlEscaper.escape(sb, null);
+        XmlEscaper.escape(sb, "z");
+
+        assertEquals("<a>x&lt;yz", sb.toString());
+    }
+}
@@ -0,0 +1,128 @@
+package com.function.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.function.utils.AdmissionController;
+import com.function.utils.ConnectEventCoalescer;
+import com.function.utils.ConnectEventDeduplicator;
+import com.function.utils.InMemoryConnectEventStore;
+import com.function.utils.RendBatchSender;
+import com.microsoft.azure.functions.ExecutionContext;
+
+class DocusignConnectServiceTest {
+
+    private static final String EVENT =
+            "<DocuSignEnvelopeInformation><EnvelopeStatus><EnvelopeID>env-1</EnvelopeID><Subject>(DOCID=1)(UPI=2)</Subject>"
+            + "<Status>%s</Status><TimeGenerated>2024-01-02T03:04:05</TimeGenerated>"
+            + "<RecipientStatuses><RecipientStatus><Type>Signer</Type><UserName>u</UserName><Signed>2024-01-02T03:04:05</Signed>"
+            + "</RecipientStatus></RecipientStatuses>"
+            + "<CustomFields><CustomField><Name>targetrepository</Name><Value>%s</Value></CustomField></CustomFields>"
+            + "</EnvelopeStatus></DocuSignEnvelopeInformation>";
+
+    private final ExecutionContext context = new ExecutionContext() {
+        @Override
+        public Logger getLogger() {
+            return Logger.getLogger(DocusignConnectServiceTest.class.getName());
+        }
+
+        @Override
+        public String getInvocationId() {
+            return "test";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "DocusignConnect";
+        }
+    };
+
+    private ExecutorService io;
+    private ExecutorService cpu;
+    private DocusignConnectService service;
+    private Map<String, String> headers;
+
+    @BeforeEach
+    void setUp() {
+        io = Executors.newFixedThreadPool(2);
+        cpu = Executors.newFixedThreadPool(2);
+        service = new DocusignConnectService(io, cpu,
+                new ConnectEventDeduplicator(false, new InMemoryConnectEventStore(1, 0), 10, 0.01, 1000),
+                new ConnectEventCoalescer(false, 0),
+                new RendBatchSender(false, 0, 1, 1, io));
+        headers = new HashMap<>();
+        headers.put("accountId", "account-1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        io.shutdownNow();
+        cpu.shutdownNow();
+    }
+
+    @Test
+    void testHandleConnectRequestAsync_NotCompleted() throws Exception {
+        String response = service.handleConnectRequestAsync(String.format(EVENT, "sent", "other"), headers, context)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals("Envelope status not completed.", response);
+    }
+
+    @Test
+    void testHandleConnectRequestAsync_UnknownRepository() throws Exception {
+        String response = service.handleConnectRequestAsync(String.format(EVENT, "completed", "other"), headers, context)
+                .get(10, TimeUnit.SECONDS);
+
+        assertTrue(response.contains("not an HR LOA"));
+    }
+
+    @Test
+    void testHandleConnectRequestAsync_MissingEnvelopeStatus() {
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> service.handleConnectRequestAsync("<root><value>1</value></root>", headers, context).get(10, TimeUnit.SECONDS));
+
+        assertTrue(error.getCause().getMessage().contains("EnvelopeStatus not found"));
+    }
+
+    @Test
+    void testHandleConnectRequest_RethrowsStageFailure() {
+        Exception error = assertThrows(Exception.class,
+                () -> service.handleConnectRequest("<root><value>1</value></root>", headers, context));
+
+        assertTrue(error.getMessage().contains("EnvelopeStatus not found"));
+    }
+
+    @Test
+    void testHandleConnectRequest_ClosesTicketOnceProcessed() throws Exception {
+        AdmissionController admission = new AdmissionController(true, 10, 1024 * 1024, 10);
+
+        service.handleConnectRequest(String.format(EVENT, "sent", "other"), headers, context, admission.admit(100));
+        assertThrows(Exception.class,
+                () -> service.handleConnectRequest("<root><value>1</value></root>", headers, context, admission.admit(100)));
+
+        awaitNoEventsInFlight(admission);
+        assertEquals(0L, admission.getStats().get("inFlightBytes"));
+    }
+
+    // The ticket is closed by a stage that may still be running when the response is returned
+    private static void awaitNoEventsInFlight(AdmissionController admission) throws InterruptedException {
+        long giveUpAt = System.currentTimeMillis() + 5000;
+        while (!Long.valueOf(0).equals(admission.getStats().get("inFlightEvents")) && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(10);
+        }
+        assertEquals(0L, admission.getStats().get("inFlightEvents"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Test;
+
+class AdmissionControllerTest {
+
+    @Test
+    void testAdmit_RejectsOverEventLimitWithRetryAfter() throws Exception {
+        AdmissionController controller = new AdmissionController(true, 2, 1024 * 1024, 10);
+        AdmissionController.Ticket first = controller.admit(100);
+        AdmissionController.Ticket second = controller.admit(100);
+
+        AdmissionController.OverloadedException error =
+                assertThrows(AdmissionController.OverloadedException.class, () -> controller.admit(100));
+
+        assertEquals(429, error.getStatusCode());
+        assertTrue(error.getRetryAfterSeconds() >= 10 && error.getRetryAfterSeconds() <= 15);
+        assertEquals(2L, controller.getStats().get("inFlightEvents"));
+        assertEquals(200L, controller.getStats().get("inFlightBytes"));
+        assertEquals(1L, controller.getStats().get("rejectedOverloaded"));
+
+        first.close();
+        controller.admit(100).close();
+        second.close();
+        assertEquals(0L, controller.getStats().get("inFlightEvents"));
+    }
+
+    @Test
+    void testAdmit_RejectsOverByteLimitUnlessAlone() throws Exception {
+        AdmissionController controller = new AdmissionController(true, 10, 1000, 10);
+
+        AdmissionController.Ticket large = controller.admit(5000);
+        AdmissionController.OverloadedException error =
+                assertThrows(AdmissionController.OverloadedException.class, () -> controller.admit(1));
+        large.close();
+
+        assertEquals(429, error.getStatusCode());
+
+        assertEquals(0L, controller.getStats().get("inFlightBytes"));
+    }
+
+    @Test
+    void testTicketClose_ReleasesOnce() throws Exception {
+        AdmissionController controller = new AdmissionController(true, 10, 1000, 10);
+        AdmissionController.Ticket kept = controller.admit(100);
+        AdmissionController.Ticket closed = controller.admit(200);
+
+        closed.close();
+        closed.close();
+
+        assertEquals(1L, controller.getStats().get("inFlightEvents"));
+        assertEquals(100L, controller.getStats().get("inFlightBytes"));
+        kept.close();
+    }
+
+    @Test
+    void testTrack_CountsDocumentBytesUntilClosed() throws Exception {
+        AdmissionController controller = new AdmissionController(true, 10, 1000, 10);
+        DocumentCache.Document document = controller.track(
+                new DocumentCache.Document(new ByteArrayInputStream(new byte[600]), 600));
+
+        assertEquals(600L, controller.getStats().get("inFlightBytes"));
+        AdmissionController.Ticket ticket = controller.admit(100);
+        assertThrows(AdmissionController.OverloadedException.class, () -> controller.admit(500));
+        ticket.close();
+
+        InputStream stream = document.getInputStream();
+        stream.close();
+        stream.close();
+        assertEquals(0L, controller.getStats().get("inFlightBytes"));
+    }
+
+    @Test
+    void testAdmit_DisabledAlwaysAdmits() throws Exception {
+        AdmissionController controller = new AdmissionController(false, 1, 1, 10);
+
+        for (int i = 0; i < 5; i++) {
+            controller.admit(1000);
+        }
+
+        assertEquals(0L, controller.getStats().get("inFlightEvents"));
+        assertEquals(0L, controller.getStats().get("inFlightBytes"));
+    }
+}
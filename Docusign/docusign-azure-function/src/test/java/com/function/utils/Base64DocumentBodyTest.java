@@ -0,0 +1,158 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+class Base64DocumentBodyTest {
+
+    private static final byte[] PREFIX = "{\"documentBase64\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testContentLength_MatchesPublishedBytes() throws Exception {
+        for (int length : new int[]{0, 1, 2, 3, 4, 12287, 12288, 12289, 100_000}) {
+            byte[] document = document(length);
+            Base64DocumentBody body = Base64DocumentBody.of(PREFIX, new ByteArrayInputStream(document), length, SUFFIX);
+            HttpRequest.BodyPublisher publisher = body.publisher();
+
+            byte[] published = publish(publisher);
+
+            assertEquals(body.contentLength(), publisher.contentLength(), "length " + length);
+            assertEquals(body.contentLength(), published.length, "length " + length);
+            assertArrayEquals(expected(document), published, "length " + length);
+        }
+    }
+
+    @Test
+    void testContentLength_UnknownDocumentLengthIsChunked() throws Exception {
+        byte[] document = document(1000);
+        Base64DocumentBody body = Base64DocumentBody.of(PREFIX, new ByteArrayInputStream(document), -1, SUFFIX);
+        HttpRequest.BodyPublisher publisher = body.publisher();
+
+        assertEquals(-1, body.contentLength());
+        assertEquals(-1, publisher.contentLength());
+        assertArrayEquals(expected(document), publish(publisher));
+    }
+
+    @Test
+    void testOpenStream_ReopensForEverySendAfterTheFirst() throws Exception {
+        byte[] document = document(5000);
+        TrackingInputStream first = new TrackingInputStream(document);
+        Base64DocumentBody body = Base64DocumentBody.of(PREFIX, first, document.length, SUFFIX)
+                .withReopen(() -> new ByteArrayInputStream(document));
+
+        byte[] retried;
+        try (InputStream in = body.openStream()) {
+            in.read(new byte[100]);
+        }
+        try (InputStream in = body.openStream()) {
+            retried = in.readAllBytes();
+        }
+
+        assertTrue(body.isReplayable());
+        assertTrue(first.closed.get());
+        assertArrayEquals(expected(document), retried);
+    }
+
+    @Test
+    void testOpenStream_NotReplayableWithoutReopen() throws Exception {
+        Base64DocumentBody body = Base64DocumentBody.of(PREFIX, new ByteArrayInputStream(document(10)), 10, SUFFIX);
+
+        body.openStream().close();
+
+        assertThrows(UncheckedIOException.class, body::openStream);
+    }
+
+    @Test
+    void testReleaseIfUnused_ClosesOnlyAnUnsentDocument() throws Exception {
+        TrackingInputStream unsent = new TrackingInputStream(document(10));
+        Base64DocumentBody.of(PREFIX, unsent, 10, SUFFIX).releaseIfUnused();
+
+        TrackingInputStream sent = new TrackingInputStream(document(10));
+        Base64DocumentBody body = Base64DocumentBody.of(PREFIX, sent, 10, SUFFIX);
+        InputStream in = body.openStream();
+        body.releaseIfUnused();
+
+        assertTrue(unsent.closed.get());
+        assertFalse(sent.closed.get());
+        in.close();
+    }
+
+    private static byte[] document(int length) {
+        byte[] document = new byte[length];
+        new Random(length).nextBytes(document);
+        return document;
+    }
+
+    private static byte[] expected(byte[] document) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(PREFIX);
+        out.write(Base64.getEncoder().encode(document));
+        out.write(SUFFIX);
+        return out.toByteArray();
+    }
+
+    // Drains the publisher the way HttpClient would
+    private static byte[] publish(HttpRequest.BodyPublisher publisher) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<byte[]> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                out.write(bytes, 0, bytes.length);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(out.toByteArray());
+            }
+        });
+        return done.get(5, TimeUnit.SECONDS);
+    }
+
+    private static final class TrackingInputStream extends ByteArrayInputStream {
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private TrackingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed.set(true);
+            super.close();
+        }
+    }
+}
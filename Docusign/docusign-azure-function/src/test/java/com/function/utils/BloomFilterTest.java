@@ -0,0 +1,35 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    @Test
+    void testMightContain_NoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("envelope-" + i + "|completed|2024-01-01T00:00:00");
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("envelope-" + i + "|completed|2024-01-01T00:00:00"));
+        }
+    }
+
+    @Test
+    void testMightContain_FalsePositivesNearConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("seen-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("unseen-" + i)) falsePositives++;
+        }
+
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+}
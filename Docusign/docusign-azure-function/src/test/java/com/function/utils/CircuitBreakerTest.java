@@ -0,0 +1,86 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+    @Test
+    void testRecordFailure_OpensAfterThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 60000);
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.recordFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertTrue(breaker.getOpenRemainingMillis() > 0);
+    }
+
+    @Test
+    void testRecordSuccess_ResetsConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, 60000);
+
+        breaker.tryAcquire();
+        breaker.recordFailure();
+        breaker.tryAcquire();
+        breaker.recordSuccess();
+        breaker.tryAcquire();
+        breaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testTryAcquire_LetsOneProbeThroughAfterOpenPeriod() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 20);
+        breaker.tryAcquire();
+        breaker.recordFailure();
+
+        Thread.sleep(40);
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testRecordFailure_FailedProbeReopens() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 20);
+        breaker.tryAcquire();
+        breaker.recordFailure();
+        Thread.sleep(40);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void testRecordIgnored_FreesTheProbeWithoutClosing() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 20);
+        breaker.tryAcquire();
+        breaker.recordFailure();
+        Thread.sleep(40);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.recordIgnored();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+}
@@ -0,0 +1,84 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrencyLimiterTest {
+
+    @Test
+    void testAcquireAsync_QueuesBeyondLimitUntilRelease() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 2, 1, 10, 2.0, 0.9, 5000);
+
+        ConcurrencyLimiter.Permit first = limiter.acquire();
+        ConcurrencyLimiter.Permit second = limiter.acquire();
+        CompletableFuture<ConcurrencyLimiter.Permit> third = limiter.acquireAsync();
+
+        assertFalse(third.isDone());
+        assertEquals(2, limiter.getStats().get("inFlight"));
+        assertEquals(1, limiter.getStats().get("queued"));
+
+        first.release(false);
+
+        assertTrue(third.isDone());
+        assertEquals(0, limiter.getStats().get("queued"));
+        assertEquals(1L, limiter.getStats().get("queuedCalls"));
+        second.release(false);
+        third.join().release(false);
+        assertEquals(0, limiter.getStats().get("inFlight"));
+    }
+
+    @Test
+    void testAcquire_RejectsAfterMaxWait() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 1, 1, 1, 2.0, 0.9, 50);
+        ConcurrencyLimiter.Permit held = limiter.acquire();
+
+        assertThrows(BulkheadFullException.class, limiter::acquire);
+        CompletionException async = assertThrows(CompletionException.class, () -> limiter.acquireAsync().join());
+
+        assertTrue(async.getCause() instanceof BulkheadFullException);
+        awaitRejected(limiter, 2L);
+        assertEquals(0, limiter.getStats().get("queued"));
+        held.release(false);
+    }
+
+    @Test
+    void testRelease_DropShrinksLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 10, 2, 20, 2.0, 0.5, 5000);
+
+        limiter.acquire().release(true);
+        assertEquals(5, limiter.getStats().get("limit"));
+
+        limiter.acquire().release(true);
+        limiter.acquire().release(true);
+        assertEquals(2, limiter.getStats().get("limit"));
+        assertEquals(3L, limiter.getStats().get("drops"));
+    }
+
+    @Test
+    void testRelease_OnlyOnce() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 1, 1, 1, 2.0, 0.9, 5000);
+        ConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        permit.release(true);
+        permit.release(true);
+
+        assertEquals(0, limiter.getStats().get("inFlight"));
+        assertEquals(1L, limiter.getStats().get("drops"));
+    }
+
+    // The rejection is counted just after the waiter's future fails
+    private static void awaitRejected(ConcurrencyLimiter limiter, long expected) throws InterruptedException {
+        long giveUpAt = System.currentTimeMillis() + 5000;
+        while (!Long.valueOf(expected).equals(limiter.getStats().get("rejected")) && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, limiter.getStats().get("rejected"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class ConnectEventCoalescerTest {
+
+    private static final String EARLIER = "2024-01-02T03:04:05.100";
+    private static final String LATER = "2024-01-02T03:04:05.900";
+
+    @Test
+    void testAwaitNewest_NewerEventSupersedesWaitingOne() throws Exception {
+        ConnectEventCoalescer coalescer = new ConnectEventCoalescer(true, 100);
+
+        CompletableFuture<Boolean> older = coalescer.awaitNewest("env-1", EARLIER);
+        assertFalse(older.isDone());
+        CompletableFuture<Boolean> newer = coalescer.awaitNewest("env-1", LATER);
+
+        assertFalse(older.getNow(true));
+        assertFalse(newer.isDone());
+        assertTrue(newer.get(5, TimeUnit.SECONDS));
+        assertEquals(1L, coalescer.getStats().get("released"));
+        assertEquals(1L, coalescer.getStats().get("superseded"));
+    }
+
+    @Test
+    void testAwaitNewest_OlderArrivalSupersededAtOnce() throws Exception {
+        ConnectEventCoalescer coalescer = new ConnectEventCoalescer(true, 100);
+
+        CompletableFuture<Boolean> newer = coalescer.awaitNewest("env-1", LATER);
+        CompletableFuture<Boolean> older = coalescer.awaitNewest("env-1", EARLIER);
+
+        assertFalse(older.getNow(true));
+        assertTrue(newer.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testAwaitNewest_StragglerAfterReleaseSuperseded() throws Exception {
+        ConnectEventCoalescer coalescer = new ConnectEventCoalescer(true, 300);
+
+        assertTrue(coalescer.awaitNewest("env-1", LATER).get(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> straggler = coalescer.awaitNewest("env-1", EARLIER);
+
+        assertFalse(straggler.getNow(true));
+    }
+
+    @Test
+    void testAwaitNewest_EnvelopesAreIndependentAndForgotten() throws Exception {
+        ConnectEventCoalescer coalescer = new ConnectEventCoalescer(true, 50);
+
+        CompletableFuture<Boolean> first = coalescer.awaitNewest("env-1", LATER);
+        CompletableFuture<Boolean> second = coalescer.awaitNewest("env-2", EARLIER);
+        assertEquals(2, coalescer.getStats().get("trackedEnvelopes"));
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        long giveUpAt = System.currentTimeMillis() + 5000;
+        while (!Integer.valueOf(0).equals(coalescer.getStats().get("trackedEnvelopes")) && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, coalescer.getStats().get("trackedEnvelopes"));
+    }
+
+    @Test
+    void testAwaitNewest_DisabledOrIncompleteLetsThrough() {
+        ConnectEventCoalescer disabled = new ConnectEventCoalescer(false, 60000);
+        ConnectEventCoalescer enabled = new ConnectEventCoalescer(true, 60000);
+
+        assertTrue(disabled.awaitNewest("env-1", LATER).getNow(false));
+        assertTrue(enabled.awaitNewest("env-1", null).getNow(false));
+        assertTrue(enabled.awaitNewest(null, LATER).getNow(false));
+    }
+}
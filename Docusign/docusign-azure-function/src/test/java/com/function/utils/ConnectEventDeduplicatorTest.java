@@ -0,0 +1,132 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class ConnectEventDeduplicatorTest {
+
+    private static final String KEY = ConnectEventDeduplicator.keyOf("env-1", "Completed", "2024-01-02T03:04:05");
+    private static final String UPLOADED = "{\"statusCode\":200, \"response\":\"ok\", \"correlationId\":\"c1\"}";
+    private static final String QUEUED = "{\"statusCode\":202, \"response\":\"Upload queued for delivery\", \"correlationId\":\"c1\"}";
+
+    private final InMemoryConnectEventStore store = new InMemoryConnectEventStore(100, 60000);
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Test
+    void testKeyOf_NormalisesStatusAndRejectsMissingParts() {
+        assertEquals("env-1|completed|2024-01-02T03:04:05", KEY);
+        assertNull(ConnectEventDeduplicator.keyOf("env-1", null, "2024-01-02T03:04:05"));
+    }
+
+    @Test
+    void testProcess_AnswersArchivedEventFromStore() {
+        ConnectEventDeduplicator deduplicator = deduplicator(true);
+
+        assertEquals(UPLOADED, deduplicator.process(KEY, () -> work(UPLOADED)).join());
+        assertEquals(UPLOADED, deduplicator.process(KEY, () -> work("second run")).join());
+
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testProcess_ReprocessesQueuedAndFailedResults() {
+        ConnectEventDeduplicator deduplicator = deduplicator(true);
+
+        deduplicator.process(KEY, () -> work(QUEUED)).join();
+        deduplicator.process(KEY, () -> work("{\"statusCode\": 500, \"response\": {}}")).join();
+        deduplicator.process(KEY, () -> work(UPLOADED)).join();
+
+        assertEquals(3, runs.get());
+        assertEquals(UPLOADED, store.get(KEY));
+    }
+
+    @Test
+    void testProcess_SharesResultOfDuplicateInFlight() {
+        ConnectEventDeduplicator deduplicator = deduplicator(true);
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        CompletableFuture<String> original = deduplicator.process(KEY, () -> {
+            runs.incrementAndGet();
+            return first;
+        });
+        CompletableFuture<String> duplicate = deduplicator.process(KEY, () -> work("duplicate run"));
+        first.complete(UPLOADED);
+
+        assertSame(original, duplicate);
+        assertEquals(UPLOADED, duplicate.join());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testProcess_AsksForRetryWhileAnotherInstanceHoldsTheClaim() {
+        ConnectEventDeduplicator deduplicator = deduplicator(true);
+        assertTrue(store.tryClaim(KEY, "other-instance", 60000));
+
+        String response = deduplicator.process(KEY, () -> work(UPLOADED)).join();
+
+        assertEquals(ConnectEventDeduplicator.IN_PROGRESS_RESPONSE, response);
+        assertTrue(response.startsWith("{\"statusCode\": 503, \"retryAfterSeconds\": "));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void testProcess_LoadsArchivedKeysOnStart() {
+        store.put(KEY, UPLOADED);
+
+        String response = deduplicator(true).process(KEY, () -> work("second run")).join();
+
+        assertEquals(UPLOADED, response);
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void testProcess_DisabledAlwaysRuns() {
+        ConnectEventDeduplicator deduplicator = deduplicator(false);
+
+        deduplicator.process(KEY, () -> work(UPLOADED)).join();
+        deduplicator.process(KEY, () -> work(UPLOADED)).join();
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void testMightBeDuplicate_InFlightOrRecorded() {
+        ConnectEventDeduplicator deduplicator = deduplicator(true);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        assertFalse(deduplicator.mightBeDuplicate(KEY));
+        deduplicator.process(KEY, () -> pending);
+        assertTrue(deduplicator.mightBeDuplicate(KEY));
+        pending.complete(UPLOADED);
+
+        assertTrue(deduplicator.mightBeDuplicate(KEY));
+        assertFalse(deduplicator(false).mightBeDuplicate(KEY));
+        assertFalse(deduplicator.mightBeDuplicate(null));
+    }
+
+    @Test
+    void testIsSuccess_OnlyFinishedUploads() {
+        assertTrue(ConnectEventDeduplicator.isSuccess(UPLOADED));
+        assertTrue(ConnectEventDeduplicator.isSuccess("{\"statusCode\": 201, \"response\": {}}"));
+        assertFalse(ConnectEventDeduplicator.isSuccess(QUEUED));
+        assertFalse(ConnectEventDeduplicator.isSuccess("{\"statusCode\": 502, \"response\": {}}"));
+        assertFalse(ConnectEventDeduplicator.isSuccess("Envelope status not completed."));
+    }
+
+    private ConnectEventDeduplicator deduplicator(boolean enabled) {
+        return new ConnectEventDeduplicator(enabled, store, 1000, 0.01, 60000);
+    }
+
+    private CompletableFuture<String> work(String response) {
+        runs.incrementAndGet();
+        return CompletableFuture.completedFuture(response);
+    }
+}
@@ -0,0 +1,106 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class DeadlineTest {
+
+    @Test
+    void testEnter_RestoresPreviousDeadline() {
+        Deadline outer = Deadline.after(60000);
+        Deadline inner = Deadline.after(1000);
+
+        Deadline.Scope outerScope = outer.enter();
+        Deadline.Scope innerScope = inner.enter();
+        assertSame(inner, Deadline.current());
+        innerScope.close();
+        assertSame(outer, Deadline.current());
+        outerScope.close();
+
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    void testBound_CapsTimeoutByRemainingTime() throws Exception {
+        Duration timeout = Duration.ofSeconds(30);
+        assertSame(timeout, Deadline.bound(timeout));
+
+        Deadline.Scope scope = Deadline.after(2000).enter();
+        try {
+            Duration bounded = Deadline.bound(timeout);
+            assertTrue(bounded.toMillis() > 0 && bounded.toMillis() <= 2000);
+            assertEquals(Duration.ofMillis(10), Deadline.bound(Duration.ofMillis(10)));
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    void testBound_ThrowsOnceExpired() {
+        Deadline deadline = Deadline.after(0);
+        assertTrue(deadline.isExpired());
+        assertEquals(0, deadline.remainingMillis());
+
+        Deadline.Scope scope = deadline.enter();
+        try {
+            assertThrows(DeadlineExceededException.class, () -> Deadline.bound(Duration.ofSeconds(1)));
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    void testGuard_ClosesStreamWhenDeadlinePasses() throws Exception {
+        HangingInputStream hanging = new HangingInputStream();
+        InputStream guarded;
+        Deadline.Scope scope = Deadline.after(100).enter();
+        try {
+            guarded = Deadline.guard(hanging);
+        } finally {
+            scope.close();
+        }
+
+        assertThrows(IOException.class, guarded::read);
+        assertTrue(hanging.closed.await(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testGuard_UnchangedOutsideAnyEvent() {
+        InputStream stream = new HangingInputStream();
+
+        assertSame(stream, Deadline.guard(stream));
+    }
+
+    /**
+     * Blocks every read until closed, like a response body on a hung connection.
+     */
+    private static final class HangingInputStream extends InputStream {
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public int read() throws IOException {
+            try {
+                if (!closed.await(10, TimeUnit.SECONDS)) return -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Stream closed");
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
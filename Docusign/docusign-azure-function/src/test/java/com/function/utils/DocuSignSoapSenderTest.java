@@ -0,0 +1,127 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.function.payloads.RendPayloadTemplate;
+import com.function.payloads.RendSoapEnvelope;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+
+class DocuSignSoapSenderTest {
+
+    private static final byte[] DOCUMENT = new byte[100_000];
+
+    static {
+        new Random(11).nextBytes(DOCUMENT);
+    }
+
+    private final RendSoapEnvelope envelope = RendPayloadTemplate.PENSION.render("~~Unid=env-1", "env-1", "PENSION_REPO", "00123456.pdf");
+
+    private HttpServer server;
+    private final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    private final List<Headers> headers = new CopyOnWriteArrayList<>();
+    private final List<byte[]> bodies = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            headers.add(exchange.getRequestHeaders());
+            bodies.add(exchange.getRequestBody().readAllBytes());
+            Integer status = statuses.poll();
+            byte[] body = "<ok/>".getBytes(StandardCharsets.UTF_8);
+            // Retry at once rather than after a backoff
+            exchange.getResponseHeaders().add("Retry-After", "0");
+            exchange.sendResponseHeaders(status == null ? 200 : status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testPostToRendApi_StreamsBufferedPayloadWithContentLength() {
+        String response = post(new ByteArrayInputStream(DOCUMENT), DOCUMENT.length, null);
+
+        assertTrue(response.startsWith("{\"statusCode\":200"), response);
+        assertEquals(1, bodies.size());
+        assertArrayEquals(bufferedPayload(), bodies.get(0));
+        assertEquals(String.valueOf(bufferedPayload().length), headers.get(0).getFirst("Content-Length"));
+        assertEquals("application/xml", headers.get(0).getFirst("Content-Type"));
+    }
+
+    @Test
+    void testPostToRendApi_UnknownLengthIsSentChunked() {
+        String response = post(new ByteArrayInputStream(DOCUMENT), -1, null);
+
+        assertTrue(response.startsWith("{\"statusCode\":200"), response);
+        assertArrayEquals(bufferedPayload(), bodies.get(0));
+        assertNull(headers.get(0).getFirst("Content-Length"));
+        assertEquals("chunked", headers.get(0).getFirst("Transfer-Encoding"));
+    }
+
+    @Test
+    void testPostToRendApi_RetryReopensDocument() {
+        statuses.add(503);
+        AtomicInteger reopened = new AtomicInteger();
+
+        String response = post(new ByteArrayInputStream(DOCUMENT), DOCUMENT.length, () -> {
+            reopened.incrementAndGet();
+            return new ByteArrayInputStream(DOCUMENT);
+        });
+
+        assertTrue(response.startsWith("{\"statusCode\":200"), response);
+        assertEquals(1, reopened.get());
+        assertEquals(2, bodies.size());
+        assertArrayEquals(bufferedPayload(), bodies.get(0));
+        assertArrayEquals(bufferedPayload(), bodies.get(1));
+        assertEquals(String.valueOf(bufferedPayload().length), headers.get(1).getFirst("Content-Length"));
+    }
+
+    @Test
+    void testPostToRendApi_NotRetriedWithoutReopen() {
+        statuses.add(503);
+
+        String response = post(new ByteArrayInputStream(DOCUMENT), DOCUMENT.length, null);
+
+        assertTrue(response.startsWith("{\"statusCode\":503"), response);
+        assertEquals(1, bodies.size());
+    }
+
+    private String post(ByteArrayInputStream document, long length, Callable<InputStream> reopen) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/rend/render";
+        return DocuSignSoapSender.postToRendApi(url, envelope, document, length, reopen, "corr-1");
+    }
+
+    // What the non-streaming path would have sent
+    private byte[] bufferedPayload() {
+        return envelope.withFileData(Base64.getEncoder().encodeToString(DOCUMENT)).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,198 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DocumentCacheTest {
+
+    private static final String ACCOUNT = "account-1";
+
+    @TempDir
+    Path root;
+
+    // Downloads per envelope
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+
+    @Test
+    void testOpen_MissIsCachedOnlyAfterEndOfStream() throws Exception {
+        DocumentCache cache = cache(10_000, 60_000, 5000);
+        byte[] document = document("env-1", 1000);
+
+        InputStream first = cache.open(ACCOUNT, "env-1", loader("env-1", document)).getInputStream();
+        first.read(new byte[400]);
+        assertEquals(0, stat(cache, "entries"));
+
+        first.readAllBytes();
+        assertEquals(1, stat(cache, "entries"));
+        first.close();
+
+        DocumentCache.Document cached = cache.open(ACCOUNT, "env-1", loader("env-1", document));
+        assertTrue(cached.isFromCache());
+        assertEquals(document.length, cached.getLength());
+        assertArrayEquals(document, readAll(cached));
+        assertEquals(1, loads("env-1"));
+    }
+
+    @Test
+    void testOpen_EarlyCloseIsNotCached() throws Exception {
+        DocumentCache cache = cache(10_000, 60_000, 5000);
+        byte[] document = document("env-1", 1000);
+
+        InputStream first = cache.open(ACCOUNT, "env-1", loader("env-1", document)).getInputStream();
+        first.read(new byte[400]);
+        first.close();
+
+        DocumentCache.Document second = cache.open(ACCOUNT, "env-1", loader("env-1", document));
+        assertFalse(second.isFromCache());
+        assertArrayEquals(document, readAll(second));
+        assertEquals(2, loads("env-1"));
+        assertEquals(1, stat(cache, "entries"));
+    }
+
+    @Test
+    void testOpen_FollowerWaitsThenReadsCachedFile() throws Exception {
+        DocumentCache cache = cache(10_000, 60_000, 5000);
+        byte[] document = document("env-1", 1000);
+        InputStream leader = cache.open(ACCOUNT, "env-1", loader("env-1", document)).getInputStream();
+
+        CompletableFuture<DocumentCache.Document> follower = CompletableFuture.supplyAsync(() -> open(cache, "env-1", document));
+        awaitStat(cache, "coalesced", 1);
+        assertFalse(follower.isDone());
+        leader.readAllBytes();
+        leader.close();
+
+        DocumentCache.Document shared = follower.get(5, TimeUnit.SECONDS);
+        assertTrue(shared.isFromCache());
+        assertArrayEquals(document, readAll(shared));
+        assertEquals(1, loads("env-1"));
+    }
+
+    @Test
+    void testOpen_FollowerTimesOutAndDownloadsItsOwnCopy() throws Exception {
+        DocumentCache cache = cache(10_000, 60_000, 100);
+        byte[] document = document("env-1", 1000);
+        InputStream leader = cache.open(ACCOUNT, "env-1", loader("env-1", document)).getInputStream();
+
+        DocumentCache.Document own = cache.open(ACCOUNT, "env-1", loader("env-1", document));
+
+        assertFalse(own.isFromCache());
+        assertArrayEquals(document, readAll(own));
+        assertEquals(2, loads("env-1"));
+        assertEquals(0, stat(cache, "entries"));
+        leader.close();
+    }
+
+    @Test
+    void testCommit_EvictsLeastRecentlyUsedWithinMaxBytes() throws Exception {
+        DocumentCache cache = cache(250, 60_000, 5000);
+        byte[] a = document("a", 100);
+        byte[] b = document("b", 100);
+        byte[] c = document("c", 100);
+
+        readAll(cache.open(ACCOUNT, "a", loader("a", a)));
+        readAll(cache.open(ACCOUNT, "b", loader("b", b)));
+        // Touch a so that b is the least recently used
+        readAll(cache.open(ACCOUNT, "a", loader("a", a)));
+        readAll(cache.open(ACCOUNT, "c", loader("c", c)));
+
+        assertEquals(2, stat(cache, "entries"));
+        assertEquals(200L, stat(cache, "bytes"));
+        assertEquals(1L, stat(cache, "evictions"));
+        assertTrue(cache.open(ACCOUNT, "a", loader("a", a)).isFromCache());
+        assertTrue(cache.open(ACCOUNT, "c", loader("c", c)).isFromCache());
+        assertFalse(cache.open(ACCOUNT, "b", loader("b", b)).isFromCache());
+    }
+
+    @Test
+    void testOpen_DocumentLargerThanMaxBytesIsNotCached() throws Exception {
+        DocumentCache cache = cache(500, 60_000, 5000);
+        byte[] document = document("env-1", 1000);
+
+        readAll(cache.open(ACCOUNT, "env-1", loader("env-1", document)));
+
+        assertEquals(0, stat(cache, "entries"));
+        assertEquals(0L, stat(cache, "bytes"));
+    }
+
+    @Test
+    void testOpen_ExpiredEntryIsDownloadedAgain() throws Exception {
+        DocumentCache cache = cache(10_000, 50, 5000);
+        byte[] document = document("env-1", 100);
+
+        readAll(cache.open(ACCOUNT, "env-1", loader("env-1", document)));
+        Thread.sleep(100);
+        DocumentCache.Document again = cache.open(ACCOUNT, "env-1", loader("env-1", document));
+
+        assertFalse(again.isFromCache());
+        assertArrayEquals(document, readAll(again));
+        assertEquals(2, loads("env-1"));
+        assertEquals(1L, stat(cache, "evictions"));
+        assertEquals(100L, stat(cache, "bytes"));
+    }
+
+    private DocumentCache cache(long maxBytes, long ttlMillis, long waitMillis) {
+        return new DocumentCache(true, root, maxBytes, ttlMillis, waitMillis);
+    }
+
+    private Callable<DocumentCache.Document> loader(String envelopeId, byte[] document) {
+        return () -> {
+            loads.computeIfAbsent(envelopeId, id -> new AtomicInteger()).incrementAndGet();
+            return new DocumentCache.Document(new ByteArrayInputStream(document), document.length);
+        };
+    }
+
+    private DocumentCache.Document open(DocumentCache cache, String envelopeId, byte[] document) {
+        try {
+            return cache.open(ACCOUNT, envelopeId, loader(envelopeId, document));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int loads(String envelopeId) {
+        AtomicInteger count = loads.get(envelopeId);
+        return count == null ? 0 : count.get();
+    }
+
+    private static byte[] document(String envelopeId, int length) {
+        byte[] document = new byte[length];
+        for (int i = 0; i < length; i++) {
+            document[i] = (byte) (envelopeId.hashCode() + i);
+        }
+        return document;
+    }
+
+    private static byte[] readAll(DocumentCache.Document document) throws IOException {
+        try (InputStream in = document.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static Object stat(DocumentCache cache, String name) {
+        return cache.getStats().get(name);
+    }
+
+    private static void awaitStat(DocumentCache cache, String name, long expected) throws InterruptedException {
+        long giveUpAt = System.currentTimeMillis() + 5000;
+        while (!Long.valueOf(expected).equals(stat(cache, name)) && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, stat(cache, name));
+    }
+}
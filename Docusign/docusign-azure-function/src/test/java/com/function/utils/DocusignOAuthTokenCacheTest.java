@@ -0,0 +1,117 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.function.model.DocusignOAuthToken;
+
+class DocusignOAuthTokenCacheTest {
+
+    private static final String USER = "user-1";
+    private static final String INTEGRATOR = "integrator-1";
+    private static final String HOST = "account-d.docusign.com";
+    private static final long REFRESH_AHEAD_MILLIS = 300_000;
+
+    private final DocusignOAuthTokenCache cache = new DocusignOAuthTokenCache(REFRESH_AHEAD_MILLIS);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void testGetTokenAsync_ConcurrentMissesShareOneRefresh() {
+        CompletableFuture<DocusignOAuthToken> refresh = new CompletableFuture<>();
+
+        CompletableFuture<DocusignOAuthToken> first = cache.getTokenAsync(USER, INTEGRATOR, HOST, loader(refresh));
+        CompletableFuture<DocusignOAuthToken> second = cache.getTokenAsync(USER, INTEGRATOR, HOST, loader(refresh));
+        assertFalse(first.isDone());
+        DocusignOAuthToken token = token("fresh", 3600);
+        refresh.complete(token);
+
+        assertSame(token, first.join());
+        assertSame(token, second.join());
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.getMissCount());
+        assertSame(token, cache.getToken(USER, INTEGRATOR, HOST, loader(new CompletableFuture<>())));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void testGetTokenAsync_ServesValidTokenWhileRefreshIsInFlight() {
+        // Expires inside the refresh-ahead window but is still valid
+        DocusignOAuthToken expiring = token("expiring", 60);
+        cache.getToken(USER, INTEGRATOR, HOST, loader(CompletableFuture.completedFuture(expiring)));
+        CompletableFuture<DocusignOAuthToken> refresh = new CompletableFuture<>();
+
+        CompletableFuture<DocusignOAuthToken> refresher = cache.getTokenAsync(USER, INTEGRATOR, HOST, loader(refresh));
+        CompletableFuture<DocusignOAuthToken> other = cache.getTokenAsync(USER, INTEGRATOR, HOST, loader(refresh));
+
+        assertFalse(refresher.isDone());
+        assertSame(expiring, other.join());
+        DocusignOAuthToken fresh = token("fresh", 3600);
+        refresh.complete(fresh);
+        assertSame(fresh, refresher.join());
+        assertSame(fresh, cache.getToken(USER, INTEGRATOR, HOST, loader(new CompletableFuture<>())));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testGetTokenAsync_FailedRefreshIsNotCached() {
+        CompletableFuture<DocusignOAuthToken> refresh = new CompletableFuture<>();
+        CompletableFuture<DocusignOAuthToken> first = cache.getTokenAsync(USER, INTEGRATOR, HOST, loader(refresh));
+        CompletableFuture<DocusignOAuthToken> second = cache.getTokenAsync(USER, INTEGRATOR, HOST, loader(refresh));
+
+        refresh.completeExceptionally(new IllegalStateException("connection reset"));
+
+        assertThrows(CompletionException.class, first::join);
+        assertThrows(CompletionException.class, second::join);
+        assertEquals(1, cache.getRefreshFailureCount());
+
+        DocusignOAuthToken rejected = DocusignOAuthToken.failure("consent_required", 400, null);
+        assertSame(rejected, cache.getToken(USER, INTEGRATOR, HOST, loader(CompletableFuture.completedFuture(rejected))));
+        assertEquals(2, cache.getRefreshFailureCount());
+        assertEquals(0, cache.getStats().get("cachedTokens"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testInvalidate_NextCallRefreshes() {
+        cache.getToken(USER, INTEGRATOR, HOST, loader(CompletableFuture.completedFuture(token("rejected", 3600))));
+
+        cache.invalidate(USER, INTEGRATOR, HOST.toUpperCase());
+        DocusignOAuthToken fresh = token("fresh", 3600);
+
+        assertSame(fresh, cache.getToken(USER, INTEGRATOR, HOST, loader(CompletableFuture.completedFuture(fresh))));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testRefreshIfExpiring_SkipsTokenThatStaysValid() {
+        cache.getToken(USER, INTEGRATOR, HOST, loader(CompletableFuture.completedFuture(token("current", 3600))));
+
+        assertNull(cache.refreshIfExpiring(USER, INTEGRATOR, HOST, 60_000, loader(new CompletableFuture<>())).join());
+        assertEquals(1, loads.get());
+        assertTrue(cache.refreshIfExpiring(USER, INTEGRATOR, HOST, 7_200_000,
+                loader(CompletableFuture.completedFuture(token("fresh", 3600)))).join().isValid());
+        assertEquals(2, loads.get());
+    }
+
+    private Supplier<CompletableFuture<DocusignOAuthToken>> loader(CompletableFuture<DocusignOAuthToken> result) {
+        return () -> {
+            loads.incrementAndGet();
+            return result;
+        };
+    }
+
+    private static DocusignOAuthToken token(String accessToken, long expiresInSeconds) {
+        return DocusignOAuthToken.success(accessToken, "Bearer", expiresInSeconds, 200, null);
+    }
+}
@@ -0,0 +1,126 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class DocusignRateLimiterTest {
+
+    private static final String ACCOUNT = "account-1";
+    private static final long MAX_WAIT_MS = 30000;
+
+    // Pace below half the limit, hold back 10% for archival, burst of 10 tokens, 1s burst pause
+    private final DocusignRateLimiter limiter = new DocusignRateLimiter(0.5, 0.1, 10, 1000, MAX_WAIT_MS);
+
+    @Test
+    void testReserve_NoPacingAbovePaceRatio() {
+        DocusignRateLimiter.Bucket bucket = bucketWith(1000, 600);
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(0, bucket.reserve(DocusignRateLimiter.Priority.NORMAL, MAX_WAIT_MS));
+        }
+        assertEquals(550L, stats().get("remaining"));
+    }
+
+    @Test
+    void testReserve_PacesBelowPaceRatioOnceBurstIsSpent() {
+        DocusignRateLimiter.Bucket bucket = bucketWith(1000, 400);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, bucket.reserve(DocusignRateLimiter.Priority.NORMAL, MAX_WAIT_MS));
+        }
+        // 300 spendable calls over the hour: one every 12s
+        long wait = bucket.reserve(DocusignRateLimiter.Priority.NORMAL, MAX_WAIT_MS);
+        assertTrue(wait > 10000 && wait <= 13000, "waited " + wait + "ms");
+    }
+
+    @Test
+    void testReserve_ReserveIsLeftForArchival() {
+        DocusignRateLimiter.Bucket bucket = bucketWith(1000, 50);
+
+        long normalWait = bucket.reserve(DocusignRateLimiter.Priority.NORMAL, MAX_WAIT_MS);
+        long archivalWait = bucket.reserve(DocusignRateLimiter.Priority.ARCHIVAL, MAX_WAIT_MS);
+
+        // NORMAL would have to wait for the reset, ARCHIVAL may spend the 100 reserved calls
+        assertTrue(normalWait > MAX_WAIT_MS, "waited " + normalWait + "ms");
+        assertEquals(0, archivalWait);
+        assertEquals(49L, stats().get("remaining"));
+    }
+
+    @Test
+    void testReserve_PausesWhenBurstLimitIsReached() {
+        DocusignRateLimiter.Bucket bucket = limiter.bucket(ACCOUNT);
+        bucket.update(ACCOUNT, headers(Map.of("X-BurstLimit-Limit", "500", "X-BurstLimit-Remaining", "0")));
+
+        long wait = bucket.reserve(DocusignRateLimiter.Priority.ARCHIVAL, MAX_WAIT_MS);
+
+        assertTrue(wait > 900 && wait <= 1000, "waited " + wait + "ms");
+    }
+
+    @Test
+    void testReserve_RefusedCallGivesItsTokenBack() {
+        DocusignRateLimiter.Bucket bucket = bucketWith(1000, 400);
+        for (int i = 0; i < 10; i++) {
+            bucket.reserve(DocusignRateLimiter.Priority.NORMAL, MAX_WAIT_MS);
+        }
+
+        long refused = bucket.reserve(DocusignRateLimiter.Priority.NORMAL, 100);
+        long remainingAfterRefusal = (Long) stats().get("remaining");
+        long accepted = bucket.reserve(DocusignRateLimiter.Priority.NORMAL, MAX_WAIT_MS);
+
+        assertTrue(refused > 100, "waited " + refused + "ms");
+        assertEquals(390L, remainingAfterRefusal);
+        // The next caller waits for the same token instead of queueing behind the refused one
+        assertTrue(accepted <= refused + 50, "refused " + refused + "ms, then waited " + accepted + "ms");
+    }
+
+    @Test
+    void testSend_RefusesWhenWaitWouldPassDeadline() {
+        limiter.bucket(ACCOUNT).update(ACCOUNT, headers(Map.of("X-BurstLimit-Limit", "500", "X-BurstLimit-Remaining", "0")));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:1/")).GET().build();
+
+        Deadline.Scope scope = Deadline.after(200).enter();
+        try {
+            IOException error = assertThrows(IOException.class, () -> limiter.send(ACCOUNT,
+                    DocusignRateLimiter.Priority.NORMAL, request, HttpResponse.BodyHandlers.discarding(), true));
+            assertTrue(error.getMessage().startsWith("429::"), error.getMessage());
+        } finally {
+            scope.close();
+        }
+
+        assertEquals(1L, stats().get("refused"));
+        assertEquals(0L, stats().get("paced"));
+    }
+
+    private DocusignRateLimiter.Bucket bucketWith(long limit, long remaining) {
+        long resetAt = System.currentTimeMillis() / 1000 + 3600;
+        DocusignRateLimiter.Bucket bucket = limiter.bucket(ACCOUNT);
+        bucket.update(ACCOUNT, headers(Map.of(
+                "X-RateLimit-Limit", String.valueOf(limit),
+                "X-RateLimit-Remaining", String.valueOf(remaining),
+                "X-RateLimit-Reset", String.valueOf(resetAt))));
+        return bucket;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stats() {
+        return (Map<String, Object>) limiter.getStats().get(ACCOUNT);
+    }
+
+    private static HttpHeaders headers(Map<String, String> values) {
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        values.forEach((name, value) -> map.put(name, List.of(value)));
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+}
@@ -0,0 +1,115 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.function.model.DocusignOAuthToken;
+
+class FileDocusignTokenStoreTest {
+
+    private static final String KEY = "user-1|integrator-1|account-d.docusign.com";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testPut_RoundTripsEncryptedToken() throws Exception {
+        FileDocusignTokenStore store = new FileDocusignTokenStore(directory, "secret");
+        DocusignOAuthToken token = DocusignOAuthToken.success("access-token-value", "Bearer", 3600, 200, "{\"raw\":true}");
+
+        store.put(KEY, token);
+        DocusignOAuthToken restored = new FileDocusignTokenStore(directory, "secret").get(KEY);
+
+        assertEquals("access-token-value", restored.getAccessToken());
+        assertEquals("Bearer", restored.getTokenType());
+        assertEquals(3600, restored.getExpiresIn());
+        assertEquals(token.getExpiresAt(), restored.getExpiresAt());
+        assertEquals("{\"raw\":true}", restored.getRawResponse());
+        assertTrue(restored.isValid());
+
+        byte[] onDisk = Files.readAllBytes(onlyFile(".tok"));
+        assertFalse(new String(onDisk, StandardCharsets.ISO_8859_1).contains("access-token-value"));
+    }
+
+    @Test
+    void testGet_WrongSecretReadsNothing() throws Exception {
+        new FileDocusignTokenStore(directory, "secret").put(KEY,
+                DocusignOAuthToken.success("access-token-value", "Bearer", 3600, 200, null));
+
+        assertNull(new FileDocusignTokenStore(directory, "other secret").get(KEY));
+        assertNull(new FileDocusignTokenStore(directory, "secret").get("another key"));
+    }
+
+    @Test
+    void testPut_IgnoresFailedToken() throws Exception {
+        FileDocusignTokenStore store = new FileDocusignTokenStore(directory, "secret");
+
+        store.put(KEY, DocusignOAuthToken.failure("consent_required", 400, null));
+
+        assertNull(store.get(KEY));
+    }
+
+    @Test
+    void testRemove_DropsStoredToken() throws Exception {
+        FileDocusignTokenStore store = new FileDocusignTokenStore(directory, "secret");
+        store.put(KEY, DocusignOAuthToken.success("access-token-value", "Bearer", 3600, 200, null));
+
+        store.remove(KEY);
+        store.remove(KEY);
+
+        assertNull(store.get(KEY));
+    }
+
+    @Test
+    void testTryAcquireLease_OneOwnerAtATime() throws Exception {
+        FileDocusignTokenStore first = new FileDocusignTokenStore(directory, "secret");
+        FileDocusignTokenStore second = new FileDocusignTokenStore(directory, "secret");
+
+        assertTrue(first.tryAcquireLease(KEY, "instance-a", 60000));
+        assertFalse(second.tryAcquireLease(KEY, "instance-b", 60000));
+        assertTrue(first.tryAcquireLease(KEY, "instance-a", 60000));
+
+        second.releaseLease(KEY, "instance-b");
+        assertFalse(second.tryAcquireLease(KEY, "instance-b", 60000));
+
+        first.releaseLease(KEY, "instance-a");
+        assertTrue(second.tryAcquireLease(KEY, "instance-b", 60000));
+    }
+
+    @Test
+    void testTryAcquireLease_ExpiredLeaseCanBeTaken() throws Exception {
+        FileDocusignTokenStore store = new FileDocusignTokenStore(directory, "secret");
+
+        assertTrue(store.tryAcquireLease(KEY, "instance-a", 50));
+        Thread.sleep(100);
+
+        assertTrue(store.tryAcquireLease(KEY, "instance-b", 60000));
+        assertFalse(store.tryAcquireLease(KEY, "instance-a", 60000));
+    }
+
+    @Test
+    void testTryAcquireLease_UnreadableLeaseIsOverwritten() throws Exception {
+        FileDocusignTokenStore store = new FileDocusignTokenStore(directory, "secret");
+        assertTrue(store.tryAcquireLease(KEY, "instance-a", 60000));
+        Files.writeString(onlyFile(".lease"), "instance-a not-a-number");
+
+        assertTrue(store.tryAcquireLease(KEY, "instance-b", 60000));
+        assertFalse(store.tryAcquireLease(KEY, "instance-c", 60000));
+    }
+
+    private Path onlyFile(String suffix) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(suffix)).findFirst().orElseThrow();
+        }
+    }
+}
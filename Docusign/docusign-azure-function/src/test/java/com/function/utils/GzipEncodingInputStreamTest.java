@@ -0,0 +1,85 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+class GzipEncodingInputStreamTest {
+
+    // Larger than the 16 KiB chunk the stream compresses at a time
+    private static final int LARGE = 100 * 1024;
+
+    @Test
+    void testRoundTrip_EmptyInput() throws Exception {
+        assertRoundTrip(new byte[0]);
+    }
+
+    @Test
+    void testRoundTrip_OneByte() throws Exception {
+        assertRoundTrip(new byte[]{42});
+    }
+
+    @Test
+    void testRoundTrip_CompressibleInputAboveChunkSize() throws Exception {
+        byte[] input = new byte[LARGE];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) ('a' + i % 7);
+        }
+        assertRoundTrip(input);
+    }
+
+    @Test
+    void testRoundTrip_RandomInputAboveChunkSize() throws Exception {
+        byte[] input = new byte[LARGE + 1];
+        new Random(17).nextBytes(input);
+        assertRoundTrip(input);
+    }
+
+    @Test
+    void testRead_SingleBytesMatchBulkRead() throws Exception {
+        byte[] input = new byte[LARGE];
+        new Random(23).nextBytes(input);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream gzip = new GzipEncodingInputStream(new ByteArrayInputStream(input))) {
+            int b;
+            while ((b = gzip.read()) != -1) {
+                bytes.write(b);
+            }
+        }
+
+        assertArrayEquals(input, gunzip(bytes.toByteArray()));
+        assertArrayEquals(encode(input), bytes.toByteArray());
+    }
+
+    @Test
+    void testRead_ZeroLengthReadReturnsZero() throws Exception {
+        try (InputStream gzip = new GzipEncodingInputStream(new ByteArrayInputStream(new byte[]{1, 2, 3}))) {
+            assertEquals(0, gzip.read(new byte[8], 0, 0));
+        }
+    }
+
+    private static void assertRoundTrip(byte[] input) throws IOException {
+        assertArrayEquals(input, gunzip(encode(input)));
+    }
+
+    private static byte[] encode(byte[] input) throws IOException {
+        try (InputStream gzip = new GzipEncodingInputStream(new ByteArrayInputStream(input))) {
+            return gzip.readAllBytes();
+        }
+    }
+
+    private static byte[] gunzip(byte[] gzipped) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            return in.readAllBytes();
+        }
+    }
+}
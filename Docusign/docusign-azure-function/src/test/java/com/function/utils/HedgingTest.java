@@ -0,0 +1,90 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+class HedgingTest {
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private final AtomicInteger requests = new AtomicInteger();
+    // When set, the next request is held for two seconds
+    private final AtomicBoolean stallNext = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        handlers = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/", exchange -> {
+            int number = requests.incrementAndGet();
+            if (stallNext.compareAndSet(true, false)) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = ("request " + number).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void testSend_HedgesRequestSlowerThanP95() throws Exception {
+        // Tracker samples are per downstream and kept for the process; 20 fast calls make OAUTH hedgeable
+        for (int i = 0; i < 20; i++) {
+            Hedging.send(Downstream.OAUTH, request(), HttpResponse.BodyHandlers.ofString());
+        }
+        int before = requests.get();
+        stallNext.set(true);
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = Hedging.send(Downstream.OAUTH, request(), HttpResponse.BodyHandlers.ofString());
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("request " + (before + 2), response.body());
+        assertTrue(elapsedMs < 1500, "took " + elapsedMs + "ms");
+    }
+
+    @Test
+    void testSend_NoHedgeWithoutSamples() throws Exception {
+        stallNext.set(true);
+
+        HttpResponse<String> response = Hedging.send(Downstream.REND, request(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals("request 1", response.body());
+        assertEquals(1, requests.get());
+    }
+
+    private HttpRequest request() {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/token")).GET().build();
+    }
+}
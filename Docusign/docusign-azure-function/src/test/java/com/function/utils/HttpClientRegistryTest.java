@@ -0,0 +1,145 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+class HttpClientRegistryTest {
+
+    // REND is otherwise only used once by HedgingTest, so its limiter is free here
+    private static final Downstream DOWNSTREAM = Downstream.REND;
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<CompletableFuture<HttpResponse<String>>> held = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        handlers = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/hold", exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/", exchange -> {
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        held.forEach(future -> future.handle((response, error) -> null).join());
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void testSend_WaitForSlotEndsAtDeadline() throws Exception {
+        occupyAllSlots();
+
+        long start = System.nanoTime();
+        Deadline.Scope scope = Deadline.after(300).enter();
+        try {
+            assertThrows(DeadlineExceededException.class,
+                    () -> HttpClientRegistry.send(DOWNSTREAM, request("/"), HttpResponse.BodyHandlers.ofString()));
+        } finally {
+            scope.close();
+        }
+
+        assertTrue(elapsedMs(start) < 5000, "waited " + elapsedMs(start) + "ms");
+    }
+
+    @Test
+    void testSendAsync_WaitForSlotEndsAtDeadline() throws Exception {
+        occupyAllSlots();
+
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> future;
+        Deadline.Scope scope = Deadline.after(300).enter();
+        try {
+            future = HttpClientRegistry.sendAsync(DOWNSTREAM, request("/"), HttpResponse.BodyHandlers.ofString());
+        } finally {
+            scope.close();
+        }
+
+        CompletionException error = assertThrows(CompletionException.class, future::join);
+        assertTrue(error.getCause() instanceof DeadlineExceededException);
+        assertTrue(elapsedMs(start) < 5000, "waited " + elapsedMs(start) + "ms");
+    }
+
+    @Test
+    void testSend_TimeoutBoundByDeadlineAfterSlot() throws Exception {
+        Deadline.Scope scope = Deadline.after(10000).enter();
+        try {
+            HttpResponse<String> response = HttpClientRegistry.send(DOWNSTREAM, request("/"), HttpResponse.BodyHandlers.ofString());
+
+            assertEquals("ok", response.body());
+            Duration timeout = response.request().timeout().orElseThrow();
+            assertTrue(timeout.toMillis() <= 10000, "timeout " + timeout);
+        } finally {
+            scope.close();
+        }
+    }
+
+    // Holds as many calls as the limiter currently allows
+    private void occupyAllSlots() throws Exception {
+        int limit = (Integer) concurrency().get("limit");
+        for (int i = 0; i < limit; i++) {
+            held.add(HttpClientRegistry.sendAsync(DOWNSTREAM, request("/hold"), HttpResponse.BodyHandlers.ofString()));
+        }
+        long giveUpAt = System.currentTimeMillis() + 5000;
+        while (!Integer.valueOf(limit).equals(concurrency().get("inFlight")) && System.currentTimeMillis() < giveUpAt) {
+            Thread.sleep(10);
+        }
+        assertEquals(limit, concurrency().get("inFlight"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> concurrency() {
+        HttpClientRegistry.newRequest(DOWNSTREAM, URI.create("http://127.0.0.1/"));
+        return (Map<String, Object>) ((Map<String, Object>) HttpClientRegistry.getStats().get(DOWNSTREAM.name())).get("concurrency");
+    }
+
+    private HttpRequest request(String path) {
+        return HttpClientRegistry.newRequest(DOWNSTREAM, URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path)).GET().build();
+    }
+
+    private static long elapsedMs(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,131 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class HttpCompressionTest {
+
+    private static final String BODY = "<envelope>" + "café ".repeat(2000) + "</envelope>";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/gzip", exchange -> respond(exchange, "gzip", gzip(bytes())));
+        server.createContext("/deflate", exchange -> respond(exchange, "deflate", deflate(bytes())));
+        server.createContext("/identity", exchange -> respond(exchange, null, bytes()));
+        server.createContext("/latin1", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=ISO-8859-1");
+            respond(exchange, null, BODY.getBytes(StandardCharsets.ISO_8859_1));
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testOfString_DecodesGzip() throws Exception {
+        assertEquals(BODY, client.send(request("/gzip"), HttpCompression.ofString("test-gzip")).body());
+    }
+
+    @Test
+    void testOfString_DecodesDeflate() throws Exception {
+        assertEquals(BODY, client.send(request("/deflate"), HttpCompression.ofString("test-deflate")).body());
+    }
+
+    @Test
+    void testOfString_UsesCharsetFromContentType() throws Exception {
+        assertEquals(BODY, client.send(request("/latin1"), HttpCompression.ofString("test-latin1")).body());
+    }
+
+    @Test
+    void testOfInputStream_DecodesGzipWhileReading() throws Exception {
+        HttpResponse<InputStream> response = client.send(request("/gzip"), HttpCompression.ofInputStream("test-stream"));
+
+        try (InputStream in = response.body()) {
+            assertArrayEquals(bytes(), in.readAllBytes());
+        }
+        assertEquals((long) bytes().length, stat("test-stream", "responseDecodedBytes"));
+        assertEquals((long) gzip(bytes()).length, stat("test-stream", "responseWireBytes"));
+    }
+
+    @Test
+    void testDecodedLength_UnknownForGzip() throws Exception {
+        HttpResponse<InputStream> response = client.send(request("/gzip"), HttpCompression.ofInputStream("test-length"));
+        response.body().close();
+
+        assertEquals(-1, HttpCompression.decodedLength(response));
+    }
+
+    @Test
+    void testDecodedLength_ContentLengthForIdentity() throws Exception {
+        HttpResponse<InputStream> response = client.send(request("/identity"), HttpCompression.ofInputStream("test-length"));
+        response.body().close();
+
+        assertEquals(bytes().length, HttpCompression.decodedLength(response));
+    }
+
+    private static Object stat(String endpoint, String name) {
+        return ((Map<?, ?>) HttpCompression.getStats().get(endpoint)).get(name);
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path)).GET().build();
+    }
+
+    private static void respond(HttpExchange exchange, String encoding, byte[] body) throws IOException {
+        if (encoding != null) {
+            exchange.getResponseHeaders().add("Content-Encoding", encoding);
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] bytes() {
+        return BODY.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(input);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(input);
+        }
+        return bytes.toByteArray();
+    }
+}
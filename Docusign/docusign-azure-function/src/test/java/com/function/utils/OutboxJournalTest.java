@@ -0,0 +1,218 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutboxJournalTest {
+
+    // magic, type, id, header length, body length, crc
+    private static final int RECORD_OVERHEAD = 33;
+
+    @TempDir
+    Path directory;
+
+    // Segment file that cannot be deleted, as on Windows while it is still mapped
+    private Path locked;
+
+    @Test
+    void testAppend_PendingUntilComplete() throws Exception {
+        OutboxJournal journal = new OutboxJournal(directory, 4096, false);
+
+        OutboxJournal.Record first = append(journal, "h1", "first body");
+        OutboxJournal.Record second = journal.append(bytes("h2"), new ByteArrayInputStream(bytes("second body")), -1);
+
+        assertEquals(List.of(first.getId(), second.getId()), ids(journal.pending()));
+        assertEquals("second body", body(journal.get(second.getId())));
+
+        journal.complete(first);
+        journal.complete(first);
+
+        assertNull(journal.get(first.getId()));
+        assertEquals(List.of(second.getId()), ids(journal.pending()));
+    }
+
+    @Test
+    void testRecover_ReplaysPendingRecords() throws Exception {
+        OutboxJournal journal = new OutboxJournal(directory, 4096, true);
+        OutboxJournal.Record first = append(journal, "h1", "first body");
+        OutboxJournal.Record second = append(journal, "h2", "second body");
+        OutboxJournal.Record third = append(journal, "h3", "third body");
+        journal.complete(second);
+
+        OutboxJournal reopened = new OutboxJournal(directory, 4096, true);
+
+        assertEquals(List.of(first.getId(), third.getId()), ids(reopened.pending()));
+        assertArrayEquals(bytes("h3"), reopened.get(third.getId()).getHeader());
+        assertEquals("third body", body(reopened.get(third.getId())));
+        assertEquals(third.getId() + 1, append(reopened, "h4", "fourth body").getId());
+    }
+
+    @Test
+    void testRecover_SkipsCorruptRecord() throws Exception {
+        OutboxJournal journal = new OutboxJournal(directory, 4096, false);
+        append(journal, "h1", "first body");
+        OutboxJournal.Record second = append(journal, "h2", "second body");
+
+        // Flip the first byte of the first record's body, which starts the first segment
+        try (FileChannel channel = FileChannel.open(directory.resolve("outbox-000000000001.seg"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes("F")), RECORD_OVERHEAD + 2);
+        }
+
+        OutboxJournal reopened = new OutboxJournal(directory, 4096, false);
+
+        assertEquals(List.of(second.getId()), ids(reopened.pending()));
+        assertEquals("second body", body(reopened.get(second.getId())));
+    }
+
+    @Test
+    void testRecover_SkipsUnfinishedAppend() throws Exception {
+        OutboxJournal journal = new OutboxJournal(directory, 4096, false);
+        InputStream truncated = new ByteArrayInputStream(bytes("short"));
+
+        assertThrows(IOException.class, () -> journal.append(bytes("h1"), truncated, 100));
+        OutboxJournal.Record after = append(journal, "h2", "after the torn record");
+
+        OutboxJournal reopened = new OutboxJournal(directory, 4096, false);
+
+        assertEquals(List.of(after.getId()), ids(reopened.pending()));
+    }
+
+    @Test
+    void testCompact_DeletesFinishedSegmentsAndMovesStragglers() throws Exception {
+        // Each record takes 33 + 2 + 100 bytes, so seven fit in a segment
+        OutboxJournal journal = new OutboxJournal(directory, 1024, false);
+        String padded = "x".repeat(99);
+        for (int i = 0; i < 10; i++) {
+            append(journal, "h" + i, i + padded);
+        }
+        List<OutboxJournal.Record> records = journal.pending();
+        assertEquals(2, journal.getStats().get("segments"));
+        for (OutboxJournal.Record record : records.subList(0, 6)) {
+            journal.complete(record);
+        }
+
+        assertEquals(1, journal.compact());
+
+        assertEquals(1, journal.getStats().get("segments"));
+        assertEquals(ids(records.subList(6, 10)), ids(journal.pending()));
+        assertEquals("6" + padded, body(journal.get(records.get(6).getId())));
+
+        OutboxJournal reopened = new OutboxJournal(directory, 1024, false);
+        assertEquals(ids(records.subList(6, 10)), ids(reopened.pending()));
+        assertEquals("6" + padded, body(reopened.get(records.get(6).getId())));
+    }
+
+    @Test
+    void testCompact_RetiresSegmentWhoseFileCannotBeDeleted() throws Exception {
+        OutboxJournal journal = new LockingJournal();
+        String padded = "x".repeat(99);
+        for (int i = 0; i < 15; i++) {
+            append(journal, "h" + i, i + padded);
+        }
+        List<OutboxJournal.Record> records = journal.pending();
+        for (OutboxJournal.Record record : records.subList(0, 14)) {
+            journal.complete(record);
+        }
+        Path first = directory.resolve("outbox-000000000001.seg");
+        locked = first;
+
+        assertEquals(2, journal.compact());
+
+        assertEquals(1, journal.getStats().get("segments"));
+        assertEquals(1, journal.getStats().get("undeletedSegments"));
+        assertEquals(ids(records.subList(14, 15)), ids(journal.pending()));
+        assertTrue(Files.exists(first));
+        assertTrue(Files.exists(directory.resolve("outbox-000000000001.seg.retired")));
+        assertFalse(Files.exists(directory.resolve("outbox-000000000002.seg")));
+
+        // Still usable, and a later pass finishes the delete
+        OutboxJournal.Record next = append(journal, "h15", "after compaction");
+        assertEquals(0, journal.compact());
+        assertEquals(1, journal.getStats().get("undeletedSegments"));
+        locked = null;
+        assertEquals(0, journal.compact());
+        assertEquals(0, journal.getStats().get("undeletedSegments"));
+        assertFalse(Files.exists(first));
+        assertFalse(Files.exists(directory.resolve("outbox-000000000001.seg.retired")));
+        assertEquals(List.of(records.get(14).getId(), next.getId()), ids(journal.pending()));
+    }
+
+    @Test
+    void testRecover_DeletesRetiredSegmentInsteadOfReadingIt() throws Exception {
+        OutboxJournal journal = new LockingJournal();
+        String padded = "x".repeat(99);
+        for (int i = 0; i < 8; i++) {
+            append(journal, "h" + i, i + padded);
+        }
+        List<OutboxJournal.Record> records = journal.pending();
+        for (OutboxJournal.Record record : records.subList(0, 7)) {
+            journal.complete(record);
+        }
+        locked = directory.resolve("outbox-000000000001.seg");
+        journal.compact();
+        locked = null;
+
+        OutboxJournal reopened = new OutboxJournal(directory, 1024, false);
+
+        assertEquals(ids(records.subList(7, 8)), ids(reopened.pending()));
+        assertFalse(Files.exists(directory.resolve("outbox-000000000001.seg")));
+        assertFalse(Files.exists(directory.resolve("outbox-000000000001.seg.retired")));
+        assertTrue(append(reopened, "h8", "after reopen").getId() > records.get(7).getId());
+    }
+
+    private static OutboxJournal.Record append(OutboxJournal journal, String header, String body) throws IOException {
+        byte[] bytes = bytes(body);
+        return journal.append(bytes(header), new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private static String body(OutboxJournal.Record record) throws IOException {
+        try (InputStream in = record.openBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<Long> ids(List<OutboxJournal.Record> records) {
+        return records.stream().map(OutboxJournal.Record::getId).collect(Collectors.toList());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Journal whose {@link #locked} segment cannot be deleted.
+     */
+    private final class LockingJournal extends OutboxJournal {
+        private LockingJournal() throws IOException {
+            super(directory, 1024, false);
+        }
+
+        @Override
+        void delete(Path segment) throws IOException {
+            if (segment.equals(locked)) {
+                throw new FileSystemException(segment.toString(), null, "The process cannot access the file because it is being used by another process");
+            }
+            super.delete(segment);
+        }
+    }
+}
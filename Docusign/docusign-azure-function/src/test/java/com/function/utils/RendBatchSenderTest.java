@@ -0,0 +1,158 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class RendBatchSenderTest {
+
+    private static final String REQUEST = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Header/><soapenv:Body><api:render><doc>%d</doc></api:render></soapenv:Body></soapenv:Envelope>";
+    private static final String RESPONSE = "<S:Envelope xmlns:S=\"http://schemas.xmlsoap.org/soap/envelope/\"><S:Body>%s</S:Body></S:Envelope>";
+    private static final String RESULT = "<ns2:renderResponse><return>id-%d</return></ns2:renderResponse>";
+
+    private final FakeTransport transport = new FakeTransport();
+
+    @Test
+    void testSubmit_SplitsBatchResponsePerEvent() throws Exception {
+        transport.batchResponse = response(200, String.format(RESPONSE, String.format(RESULT, 1) + String.format(RESULT, 2)));
+        RendBatchSender sender = sender(true, 60000);
+
+        CompletableFuture<String> first = sender.submit("HR", String.format(REQUEST, 1), "c1", null);
+        CompletableFuture<String> second = sender.submit("HR", String.format(REQUEST, 2), "c2", null);
+
+        assertEquals(1, transport.batches.size());
+        String combined = transport.batches.get(0);
+        assertTrue(combined.contains("<doc>1</doc></api:render><api:render><doc>2</doc>"));
+        assertEquals(1, combined.split("<soapenv:Body>", -1).length - 1);
+
+        String firstResult = first.get(5, TimeUnit.SECONDS);
+        assertTrue(firstResult.startsWith("{\"statusCode\":200, "));
+        assertTrue(firstResult.contains("id-1") && !firstResult.contains("id-2"));
+        assertTrue(firstResult.endsWith("\"correlationId\":\"c1\"}"));
+        String secondResult = second.get(5, TimeUnit.SECONDS);
+        assertTrue(secondResult.contains("id-2") && !secondResult.contains("id-1"));
+
+        assertEquals(1L, sender.getStats().get("batches"));
+        assertEquals(2L, sender.getStats().get("batchedDocuments"));
+        assertTrue(transport.alone.isEmpty());
+    }
+
+    @Test
+    void testSubmit_ResendsRejectedBatchAlone() throws Exception {
+        transport.batchResponse = response(500, "<fault/>");
+        RendBatchSender sender = sender(true, 60000);
+
+        CompletableFuture<String> first = sender.submit("HR", String.format(REQUEST, 1), "c1", null);
+        CompletableFuture<String> second = sender.submit("HR", String.format(REQUEST, 2), "c2", null);
+
+        assertEquals("alone c1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("alone c2", second.get(5, TimeUnit.SECONDS));
+        assertEquals(2L, sender.getStats().get("resentAlone"));
+        assertEquals(0L, sender.getStats().get("batchedDocuments"));
+        assertTrue(sender.isEnabled());
+    }
+
+    @Test
+    void testSubmit_ResendsFailedBatchAlone() throws Exception {
+        transport.batchFailure = new IOException("Connection reset");
+        RendBatchSender sender = sender(true, 60000);
+
+        CompletableFuture<String> first = sender.submit("HR", String.format(REQUEST, 1), "c1", null);
+        CompletableFuture<String> second = sender.submit("HR", String.format(REQUEST, 2), "c2", null);
+
+        assertEquals("alone c1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("alone c2", second.get(5, TimeUnit.SECONDS));
+        assertEquals(0L, sender.getStats().get("batches"));
+        assertEquals(2L, sender.getStats().get("resentAlone"));
+    }
+
+    @Test
+    void testSubmit_PartialAnswerDisablesBatching() throws Exception {
+        transport.batchResponse = response(200, String.format(RESPONSE, String.format(RESULT, 1)));
+        RendBatchSender sender = sender(true, 60000);
+
+        CompletableFuture<String> first = sender.submit("HR", String.format(REQUEST, 1), "c1", null);
+        CompletableFuture<String> second = sender.submit("HR", String.format(REQUEST, 2), "c2", null);
+
+        assertTrue(first.get(5, TimeUnit.SECONDS).contains("id-1"));
+        assertEquals("alone c2", second.get(5, TimeUnit.SECONDS));
+        assertFalse(sender.isEnabled());
+
+        assertEquals("alone c3", sender.submit("HR", String.format(REQUEST, 3), "c3", null).get(5, TimeUnit.SECONDS));
+        assertEquals(1, transport.batches.size());
+        assertEquals(1L, sender.getStats().get("resentAlone"));
+        assertEquals(1L, sender.getStats().get("sentAlone"));
+    }
+
+    @Test
+    void testSubmit_LoneDocumentSentAloneWhenWindowCloses() throws Exception {
+        RendBatchSender sender = sender(true, 10);
+
+        CompletableFuture<String> only = sender.submit("HR", String.format(REQUEST, 1), "c1", null);
+        CompletableFuture<String> otherRepository = sender.submit("TAX", String.format(REQUEST, 2), "c2", null);
+
+        assertEquals("alone c1", only.get(5, TimeUnit.SECONDS));
+        assertEquals("alone c2", otherRepository.get(5, TimeUnit.SECONDS));
+        assertTrue(transport.batches.isEmpty());
+        assertEquals(2L, sender.getStats().get("sentAlone"));
+    }
+
+    @Test
+    void testSubmit_DisabledSendsAlone() throws Exception {
+        RendBatchSender sender = sender(false, 60000);
+
+        assertEquals("alone c1", sender.submit("HR", String.format(REQUEST, 1), "c1", null).get(5, TimeUnit.SECONDS));
+        assertEquals("alone c2", sender.submit("HR", String.format(REQUEST, 2), "c2", null).get(5, TimeUnit.SECONDS));
+
+        assertTrue(transport.batches.isEmpty());
+        assertEquals(2L, sender.getStats().get("sentAlone"));
+    }
+
+    // Two documents fill a batch; sends run on the submitting thread
+    private RendBatchSender sender(boolean enabled, long windowMs) {
+        return new RendBatchSender(enabled, windowMs, 2, 1024 * 1024, Runnable::run, transport);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<String> response(int statusCode, String body) {
+        HttpResponse<String> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(statusCode);
+        when(response.body()).thenReturn(body);
+        return response;
+    }
+
+    /**
+     * Records what would have been sent to REND.
+     */
+    private static final class FakeTransport implements RendBatchSender.Transport {
+        private final List<String> batches = new CopyOnWriteArrayList<>();
+        private final List<String> alone = new CopyOnWriteArrayList<>();
+        private HttpResponse<String> batchResponse;
+        private Exception batchFailure;
+
+        @Override
+        public HttpResponse<String> sendBatch(String soapPayload) throws Exception {
+            batches.add(soapPayload);
+            if (batchFailure != null) throw batchFailure;
+            return batchResponse;
+        }
+
+        @Override
+        public String sendAlone(String soapPayload, String correlationId) {
+            alone.add(soapPayload);
+            return "alone " + correlationId;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+class ResilienceTest {
+
+    private HttpServer server;
+    private final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            Integer status = statuses.poll();
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(status == null ? 200 : status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testSend_RetriesGetAfterServerError() throws Exception {
+        statuses.add(500);
+
+        HttpResponse<String> response = Resilience.send(Downstream.AZURE_TOKEN, get(), HttpResponse.BodyHandlers.ofString(), true);
+
+        assertEquals(200, response.statusCode());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testSend_DoesNotRetryPostAfterServerError() throws Exception {
+        statuses.add(500);
+
+        HttpResponse<String> response = Resilience.send(Downstream.AZURE_TOKEN, post(), HttpResponse.BodyHandlers.ofString(), true);
+
+        assertEquals(500, response.statusCode());
+        assertEquals(1, requests.get());
+        // Leave the breaker closed for the other tests
+        Resilience.send(Downstream.AZURE_TOKEN, get(), HttpResponse.BodyHandlers.ofString(), true);
+    }
+
+    @Test
+    void testSend_RetriesPostThatWasNotProcessed() throws Exception {
+        statuses.add(503);
+
+        HttpResponse<String> response = Resilience.send(Downstream.AZURE_TOKEN, post(), HttpResponse.BodyHandlers.ofString(), true);
+
+        assertEquals(200, response.statusCode());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testSend_DoesNotRetryBodyThatCannotBeReplayed() throws Exception {
+        statuses.add(503);
+
+        HttpResponse<String> response = Resilience.send(Downstream.AZURE_TOKEN, post(), HttpResponse.BodyHandlers.ofString(), false);
+
+        assertEquals(503, response.statusCode());
+        assertEquals(1, requests.get());
+        Resilience.send(Downstream.AZURE_TOKEN, get(), HttpResponse.BodyHandlers.ofString(), true);
+    }
+
+    @Test
+    void testSend_RetriesPostThatCouldNotConnect() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        HttpRequest request = HttpClientRegistry.newRequest(Downstream.MYHRSS, URI.create("http://127.0.0.1:" + closedPort + "/"))
+                .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                .build();
+        long retriesBefore = retries(Downstream.MYHRSS);
+
+        assertThrows(IOException.class,
+                () -> Resilience.send(Downstream.MYHRSS, request, HttpResponse.BodyHandlers.ofString(), true));
+
+        assertEquals(retriesBefore + 2, retries(Downstream.MYHRSS));
+    }
+
+    private HttpRequest get() {
+        return HttpClientRegistry.newRequest(Downstream.AZURE_TOKEN, uri()).GET().build();
+    }
+
+    private HttpRequest post() {
+        return HttpClientRegistry.newRequest(Downstream.AZURE_TOKEN, uri()).POST(HttpRequest.BodyPublishers.ofString("{}")).build();
+    }
+
+    private URI uri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long retries(Downstream downstream) {
+        return (Long) ((Map<String, Object>) Resilience.getStats().get(downstream.name())).get("retries");
+    }
+}
@@ -0,0 +1,190 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+class ResumableDownloadTest {
+
+    private static final byte[] DOCUMENT = new byte[1000];
+
+    static {
+        for (int i = 0; i < DOCUMENT.length; i++) {
+            DOCUMENT[i] = (byte) i;
+        }
+    }
+
+    @TempDir
+    Path checkpoints;
+
+    private HttpServer server;
+    // One handler per expected request, in order
+    private final Queue<HttpHandler> responses = new ConcurrentLinkedQueue<>();
+    private final List<Headers> requests = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.add(exchange.getRequestHeaders());
+            HttpHandler next = responses.poll();
+            if (next == null) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            next.handle(exchange);
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testDownload_StreamsSmallDocument() throws Exception {
+        long streamed = stat("streamed");
+        responses.add(exchange -> whole(exchange, "\"v1\"", DOCUMENT.length));
+
+        DocumentCache.Document document = download(DOCUMENT.length + 1);
+
+        assertArrayEquals(DOCUMENT, readAll(document));
+        assertEquals(DOCUMENT.length, document.getLength());
+        assertEquals(streamed + 1, stat("streamed"));
+        assertEquals("base64", requests.get(0).getFirst("Content-Transfer-Encoding"));
+        assertEquals("identity", requests.get(0).getFirst("Accept-Encoding"));
+        assertEquals("Bearer token", requests.get(0).getFirst("Authorization"));
+        assertNull(requests.get(0).getFirst("Range"));
+    }
+
+    @Test
+    void testDownload_ResumesDroppedConnection() throws Exception {
+        long resumes = stat("resumes");
+        responses.add(exchange -> whole(exchange, "\"v1\"", 400));
+        responses.add(exchange -> range(exchange, "\"v1\"", 400));
+
+        DocumentCache.Document document = download(0);
+
+        assertArrayEquals(DOCUMENT, readAll(document));
+        assertEquals(resumes + 1, stat("resumes"));
+        assertEquals("bytes=400-", requests.get(1).getFirst("Range"));
+        assertEquals("\"v1\"", requests.get(1).getFirst("If-Range"));
+        assertTrue(isEmpty(checkpoints));
+    }
+
+    @Test
+    void testDownload_RestartsWhenServerIgnoresRange() throws Exception {
+        long restarts = stat("restarts");
+        responses.add(exchange -> whole(exchange, "\"v1\"", 400));
+        responses.add(exchange -> whole(exchange, "\"v1\"", DOCUMENT.length));
+
+        DocumentCache.Document document = download(0);
+
+        assertArrayEquals(DOCUMENT, readAll(document));
+        assertEquals(restarts + 1, stat("restarts"));
+        assertEquals("bytes=400-", requests.get(1).getFirst("Range"));
+    }
+
+    @Test
+    void testDownload_StartsOverOnEtagMismatch() throws Exception {
+        long restarts = stat("restarts");
+        responses.add(exchange -> whole(exchange, "\"v1\"", 400));
+        responses.add(exchange -> range(exchange, "\"v2\"", 400));
+        responses.add(exchange -> whole(exchange, "\"v2\"", DOCUMENT.length));
+
+        DocumentCache.Document document = download(0);
+
+        assertArrayEquals(DOCUMENT, readAll(document));
+        assertEquals(restarts + 1, stat("restarts"));
+        assertEquals(3, requests.size());
+        assertNull(requests.get(2).getFirst("Range"));
+    }
+
+    @Test
+    void testDownload_FailsOnErrorStatus() {
+        responses.add(exchange -> {
+            byte[] body = "{\"message\":\"not found\"}".getBytes();
+            exchange.sendResponseHeaders(404, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        Exception error = assertThrows(Exception.class, () -> download(0));
+
+        assertEquals("404::{\"message\":\"not found\"}", error.getMessage());
+    }
+
+    private DocumentCache.Document download(long minBytes) throws Exception {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/documents/combined");
+        return ResumableDownload.download("account-1", uri, "token", minBytes, checkpoints);
+    }
+
+    // 200 with the whole document's headers; the connection drops after {@code sent} bytes
+    private static void whole(HttpExchange exchange, String etag, int sent) throws IOException {
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().add("ETag", etag);
+        exchange.sendResponseHeaders(200, DOCUMENT.length);
+        write(exchange, 0, sent);
+    }
+
+    // 206 with the rest of the document from {@code offset}
+    private static void range(HttpExchange exchange, String etag, int offset) throws IOException {
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().add("ETag", etag);
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + offset + "-" + (DOCUMENT.length - 1) + "/" + DOCUMENT.length);
+        exchange.sendResponseHeaders(206, DOCUMENT.length - offset);
+        write(exchange, offset, DOCUMENT.length - offset);
+    }
+
+    // Closing before the declared length has been written drops the connection
+    private static void write(HttpExchange exchange, int offset, int length) throws IOException {
+        OutputStream out = exchange.getResponseBody();
+        out.write(DOCUMENT, offset, length);
+        out.flush();
+        exchange.close();
+    }
+
+    private static byte[] readAll(DocumentCache.Document document) throws IOException {
+        try (InputStream in = document.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static boolean isEmpty(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.findAny().isEmpty();
+        }
+    }
+
+    private static long stat(String name) {
+        return (Long) ResumableDownload.getStats().get(name);
+    }
+}
@@ -0,0 +1,45 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RetryBudgetTest {
+
+    @Test
+    void testTryAcquireRetry_EarnedByRequests() {
+        RetryBudget budget = new RetryBudget(0.5, 100, 0);
+
+        assertFalse(budget.tryAcquireRetry());
+
+        budget.recordRequest();
+        budget.recordRequest();
+
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void testTryAcquireRetry_FloorWithoutTraffic() {
+        RetryBudget budget = new RetryBudget(0.0, 100, 2);
+
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertEquals(2L, budget.getStats().get("retriesGranted"));
+    }
+
+    @Test
+    void testRecordRequest_CappedAtMaxTokens() {
+        RetryBudget budget = new RetryBudget(1.0, 2, 0);
+        for (int i = 0; i < 10; i++) {
+            budget.recordRequest();
+        }
+
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+        assertEquals(1L, budget.getStats().get("retriesDenied"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.function.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+
+class StageTimingsTest {
+
+    @Test
+    void testTime_RunsStageUnderDeadline() {
+        Deadline deadline = Deadline.after(60000);
+        StageTimings timings = new StageTimings(deadline);
+
+        Deadline seen = timings.time("parse", Deadline::current);
+
+        assertSame(deadline, seen);
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    void testTime_WrapsCheckedExceptions() {
+        StageTimings timings = new StageTimings();
+        IOException failure = new IOException("download failed");
+
+        CompletionException error = assertThrows(CompletionException.class, () -> timings.time("download", () -> {
+            throw failure;
+        }));
+
+        assertSame(failure, error.getCause());
+    }
+
+    @Test
+    void testTime_PassesRuntimeExceptionsThrough() {
+        StageTimings timings = new StageTimings();
+
+        assertThrows(IllegalStateException.class, () -> timings.time("payload", () -> {
+            throw new IllegalStateException("bad payload");
+        }));
+    }
+
+    @Test
+    void testSummary_ListsEachStage() {
+        StageTimings timings = new StageTimings();
+        assertEquals("done", timings.time("upload", () -> "done"));
+        timings.record("token", 0);
+
+        String summary = timings.summary();
+
+        assertTrue(summary.contains("upload="));
+        assertTrue(summary.contains("token=0ms"));
+        assertTrue(summary.contains("total="));
+    }
+}
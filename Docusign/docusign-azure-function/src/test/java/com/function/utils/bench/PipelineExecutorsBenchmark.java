@@ -0,0 +1,117 @@
+package com.function.utils.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the platform I/O pool with virtual threads (see PipelineExecutors) at 100, 1,000 and 5,000 events in
+ * flight. Each stubbed event blocks for 40 ms (download) and 30 ms (upload) and fills a 64 KB payload in between.
+ * Run by hand on a Java 21 runtime, e.g. {@code mvn test -Dtest=PipelineExecutorsBenchmark -Djunit.jupiter.conditions.deactivate=org.junit.*DisabledCondition};
+ * on Java 17 only the platform pool is measured.
+ */
+@Disabled("Benchmark; run by hand")
+class PipelineExecutorsBenchmark {
+
+    private static final int PLATFORM_THREADS = 64;
+    private static final int[] IN_FLIGHT = {100, 1000, 5000};
+    private static final int WARM_UP_EVENTS = 200;
+
+    @Test
+    void compareIoExecutors() throws Exception {
+        System.out.printf("%-9s %9s %10s %7s %10s %17s%n", "mode", "in-flight", "events/s", "wall", "peak heap", "platform threads");
+        for (int inFlight : IN_FLIGHT) {
+            measure("platform", inFlight);
+        }
+        if (newVirtualThreadExecutor() == null) {
+            System.out.println("virtual   not supported by this runtime");
+            return;
+        }
+        for (int inFlight : IN_FLIGHT) {
+            measure("virtual", inFlight);
+        }
+    }
+
+    private static void measure(String mode, int inFlight) throws Exception {
+        ExecutorService executor = "virtual".equals(mode) ? newVirtualThreadExecutor() : newPlatformPool();
+        try {
+            run(executor, WARM_UP_EVENTS);
+            System.gc();
+            Thread.sleep(200);
+
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            AtomicLong peakHeap = new AtomicLong();
+            AtomicInteger peakThreads = new AtomicInteger();
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleAtFixedRate(() -> {
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                peakThreads.accumulateAndGet(ManagementFactory.getThreadMXBean().getThreadCount(), Math::max);
+            }, 0, 5, TimeUnit.MILLISECONDS);
+
+            long start = System.nanoTime();
+            run(executor, inFlight);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            sampler.shutdownNow();
+
+            System.out.printf("%-9s %9d %10.0f %6.2fs %7d MB %17d%n",
+                    mode, inFlight, inFlight / seconds, seconds, peakHeap.get() >> 20, peakThreads.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void run(ExecutorService executor, int events) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return event();
+                } catch (InterruptedException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    // Download, payload work, upload
+    private static long event() throws InterruptedException {
+        Thread.sleep(40);
+        byte[] payload = new byte[64 * 1024];
+        Arrays.fill(payload, (byte) 1);
+        Thread.sleep(30);
+        return payload.length;
+    }
+
+    private static ExecutorService newPlatformPool() {
+        return Executors.newFixedThreadPool(PLATFORM_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "bench-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Looked up reflectively, as in PipelineExecutors, so the benchmark still builds for Java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}